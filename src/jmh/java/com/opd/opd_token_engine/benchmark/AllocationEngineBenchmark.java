@@ -0,0 +1,109 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.benchmark.BenchmarkFixtures.SourceMix;
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.engine.AllocationResult;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives AllocationEngine.allocate against a single hot slot in one of three
+ * steady-state regimes:
+ * <ul>
+ *     <li>ROOM_LEFT - the slot always has a free seat, every call allocates</li>
+ *     <li>PREEMPTION - the slot is full and every arrival evicts the lowest token</li>
+ *     <li>WAITLIST - the slot is full of blockers and every arrival is waitlisted</li>
+ * </ul>
+ * Each operation discharges the token it displaced (or its own token) so the
+ * queues stay at their initial size for the whole iteration.
+ * <p>
+ * Compare slot concurrency modes under contention with, for example,
+ * {@code -t 64 -p regime=ROOM_LEFT}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AllocationEngineBenchmark {
+
+    public enum Regime { ROOM_LEFT, PREEMPTION, WAITLIST }
+
+    @Param({"6", "60"})
+    public int capacity;
+
+    @Param({"ROOM_LEFT", "PREEMPTION", "WAITLIST"})
+    public Regime regime;
+
+    @Param({"UNIFORM", "MORNING_RUSH", "EMERGENCY_SURGE"})
+    public SourceMix mix;
+
+    @Param({"MONITOR", "CAS_FAST_PATH"})
+    public SlotConcurrencyMode mode;
+
+    // Compare recording overhead with -p metrics=true,false
+    @Param({"true"})
+    public boolean metrics;
+
+    TimeSlot slot;
+    TokenSource[] arrivals;
+    AtomicInteger escalation;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) {
+        EngineMetrics.setEnabled(metrics);
+        arrivals = mix.arrivals(42L);
+        escalation = new AtomicInteger();
+
+        // ROOM_LEFT keeps one spare seat per benchmark thread on top of the prefill
+        int seats = regime == Regime.ROOM_LEFT ? capacity + params.getThreads() : capacity;
+        slot = new TimeSlot("9-10", seats, mode);
+
+        for (int i = 0; i < capacity; i++) {
+            TokenSource source = arrivals[i & BenchmarkFixtures.ARRIVAL_MASK];
+            int priority = regime == Regime.WAITLIST
+                    ? BenchmarkFixtures.BLOCKER_PRIORITY
+                    : AllocationService.basePriority(source);
+            AllocationEngine.allocate("D1", slot, new Token("PREFILL-" + i, source, priority));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Arrivals {
+        int cursor;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            // Stagger threads so they do not replay the same sources in lock-step
+            cursor = threadParams.getThreadIndex() * 97;
+        }
+    }
+
+    @Benchmark
+    public AllocationResult allocate(Arrivals thread) {
+        TokenSource source = arrivals[thread.cursor++ & BenchmarkFixtures.ARRIVAL_MASK];
+        int priority = AllocationService.basePriority(source);
+        if (regime == Regime.PREEMPTION) {
+            // Every arrival outranks everything already seated
+            priority += BenchmarkFixtures.BLOCKER_PRIORITY + escalation.incrementAndGet();
+        }
+
+        Token token = new Token("P", source, priority);
+        AllocationResult result = AllocationEngine.allocate("D1", slot, token);
+
+        BenchmarkFixtures.discharge(slot,
+                result.evictedTokenId != null ? result.evictedTokenId : token.getTokenId());
+        return result;
+    }
+}
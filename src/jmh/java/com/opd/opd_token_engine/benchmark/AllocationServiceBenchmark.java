@@ -0,0 +1,106 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.benchmark.BenchmarkFixtures.SourceMix;
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full service path (store lookup, priority, allocation, response building)
+ * for createToken and cancelPatientToken.
+ * <ul>
+ *     <li>createAndCancel - slot "9-10" always has room; book then cancel</li>
+ *     <li>createWaitlisted - slot "10-11" is full of blockers; every booking is
+ *     waitlisted and its queue position computed</li>
+ * </ul>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AllocationServiceBenchmark {
+
+    @Param({"6", "60"})
+    public int capacity;
+
+    @Param({"UNIFORM", "MORNING_RUSH", "EMERGENCY_SURGE"})
+    public SourceMix mix;
+
+    @Param({"MONITOR", "CAS_FAST_PATH"})
+    public SlotConcurrencyMode mode;
+
+    // Compare recording overhead with -p metrics=true,false
+    @Param({"true"})
+    public boolean metrics;
+
+    AllocationService service;
+    TokenSource[] arrivals;
+    TimeSlot fullSlot;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) {
+        EngineMetrics.setEnabled(metrics);
+        service = new AllocationService();
+        arrivals = mix.arrivals(7L);
+
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 1.0, mode);
+        doctor.addSlot("9-10", capacity + params.getThreads());
+        doctor.addSlot("10-11", capacity);
+        InMemoryStore.doctors.put("D1", doctor);
+
+        for (int i = 0; i < capacity; i++) {
+            service.createToken("D1", "9-10", "PREFILL-" + i, arrivals[i]);
+        }
+
+        fullSlot = doctor.getSlots().get("10-11");
+        for (int i = 0; i < capacity; i++) {
+            AllocationEngine.allocate("D1", fullSlot,
+                    new Token("BLOCKER-" + i, TokenSource.EMERGENCY, BenchmarkFixtures.BLOCKER_PRIORITY));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        InMemoryStore.doctors.clear();
+    }
+
+    @State(Scope.Thread)
+    public static class Arrivals {
+        int cursor;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            cursor = threadParams.getThreadIndex() * 97;
+        }
+    }
+
+    @Benchmark
+    public boolean createAndCancel(Arrivals thread) {
+        TokenSource source = arrivals[thread.cursor++ & BenchmarkFixtures.ARRIVAL_MASK];
+        AllocationResponseDTO response = service.createToken("D1", "9-10", "P", source);
+        return service.cancelPatientToken("D1", "9-10", response.tokenId);
+    }
+
+    @Benchmark
+    public AllocationResponseDTO createWaitlisted(Arrivals thread) {
+        TokenSource source = arrivals[thread.cursor++ & BenchmarkFixtures.ARRIVAL_MASK];
+        AllocationResponseDTO response = service.createToken("D1", "10-11", "P", source);
+        BenchmarkFixtures.discharge(fullSlot, response.tokenId);
+        return response;
+    }
+}
@@ -0,0 +1,76 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.TokenSource;
+
+import java.util.Random;
+
+/**
+ * Shared arrival mixes and slot helpers for the allocation benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    /** Base priority that no real TokenSource reaches, used to pin a slot in a regime. */
+    static final int BLOCKER_PRIORITY = 1_000_000;
+
+    static final int ARRIVAL_MASK = 1023;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Relative weights of EMERGENCY, PAID, FOLLOW_UP, ONLINE and WALK_IN arrivals.
+     */
+    public enum SourceMix {
+        UNIFORM(20, 20, 20, 20, 20),
+        MORNING_RUSH(5, 10, 15, 30, 40),
+        EMERGENCY_SURGE(50, 10, 10, 15, 15);
+
+        private final int[] weights;
+
+        SourceMix(int... weights) {
+            this.weights = weights;
+        }
+
+        /**
+         * Deterministic arrival sequence of ARRIVAL_MASK + 1 sources drawn with these weights.
+         */
+        TokenSource[] arrivals(long seed) {
+            TokenSource[] sources = TokenSource.values();
+            int total = 0;
+            for (int w : weights) {
+                total += w;
+            }
+
+            Random random = new Random(seed);
+            TokenSource[] arrivals = new TokenSource[ARRIVAL_MASK + 1];
+            for (int i = 0; i < arrivals.length; i++) {
+                int pick = random.nextInt(total);
+                int s = 0;
+                while (pick >= weights[s]) {
+                    pick -= weights[s];
+                    s++;
+                }
+                arrivals[i] = sources[s];
+            }
+            return arrivals;
+        }
+    }
+
+    /**
+     * Removes a token from whichever queue of the slot holds it, as if the
+     * consultation finished. Keeps a benchmark slot in a steady state.
+     */
+    static void discharge(TimeSlot slot, String tokenId) {
+        slot.lock();
+        try {
+            if (slot.getAllocatedTokens().remove(tokenId) != null) {
+                slot.releaseSeat();
+            } else {
+                slot.getWaitingQueue().remove(tokenId);
+            }
+        } finally {
+            slot.unlock();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.benchmark.BenchmarkFixtures.SourceMix;
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.engine.DelayPropagator;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Doctor delays arriving while bookings are made against the same doctor.
+ * <ul>
+ *     <li>storm - three threads book and cancel across the doctor's slots
+ *     while one thread alternates the doctor between running late and
+ *     catching up, so every delay shrinks or grows every slot</li>
+ *     <li>calm - the same booking load with no delays, as the baseline for
+ *     storm's book figures</li>
+ * </ul>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Group)
+public class DelayStormBenchmark {
+
+    private static final LocalTime MORNING = LocalTime.of(8, 0);
+    private static final String[] SLOTS = {"9-10", "10-11", "11-12", "12-13"};
+
+    @Param({"6", "60"})
+    public int capacity;
+
+    @Param({"MORNING_RUSH"})
+    public SourceMix mix;
+
+    @Param({"MONITOR", "CAS_FAST_PATH"})
+    public SlotConcurrencyMode mode;
+
+    @Param({"true"})
+    public boolean metrics;
+
+    AllocationService service;
+    TokenSource[] arrivals;
+    Doctor doctor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        EngineMetrics.setEnabled(metrics);
+        service = new AllocationService();
+        arrivals = mix.arrivals(7L);
+
+        InMemoryStore.doctors.clear();
+        doctor = new Doctor("D1", 1.0, mode);
+        for (String slotId : SLOTS) {
+            doctor.addSlot(slotId, capacity);
+        }
+        InMemoryStore.doctors.put("D1", doctor);
+
+        // Slots start full so that shrinking always has tokens to displace
+        for (String slotId : SLOTS) {
+            for (int i = 0; i < capacity; i++) {
+                service.createToken("D1", slotId, "PREFILL-" + i, arrivals[i]);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        InMemoryStore.doctors.clear();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        boolean late;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            next = threadParams.getThreadIndex() * 97;
+        }
+    }
+
+    private boolean bookAndCancel(Cursor thread) {
+        int i = thread.next++;
+        String slotId = SLOTS[i & (SLOTS.length - 1)];
+        TokenSource source = arrivals[i & BenchmarkFixtures.ARRIVAL_MASK];
+        AllocationResponseDTO response = service.createToken("D1", slotId, "P", source);
+        return service.cancelPatientToken("D1", slotId, response.tokenId);
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(3)
+    public boolean book(Cursor thread) {
+        return bookAndCancel(thread);
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(1)
+    public DelayPropagator.Propagation delay(Cursor thread) {
+        thread.late = !thread.late;
+        return service.applyDelay("D1", thread.late ? 0.5 : 2.0, MORNING);
+    }
+
+    @Benchmark
+    @Group("calm")
+    @GroupThreads(3)
+    public boolean bookOnly(Cursor thread) {
+        return bookAndCancel(thread);
+    }
+}
@@ -0,0 +1,101 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.benchmark.BenchmarkFixtures.SourceMix;
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.repository.StoreShards;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book and cancel spread over many doctors, with and without store shards.
+ * shards=0 runs every request on the calling thread under slot locks; any
+ * other value routes each request to its doctor's shard thread. Run with
+ * -t set to the core count to compare scaling.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ShardedStoreBenchmark {
+
+    private static final int DOCTORS = 64;
+
+    @Param({"0", "4"})
+    public int shards;
+
+    @Param({"60"})
+    public int capacity;
+
+    @Param({"MORNING_RUSH"})
+    public SourceMix mix;
+
+    @Param({"MONITOR"})
+    public SlotConcurrencyMode mode;
+
+    @Param({"true"})
+    public boolean metrics;
+
+    AllocationService service;
+    TokenSource[] arrivals;
+    String[] doctorIds;
+    StoreShards storeShards;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        EngineMetrics.setEnabled(metrics);
+        service = new AllocationService();
+        arrivals = mix.arrivals(7L);
+
+        InMemoryStore.doctors.clear();
+        doctorIds = new String[DOCTORS];
+        for (int d = 0; d < DOCTORS; d++) {
+            doctorIds[d] = "D" + d;
+            Doctor doctor = new Doctor(doctorIds[d], 1.0, mode);
+            doctor.addSlot("9-10", capacity);
+            InMemoryStore.doctors.put(doctorIds[d], doctor);
+        }
+        if (shards > 0) {
+            storeShards = new StoreShards(shards);
+            InMemoryStore.install(storeShards);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (storeShards != null) {
+            InMemoryStore.uninstall(storeShards);
+            storeShards.close();
+            storeShards = null;
+        }
+        InMemoryStore.doctors.clear();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            next = threadParams.getThreadIndex() * 97;
+        }
+    }
+
+    @Benchmark
+    public boolean createAndCancel(Cursor thread) {
+        int i = thread.next++;
+        String doctorId = doctorIds[i & (DOCTORS - 1)];
+        TokenSource source = arrivals[i & BenchmarkFixtures.ARRIVAL_MASK];
+        AllocationResponseDTO response = service.createToken(doctorId, "9-10", "P", source);
+        return service.cancelPatientToken(doctorId, "9-10", response.tokenId);
+    }
+}
@@ -0,0 +1,116 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.benchmark.BenchmarkFixtures.SourceMix;
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboards reading a slot while bookings are made against it.
+ * <ul>
+ *     <li>dashboard - three threads book and cancel on one slot while one
+ *     thread reads its queues as fast as it can</li>
+ * </ul>
+ * With reads=LOCKED the reader copies both queues under the slot lock, as
+ * the query endpoint used to; with reads=VIEW it takes the slot's
+ * immutable view. Compare the book figures of the two.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Group)
+public class SlotQueryBenchmark {
+
+    public enum Reads { LOCKED, VIEW }
+
+    @Param({"60"})
+    public int capacity;
+
+    @Param({"MORNING_RUSH"})
+    public SourceMix mix;
+
+    @Param({"MONITOR", "CAS_FAST_PATH"})
+    public SlotConcurrencyMode mode;
+
+    @Param({"true"})
+    public boolean metrics;
+
+    @Param({"LOCKED", "VIEW"})
+    public Reads reads;
+
+    AllocationService service;
+    TokenSource[] arrivals;
+    TimeSlot slot;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        EngineMetrics.setEnabled(metrics);
+        service = new AllocationService();
+        arrivals = mix.arrivals(7L);
+
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 1.0, mode);
+        doctor.addSlot("9-10", capacity);
+        InMemoryStore.doctors.put("D1", doctor);
+        slot = doctor.getSlots().get("9-10");
+
+        // A full slot with a queue, the state a busy display watches
+        for (int i = 0; i < capacity * 2; i++) {
+            service.createToken("D1", "9-10", "PREFILL-" + i, arrivals[i & BenchmarkFixtures.ARRIVAL_MASK]);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        InMemoryStore.doctors.clear();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            next = threadParams.getThreadIndex() * 97;
+        }
+    }
+
+    @Benchmark
+    @Group("dashboard")
+    @GroupThreads(3)
+    public boolean book(Cursor thread) {
+        TokenSource source = arrivals[thread.next++ & BenchmarkFixtures.ARRIVAL_MASK];
+        AllocationResponseDTO response = service.createToken("D1", "9-10", "P", source);
+        return service.cancelPatientToken("D1", "9-10", response.tokenId);
+    }
+
+    @Benchmark
+    @Group("dashboard")
+    @GroupThreads(1)
+    public Object read() {
+        if (reads == Reads.VIEW) {
+            return slot.view();
+        }
+        slot.lock();
+        try {
+            List<Token> allocated = slot.getAllocatedTokens().toList();
+            List<Token> waiting = slot.getWaitingQueue().toList();
+            return new Object[]{slot.getVersion(), allocated, waiting};
+        } finally {
+            slot.unlock();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.opd.opd_token_engine.benchmark;
+
+import com.opd.opd_token_engine.model.IndexedTokenQueue;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained per queued token.
+ * <ul>
+ *     <li>fill - queues {@code tokens} tokens, {@code queueSize} to a queue,
+ *     and reports the growth of the live heap between two class histograms
+ *     as the {@code bytesPerToken} counter</li>
+ * </ul>
+ * layout=COMPACT uses the engine's tokens and queues. layout=OBJECT rebuilds
+ * the layout they replaced: UUID token ids, a fresh patient id string per
+ * booking, and a treap of node objects indexed by a HashMap. The time score
+ * includes two full collections and means nothing; read bytesPerToken.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class TokenFootprintBenchmark {
+
+    public enum Layout { OBJECT, COMPACT }
+
+    @Param({"OBJECT", "COMPACT"})
+    public Layout layout;
+
+    @Param({"100000"})
+    public int tokens;
+
+    @Param({"20"})
+    public int queueSize;
+
+    /** Bookings per patient; repeat bookings share an interned id in COMPACT. */
+    @Param({"2"})
+    public int tokensPerPatient;
+
+    String[] patients;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerToken;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        patients = new String[tokens / tokensPerPatient];
+        for (int i = 0; i < patients.length; i++) {
+            patients[i] = "PATIENT-" + (1_000_000 + i);
+        }
+    }
+
+    @Benchmark
+    public Object fill(Footprint footprint) throws Exception {
+        long before = liveHeapBytes();
+        Object[] queues = new Object[(tokens + queueSize - 1) / queueSize];
+        for (int q = 0; q < queues.length; q++) {
+            queues[q] = layout == Layout.COMPACT ? compactQueue(q * queueSize) : objectQueue(q * queueSize);
+        }
+        footprint.bytesPerToken = (liveHeapBytes() - before) / tokens;
+        return queues;
+    }
+
+    private IndexedTokenQueue compactQueue(int first) {
+        IndexedTokenQueue queue = IndexedTokenQueue.highestFirst();
+        for (int i = first; i < Math.min(first + queueSize, tokens); i++) {
+            // Request bodies deserialize a new patient id string every time
+            Token token = new Token(new String(patients[i % patients.length].toCharArray()), TokenSource.WALK_IN, 40);
+            token.setPriorityKey(40);
+            queue.add(token);
+        }
+        return queue;
+    }
+
+    private ObjectQueue objectQueue(int first) {
+        ObjectQueue queue = new ObjectQueue();
+        for (int i = first; i < Math.min(first + queueSize, tokens); i++) {
+            queue.add(new ObjectToken(new String(patients[i % patients.length].toCharArray()), TokenSource.WALK_IN, 40));
+        }
+        return queue;
+    }
+
+    // Total of a live-object class histogram; taking one runs a full collection
+    private static long liveHeapBytes() throws Exception {
+        String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{new String[0]}, new String[]{String[].class.getName()});
+        String[] lines = histogram.trim().split("\n");
+        String[] total = lines[lines.length - 1].trim().split("\\s+");
+        return Long.parseLong(total[2]);
+    }
+
+    /** Token fields as before compaction, with a UUID id. */
+    static final class ObjectToken {
+        final String tokenId = UUID.randomUUID().toString();
+        final String patientId;
+        final TokenSource source;
+        final int basePriority;
+        int reallocationCount;
+        final long arrivalMillis = System.currentTimeMillis();
+        boolean allocated;
+        int snapshotPriority;
+        long priorityKey;
+
+        ObjectToken(String patientId, TokenSource source, int basePriority) {
+            this.patientId = patientId;
+            this.source = source;
+            this.basePriority = basePriority;
+            this.snapshotPriority = basePriority;
+            this.priorityKey = basePriority;
+        }
+    }
+
+    /** The node-per-token treap and HashMap index queues used before compaction. */
+    static final class ObjectQueue {
+
+        static final class Node {
+            final ObjectToken token;
+            final long priority;
+            final long sequence;
+            final int heapKey;
+            Node left;
+            Node right;
+            int size = 1;
+
+            Node(ObjectToken token, long priority, long sequence, int heapKey) {
+                this.token = token;
+                this.priority = priority;
+                this.sequence = sequence;
+                this.heapKey = heapKey;
+            }
+        }
+
+        final Map<String, Node> index = new HashMap<>();
+        Node root;
+        long nextSequence;
+
+        void add(ObjectToken token) {
+            Node node = new Node(token, token.priorityKey, nextSequence++,
+                    ThreadLocalRandom.current().nextInt());
+            index.put(token.tokenId, node);
+            root = insert(root, node);
+        }
+
+        private static boolean precedes(Node a, Node b) {
+            return a.priority != b.priority ? a.priority > b.priority : a.sequence < b.sequence;
+        }
+
+        private static int size(Node n) {
+            return n == null ? 0 : n.size;
+        }
+
+        private static Node insert(Node t, Node node) {
+            if (t == null) {
+                return node;
+            }
+            if (precedes(node, t)) {
+                t.left = insert(t.left, node);
+                if (t.left.heapKey > t.heapKey) {
+                    Node l = t.left;
+                    t.left = l.right;
+                    l.right = t;
+                    t.size = 1 + size(t.left) + size(t.right);
+                    l.size = 1 + size(l.left) + size(l.right);
+                    return l;
+                }
+            } else {
+                t.right = insert(t.right, node);
+                if (t.right.heapKey > t.heapKey) {
+                    Node r = t.right;
+                    t.right = r.left;
+                    r.left = t;
+                    t.size = 1 + size(t.left) + size(t.right);
+                    r.size = 1 + size(r.left) + size(r.right);
+                    return r;
+                }
+            }
+            t.size = 1 + size(t.left) + size(t.right);
+            return t;
+        }
+    }
+}
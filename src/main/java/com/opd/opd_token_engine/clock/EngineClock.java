@@ -0,0 +1,31 @@
+package com.opd.opd_token_engine.clock;
+
+/**
+ * Time source for token arrival stamps and priority aging.
+ * Readings are epoch milliseconds and never go backwards.
+ */
+public interface EngineClock {
+
+    long millis();
+
+    /**
+     * The engine's clock: the monotonic wall clock, unless a simulation has
+     * installed a virtual one.
+     */
+    static EngineClock system() {
+        return InstalledClock.current;
+    }
+
+    static void install(EngineClock clock) {
+        InstalledClock.current = clock;
+    }
+
+    /**
+     * Reverts to the wall clock if the given clock is still installed.
+     */
+    static void uninstall(EngineClock clock) {
+        if (InstalledClock.current == clock) {
+            InstalledClock.current = MonotonicClock.INSTANCE;
+        }
+    }
+}
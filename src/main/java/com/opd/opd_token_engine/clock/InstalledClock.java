@@ -0,0 +1,10 @@
+package com.opd.opd_token_engine.clock;
+
+// Holder for the clock EngineClock.system() returns; interfaces cannot hold mutable state
+final class InstalledClock {
+
+    static volatile EngineClock current = MonotonicClock.INSTANCE;
+
+    private InstalledClock() {
+    }
+}
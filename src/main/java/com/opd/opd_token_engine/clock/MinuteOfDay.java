@@ -0,0 +1,39 @@
+package com.opd.opd_token_engine.clock;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Minute of the day of an engine clock reading, in the system time zone,
+ * comparable with slot start and end minutes.
+ * <p>
+ * The bounds of the last day asked about are cached, so readings within it
+ * cost a subtraction and a division and allocate nothing.
+ */
+public final class MinuteOfDay {
+
+    private record Day(long startMillis, long endMillis) {
+    }
+
+    private static volatile Day day = new Day(0, 0);
+
+    private MinuteOfDay() {
+    }
+
+    public static int of(long millis) {
+        Day current = day;
+        if (millis < current.startMillis || millis >= current.endMillis) {
+            current = dayOf(millis);
+            day = current;
+        }
+        return (int) ((millis - current.startMillis) / 60_000);
+    }
+
+    private static Day dayOf(long millis) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone);
+        return new Day(date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+}
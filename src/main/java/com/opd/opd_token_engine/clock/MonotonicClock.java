@@ -0,0 +1,21 @@
+package com.opd.opd_token_engine.clock;
+
+/**
+ * Wall-clock anchored at startup and advanced by System.nanoTime, so readings
+ * line up with epoch time across restarts but are immune to NTP steps.
+ */
+public final class MonotonicClock implements EngineClock {
+
+    static final MonotonicClock INSTANCE = new MonotonicClock();
+
+    private final long originMillis = System.currentTimeMillis();
+    private final long originNanos = System.nanoTime();
+
+    private MonotonicClock() {
+    }
+
+    @Override
+    public long millis() {
+        return originMillis + (System.nanoTime() - originNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,29 @@
+package com.opd.opd_token_engine.clock;
+
+/**
+ * Clock that moves only when told to, so a simulated day runs as fast as
+ * the engine allows. One thread advances it; any thread may read it.
+ */
+public final class VirtualClock implements EngineClock {
+
+    private volatile long now;
+
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    /**
+     * Moves the clock forward to the given time; it never goes backwards.
+     */
+    public void advanceTo(long millis) {
+        if (millis < now) {
+            throw new IllegalArgumentException("Clock cannot go back from " + now + " to " + millis);
+        }
+        now = millis;
+    }
+}
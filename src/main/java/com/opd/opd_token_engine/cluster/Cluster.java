@@ -0,0 +1,471 @@
+package com.opd.opd_token_engine.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.dto.TokenRequestDTO;
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
+import com.opd.opd_token_engine.journal.StoreSnapshot;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This node's view of a cluster whose doctors are partitioned by consistent
+ * hashing. Requests for doctors this node owns run locally; others are
+ * forwarded to the owner over HTTP, or answered with a redirect to it.
+ * <p>
+ * Local requests hold the ownership read lock while they run. When a node
+ * joins, the doctors moving to it are fenced: new requests on them wait, and
+ * the write lock is taken once, briefly, so the requests already running on
+ * them finish before they are copied. The copy is sent without any lock, and
+ * the write lock is taken again only to swap the ring and drop the doctors,
+ * after which the waiting requests are routed to the new owner. Members
+ * prove themselves to each other with a shared secret.
+ */
+public class Cluster {
+
+    /** Times a request has been forwarded; stops loops while rings disagree. */
+    public static final String HOPS_HEADER = "X-OPD-Hops";
+    static final int MAX_HOPS = 2;
+    /** Shared secret a member presents when it joins or hands doctors over. */
+    public static final String SECRET_HEADER = "X-OPD-Cluster-Secret";
+
+    // Doctors being handed off, and the handoff's completion that requests on them wait for
+    private record Handoff(Set<String> doctors, CompletableFuture<Void> done) {
+    }
+
+    private static final Handoff NONE = new Handoff(Set.of(), CompletableFuture.completedFuture(null));
+
+    public enum Routing {
+        FORWARD,
+        REDIRECT
+    }
+
+    private final ClusterNode self;
+    private final Map<String, ClusterNode> members = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock ownership = new ReentrantReadWriteLock();
+    // One join at a time, so at most one set of doctors is fenced
+    private final ReentrantLock joins = new ReentrantLock();
+    // Open once this node has announced itself, so it serves no doctor before peers hand it over
+    private final CountDownLatch joined = new CountDownLatch(1);
+    private final Routing routing;
+    private final ObjectMapper json;
+    private final SlotConcurrencyMode mode;
+    private final byte[] secret;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    private volatile HashRing ring;
+    private volatile Handoff handoff = NONE;
+
+    private final LongAdder local = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder redirected = new LongAdder();
+    private final LongAdder forwardFailures = new LongAdder();
+    private final LongAdder doctorsHandedOff = new LongAdder();
+    private final LongAdder doctorsReceived = new LongAdder();
+
+    /**
+     * @param nodes every member known at startup, including self
+     */
+    public Cluster(ClusterNode self, Collection<ClusterNode> nodes, int virtualNodes, Routing routing,
+                   ObjectMapper json, SlotConcurrencyMode mode, String secret) {
+        this.self = self;
+        this.routing = routing;
+        this.json = json;
+        this.mode = mode;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        members.put(self.id(), self);
+        for (ClusterNode node : nodes) {
+            // Self stays the instance compared against when routing
+            members.putIfAbsent(node.id(), node);
+        }
+        this.ring = new HashRing(members.keySet(), virtualNodes);
+    }
+
+    public ClusterNode self() {
+        return self;
+    }
+
+    public ClusterNode ownerOf(String doctorId) {
+        return members.get(ring.ownerOf(doctorId));
+    }
+
+    public Collection<ClusterNode> members() {
+        return List.copyOf(members.values());
+    }
+
+    /**
+     * Whether this node may mutate the doctor: it owns the doctor on the
+     * ring and is not handing it off.
+     */
+    public boolean owns(String doctorId) {
+        return self.id().equals(ring.ownerOf(doctorId)) && !handoff.doctors().contains(doctorId);
+    }
+
+    /**
+     * Whether a request presented the cluster's shared secret.
+     */
+    public boolean authorized(String presented) {
+        return presented != null && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Drops doctors the ring assigns to other members, such as those restored
+     * from this node's journal after they moved, so that the store, index,
+     * views and snapshots only ever hold doctors this node owns. Returns the
+     * doctors dropped.
+     */
+    public List<String> retainOwned() {
+        List<String> dropped = new ArrayList<>();
+        ownership.writeLock().lock();
+        try {
+            for (String doctorId : InMemoryStore.doctors.keySet()) {
+                if (!self.id().equals(ring.ownerOf(doctorId))) {
+                    dropped.add(doctorId);
+                }
+            }
+            dropped.forEach(InMemoryStore.doctors::remove);
+            TokenIndex index = TokenLookup.current();
+            if (index != null) {
+                index.forget(dropped);
+            }
+        } finally {
+            ownership.writeLock().unlock();
+        }
+        return dropped;
+    }
+
+    /**
+     * Announces this node to every other member, which hands over the doctors
+     * moving to it, then starts serving. Unreachable members are skipped:
+     * they include this node from configuration when they start.
+     */
+    public Map<String, String> announce() {
+        Map<String, String> outcome = new LinkedHashMap<>();
+        try {
+            for (ClusterNode peer : members()) {
+                if (peer.id().equals(self.id())) {
+                    continue;
+                }
+                try {
+                    HttpResponse<String> response = http.send(HttpRequest.newBuilder(peer.resolve("/cluster/members"))
+                            .timeout(Duration.ofSeconds(30))
+                            .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                            .header(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8))
+                            .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(self)))
+                            .build(), HttpResponse.BodyHandlers.ofString());
+                    outcome.put(peer.id(), response.statusCode() == 200
+                            ? response.body()
+                            : "HTTP " + response.statusCode());
+                } catch (IOException e) {
+                    outcome.put(peer.id(), "unreachable");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    outcome.put(peer.id(), "interrupted");
+                    break;
+                }
+            }
+        } finally {
+            joined.countDown();
+        }
+        return outcome;
+    }
+
+    /**
+     * Adds a node to the ring. Doctors this node owns that now belong to it
+     * are sent to it and dropped here. Requests on those doctors wait while
+     * they are sent; other doctors keep being served. If the handoff fails
+     * the ring is left unchanged. Returns the doctors handed off.
+     */
+    public List<String> join(ClusterNode node) throws IOException, InterruptedException {
+        joins.lock();
+        try {
+            HashRing next;
+            Map<String, Doctor> moving = new LinkedHashMap<>();
+            ownership.readLock().lock();
+            try {
+                HashRing current = ring;
+                if (current.contains(node.id())) {
+                    return List.of();
+                }
+                next = current.with(node.id());
+                for (Map.Entry<String, Doctor> doctor : InMemoryStore.doctors.entrySet()) {
+                    String doctorId = doctor.getKey();
+                    if (self.id().equals(current.ownerOf(doctorId)) && node.id().equals(next.ownerOf(doctorId))) {
+                        moving.put(doctorId, doctor.getValue());
+                    }
+                }
+            } finally {
+                ownership.readLock().unlock();
+            }
+
+            Handoff fence = new Handoff(Set.copyOf(moving.keySet()), new CompletableFuture<>());
+            handoff = fence;
+            try {
+                if (!moving.isEmpty()) {
+                    // Requests that started on the moving doctors before the fence finish before the copy
+                    ownership.writeLock().lock();
+                    ownership.writeLock().unlock();
+                    HttpResponse<String> response = http.send(HttpRequest.newBuilder(node.resolve("/cluster/doctors"))
+                            .timeout(Duration.ofSeconds(30))
+                            .header("Content-Type", MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                            .header(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8))
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(StoreSnapshot.encodeDoctors(moving)))
+                            .build(), HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() != 200) {
+                        throw new IOException("Handoff to " + node.id() + " failed: HTTP " + response.statusCode());
+                    }
+                }
+
+                ownership.writeLock().lock();
+                try {
+                    members.put(node.id(), node);
+                    ring = next;
+                    moving.keySet().forEach(InMemoryStore.doctors::remove);
+                    TokenIndex index = TokenLookup.current();
+                    if (index != null) {
+                        index.forget(moving.keySet());
+                    }
+                } finally {
+                    ownership.writeLock().unlock();
+                }
+            } finally {
+                handoff = NONE;
+                fence.done().complete(null);
+            }
+            doctorsHandedOff.add(moving.size());
+            return List.copyOf(moving.keySet());
+        } finally {
+            joins.unlock();
+        }
+    }
+
+    /**
+     * Restores doctors handed off by another node into the store, replacing
+     * any local copies. Returns the number of doctors received.
+     */
+    public int receive(ByteBuffer doctors) {
+        Map<String, Doctor> received = new LinkedHashMap<>();
+        int count = StoreSnapshot.decodeDoctors(doctors, received, mode);
+        InMemoryStore.doctors.putAll(received);
+        TokenIndex index = TokenLookup.current();
+        if (index != null) {
+            index.indexAll(received);
+        }
+        doctorsReceived.add(count);
+        return count;
+    }
+
+    /**
+     * Serves a request for one doctor: runs it locally while this node owns
+     * the doctor, otherwise forwards it to the owner or redirects there.
+     *
+     * @param pathAndQuery the request as it should reach the owner
+     * @param body         JSON body to forward, or null
+     */
+    public <T> ResponseEntity<T> route(String doctorId, int hops, String pathAndQuery, Object body,
+                                       Class<T> type, Supplier<T> handler) {
+        awaitJoined();
+        ClusterNode owner;
+        while ((owner = ownerOf(doctorId)) == self) {
+            Handoff pending = null;
+            ownership.readLock().lock();
+            try {
+                // Re-checked under the lock: a join may have moved the doctor meanwhile
+                owner = ownerOf(doctorId);
+                if (owner == self) {
+                    Handoff current = handoff;
+                    if (!current.doctors().contains(doctorId)) {
+                        local.increment();
+                        return ResponseEntity.ok(handler.get());
+                    }
+                    pending = current;
+                }
+            } finally {
+                ownership.readLock().unlock();
+            }
+            if (pending == null) {
+                break;
+            }
+            // The doctor is being handed off; once it is, the ring names its new owner
+            pending.done().join();
+        }
+
+        if (hops >= MAX_HOPS) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (routing == Routing.REDIRECT) {
+            redirected.increment();
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(owner.resolve(pathAndQuery)).build();
+        }
+        try {
+            HttpResponse<String> response = forward(owner, pathAndQuery, body, hops).join();
+            T value = type == String.class
+                    ? type.cast(response.body())
+                    : response.body().isEmpty() ? null : json.readValue(response.body(), type);
+            return ResponseEntity.status(response.statusCode()).body(value);
+        } catch (IOException | RuntimeException e) {
+            forwardFailures.increment();
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+
+    /**
+     * Serves a batch: the part this node owns runs locally, each other owner's
+     * part is forwarded to it in parallel, and responses are merged back into
+     * input order. Batches are always forwarded, never redirected.
+     */
+    public List<AllocationResponseDTO> routeBatch(List<TokenRequestDTO> requests, int hops,
+                                                  Function<List<TokenRequestDTO>, List<AllocationResponseDTO>> handler) {
+        awaitJoined();
+        AllocationResponseDTO[] responses = new AllocationResponseDTO[requests.size()];
+        Map<ClusterNode, List<Integer>> byOwner = new LinkedHashMap<>();
+        Map<ClusterNode, CompletableFuture<HttpResponse<String>>> remote = new LinkedHashMap<>();
+
+        Handoff pending;
+        do {
+            ownership.readLock().lock();
+            try {
+                pending = fencing(requests);
+                if (pending == null) {
+                    for (int i = 0; i < requests.size(); i++) {
+                        byOwner.computeIfAbsent(ownerOf(requests.get(i).doctorId), n -> new ArrayList<>()).add(i);
+                    }
+                    for (Map.Entry<ClusterNode, List<Integer>> part : byOwner.entrySet()) {
+                        if (part.getKey() != self && hops < MAX_HOPS) {
+                            remote.put(part.getKey(), forward(part.getKey(), "/tokens/batch",
+                                    part.getValue().stream().map(requests::get).toList(), hops));
+                        }
+                    }
+                    List<Integer> mine = byOwner.get(self);
+                    if (mine != null) {
+                        local.add(mine.size());
+                        List<AllocationResponseDTO> done = handler.apply(mine.stream().map(requests::get).toList());
+                        for (int k = 0; k < mine.size(); k++) {
+                            responses[mine.get(k)] = done.get(k);
+                        }
+                    }
+                }
+            } finally {
+                ownership.readLock().unlock();
+            }
+            if (pending != null) {
+                pending.done().join();
+            }
+        } while (pending != null);
+
+        for (Map.Entry<ClusterNode, List<Integer>> part : byOwner.entrySet()) {
+            if (part.getKey() == self) {
+                continue;
+            }
+            List<Integer> indices = part.getValue();
+            AllocationResponseDTO[] done = null;
+            CompletableFuture<HttpResponse<String>> sent = remote.get(part.getKey());
+            if (sent != null) {
+                try {
+                    HttpResponse<String> response = sent.join();
+                    if (response.statusCode() == 200) {
+                        done = json.readValue(response.body(), AllocationResponseDTO[].class);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Reported per request below
+                }
+            }
+            if (done == null || done.length != indices.size()) {
+                forwardFailures.increment();
+                done = new AllocationResponseDTO[indices.size()];
+                Arrays.fill(done, new AllocationResponseDTO(null, "ERROR", "Owner node unavailable"));
+            }
+            for (int k = 0; k < indices.size(); k++) {
+                responses[indices.get(k)] = done[k];
+            }
+        }
+        return Arrays.asList(responses);
+    }
+
+    // The handoff under way on a doctor of the batch this node owns, or null. Caller holds the read lock.
+    private Handoff fencing(List<TokenRequestDTO> requests) {
+        Handoff current = handoff;
+        if (current != NONE) {
+            for (TokenRequestDTO request : requests) {
+                if (current.doctors().contains(request.doctorId) && ownerOf(request.doctorId) == self) {
+                    return current;
+                }
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<HttpResponse<String>> forward(ClusterNode owner, String pathAndQuery, Object body,
+                                                            int hops) {
+        forwarded.increment();
+        HttpRequest.BodyPublisher publisher;
+        try {
+            publisher = body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return http.sendAsync(HttpRequest.newBuilder(owner.resolve(pathAndQuery))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .header(HOPS_HEADER, Integer.toString(hops + 1))
+                .POST(publisher)
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void awaitJoined() {
+        try {
+            joined.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the node joins the cluster", e);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("node", self.id());
+        out.put("members", ring.nodes().size());
+        out.put("routing", routing.name());
+        out.put("local", local.sum());
+        out.put("forwarded", forwarded.sum());
+        out.put("redirected", redirected.sum());
+        out.put("forwardFailures", forwardFailures.sum());
+        out.put("doctorsHandedOff", doctorsHandedOff.sum());
+        out.put("doctorsReceived", doctorsReceived.sum());
+        return out;
+    }
+}
@@ -0,0 +1,86 @@
+package com.opd.opd_token_engine.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins this node to the cluster once the store is seeded and recovered.
+ * Members are configured as {@code id=url,id=url}, and must include this
+ * node; a node added later lists every member and is announced to the rest.
+ * Every member is configured with the same {@code opd.cluster.secret}.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.cluster.enabled", havingValue = "true")
+public class ClusterLifecycle implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterLifecycle.class);
+
+    private final Cluster cluster;
+
+    public ClusterLifecycle(
+            @Value("${opd.cluster.node-id}") String nodeId,
+            @Value("${opd.cluster.nodes}") String nodes,
+            @Value("${opd.cluster.virtual-nodes:128}") int virtualNodes,
+            @Value("${opd.cluster.routing:FORWARD}") Cluster.Routing routing,
+            @Value("${opd.cluster.secret:}") String secret,
+            @Value("${opd.slot.concurrency-mode:MONITOR}") SlotConcurrencyMode slotConcurrencyMode,
+            ObjectMapper json) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("opd.cluster.secret must be set when opd.cluster.enabled=true");
+        }
+        List<ClusterNode> members = parseNodes(nodes);
+        ClusterNode self = members.stream()
+                .filter(n -> n.id().equals(nodeId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(
+                        "opd.cluster.nodes does not list this node: " + nodeId));
+        this.cluster = new Cluster(self, members, virtualNodes, routing, json, slotConcurrencyMode, secret);
+        // Before seeding, so only this node's doctors are seeded and overflowed into
+        Ownership.install(cluster);
+    }
+
+    static List<ClusterNode> parseNodes(String spec) {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (String node : spec.split(",")) {
+            int eq = node.indexOf('=');
+            if (eq < 0) {
+                continue;
+            }
+            nodes.add(new ClusterNode(node.substring(0, eq).trim(), URI.create(node.substring(eq + 1).trim())));
+        }
+        return nodes;
+    }
+
+    // After every CommandLineRunner, so seeding and journal recovery are done
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<String> dropped = cluster.retainOwned();
+        if (!dropped.isEmpty()) {
+            log.info("Dropped doctors owned by other members [Doctors={}]", dropped);
+        }
+        Map<String, String> announced = cluster.announce();
+        log.info("Cluster joined [Node={}, Peers={}]", cluster.self().id(), announced);
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    @Override
+    public void destroy() {
+        Ownership.uninstall(cluster);
+    }
+}
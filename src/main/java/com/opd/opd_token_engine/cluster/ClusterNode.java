@@ -0,0 +1,13 @@
+package com.opd.opd_token_engine.cluster;
+
+import java.net.URI;
+
+/**
+ * A member of the cluster and the base URL its REST API is served at.
+ */
+public record ClusterNode(String id, URI url) {
+
+    public URI resolve(String pathAndQuery) {
+        return URI.create(url.toString().replaceAll("/+$", "") + pathAndQuery);
+    }
+}
@@ -0,0 +1,77 @@
+package com.opd.opd_token_engine.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring assigning doctor IDs to node IDs. Each node is placed
+ * at a number of virtual points so load spreads evenly; a key belongs to the
+ * first point at or after its hash. Adding a node only takes over the keys
+ * that now hash to its points, roughly 1/N of them.
+ * <p>
+ * Immutable; membership changes build a new ring. Hashes are FNV-1a 64 over
+ * UTF-8 followed by a murmur finaliser, so every node computes the same ring.
+ */
+public final class HashRing {
+
+    private final NavigableMap<Long, String> points;
+    private final Set<String> nodes;
+    private final int virtualNodes;
+
+    public HashRing(Collection<String> nodeIds, int virtualNodes) {
+        if (nodeIds.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        this.nodes = Set.copyOf(new TreeSet<>(nodeIds));
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : new TreeSet<>(nodeIds)) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // Ties keep the smallest node ID, whichever order nodes were given in
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        this.points = ring;
+    }
+
+    public String ownerOf(String key) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    public boolean contains(String nodeId) {
+        return nodes.contains(nodeId);
+    }
+
+    public HashRing with(String nodeId) {
+        TreeSet<String> next = new TreeSet<>(nodes);
+        next.add(nodeId);
+        return new HashRing(next, virtualNodes);
+    }
+
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,28 @@
+package com.opd.opd_token_engine.cluster;
+
+/**
+ * Static handle on this node's cluster, mirroring the static engine and
+ * store, so the engine can tell which doctors it may mutate. With no cluster
+ * installed every doctor in the store is this node's.
+ */
+public final class Ownership {
+
+    private static volatile Cluster installed;
+
+    private Ownership() {
+    }
+
+    public static void install(Cluster cluster) {
+        installed = cluster;
+    }
+
+    public static void uninstall(Cluster cluster) {
+        if (installed == cluster) {
+            installed = null;
+        }
+    }
+
+    public static Cluster current() {
+        return installed;
+    }
+}
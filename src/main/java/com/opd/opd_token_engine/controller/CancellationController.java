@@ -1,31 +1,75 @@
 package com.opd.opd_token_engine.controller;
 
+import com.opd.opd_token_engine.cluster.Cluster;
+import com.opd.opd_token_engine.cluster.ClusterLifecycle;
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
 import com.opd.opd_token_engine.service.AllocationService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
 @RestController
 @RequestMapping("/tokens")
 public class CancellationController {
 
     private final AllocationService service;
+    private final Cluster cluster; // null outside cluster mode
 
-    public CancellationController(AllocationService service) {
+    public CancellationController(AllocationService service, ObjectProvider<ClusterLifecycle> clusterLifecycle) {
         this.service = service;
+        ClusterLifecycle lifecycle = clusterLifecycle.getIfAvailable();
+        this.cluster = lifecycle != null ? lifecycle.getCluster() : null;
     }
 
+    /**
+     * Cancels by doctor, slot and token id, or by token id alone through the
+     * token index when the doctor or slot is left out.
+     */
     @PostMapping("/cancel")
-    public String cancelByPatient(
-            @RequestParam String doctorId,
-            @RequestParam String slotId,
-            @RequestParam String tokenId
+    public ResponseEntity<String> cancelByPatient(
+            @RequestParam(required = false) String doctorId,
+            @RequestParam(required = false) String slotId,
+            @RequestParam String tokenId,
+            @RequestHeader(value = Cluster.HOPS_HEADER, defaultValue = "0") int hops
     ) {
-        boolean cancelled =
-                service.cancelPatientToken(doctorId, slotId, tokenId);
+        if (doctorId == null || slotId == null) {
+            TokenIndex index = TokenLookup.current();
+            TokenIndex.Entry entry = index != null ? index.get(tokenId) : null;
+            if (entry == null) {
+                return ResponseEntity.ok(result(false));
+            }
+            return cancelAt(entry.doctorId(), entry.slotId(), tokenId, hops);
+        }
+        return cancelAt(doctorId, slotId, tokenId, hops);
+    }
+
+    private ResponseEntity<String> cancelAt(String doctorId, String slotId, String tokenId, int hops) {
+        if (cluster != null) {
+            String query = "?doctorId=" + encode(doctorId) + "&slotId=" + encode(slotId)
+                    + "&tokenId=" + encode(tokenId);
+            return cluster.route(doctorId, hops, "/tokens/cancel" + query, null, String.class,
+                    () -> cancel(doctorId, slotId, tokenId));
+        }
+        return ResponseEntity.ok(cancel(doctorId, slotId, tokenId));
+    }
+
+    private String cancel(String doctorId, String slotId, String tokenId) {
+        return result(service.cancelPatientToken(doctorId, slotId, tokenId));
+    }
 
+    private static String result(boolean cancelled) {
         if (cancelled) {
             return "Token cancelled successfully by patient";
         } else {
             return "Token not found or already cancelled";
         }
     }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
 }
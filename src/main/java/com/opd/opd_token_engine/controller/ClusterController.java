@@ -0,0 +1,80 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.cluster.Cluster;
+import com.opd.opd_token_engine.cluster.ClusterLifecycle;
+import com.opd.opd_token_engine.cluster.ClusterNode;
+import com.opd.opd_token_engine.journal.JournalLifecycle;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/cluster")
+@ConditionalOnProperty(name = "opd.cluster.enabled", havingValue = "true")
+public class ClusterController {
+
+    private final ClusterLifecycle clusterLifecycle;
+    private final ObjectProvider<JournalLifecycle> journalLifecycle;
+
+    public ClusterController(ClusterLifecycle clusterLifecycle, ObjectProvider<JournalLifecycle> journalLifecycle) {
+        this.clusterLifecycle = clusterLifecycle;
+        this.journalLifecycle = journalLifecycle;
+    }
+
+    @GetMapping
+    public Map<String, Object> cluster() {
+        Map<String, Object> out = new LinkedHashMap<>(clusterLifecycle.getCluster().metrics());
+        out.put("nodes", clusterLifecycle.getCluster().members());
+        return out;
+    }
+
+    /**
+     * A node announcing itself; returns the doctors handed off to it.
+     * Refused unless the caller presents the cluster secret.
+     */
+    @PostMapping("/members")
+    public ResponseEntity<List<String>> join(
+            @RequestHeader(name = Cluster.SECRET_HEADER, required = false) String secret,
+            @RequestBody ClusterNode node) throws IOException, InterruptedException {
+        Cluster cluster = clusterLifecycle.getCluster();
+        if (!cluster.authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(cluster.join(node));
+    }
+
+    /**
+     * Doctors handed off by their previous owner. Refused unless the caller
+     * presents the cluster secret.
+     */
+    @PostMapping(path = "/doctors", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Integer> receive(
+            @RequestHeader(name = Cluster.SECRET_HEADER, required = false) String secret,
+            @RequestBody byte[] doctors) throws IOException {
+        Cluster cluster = clusterLifecycle.getCluster();
+        if (!cluster.authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        int received = cluster.receive(ByteBuffer.wrap(doctors));
+        // Received state is not in this node's journal; a snapshot makes it recoverable
+        JournalLifecycle journal = journalLifecycle.getIfAvailable();
+        if (journal != null) {
+            journal.checkpoint();
+        }
+        return ResponseEntity.ok(received);
+    }
+}
@@ -0,0 +1,34 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.journal.JournalLifecycle;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/journal")
+@ConditionalOnProperty(name = "opd.journal.enabled", havingValue = "true")
+public class JournalController {
+
+    private final JournalLifecycle journalLifecycle;
+
+    public JournalController(JournalLifecycle journalLifecycle) {
+        this.journalLifecycle = journalLifecycle;
+    }
+
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        return journalLifecycle.getMetrics().toMap();
+    }
+
+    @PostMapping("/snapshot")
+    public Map<String, Object> snapshot() throws IOException {
+        journalLifecycle.checkpoint();
+        return journalLifecycle.getMetrics().toMap();
+    }
+}
@@ -0,0 +1,86 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.cluster.ClusterLifecycle;
+import com.opd.opd_token_engine.decision.DecisionLogLifecycle;
+import com.opd.opd_token_engine.index.TokenIndexLifecycle;
+import com.opd.opd_token_engine.journal.JournalLifecycle;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.replication.ReplicationLifecycle;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.repository.StoreShardsLifecycle;
+import com.opd.opd_token_engine.routing.OverflowRouterLifecycle;
+import com.opd.opd_token_engine.stream.SlotStreamLifecycle;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+public class MetricsController {
+
+    private final ObjectProvider<JournalLifecycle> journalLifecycle;
+    private final ObjectProvider<DecisionLogLifecycle> decisionLogLifecycle;
+    private final ObjectProvider<OverflowRouterLifecycle> overflowLifecycle;
+    private final ObjectProvider<StoreShardsLifecycle> shardsLifecycle;
+    private final ObjectProvider<ClusterLifecycle> clusterLifecycle;
+    private final ObjectProvider<ReplicationLifecycle> replicationLifecycle;
+    private final ObjectProvider<SlotStreamLifecycle> streamLifecycle;
+    private final ObjectProvider<TokenIndexLifecycle> tokenIndexLifecycle;
+
+    public MetricsController(ObjectProvider<JournalLifecycle> journalLifecycle,
+                             ObjectProvider<DecisionLogLifecycle> decisionLogLifecycle,
+                             ObjectProvider<OverflowRouterLifecycle> overflowLifecycle,
+                             ObjectProvider<StoreShardsLifecycle> shardsLifecycle,
+                             ObjectProvider<ClusterLifecycle> clusterLifecycle,
+                             ObjectProvider<ReplicationLifecycle> replicationLifecycle,
+                             ObjectProvider<SlotStreamLifecycle> streamLifecycle,
+                             ObjectProvider<TokenIndexLifecycle> tokenIndexLifecycle) {
+        this.journalLifecycle = journalLifecycle;
+        this.decisionLogLifecycle = decisionLogLifecycle;
+        this.overflowLifecycle = overflowLifecycle;
+        this.shardsLifecycle = shardsLifecycle;
+        this.clusterLifecycle = clusterLifecycle;
+        this.replicationLifecycle = replicationLifecycle;
+        this.streamLifecycle = streamLifecycle;
+        this.tokenIndexLifecycle = tokenIndexLifecycle;
+    }
+
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = EngineMetrics.snapshot(InMemoryStore.doctors);
+        JournalLifecycle journal = journalLifecycle.getIfAvailable();
+        if (journal != null) {
+            out.put("journal", journal.getMetrics().toMap());
+        }
+        DecisionLogLifecycle decisionLog = decisionLogLifecycle.getIfAvailable();
+        if (decisionLog != null) {
+            out.put("decisionLog", decisionLog.metrics());
+        }
+        OverflowRouterLifecycle overflow = overflowLifecycle.getIfAvailable();
+        if (overflow != null) {
+            out.put("overflow", overflow.getRouter().metrics());
+        }
+        StoreShardsLifecycle shards = shardsLifecycle.getIfAvailable();
+        if (shards != null) {
+            out.put("shards", shards.getShards().metrics());
+        }
+        ClusterLifecycle cluster = clusterLifecycle.getIfAvailable();
+        if (cluster != null) {
+            out.put("cluster", cluster.getCluster().metrics());
+        }
+        ReplicationLifecycle replication = replicationLifecycle.getIfAvailable();
+        if (replication != null) {
+            out.put("replication", replication.metrics());
+        }
+        SlotStreamLifecycle stream = streamLifecycle.getIfAvailable();
+        if (stream != null) {
+            out.put("streams", stream.getHub().metrics());
+        }
+        TokenIndexLifecycle tokenIndex = tokenIndexLifecycle.getIfAvailable();
+        if (tokenIndex != null) {
+            out.put("tokenIndex", tokenIndex.getIndex().metrics());
+        }
+        return out;
+    }
+}
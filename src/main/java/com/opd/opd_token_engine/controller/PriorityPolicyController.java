@@ -0,0 +1,34 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.policy.PolicyDocument;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/priority-policy")
+public class PriorityPolicyController {
+
+    @GetMapping
+    public PolicyDocument current() {
+        return PolicyDocument.current();
+    }
+
+    /**
+     * Replaces the hospital and department policies at once. Bookings from
+     * then on are scored under the new policies; queued tokens keep their
+     * places.
+     */
+    @PutMapping
+    public ResponseEntity<PolicyDocument> replace(@RequestBody PolicyDocument document) {
+        try {
+            document.install();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(PolicyDocument.current());
+    }
+}
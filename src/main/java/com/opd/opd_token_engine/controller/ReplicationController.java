@@ -0,0 +1,32 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.replication.ReplicationLifecycle;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/replication")
+@ConditionalOnProperty(name = "opd.replication.enabled", havingValue = "true")
+public class ReplicationController {
+
+    private final ReplicationLifecycle replicationLifecycle;
+
+    public ReplicationController(ReplicationLifecycle replicationLifecycle) {
+        this.replicationLifecycle = replicationLifecycle;
+    }
+
+    @GetMapping
+    public Map<String, Object> replication() {
+        return replicationLifecycle.metrics();
+    }
+
+    @PostMapping("/promote")
+    public Map<String, Object> promote() {
+        return replicationLifecycle.promote();
+    }
+}
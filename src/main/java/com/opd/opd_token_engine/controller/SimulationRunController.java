@@ -0,0 +1,93 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.dto.WhatIfRequestDTO;
+import com.opd.opd_token_engine.service.AllocationService;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator;
+import com.opd.opd_token_engine.simulation.ReplayResult;
+import com.opd.opd_token_engine.simulation.SimulationResult;
+import com.opd.opd_token_engine.simulation.TraceReplayer;
+import com.opd.opd_token_engine.simulation.WhatIfEvaluator;
+import com.opd.opd_token_engine.simulation.WhatIfReport;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/simulation")
+@ConditionalOnProperty(name = "opd.simulation.enabled", havingValue = "true")
+public class SimulationRunController {
+
+    private final OpdDaySimulator simulator;
+
+    public SimulationRunController(AllocationService allocationService) {
+        this.simulator = new OpdDaySimulator(allocationService);
+    }
+
+    /**
+     * Simulates a day for the configured doctors, or without a body for a
+     * generated hospital of the given size.
+     */
+    @PostMapping("/run")
+    public ResponseEntity<SimulationResult> run(
+            @RequestBody(required = false) OpdDaySimulator.Config config,
+            @RequestParam(defaultValue = "100") int doctors,
+            @RequestParam(defaultValue = "0") int threads,
+            @RequestParam(defaultValue = "1") long seed) {
+
+        if (config == null) {
+            config = OpdDaySimulator.Config.hospital(doctors, threads, seed);
+        }
+        try {
+            return ResponseEntity.ok(simulator.run(config));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Replays the configured trace, or the day a run would generate, straight
+     * through the engine on simulated time. Replays never touch the live
+     * store, so unlike runs they are safe on a serving instance.
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<ReplayResult> replay(
+            @RequestBody(required = false) OpdDaySimulator.Config config,
+            @RequestParam(defaultValue = "200") int doctors,
+            @RequestParam(defaultValue = "1") long seed) {
+
+        if (config == null) {
+            config = OpdDaySimulator.Config.hospital(doctors, 1, seed);
+        }
+        try {
+            return ResponseEntity.ok(TraceReplayer.replay(config.doctors(), OpdDaySimulator.trace(config)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Replays one day under each policy variant in parallel and ranks them.
+     * Like replays, evaluations never touch the live store.
+     */
+    @PostMapping("/what-if")
+    public ResponseEntity<WhatIfReport> whatIf(
+            @Valid @RequestBody WhatIfRequestDTO request,
+            @RequestParam(defaultValue = "200") int doctors,
+            @RequestParam(defaultValue = "1") long seed) {
+
+        OpdDaySimulator.Config day = request.day != null
+                ? request.day : OpdDaySimulator.Config.hospital(doctors, 1, seed);
+        try {
+            WhatIfEvaluator evaluator = request.parallelism > 0
+                    ? new WhatIfEvaluator(request.parallelism) : new WhatIfEvaluator();
+            return ResponseEntity.ok(evaluator.evaluate(day.doctors(), OpdDaySimulator.trace(day), request.variants));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.stream.SlotState;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only slot state, served by leaders and replication followers alike.
+ * Reads come from each slot's immutable view, so they never wait for an
+ * allocation and at most one reader per slot change takes the slot lock.
+ */
+@RestController
+public class SlotQueryController {
+
+    // Timed slots in order of start, then anything whose id carries no time
+    private static final Comparator<TimeSlot> BY_START = Comparator
+            .comparingInt((TimeSlot s) -> s.getStartMinute() < 0 ? Integer.MAX_VALUE : s.getStartMinute())
+            .thenComparing(TimeSlot::getSlotId);
+
+    @GetMapping("/doctors/{doctorId}/slots")
+    public ResponseEntity<Map<String, Object>> doctorSlots(@PathVariable String doctorId) {
+        Doctor doctor = InMemoryStore.doctors.get(doctorId);
+        if (doctor == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        List<TimeSlot> slots = new ArrayList<>(doctor.getSlots().values());
+        slots.sort(BY_START);
+        List<Map<String, Object>> views = new ArrayList<>(slots.size());
+        for (TimeSlot slot : slots) {
+            views.add(SlotState.of(doctorId, slot.view()));
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("doctorId", doctorId);
+        out.put("efficiencyScore", doctor.getEfficiencyScore());
+        out.put("slots", views);
+        return ResponseEntity.ok(out);
+    }
+
+    @GetMapping("/slots/{doctorId}/{slotId}")
+    public ResponseEntity<Map<String, Object>> slot(@PathVariable String doctorId, @PathVariable String slotId) {
+        Doctor doctor = InMemoryStore.doctors.get(doctorId);
+        TimeSlot slot = doctor != null ? doctor.getSlots().get(slotId) : null;
+        if (slot == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(SlotState.of(doctorId, slot.view()));
+    }
+}
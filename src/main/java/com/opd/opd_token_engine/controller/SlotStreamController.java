@@ -0,0 +1,61 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.stream.SlotStreamHub;
+import com.opd.opd_token_engine.stream.SlotStreamLifecycle;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Server-sent events for one slot: a "snapshot" event with its full state,
+ * then a "delta" event per batch of changes. A client that falls behind is
+ * sent a fresh snapshot instead of the deltas it missed.
+ */
+@RestController
+public class SlotStreamController {
+
+    private final ObjectProvider<SlotStreamLifecycle> streamLifecycle;
+
+    public SlotStreamController(ObjectProvider<SlotStreamLifecycle> streamLifecycle) {
+        this.streamLifecycle = streamLifecycle;
+    }
+
+    @GetMapping(path = "/slots/{doctorId}/{slotId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@PathVariable String doctorId, @PathVariable String slotId) {
+        SlotStreamLifecycle lifecycle = streamLifecycle.getIfAvailable();
+        Doctor doctor = InMemoryStore.doctors.get(doctorId);
+        TimeSlot slot = doctor != null ? doctor.getSlots().get(slotId) : null;
+        if (lifecycle == null || slot == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(lifecycle.getTimeoutMillis());
+        SlotStreamHub.Subscriber subscriber = lifecycle.getHub().subscribe(doctorId, slot, new SlotStreamHub.Sink() {
+            @Override
+            public void send(String event, long version, String json) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .name(event)
+                        .id(Long.toString(version))
+                        .data(json, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(subscriber::cancel);
+        emitter.onTimeout(subscriber::cancel);
+        emitter.onError(e -> subscriber.cancel());
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -1,28 +1,48 @@
 package com.opd.opd_token_engine.controller;
 
+import com.opd.opd_token_engine.cluster.Cluster;
+import com.opd.opd_token_engine.cluster.ClusterLifecycle;
 import com.opd.opd_token_engine.dto.AllocationResponseDTO;
 import com.opd.opd_token_engine.dto.TokenRequestDTO;
 import com.opd.opd_token_engine.service.AllocationService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/tokens")
 public class TokenController {
 
     private final AllocationService service;
+    private final Cluster cluster; // null outside cluster mode
 
-    public TokenController(AllocationService service) {
+    public TokenController(AllocationService service, ObjectProvider<ClusterLifecycle> clusterLifecycle) {
         this.service = service;
+        ClusterLifecycle lifecycle = clusterLifecycle.getIfAvailable();
+        this.cluster = lifecycle != null ? lifecycle.getCluster() : null;
     }
 
     @PostMapping
-    public AllocationResponseDTO createToken(
-            @Valid @RequestBody TokenRequestDTO request) {
+    public ResponseEntity<AllocationResponseDTO> createToken(
+            @Valid @RequestBody TokenRequestDTO request,
+            @RequestHeader(value = Cluster.HOPS_HEADER, defaultValue = "0") int hops) {
+
+        if (cluster != null) {
+            return cluster.route(request.doctorId, hops, "/tokens", request, AllocationResponseDTO.class,
+                    () -> create(request));
+        }
+        return ResponseEntity.ok(create(request));
+    }
 
+    private AllocationResponseDTO create(TokenRequestDTO request) {
         return service.createToken(
                 request.doctorId,
                 request.slotId,
@@ -30,6 +50,15 @@ public class TokenController {
                 request.source
         );
     }
-}
 
+    @PostMapping("/batch")
+    public List<AllocationResponseDTO> createTokens(
+            @RequestBody @NotEmpty List<@Valid TokenRequestDTO> requests,
+            @RequestHeader(value = Cluster.HOPS_HEADER, defaultValue = "0") int hops) {
 
+        if (cluster != null) {
+            return cluster.routeBatch(requests, hops, service::createTokens);
+        }
+        return service.createTokens(requests);
+    }
+}
@@ -0,0 +1,77 @@
+package com.opd.opd_token_engine.controller;
+
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotView;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds tokens through the token index, without knowing their doctor or
+ * slot. Covers the tokens held on this node.
+ */
+@RestController
+public class TokenLookupController {
+
+    @GetMapping("/tokens/{tokenId}")
+    public ResponseEntity<Map<String, Object>> token(@PathVariable String tokenId) {
+        TokenIndex index = TokenLookup.current();
+        TokenIndex.Entry entry = index != null ? index.get(tokenId) : null;
+        if (entry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(describe(entry));
+    }
+
+    @GetMapping("/patients/{patientId}/tokens")
+    public ResponseEntity<List<Map<String, Object>>> patientTokens(@PathVariable String patientId) {
+        TokenIndex index = TokenLookup.current();
+        if (index == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (TokenIndex.Entry entry : index.tokensOf(patientId)) {
+            out.add(describe(entry));
+        }
+        return ResponseEntity.ok(out);
+    }
+
+    private static Map<String, Object> describe(TokenIndex.Entry entry) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("tokenId", entry.tokenId());
+        out.put("patientId", entry.patientId());
+        out.put("doctorId", entry.doctorId());
+        out.put("slotId", entry.slotId());
+        out.put("state", entry.state());
+        if (entry.state() == TokenIndex.State.WAITING) {
+            out.put("positionInQueue", positionOf(entry));
+        }
+        return out;
+    }
+
+    // From the slot's immutable view, so a lookup never takes the slot lock
+    private static Integer positionOf(TokenIndex.Entry entry) {
+        Doctor doctor = InMemoryStore.doctors.get(entry.doctorId());
+        TimeSlot slot = doctor != null ? doctor.getSlots().get(entry.slotId()) : null;
+        if (slot == null) {
+            return null;
+        }
+        List<SlotView.Entry> waiting = slot.view().waiting();
+        for (int i = 0; i < waiting.size(); i++) {
+            if (waiting.get(i).tokenId().equals(entry.tokenId())) {
+                return i + 1;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.opd.opd_token_engine.decision;
+
+/**
+ * What a request thread does when the decision ring is full.
+ */
+public enum BackpressurePolicy {
+    /** Discard the record and count it; the request never waits */
+    DROP,
+    /** Wait for the writer to free an entry; no record is lost */
+    BLOCK
+}
@@ -0,0 +1,393 @@
+package com.opd.opd_token_engine.decision;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer ring of allocation decisions drained by one writer
+ * thread into rolling JSON-lines files.
+ * <p>
+ * A request thread claims a sequence with a CAS, fills the preallocated entry
+ * and publishes it with a volatile write; it never formats, locks or touches
+ * the file. When the ring is full the BackpressurePolicy decides whether the
+ * record is dropped (and counted) or the thread waits for the writer.
+ * <p>
+ * Decisions are made under the slot lock, and a BLOCK wait there would stall
+ * the slot behind a slow writer. A record that finds the ring full is staged
+ * on its thread instead, and {@link #flush()} publishes it once the caller has
+ * released the lock, parking until the writer frees an entry. Later records
+ * of that thread are staged behind it, so its records stay in order.
+ * <p>
+ * The active file is {@code path}; once it passes maxFileBytes it is renamed
+ * to {@code path.1}, older files shift up, and files beyond maxFiles are
+ * deleted.
+ */
+public class DecisionLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionLog.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // claim() results other than a sequence
+    private static final long DROPPED = -1;
+    private static final long FULL = -2;
+
+    private final DecisionRecord[] ring;
+    private final int mask;
+    private final BackpressurePolicy policy;
+    private final Path path;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    // Next sequence to claim, and next sequence the writer will consume
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    // Records staged by BLOCK on each thread, and how many threads have any
+    private final ThreadLocal<ArrayDeque<DecisionRecord>> staged = ThreadLocal.withInitial(ArrayDeque::new);
+    private final AtomicLong stagedCount = new AtomicLong();
+    private volatile long written;
+    private volatile long rolls;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private OutputStream out;
+    private long fileBytes;
+
+    /**
+     * @param capacity ring entries, rounded up to a power of two
+     */
+    public DecisionLog(Path path, int capacity, BackpressurePolicy policy, long maxFileBytes, int maxFiles)
+            throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new DecisionRecord[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new DecisionRecord();
+        }
+        this.mask = size - 1;
+        this.policy = policy;
+        this.path = path;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        openFile();
+
+        this.writer = new Thread(this::runWriter, "opd-decision-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer. Records published before start wait in the ring.
+     */
+    public DecisionLog start() {
+        writer.start();
+        return this;
+    }
+
+    public void publish(long timestampMillis, boolean fastPath, String doctorId, TimeSlot slot, Token token,
+                        int priority, DecisionOutcome outcome, Token evicted, int evictedPriority) {
+        publish(timestampMillis, fastPath, doctorId, slot, token, priority, outcome, evicted, evictedPriority,
+                null, null);
+    }
+
+    /**
+     * A booking for requestedSlot seated in slot instead.
+     */
+    public void publishRerouted(long timestampMillis, String doctorId, TimeSlot slot, Token token, int priority,
+                                String requestedDoctorId, TimeSlot requestedSlot) {
+        publish(timestampMillis, false, doctorId, slot, token, priority, DecisionOutcome.REROUTED, null, 0,
+                requestedDoctorId, requestedSlot.getSlotId());
+    }
+
+    private void publish(long timestampMillis, boolean fastPath, String doctorId, TimeSlot slot, Token token,
+                         int priority, DecisionOutcome outcome, Token evicted, int evictedPriority,
+                         String requestedDoctorId, String requestedSlotId) {
+        // Behind this thread's staged records, or at the back of a full ring
+        boolean behind = stagedCount.get() > 0 && !staged.get().isEmpty();
+        long sequence = behind ? FULL : claim();
+        if (sequence == DROPPED) {
+            return;
+        }
+        DecisionRecord r = sequence == FULL ? new DecisionRecord() : ring[(int) sequence & mask];
+        r.timestampMillis = timestampMillis;
+        r.fastPath = fastPath;
+        r.doctorId = doctorId;
+        r.slotId = slot.getSlotId();
+        r.tokenId = token.getTokenId();
+        r.patientId = token.getPatientId();
+        r.source = token.getSource();
+        r.priority = priority;
+        r.outcome = outcome;
+        r.evictedTokenId = evicted != null ? evicted.getTokenId() : null;
+        r.evictedPriority = evictedPriority;
+        r.requestedDoctorId = requestedDoctorId;
+        r.requestedSlotId = requestedSlotId;
+        if (sequence == FULL) {
+            ArrayDeque<DecisionRecord> pending = staged.get();
+            if (pending.isEmpty()) {
+                stagedCount.incrementAndGet();
+            }
+            pending.add(r);
+            blocked.increment();
+            return;
+        }
+        r.published = sequence;
+        published.increment();
+    }
+
+    /**
+     * Publishes the records this thread staged while the ring was full,
+     * parking until the writer frees entries. Callers must not hold a slot
+     * lock. Records staged on a thread that never flushes are not written.
+     */
+    public void flush() {
+        if (stagedCount.get() == 0) {
+            return;
+        }
+        ArrayDeque<DecisionRecord> pending = staged.get();
+        if (pending.isEmpty()) {
+            return;
+        }
+        DecisionRecord r;
+        while ((r = pending.poll()) != null) {
+            long sequence;
+            while ((sequence = claim()) == FULL && running) {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            if (sequence >= 0) {
+                DecisionRecord slot = ring[(int) sequence & mask];
+                slot.copyFrom(r);
+                slot.published = sequence;
+                published.increment();
+            } else if (sequence == FULL) {
+                dropped.increment();
+            }
+        }
+        stagedCount.decrementAndGet();
+    }
+
+    // Claimed sequence, DROPPED if the record is dropped, or FULL under BLOCK
+    private long claim() {
+        if (!running) {
+            dropped.increment();
+            return DROPPED;
+        }
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - consumed.get() >= ring.length) {
+                if (policy == BackpressurePolicy.DROP) {
+                    dropped.increment();
+                    return DROPPED;
+                }
+                return FULL;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** Publishes that had to wait for space under BLOCK, staged until flushed. */
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    public long getRollCount() {
+        return rolls;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /** Records claimed but not yet written. */
+    public long getBacklog() {
+        return claimed.get() - consumed.get();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    private void runWriter() {
+        StringBuilder line = new StringBuilder(256);
+        long next = consumed.get();
+        while (true) {
+            DecisionRecord r = ring[(int) next & mask];
+            if (r.published != next) {
+                // Nothing (or a claim not yet filled) at the head
+                if (!running && claimed.get() == next) {
+                    break;
+                }
+                flushQuietly();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            line.setLength(0);
+            format(r, line);
+            r.clearReferences();
+            consumed.lazySet(++next);
+
+            try {
+                writeLine(line);
+                written++;
+            } catch (IOException e) {
+                log.error("Decision log write failed [Path={}]", path, e);
+            }
+        }
+        flushQuietly();
+    }
+
+    private void writeLine(StringBuilder line) throws IOException {
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (fileBytes > 0 && fileBytes + bytes.length > maxFileBytes) {
+            roll();
+        }
+        out.write(bytes);
+        fileBytes += bytes.length;
+    }
+
+    private void openFile() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        fileBytes = Files.size(path);
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        Files.deleteIfExists(rolled(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            Path from = rolled(i);
+            if (Files.exists(from)) {
+                Files.move(from, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 1) {
+            Files.move(path, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        openFile();
+        rolls++;
+    }
+
+    private Path rolled(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void flushQuietly() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            log.error("Decision log flush failed [Path={}]", path, e);
+        }
+    }
+
+    static void format(DecisionRecord r, StringBuilder out) {
+        out.append("{\"ts\":").append(r.timestampMillis);
+        appendField(out, "doctor", r.doctorId);
+        appendField(out, "slot", r.slotId);
+        appendField(out, "token", r.tokenId);
+        appendField(out, "patient", r.patientId);
+        appendField(out, "source", r.source != null ? r.source.name() : null);
+        out.append(",\"priority\":").append(r.priority);
+        appendField(out, "outcome", r.outcome.name());
+        out.append(",\"fastPath\":").append(r.fastPath);
+        if (r.evictedTokenId != null) {
+            appendField(out, "evicted", r.evictedTokenId);
+            out.append(",\"evictedPriority\":").append(r.evictedPriority);
+        }
+        if (r.requestedDoctorId != null) {
+            appendField(out, "requestedDoctor", r.requestedDoctorId);
+            appendField(out, "requestedSlot", r.requestedSlotId);
+        }
+        out.append("}\n");
+    }
+
+    private static void appendField(StringBuilder out, String name, String value) {
+        out.append(",\"").append(name).append("\":");
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Stops accepting records, drains everything already claimed and closes
+     * the file. Records published after close are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer.isAlive()) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.close();
+    }
+}
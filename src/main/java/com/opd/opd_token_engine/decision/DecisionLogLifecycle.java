@@ -0,0 +1,58 @@
+package com.opd.opd_token_engine.decision;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts the decision log with the application and drains it on shutdown.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.decision-log.enabled", havingValue = "true", matchIfMissing = true)
+public class DecisionLogLifecycle implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionLogLifecycle.class);
+
+    private final DecisionLog decisionLog;
+
+    public DecisionLogLifecycle(
+            @Value("${opd.decision-log.path:data/decisions.jsonl}") Path path,
+            @Value("${opd.decision-log.capacity:65536}") int capacity,
+            @Value("${opd.decision-log.policy:DROP}") BackpressurePolicy policy,
+            @Value("${opd.decision-log.max-file-mb:64}") long maxFileMb,
+            @Value("${opd.decision-log.max-files:5}") int maxFiles) throws IOException {
+        this.decisionLog = new DecisionLog(path, capacity, policy, maxFileMb * 1024 * 1024, maxFiles).start();
+        Decisions.install(decisionLog);
+        log.info("Decision log started [Path={}, Capacity={}, Policy={}]", path, decisionLog.getCapacity(), policy);
+    }
+
+    public DecisionLog getDecisionLog() {
+        return decisionLog;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("published", decisionLog.getPublishedCount());
+        out.put("written", decisionLog.getWrittenCount());
+        out.put("dropped", decisionLog.getDroppedCount());
+        out.put("blocked", decisionLog.getBlockedCount());
+        out.put("backlog", decisionLog.getBacklog());
+        out.put("capacity", decisionLog.getCapacity());
+        out.put("rolls", decisionLog.getRollCount());
+        return out;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        Decisions.uninstall(decisionLog);
+        decisionLog.close();
+    }
+}
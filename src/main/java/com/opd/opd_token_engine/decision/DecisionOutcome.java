@@ -0,0 +1,11 @@
+package com.opd.opd_token_engine.decision;
+
+public enum DecisionOutcome {
+    ALLOCATED,
+    /** Seated because the allocated queue was empty at capacity */
+    ALLOCATED_DEFENSIVE,
+    REALLOCATED,
+    WAITLISTED,
+    /** Seated with an equivalent doctor because the requested slot was full */
+    REROUTED
+}
@@ -0,0 +1,56 @@
+package com.opd.opd_token_engine.decision;
+
+import com.opd.opd_token_engine.model.TokenSource;
+
+/**
+ * One reusable ring entry. Fields reference strings the request already
+ * holds, so publishing copies pointers and primitives and allocates nothing.
+ * Records staged while the ring is full are standalone copies.
+ */
+final class DecisionRecord {
+
+    // Sequence this entry was last published under; read by the writer
+    volatile long published = -1;
+
+    long timestampMillis;
+    boolean fastPath;
+    String doctorId;
+    String slotId;
+    String tokenId;
+    String patientId;
+    TokenSource source;
+    int priority;
+    DecisionOutcome outcome;
+    String evictedTokenId;
+    int evictedPriority;
+    String requestedDoctorId;
+    String requestedSlotId;
+
+    void copyFrom(DecisionRecord other) {
+        timestampMillis = other.timestampMillis;
+        fastPath = other.fastPath;
+        doctorId = other.doctorId;
+        slotId = other.slotId;
+        tokenId = other.tokenId;
+        patientId = other.patientId;
+        source = other.source;
+        priority = other.priority;
+        outcome = other.outcome;
+        evictedTokenId = other.evictedTokenId;
+        evictedPriority = other.evictedPriority;
+        requestedDoctorId = other.requestedDoctorId;
+        requestedSlotId = other.requestedSlotId;
+    }
+
+    void clearReferences() {
+        doctorId = null;
+        slotId = null;
+        tokenId = null;
+        patientId = null;
+        source = null;
+        outcome = null;
+        evictedTokenId = null;
+        requestedDoctorId = null;
+        requestedSlotId = null;
+    }
+}
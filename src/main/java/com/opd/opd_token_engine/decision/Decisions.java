@@ -0,0 +1,69 @@
+package com.opd.opd_token_engine.decision;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+
+/**
+ * Static entry point the engine reports decisions through, mirroring the
+ * static engine and store. With no log installed every call is a single
+ * volatile read. Decisions in detached slots are offline runs and not logged.
+ */
+public final class Decisions {
+
+    private static volatile DecisionLog installed;
+
+    private Decisions() {
+    }
+
+    public static void install(DecisionLog decisionLog) {
+        installed = decisionLog;
+    }
+
+    public static void uninstall(DecisionLog decisionLog) {
+        if (installed == decisionLog) {
+            installed = null;
+        }
+    }
+
+    public static DecisionLog current() {
+        return installed;
+    }
+
+    /**
+     * Publishes decisions this thread staged on a full BLOCK log, unless it
+     * still holds the slot's lock; the outermost holder flushes once it has
+     * released it.
+     */
+    public static void flush(TimeSlot slot) {
+        DecisionLog target = installed;
+        if (target != null && !slot.isHeldByCurrentThread()) {
+            target.flush();
+        }
+    }
+
+    public static void record(long timestampMillis, boolean fastPath, String doctorId, TimeSlot slot,
+                              Token token, int priority, DecisionOutcome outcome) {
+        DecisionLog target = installed;
+        if (target != null && !slot.isDetached()) {
+            target.publish(timestampMillis, fastPath, doctorId, slot, token, priority, outcome, null, 0);
+        }
+    }
+
+    public static void reallocated(long timestampMillis, String doctorId, TimeSlot slot, Token token,
+                                   int priority, Token evicted, int evictedPriority) {
+        DecisionLog target = installed;
+        if (target != null && !slot.isDetached()) {
+            target.publish(timestampMillis, false, doctorId, slot, token, priority,
+                    DecisionOutcome.REALLOCATED, evicted, evictedPriority);
+        }
+    }
+
+    public static void rerouted(long timestampMillis, String doctorId, TimeSlot slot, Token token, int priority,
+                                String requestedDoctorId, TimeSlot requestedSlot) {
+        DecisionLog target = installed;
+        if (target != null && !slot.isDetached()) {
+            target.publishRerouted(timestampMillis, doctorId, slot, token, priority,
+                    requestedDoctorId, requestedSlot);
+        }
+    }
+}
@@ -6,6 +6,12 @@ public class AllocationResponseDTO {
     public String reason;
     public String promotedTokenId; // ID of token moved to waiting queue due to preemption
     public Integer positionInQueue; // if waitlisted, the position
+    public String reroutedDoctorId; // if rerouted, the doctor and slot actually booked
+    public String reroutedSlotId;
+
+    public AllocationResponseDTO() {
+        // For reading responses forwarded from another cluster node
+    }
 
     public AllocationResponseDTO(String tokenId, String status, String reason) {
         this.tokenId = tokenId;
@@ -3,15 +3,22 @@ package com.opd.opd_token_engine.dto;
 import com.opd.opd_token_engine.model.TokenSource;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 public class TokenRequestDTO {
+    /** Longest doctor, slot or patient ID accepted; well inside what the journal encodes. */
+    public static final int MAX_ID_LENGTH = 256;
+
     @NotBlank(message = "Doctor ID is required")
+    @Size(max = MAX_ID_LENGTH, message = "Doctor ID is too long")
     public String doctorId;
     
     @NotBlank(message = "Slot ID is required")
+    @Size(max = MAX_ID_LENGTH, message = "Slot ID is too long")
     public String slotId;
     
     @NotBlank(message = "Patient ID is required")
+    @Size(max = MAX_ID_LENGTH, message = "Patient ID is too long")
     public String patientId;
     
     @NotNull(message = "Token source is required")
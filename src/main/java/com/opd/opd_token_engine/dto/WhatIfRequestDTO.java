@@ -0,0 +1,17 @@
+package com.opd.opd_token_engine.dto;
+
+import com.opd.opd_token_engine.simulation.OpdDaySimulator;
+import com.opd.opd_token_engine.simulation.PolicyVariant;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class WhatIfRequestDTO {
+    // Doctors and trace, or arrival rates to generate one; a generated hospital if absent
+    public OpdDaySimulator.Config day;
+
+    @NotEmpty(message = "At least one variant is required")
+    public List<PolicyVariant> variants;
+
+    public int parallelism;
+}
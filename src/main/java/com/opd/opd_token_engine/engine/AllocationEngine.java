@@ -1,62 +1,368 @@
 package com.opd.opd_token_engine.engine;
 
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.cluster.Cluster;
+import com.opd.opd_token_engine.cluster.Ownership;
+import com.opd.opd_token_engine.decision.DecisionOutcome;
+import com.opd.opd_token_engine.decision.Decisions;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.IndexedTokenQueue;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
 import com.opd.opd_token_engine.model.TimeSlot;
 import com.opd.opd_token_engine.model.Token;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.opd.opd_token_engine.policy.PriorityPolicies;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.routing.FreeCapacityIndex;
+import com.opd.opd_token_engine.routing.Overflow;
+import com.opd.opd_token_engine.routing.OverflowRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 
 
 public class AllocationEngine {
 
-    private static final Logger log = LoggerFactory.getLogger(AllocationEngine.class);
+    // Marks a slot whose keys are being, or must be, re-scored; never scores
+    private static final PriorityTable STALE = new PriorityTable(Map.of(), 0, 0);
 
+    /**
+     * Allocates on the installed clock under the doctor's installed priority
+     * policy.
+     */
     public static AllocationResult allocate(String doctorId, TimeSlot slot, Token token) {
-        synchronized (slot) {
-            // Calculate effective priority before adding to queue
-            int tokenPriority = PriorityCalculator.calculate(token);
-            token.setSnapshotPriority(tokenPriority);
+        return allocate(doctorId, slot, token, EngineClock.system(), PriorityPolicies.forDoctor(doctorId));
+    }
+
+    /**
+     * Allocates against the given clock and priority table rather than the
+     * installed ones. Callers that picked the token's base priority pass the
+     * table they took it from; replays pass their own clock and table to run
+     * side by side with the live engine.
+     */
+    public static AllocationResult allocate(String doctorId, TimeSlot slot, Token token, EngineClock clock,
+                                            PriorityTable priorities) {
+        boolean timed = EngineMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        if (slot.getConcurrencyMode() == SlotConcurrencyMode.CAS_FAST_PATH && isKeyedUnder(slot, priorities)
+                && slot.claimSeat()) {
+            // Room left: seat claimed by CAS, the slot lock is never taken
+            long now = clock.millis();
+            int tokenPriority = priorities.score(token, now);
+            token.setAllocated(true);
+            // Publish before staging: once staged the token can be preempted,
+            // and its eviction must never be observed before its allocation
+            SlotEvents.allocated(doctorId, slot, token);
+            slot.stageAllocated(token);
+            Decisions.record(now, true, doctorId, slot, token, tokenPriority, DecisionOutcome.ALLOCATED);
+            if (timed) {
+                slot.getMetrics().recordFastPath(System.nanoTime() - start);
+            }
+            Decisions.flush(slot);
+            return AllocationResult.ALLOCATED;
+        }
+
+        AllocationResult result;
+        slot.lock();
+        try {
+            if (timed) {
+                slot.getMetrics().recordLockWait(System.nanoTime() - start);
+            }
+            result = allocateLocked(doctorId, slot, token, clock.millis(), priorities);
+            if (timed) {
+                slot.getMetrics().observeQueues(slot.getAllocatedTokens().size(), slot.getWaitingQueue().size());
+            }
+        } finally {
+            slot.unlock();
+        }
+        if (timed) {
+            slot.getMetrics().recordAllocate(result, System.nanoTime() - start);
+        }
+        // A full BLOCK decision log is waited for here, off the slot lock
+        Decisions.flush(slot);
+        return result;
+    }
+
+    /**
+     * Allocates a batch of tokens into one slot under a single lock
+     * acquisition. Results are in the same order as the tokens. Callers that
+     * already hold the lock record their own lock wait.
+     */
+    public static List<AllocationResult> allocateAll(String doctorId, TimeSlot slot, List<Token> tokens) {
+        return allocateAll(doctorId, slot, tokens, PriorityPolicies.forDoctor(doctorId));
+    }
+
+    public static List<AllocationResult> allocateAll(String doctorId, TimeSlot slot, List<Token> tokens,
+                                                     PriorityTable priorities) {
+        boolean timed = EngineMetrics.isEnabled();
+
+        List<AllocationResult> results = new ArrayList<>(tokens.size());
+        slot.lock();
+        try {
+            long now = EngineClock.system().millis();
+            for (Token token : tokens) {
+                results.add(allocateLocked(doctorId, slot, token, now, priorities));
+            }
+            if (timed) {
+                slot.getMetrics().observeQueues(slot.getAllocatedTokens().size(), slot.getWaitingQueue().size());
+            }
+        } finally {
+            slot.unlock();
+        }
+        if (timed) {
+            // Batch latency is not attributed to individual tokens
+            for (AllocationResult result : results) {
+                slot.getMetrics().recordOutcome(result);
+            }
+        }
+        Decisions.flush(slot);
+        return results;
+    }
+
+    // Caller holds the slot lock
+    private static AllocationResult allocateLocked(String doctorId, TimeSlot slot, Token token, long now,
+                                                   PriorityTable priorities) {
+        keyUnder(slot, now, priorities);
+        // Key the token before adding to a queue; keys never need rescoring
+        // while the table stays the same
+        int tokenPriority = priorities.score(token, now);
+
+        if (slot.claimSeat()) {
+            token.setAllocated(true);
+            slot.getAllocatedTokens().add(token);
+            SlotEvents.allocated(doctorId, slot, token);
+            Decisions.record(now, false, doctorId, slot, token, tokenPriority, DecisionOutcome.ALLOCATED);
+            return AllocationResult.ALLOCATED;
+        }
+
+        // The seat count is the authority: a full slot whose queue looks short
+        // has fast-path tokens between claiming a seat and being staged, and
+        // the victim search must see them. A slot delayed down to zero seats
+        // has nobody to preempt and waitlists
+        slot.getSettledAllocatedTokens();
+
+        // Keys compare exactly as effective priorities would at this instant,
+        // the victim's without the penalties of its earlier bumps
+        Token victim = victim(slot, now, priorities);
+        if (victim != null && token.getPriorityKey() > victim.getEvictionKey()) {
+            slot.getAllocatedTokens().poll();
+            victim.incrementPreemption();
+            victim.setAllocated(false);
+            victim.markOffSeat(now);
             
-            if (slot.getAllocatedTokens().size() < slot.getCapacity()) {
-                token.setAllocated(true);
-                slot.getAllocatedTokens().add(token);
-                log.info("ALLOCATED → Token added [Doctor={}, Slot={}, Token={}, Priority={}]", 
-                    doctorId, slot.getSlotId(), token.getTokenId(), tokenPriority);
-                return new AllocationResult("ALLOCATED", null);
+            // Re-key the evicted token with its reallocation penalty before it waits
+            int evictedPriority = priorities.score(victim, now);
+            slot.getWaitingQueue().add(victim);
+            SlotEvents.evicted(doctorId, slot, victim);
+
+            token.setAllocated(true);
+            slot.getAllocatedTokens().add(token);
+            SlotEvents.allocated(doctorId, slot, token);
+            Decisions.reallocated(now, doctorId, slot, token, tokenPriority, victim, evictedPriority);
+            return new AllocationResult(AllocationStatus.REALLOCATED_LOW_PRIORITY, victim.getTokenId());
+        }
+
+        AllocationResult rerouted = reroute(doctorId, slot, token, now, tokenPriority, priorities);
+        if (rerouted != null) {
+            return rerouted;
+        }
+
+        token.markOffSeat(now);
+        slot.getWaitingQueue().add(token);
+        SlotEvents.waitlisted(doctorId, slot, token);
+        Decisions.record(now, false, doctorId, slot, token, tokenPriority, DecisionOutcome.WAITLISTED);
+        return AllocationResult.WAITLISTED;
+    }
+
+    // Only a slot keyed under the same table can take a token scored without the lock
+    private static boolean isKeyedUnder(TimeSlot slot, PriorityTable priorities) {
+        PriorityTable keyed = slot.getKeyedBy();
+        return keyed == priorities || keyed == null && slot.compareAndSetKeyedBy(null, priorities);
+    }
+
+    /**
+     * Re-scores both queues of a slot whose tokens were keyed under another
+     * table, so that a policy swap never compares keys of different aging
+     * factors or penalties, which sit millions of points apart. Queued
+     * tokens keep their base priority. The fast path is closed while the
+     * seated tokens settle and are re-keyed. Caller holds the slot lock.
+     */
+    private static void keyUnder(TimeSlot slot, long now, PriorityTable priorities) {
+        PriorityTable keyed = slot.getKeyedBy();
+        if (keyed == priorities || keyed == null && slot.compareAndSetKeyedBy(null, priorities)) {
+            return;
+        }
+        slot.setKeyedBy(STALE);
+        rekey(slot.getSettledAllocatedTokens(), now, priorities);
+        rekey(slot.getWaitingQueue(), now, priorities);
+        slot.setKeyedBy(priorities);
+    }
+
+    /**
+     * Records that a token scored under the given table was queued in the
+     * slot outside a decision, by a restore or an overflow reroute, so the
+     * slot is re-keyed before it is next decided under another table.
+     * Caller holds the slot lock.
+     */
+    public static void keyedOutside(TimeSlot slot, PriorityTable priorities) {
+        if (!slot.compareAndSetKeyedBy(null, priorities) && slot.getKeyedBy() != priorities) {
+            slot.setKeyedBy(STALE);
+        }
+    }
+
+    private static void rekey(IndexedTokenQueue queue, long now, PriorityTable priorities) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        for (Token token : queue) {
+            priorities.score(token, now);
+        }
+        queue.rekey();
+    }
+
+    /**
+     * The seated token a newcomer would bump: the head of the allocated
+     * queue, unless it is protected or its consultation is imminent. Heads
+     * found protected since they were keyed are re-keyed to the protected
+     * end, so each seated token is stepped over at most once and selection
+     * stays O(log n) amortized. The head is the last to be seen, so if its
+     * consultation is imminent, everyone's is. Caller holds the slot lock.
+     */
+    private static Token victim(TimeSlot slot, long now, PriorityTable priorities) {
+        IndexedTokenQueue seated = slot.getAllocatedTokens();
+        Token head;
+        while ((head = seated.peek()) != null && !head.isProtected()) {
+            if (!priorities.isProtected(head, now)) {
+                return priorities.isImminent(slot, seated.size(), now) ? null : head;
             }
+            seated.poll();
+            head.setEvictionKey(Token.PROTECTED);
+            seated.add(head);
+        }
+        return null;
+    }
 
-            Token lowest = slot.getAllocatedTokens().peek();
-            if (lowest == null) {
-                // This should not happen if slot is at capacity, but handle defensively
-                token.setAllocated(true);
-                slot.getAllocatedTokens().add(token);
-                log.warn("ALLOCATED (defensive) → Empty queue at capacity [Doctor={}, Slot={}, Token={}]", 
-                    doctorId, slot.getSlotId(), token.getTokenId());
-                return new AllocationResult("ALLOCATED", null);
-            }
-
-            if (tokenPriority > lowest.getSnapshotPriority()) {
-                slot.getAllocatedTokens().poll();
-                lowest.incrementPreemption();
-                lowest.setAllocated(false);
-                
-                // Recalculate priority for evicted token before adding to waiting queue
-                int evictedPriority = PriorityCalculator.calculate(lowest);
-                lowest.setSnapshotPriority(evictedPriority);
-                slot.getWaitingQueue().add(lowest);
+    /**
+     * Cancels on the installed clock under the doctor's installed priority
+     * policy.
+     */
+    public static boolean cancelLocked(String doctorId, TimeSlot slot, String tokenId) {
+        return cancelLocked(doctorId, slot, tokenId, EngineClock.system().millis(),
+                PriorityPolicies.forDoctor(doctorId));
+    }
 
-                token.setAllocated(true);
-                slot.getAllocatedTokens().add(token);
+    /**
+     * Cancels a seated or waitlisted token, promoting the waiting token
+     * {@link #nextToPromote} picks into a freed seat. Caller holds the slot
+     * lock; false if the token is not in the slot.
+     */
+    public static boolean cancelLocked(String doctorId, TimeSlot slot, String tokenId, long now,
+                                       PriorityTable priorities) {
+        Token cancelled = slot.getAllocatedTokens().remove(tokenId);
+        if (cancelled == null) {
+            // Waitlisted tokens can be cancelled too; no seat changes hands
+            cancelled = slot.getWaitingQueue().remove(tokenId);
+            if (cancelled == null) {
+                return false;
+            }
+            SlotEvents.cancelled(doctorId, slot, cancelled);
+            return true;
+        }
+
+        // Seat counts are settled before each event so listeners see them
+        boolean promote = !slot.getWaitingQueue().isEmpty();
+        if (!promote) {
+            slot.releaseSeat();
+        }
+        SlotEvents.cancelled(doctorId, slot, cancelled);
 
-                log.info("REALLOCATED → Lower-priority token moved [Doctor={}, Slot={}, TokenEvicted={} (Priority={}), TokenIn={} (Priority={})]", 
-                    doctorId, slot.getSlotId(), lowest.getTokenId(), evictedPriority, token.getTokenId(), tokenPriority);
-                return new AllocationResult("REALLOCATED_LOW_PRIORITY", lowest.getTokenId());
+        if (promote) {
+            // The promoted token inherits the freed seat
+            Token promoted = nextToPromote(slot, now, priorities);
+            slot.getWaitingQueue().remove(promoted.getTokenId());
+            promoted.setAllocated(true);
+            slot.getAllocatedTokens().add(promoted);
+            SlotEvents.promoted(doctorId, slot, promoted);
+            if (EngineMetrics.isEnabled()) {
+                slot.getMetrics().recordPromotion();
             }
+        }
+        return true;
+    }
 
-            slot.getWaitingQueue().add(token);
-            log.info("WAITLISTED → Token added to waiting queue [Doctor={}, Slot={}, Token={}, Priority={}]", 
-                doctorId, slot.getSlotId(), token.getTokenId(), tokenPriority);
-            return new AllocationResult("WAITLISTED", null);
+    /**
+     * The waiting token a freed seat goes to: of the overdue tokens, the one
+     * first put off a seat, whatever its score, so that no newer or
+     * higher-scored waiter keeps it past maxWaitMinutes; the best-scored
+     * waiter if none is overdue. Overdue tokens are found by a scan of the
+     * waiting queue, made only when the table bounds waits. Caller holds the
+     * slot lock; null if nobody waits.
+     */
+    public static Token nextToPromote(TimeSlot slot, long now, PriorityTable priorities) {
+        IndexedTokenQueue waiting = slot.getWaitingQueue();
+        Token overdue = null;
+        if (priorities.boundsWait()) {
+            for (Token token : waiting) {
+                if (priorities.isOverdue(token, now)
+                        && (overdue == null || token.getOffSeatSinceMillis() < overdue.getOffSeatSinceMillis())) {
+                    overdue = token;
+                }
+            }
+        }
+        return overdue != null ? overdue : waiting.peek();
+    }
+
+    /**
+     * Seats a token that would be waitlisted in a free slot of an equivalent
+     * doctor, if an overflow router is installed and finds one. Caller holds
+     * the origin slot's lock, so candidates are only tried with tryLock; a
+     * busy or since-filled candidate is skipped, as is one whose doctor has
+     * since been handed to another cluster node.
+     */
+    private static AllocationResult reroute(String doctorId, TimeSlot origin, Token token, long now, int priority,
+                                            PriorityTable priorities) {
+        OverflowRouter router = Overflow.current();
+        // Detached slots have no equivalents in the live store to overflow into
+        if (router == null || origin.isDetached()) {
+            return null;
+        }
+        Cluster cluster = Ownership.current();
+        for (FreeCapacityIndex.Candidate candidate : router.candidates(doctorId, origin)) {
+            // Another member's doctor, or one being handed off, is not this node's to seat
+            if (cluster != null && !cluster.owns(candidate.doctorId())) {
+                continue;
+            }
+            TimeSlot target = candidate.slot();
+            Doctor owner = InMemoryStore.doctors.get(candidate.doctorId());
+            if (owner == null || owner.getSlots().get(target.getSlotId()) != target) {
+                continue;
+            }
+            if (!target.tryLock()) {
+                continue;
+            }
+            try {
+                if (!target.claimSeat()) {
+                    continue;
+                }
+                token.setAllocated(true);
+                target.getAllocatedTokens().add(token);
+                keyedOutside(target, priorities);
+                SlotEvents.allocated(candidate.doctorId(), target, token);
+                Decisions.rerouted(now, candidate.doctorId(), target, token, priority, doctorId, origin);
+                if (EngineMetrics.isEnabled()) {
+                    target.getMetrics().recordRerouteIn();
+                }
+            } finally {
+                target.unlock();
+            }
+            router.recordRerouted();
+            return new AllocationResult(AllocationStatus.REROUTED, null, candidate.doctorId(), target.getSlotId());
         }
+        router.recordExhausted();
+        return null;
     }
 }
@@ -1,11 +1,25 @@
 package com.opd.opd_token_engine.engine;
 
 public class AllocationResult {
-    public final String status;
+
+    // Outcomes without ids are shared, so the common decisions allocate nothing
+    public static final AllocationResult ALLOCATED = new AllocationResult(AllocationStatus.ALLOCATED, null);
+    public static final AllocationResult WAITLISTED = new AllocationResult(AllocationStatus.WAITLISTED, null);
+
+    public final AllocationStatus status;
     public final String evictedTokenId; // token moved to waiting queue due to preemption (if any)
+    public final String reroutedDoctorId; // where an overflow booking was seated instead (if any)
+    public final String reroutedSlotId;
+
+    public AllocationResult(AllocationStatus status, String evictedTokenId) {
+        this(status, evictedTokenId, null, null);
+    }
 
-    public AllocationResult(String status, String evictedTokenId) {
+    public AllocationResult(AllocationStatus status, String evictedTokenId, String reroutedDoctorId,
+                            String reroutedSlotId) {
         this.status = status;
         this.evictedTokenId = evictedTokenId;
+        this.reroutedDoctorId = reroutedDoctorId;
+        this.reroutedSlotId = reroutedSlotId;
     }
 }
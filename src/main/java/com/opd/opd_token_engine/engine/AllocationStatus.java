@@ -0,0 +1,22 @@
+package com.opd.opd_token_engine.engine;
+
+/**
+ * Outcome of an allocation, with the reason given to the caller. The name is
+ * the status string in responses.
+ */
+public enum AllocationStatus {
+    ALLOCATED("Token allocated successfully within slot capacity"),
+    WAITLISTED("Slot is full; token added to waiting queue"),
+    REALLOCATED_LOW_PRIORITY("Lower-priority token was reallocated to the waiting queue based on fairness rules"),
+    REROUTED("Slot is full; token allocated to an equivalent doctor's slot");
+
+    private final String reason;
+
+    AllocationStatus(String reason) {
+        this.reason = reason;
+    }
+
+    public String reason() {
+        return reason;
+    }
+}
@@ -0,0 +1,96 @@
+package com.opd.opd_token_engine.engine;
+
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.IndexedTokenQueue;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.policy.PriorityPolicies;
+
+import java.time.LocalTime;
+
+/**
+ * Carries a doctor's efficiency into slot capacities, one slot at a time.
+ * <p>
+ * Each slot is resized under its own lock, so allocations on the doctor's
+ * other slots carry on while it is rebalanced. Shrinking moves the
+ * lowest-priority seated tokens back to the waiting queue, where they keep
+ * their place by priority and take no reallocation penalty; growing promotes
+ * waiters into the new seats, overdue ones first, as a cancellation does. Slots that have already ended keep the
+ * capacity they ran with.
+ */
+public final class DelayPropagator {
+
+    public record Propagation(int resized, int skipped, int displaced, int promoted) {
+    }
+
+    private DelayPropagator() {
+    }
+
+    /**
+     * Resizes every slot of the doctor that has not ended by asOf to the
+     * doctor's current efficiency. Concurrent propagations for the same
+     * doctor converge, since each reads the efficiency under the slot lock.
+     */
+    public static Propagation propagate(String doctorId, Doctor doctor, LocalTime asOf) {
+        int resized = 0;
+        int skipped = 0;
+        int displaced = 0;
+        int promoted = 0;
+        PriorityTable priorities = PriorityPolicies.forDoctor(doctorId);
+        for (TimeSlot slot : doctor.getSlots().values()) {
+            if (slot.hasEndedBy(asOf)) {
+                skipped++;
+                continue;
+            }
+            slot.lock();
+            try {
+                int capacity = doctor.capacityFor(slot);
+                if (capacity == slot.getCapacity()) {
+                    continue;
+                }
+                slot.updateCapacity(capacity);
+                // Claims made at the old capacity are staged first, so the
+                // overflow count is exact; new claims see the new capacity
+                IndexedTokenQueue allocated = slot.getSettledAllocatedTokens();
+                IndexedTokenQueue waiting = slot.getWaitingQueue();
+                SlotEvents.resized(doctorId, slot, capacity);
+                resized++;
+
+                long now = EngineClock.system().millis();
+                int slotDisplaced = 0;
+                while (allocated.size() > capacity) {
+                    Token token = allocated.poll();
+                    token.setAllocated(false);
+                    token.markOffSeat(now);
+                    waiting.add(token);
+                    slot.releaseSeat();
+                    SlotEvents.displaced(doctorId, slot, token);
+                    slotDisplaced++;
+                }
+
+                int slotPromoted = 0;
+                while (!waiting.isEmpty() && slot.claimSeat()) {
+                    Token token = AllocationEngine.nextToPromote(slot, now, priorities);
+                    waiting.remove(token.getTokenId());
+                    token.setAllocated(true);
+                    allocated.add(token);
+                    SlotEvents.promoted(doctorId, slot, token);
+                    slotPromoted++;
+                }
+
+                if (EngineMetrics.isEnabled()) {
+                    slot.getMetrics().recordResize(slotDisplaced, slotPromoted);
+                    slot.getMetrics().observeQueues(allocated.size(), waiting.size());
+                }
+                displaced += slotDisplaced;
+                promoted += slotPromoted;
+            } finally {
+                slot.unlock();
+            }
+        }
+        return new Propagation(resized, skipped, displaced, promoted);
+    }
+}
@@ -1,30 +1,50 @@
 package com.opd.opd_token_engine.engine;
 
 import com.opd.opd_token_engine.model.Token;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 
+/**
+ * Linear aging model with time-invariant ordering keys.
+ * <p>
+ * Effective priority at time t is
+ * {@code base + AGING_FACTOR * (t - arrival) - reallocations * REALLOCATION_PENALTY}.
+ * Aging is linear and the same for every token, so the t term cancels whenever
+ * two tokens are compared. A token's ordering key is therefore
+ * {@code base - reallocations * REALLOCATION_PENALTY - AGING_FACTOR * arrival},
+ * which is computed once and never goes stale while the token waits.
+ * <p>
+ * A key unit is 1/60,000,000 of a point, so per-millisecond aging is a whole
+ * number of units for any factor given to three decimals, and neighbouring
+ * factors never round to the same aging. The constants are those of
+ * {@link PriorityTable#DEFAULT}; other tables score the same way.
+ */
 public class PriorityCalculator {
 
-    private static final Logger log = LoggerFactory.getLogger(PriorityCalculator.class);
+    static final long SCALE = 60_000_000;
 
-    private static final double AGING_FACTOR = 0.3;
-    private static final int REALLOCATION_PENALTY  = 10;
+    /**
+     * Time-invariant ordering key: a larger key means a higher effective
+     * priority at every instant.
+     */
+    public static long priorityKey(Token token) {
+        return PriorityTable.DEFAULT.priorityKey(token);
+    }
 
-    public static int calculate(Token token) {
-        long waitingMinutes =
-                Duration.between(token.getCreatedAt(), LocalDateTime.now()).toMinutes();
+    /**
+     * Effective priority, in whole points, of a key at the given time.
+     */
+    public static int effectivePriority(long priorityKey, long nowMillis) {
+        return PriorityTable.DEFAULT.effectivePriority(priorityKey, nowMillis);
+    }
 
-        int effectivePriority = (int) (
-                token.getBasePriority()
-                        + waitingMinutes * AGING_FACTOR
-                        - token.getReallocationCount() * REALLOCATION_PENALTY
-        );
-        log.info("Token {} | Waiting(min): {} | Effective Priority: {}", token.getTokenId(), waitingMinutes, effectivePriority);
+    public static int calculate(Token token, long nowMillis) {
+        return effectivePriority(priorityKey(token), nowMillis);
+    }
 
-        return effectivePriority;
+    /**
+     * Stores the token's ordering key and its effective priority at nowMillis
+     * on the token, returning the effective priority.
+     */
+    public static int score(Token token, long nowMillis) {
+        return PriorityTable.DEFAULT.score(token, nowMillis);
     }
 }
@@ -0,0 +1,233 @@
+package com.opd.opd_token_engine.engine;
+
+import com.opd.opd_token_engine.clock.MinuteOfDay;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.policy.PriorityPolicy;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A priority policy compiled for the allocate path: base priorities in an
+ * array by token source, aging and the reallocation penalty pre-scaled to
+ * key units, with the scoring of {@link PriorityCalculator} over them, and
+ * the preemption limits in the units the engine checks them in.
+ * <p>
+ * A seated token's eviction key leaves out the reallocation penalty, so
+ * having been bumped does not make a token the next victim, and is
+ * {@link Token#PROTECTED} once the token has used up its bumps or is
+ * overdue: maxWaitMinutes have passed since it was first bumped, displaced
+ * or waitlisted. Neither changes while a token stays seated except by time
+ * passing, so the engine can protect a token for good the first time it
+ * finds it so. An overdue waiting token takes the next freed seat.
+ * <p>
+ * Final and immutable, so every scoring call site sees one class whatever
+ * policy is installed, and engines replaying a trace under different tables
+ * can run side by side.
+ */
+public final class PriorityTable implements PriorityPolicy {
+
+    public static final PriorityTable DEFAULT = new PriorityTable(Map.of(
+            TokenSource.EMERGENCY, 100,
+            TokenSource.PAID, 85,
+            TokenSource.FOLLOW_UP, 65,
+            TokenSource.ONLINE, 50,
+            TokenSource.WALK_IN, 40), 0.3, 10, 0, 0, 0);
+
+    /** Keeps aging keys of epoch-millisecond arrivals well inside a long. */
+    public static final double MAX_AGING_FACTOR = 1_000;
+
+    private final int[] basePriorities; // by TokenSource ordinal
+    private final double agingFactor;   // points per minute waited
+    private final int reallocationPenalty;
+    private final int maxBumps;         // 0 for no limit
+    private final double maxWaitMinutes;
+    private final double imminentMinutes;
+    private final long agingPerMilli;   // in key units
+    private final long penaltyKey;      // in key units
+    private final long maxWaitMillis; // Long.MAX_VALUE for none
+
+    /**
+     * Sources missing from basePriorities, and the preemption limits, keep
+     * their default.
+     */
+    public PriorityTable(Map<TokenSource, Integer> basePriorities, double agingFactor, int reallocationPenalty) {
+        this(basePriorities, agingFactor, reallocationPenalty,
+                DEFAULT.maxBumps, DEFAULT.maxWaitMinutes, DEFAULT.imminentMinutes);
+    }
+
+    public PriorityTable(Map<TokenSource, Integer> basePriorities, double agingFactor, int reallocationPenalty,
+                         int maxBumps, double maxWaitMinutes, double imminentMinutes) {
+        if (!(agingFactor >= 0) || reallocationPenalty < 0) {
+            throw new IllegalArgumentException("Aging and reallocation penalty must not be negative");
+        }
+        if (agingFactor > MAX_AGING_FACTOR) {
+            throw new IllegalArgumentException("Aging must be at most " + MAX_AGING_FACTOR + " points per minute");
+        }
+        if (maxBumps < 0 || !(maxWaitMinutes >= 0) || !(imminentMinutes >= 0)) {
+            throw new IllegalArgumentException("Preemption limits must not be negative");
+        }
+        this.basePriorities = new int[TokenSource.values().length];
+        for (TokenSource source : TokenSource.values()) {
+            Integer base = basePriorities.get(source);
+            this.basePriorities[source.ordinal()] = base != null ? base : DEFAULT.basePriority(source);
+        }
+        this.agingFactor = agingFactor;
+        this.reallocationPenalty = reallocationPenalty;
+        this.agingPerMilli = Math.round(agingFactor * PriorityCalculator.SCALE / 60_000);
+        this.penaltyKey = reallocationPenalty * PriorityCalculator.SCALE;
+        this.maxBumps = maxBumps;
+        this.maxWaitMinutes = maxWaitMinutes;
+        this.imminentMinutes = imminentMinutes;
+        this.maxWaitMillis = maxWaitMinutes > 0
+                ? Math.round(maxWaitMinutes * 60_000)
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * Reads a policy once into a table; a table compiles to itself.
+     */
+    public static PriorityTable compile(PriorityPolicy policy) {
+        if (policy instanceof PriorityTable table) {
+            return table;
+        }
+        Map<TokenSource, Integer> bases = new EnumMap<>(TokenSource.class);
+        for (TokenSource source : TokenSource.values()) {
+            bases.put(source, policy.basePriority(source));
+        }
+        return new PriorityTable(bases, policy.agingFactor(), policy.reallocationPenalty(),
+                policy.maxBumps(), policy.maxWaitMinutes(), policy.imminentMinutes());
+    }
+
+    @Override
+    public int basePriority(TokenSource source) {
+        return basePriorities[source.ordinal()];
+    }
+
+    public Map<TokenSource, Integer> basePriorities() {
+        Map<TokenSource, Integer> out = new EnumMap<>(TokenSource.class);
+        for (TokenSource source : TokenSource.values()) {
+            out.put(source, basePriorities[source.ordinal()]);
+        }
+        return out;
+    }
+
+    @Override
+    public double agingFactor() {
+        return agingFactor;
+    }
+
+    @Override
+    public int reallocationPenalty() {
+        return reallocationPenalty;
+    }
+
+    @Override
+    public int maxBumps() {
+        return maxBumps;
+    }
+
+    @Override
+    public double maxWaitMinutes() {
+        return maxWaitMinutes;
+    }
+
+    @Override
+    public double imminentMinutes() {
+        return imminentMinutes;
+    }
+
+    public long priorityKey(Token token) {
+        return token.getBasePriority() * PriorityCalculator.SCALE
+                - token.getReallocationCount() * penaltyKey
+                - agingPerMilli * token.getArrivalMillis();
+    }
+
+    public int effectivePriority(long priorityKey, long nowMillis) {
+        return (int) Math.floorDiv(priorityKey + agingPerMilli * nowMillis, PriorityCalculator.SCALE);
+    }
+
+    /**
+     * Stores the token's ordering and eviction keys and its effective
+     * priority at nowMillis on the token, returning the effective priority.
+     */
+    public int score(Token token, long nowMillis) {
+        long key = priorityKey(token);
+        int effective = effectivePriority(key, nowMillis);
+        token.setPriorityKey(key);
+        token.setEvictionKey(isProtected(token, nowMillis)
+                ? Token.PROTECTED
+                : key + token.getReallocationCount() * penaltyKey);
+        token.setSnapshotPriority(effective);
+        return effective;
+    }
+
+    /**
+     * Whether the token may no longer be bumped: it has used up its bumps,
+     * or it is overdue. A token seated at booking and never moved is not
+     * protected by time. Once true, true for as long as the token stays
+     * seated.
+     */
+    public boolean isProtected(Token token, long nowMillis) {
+        return (maxBumps > 0 && token.getReallocationCount() >= maxBumps) || isOverdue(token, nowMillis);
+    }
+
+    /** Whether waits are bounded at all; with no bound no token is ever overdue. */
+    public boolean boundsWait() {
+        return maxWaitMillis != Long.MAX_VALUE;
+    }
+
+    /**
+     * Whether maxWaitMinutes have passed since the token was first put off
+     * a seat. A token never put off a seat is never overdue.
+     */
+    public boolean isOverdue(Token token, long nowMillis) {
+        return nowMillis - token.getOffSeatSinceMillis() >= maxWaitMillis;
+    }
+
+    /**
+     * Whether the token at the given place in a slot's seated order, from 1,
+     * is due for consultation within imminentMinutes of nowMillis. The
+     * consultation is estimated as the slot's start plus the seats ahead at
+     * the slot's minutes per seat; slots without times are never imminent.
+     */
+    public boolean isImminent(TimeSlot slot, int place, long nowMillis) {
+        if (imminentMinutes == 0 || slot.getStartMinute() < 0) {
+            return false;
+        }
+        double minutesPerSeat = (double) (slot.getEndMinute() - slot.getStartMinute())
+                / Math.max(slot.getCapacity(), place);
+        double consultation = slot.getStartMinute() + (place - 1) * minutesPerSeat;
+        return consultation - MinuteOfDay.of(nowMillis) <= imminentMinutes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PriorityTable other
+                && Arrays.equals(basePriorities, other.basePriorities)
+                && Double.compare(agingFactor, other.agingFactor) == 0
+                && reallocationPenalty == other.reallocationPenalty
+                && maxBumps == other.maxBumps
+                && Double.compare(maxWaitMinutes, other.maxWaitMinutes) == 0
+                && Double.compare(imminentMinutes, other.imminentMinutes) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * (31 * Arrays.hashCode(basePriorities) + Double.hashCode(agingFactor))
+                + reallocationPenalty;
+        hash = 31 * (31 * hash + maxBumps) + Double.hashCode(maxWaitMinutes);
+        return 31 * hash + Double.hashCode(imminentMinutes);
+    }
+
+    @Override
+    public String toString() {
+        return "PriorityTable" + basePriorities() + "[agingFactor=" + agingFactor
+                + ", reallocationPenalty=" + reallocationPenalty + ", maxBumps=" + maxBumps
+                + ", maxWaitMinutes=" + maxWaitMinutes
+                + ", imminentMinutes=" + imminentMinutes + "]";
+    }
+}
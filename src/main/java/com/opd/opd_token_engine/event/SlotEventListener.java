@@ -0,0 +1,60 @@
+package com.opd.opd_token_engine.event;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+
+/**
+ * Observer of slot mutations decided by the allocation engine.
+ * <p>
+ * Slot callbacks run on the request thread, normally while it holds the slot
+ * lock, so implementations must be short and must not block. The version is
+ * the slot's mutation counter after the change.
+ */
+public interface SlotEventListener {
+
+    default void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+    }
+
+    default void onWaitlisted(String doctorId, TimeSlot slot, Token token, long version) {
+    }
+
+    /** A seated token was preempted into the waiting queue. */
+    default void onEvicted(String doctorId, TimeSlot slot, Token token, long version) {
+    }
+
+    default void onCancelled(String doctorId, TimeSlot slot, Token token, long version) {
+    }
+
+    /** A waiting token moved into a freed seat. */
+    default void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+    }
+
+    /** A seated token moved to the waiting queue because capacity shrank. */
+    default void onDisplaced(String doctorId, TimeSlot slot, Token token, long version) {
+    }
+
+    /** The slot's capacity changed; displacements and promotions follow. */
+    default void onResized(String doctorId, TimeSlot slot, int capacity, long version) {
+    }
+
+    /** The doctor's delay version is its delay count after the change. */
+    default void onDelayApplied(String doctorId, double delayFactor, long delayVersion) {
+    }
+
+    /**
+     * Called on the request thread once its slot locks are released, before
+     * the response is returned. The only callback allowed to block.
+     */
+    default void onCommit() {
+    }
+
+    /**
+     * Hands the request's pending commit to another thread: clears it on this
+     * thread and returns the wait onCommit would have done, or null if there
+     * is nothing to wait for. Used when slots are mutated on a store shard
+     * but the request completes on its own thread.
+     */
+    default Runnable detachCommit() {
+        return null;
+    }
+}
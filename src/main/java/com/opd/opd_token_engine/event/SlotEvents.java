@@ -0,0 +1,126 @@
+package com.opd.opd_token_engine.event;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+
+import java.util.Arrays;
+
+/**
+ * Static dispatch point for slot mutations, mirroring the static engine and
+ * store. With no listeners registered every call is a version bump and an
+ * empty loop.
+ */
+public final class SlotEvents {
+
+    private static final SlotEventListener[] NONE = new SlotEventListener[0];
+
+    private static volatile SlotEventListener[] listeners = NONE;
+
+    private SlotEvents() {
+    }
+
+    public static synchronized void register(SlotEventListener listener) {
+        SlotEventListener[] current = listeners;
+        SlotEventListener[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = listener;
+        listeners = next;
+    }
+
+    public static synchronized void unregister(SlotEventListener listener) {
+        listeners = Arrays.stream(listeners)
+                .filter(l -> l != listener)
+                .toArray(SlotEventListener[]::new);
+    }
+
+    /**
+     * The registered listeners, in dispatch order.
+     */
+    public static SlotEventListener[] registered() {
+        return listeners.clone();
+    }
+
+    public static void allocated(String doctorId, TimeSlot slot, Token token) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onAllocated(doctorId, slot, token, version);
+        }
+    }
+
+    public static void waitlisted(String doctorId, TimeSlot slot, Token token) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onWaitlisted(doctorId, slot, token, version);
+        }
+    }
+
+    public static void evicted(String doctorId, TimeSlot slot, Token token) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onEvicted(doctorId, slot, token, version);
+        }
+    }
+
+    public static void cancelled(String doctorId, TimeSlot slot, Token token) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onCancelled(doctorId, slot, token, version);
+        }
+    }
+
+    public static void promoted(String doctorId, TimeSlot slot, Token token) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onPromoted(doctorId, slot, token, version);
+        }
+    }
+
+    public static void displaced(String doctorId, TimeSlot slot, Token token) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onDisplaced(doctorId, slot, token, version);
+        }
+    }
+
+    public static void resized(String doctorId, TimeSlot slot, int capacity) {
+        long version = slot.nextVersion();
+        for (SlotEventListener l : listenersFor(slot)) {
+            l.onResized(doctorId, slot, capacity, version);
+        }
+    }
+
+    // Detached slots belong to an offline run, not to what listeners mirror
+    private static SlotEventListener[] listenersFor(TimeSlot slot) {
+        return slot.isDetached() ? NONE : listeners;
+    }
+
+    public static void delayApplied(String doctorId, double delayFactor, long delayVersion) {
+        for (SlotEventListener l : listeners) {
+            l.onDelayApplied(doctorId, delayFactor, delayVersion);
+        }
+    }
+
+    public static void commit() {
+        for (SlotEventListener l : listeners) {
+            l.onCommit();
+        }
+    }
+
+    /**
+     * Detaches this thread's pending commit so another thread can complete
+     * it; null when no listener has anything to wait for.
+     */
+    public static Runnable detachCommit() {
+        Runnable detached = null;
+        for (SlotEventListener l : listeners) {
+            Runnable wait = l.detachCommit();
+            if (wait != null) {
+                Runnable before = detached;
+                detached = before == null ? wait : () -> {
+                    before.run();
+                    wait.run();
+                };
+            }
+        }
+        return detached;
+    }
+}
@@ -0,0 +1,252 @@
+package com.opd.opd_token_engine.index;
+
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotView;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where every live token is, by token id and by patient id, across all
+ * doctors on this node.
+ * <p>
+ * Entries follow the engine's slot events, so they move with evictions,
+ * promotions and overflow reroutes and disappear on cancellation. A booking
+ * reserves its patient before it reaches the engine; the reservation is an
+ * atomic update of that patient's token list, which is where overlapping
+ * bookings are rejected when duplicates are not allowed.
+ */
+public class TokenIndex implements SlotEventListener {
+
+    public enum State {
+        /** Reserved by a booking the engine has not decided yet. */
+        PENDING,
+        ALLOCATED,
+        WAITING
+    }
+
+    public record Entry(String tokenId, String patientId, String doctorId, String slotId, State state,
+                        int startMinute, int endMinute) {
+
+        /**
+         * True when a patient could not attend both: the slot windows overlap,
+         * or either slot has no time and both have the same id.
+         */
+        public boolean overlaps(Entry other) {
+            if (startMinute < 0 || other.startMinute < 0) {
+                return slotId.equals(other.slotId);
+            }
+            return startMinute < other.endMinute && other.startMinute < endMinute;
+        }
+    }
+
+    private static final String[] NONE = new String[0];
+
+    private final boolean rejectDuplicates;
+    private final Map<String, Entry> byToken = new ConcurrentHashMap<>();
+    // Token ids per patient, replaced whole inside compute so checks and adds are atomic
+    private final ConcurrentHashMap<String, String[]> byPatient = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    public TokenIndex(boolean rejectDuplicates) {
+        this.rejectDuplicates = rejectDuplicates;
+    }
+
+    public boolean isRejectingDuplicates() {
+        return rejectDuplicates;
+    }
+
+    /**
+     * Registers a booking before it is allocated. Returns null once the token
+     * is reserved, or the patient's overlapping token if duplicates are
+     * rejected and one exists, in which case nothing is reserved.
+     */
+    public Entry reserve(Token token, String doctorId, TimeSlot slot) {
+        Entry pending = entry(token.getTokenId(), token.getPatientId(), doctorId, slot, State.PENDING);
+        Entry[] conflict = new Entry[1];
+        byPatient.compute(token.getPatientId(), (patientId, held) -> {
+            if (rejectDuplicates && held != null) {
+                for (String tokenId : held) {
+                    Entry existing = byToken.get(tokenId);
+                    if (existing != null && existing.overlaps(pending)) {
+                        conflict[0] = existing;
+                        return held;
+                    }
+                }
+            }
+            byToken.put(pending.tokenId(), pending);
+            return with(held, pending.tokenId());
+        });
+        if (conflict[0] != null) {
+            rejected.increment();
+        }
+        return conflict[0];
+    }
+
+    /**
+     * Drops a reservation whose booking failed before the engine decided it.
+     */
+    public void release(Token token) {
+        Entry entry = byToken.get(token.getTokenId());
+        if (entry != null && entry.state() == State.PENDING) {
+            remove(entry);
+        }
+    }
+
+    public Entry get(String tokenId) {
+        Entry entry = byToken.get(tokenId);
+        return entry == null || entry.state() == State.PENDING ? null : entry;
+    }
+
+    /**
+     * The patient's live tokens, in booking order.
+     */
+    public List<Entry> tokensOf(String patientId) {
+        String[] held = byPatient.getOrDefault(patientId, NONE);
+        List<Entry> out = new ArrayList<>(held.length);
+        for (String tokenId : held) {
+            Entry entry = get(tokenId);
+            if (entry != null) {
+                out.add(entry);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Adds every token already in the given doctors' slots, for state that
+     * arrived without slot events: recovery, replication or a handoff.
+     * <p>
+     * Each slot is indexed under its lock. Slot events are dispatched under
+     * the same lock, so when the index is already listening, a token
+     * cancelled after its slot was read is removed after it was added, and
+     * one cancelled before is not in the view at all.
+     */
+    public void indexAll(Map<String, Doctor> doctors) {
+        for (Map.Entry<String, Doctor> doctor : doctors.entrySet()) {
+            for (TimeSlot slot : doctor.getValue().getSlots().values()) {
+                slot.lock();
+                try {
+                    SlotView view = slot.currentView();
+                    for (SlotView.Entry token : view.allocated()) {
+                        put(token.tokenId(), token.patientId(), doctor.getKey(), slot, State.ALLOCATED);
+                    }
+                    for (SlotView.Entry token : view.waiting()) {
+                        put(token.tokenId(), token.patientId(), doctor.getKey(), slot, State.WAITING);
+                    }
+                } finally {
+                    slot.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the tokens of doctors this node no longer holds.
+     */
+    public void forget(Collection<String> doctorIds) {
+        for (Entry entry : byToken.values()) {
+            if (doctorIds.contains(entry.doctorId())) {
+                remove(entry);
+            }
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("tokens", byToken.size());
+        out.put("patients", byPatient.size());
+        out.put("rejectDuplicates", rejectDuplicates);
+        out.put("rejected", rejected.sum());
+        return out;
+    }
+
+    @Override
+    public void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+        put(token.getTokenId(), token.getPatientId(), doctorId, slot, State.ALLOCATED);
+    }
+
+    @Override
+    public void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+        put(token.getTokenId(), token.getPatientId(), doctorId, slot, State.ALLOCATED);
+    }
+
+    @Override
+    public void onWaitlisted(String doctorId, TimeSlot slot, Token token, long version) {
+        put(token.getTokenId(), token.getPatientId(), doctorId, slot, State.WAITING);
+    }
+
+    @Override
+    public void onEvicted(String doctorId, TimeSlot slot, Token token, long version) {
+        put(token.getTokenId(), token.getPatientId(), doctorId, slot, State.WAITING);
+    }
+
+    @Override
+    public void onDisplaced(String doctorId, TimeSlot slot, Token token, long version) {
+        put(token.getTokenId(), token.getPatientId(), doctorId, slot, State.WAITING);
+    }
+
+    @Override
+    public void onCancelled(String doctorId, TimeSlot slot, Token token, long version) {
+        Entry entry = byToken.get(token.getTokenId());
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    private void put(String tokenId, String patientId, String doctorId, TimeSlot slot, State state) {
+        Entry previous = byToken.put(tokenId, entry(tokenId, patientId, doctorId, slot, state));
+        if (previous == null) {
+            // Not reserved: booked while no index was installed, or restored
+            byPatient.compute(patientId, (id, held) -> with(held, tokenId));
+        }
+    }
+
+    private void remove(Entry entry) {
+        byPatient.computeIfPresent(entry.patientId(), (patientId, held) -> {
+            byToken.remove(entry.tokenId());
+            String[] rest = without(held, entry.tokenId());
+            return rest.length == 0 ? null : rest;
+        });
+    }
+
+    private static Entry entry(String tokenId, String patientId, String doctorId, TimeSlot slot, State state) {
+        return new Entry(tokenId, patientId, doctorId, slot.getSlotId(), state,
+                slot.getStartMinute(), slot.getEndMinute());
+    }
+
+    private static String[] with(String[] held, String tokenId) {
+        if (held == null) {
+            return new String[]{tokenId};
+        }
+        for (String id : held) {
+            if (id.equals(tokenId)) {
+                return held;
+            }
+        }
+        String[] next = Arrays.copyOf(held, held.length + 1);
+        next[held.length] = tokenId;
+        return next;
+    }
+
+    private static String[] without(String[] held, String tokenId) {
+        for (int i = 0; i < held.length; i++) {
+            if (held[i].equals(tokenId)) {
+                String[] next = new String[held.length - 1];
+                System.arraycopy(held, 0, next, 0, i);
+                System.arraycopy(held, i + 1, next, i, held.length - i - 1);
+                return next;
+            }
+        }
+        return held;
+    }
+}
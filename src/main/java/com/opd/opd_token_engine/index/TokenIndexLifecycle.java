@@ -0,0 +1,49 @@
+package com.opd.opd_token_engine.index;
+
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Installs the token index once the store is seeded and recovered.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.token-index.enabled", havingValue = "true", matchIfMissing = true)
+public class TokenIndexLifecycle implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenIndexLifecycle.class);
+
+    private final TokenIndex index;
+
+    public TokenIndexLifecycle(@Value("${opd.token-index.reject-duplicates:false}") boolean rejectDuplicates) {
+        this.index = new TokenIndex(rejectDuplicates);
+    }
+
+    // After every CommandLineRunner, so seeding and journal recovery are done
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Listening first, so no booking falls between the scan and the events
+        SlotEvents.register(index);
+        index.indexAll(InMemoryStore.doctors);
+        TokenLookup.install(index);
+        log.info("Token index enabled [Tokens={}, RejectDuplicates={}]",
+                index.metrics().get("tokens"), index.isRejectingDuplicates());
+    }
+
+    public TokenIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void destroy() {
+        TokenLookup.uninstall(index);
+        SlotEvents.unregister(index);
+    }
+}
@@ -0,0 +1,28 @@
+package com.opd.opd_token_engine.index;
+
+/**
+ * Static handle to the token index, mirroring the static engine and store.
+ * With no index installed bookings are not checked for duplicates and
+ * tokens can only be found through their doctor and slot.
+ */
+public final class TokenLookup {
+
+    private static volatile TokenIndex installed;
+
+    private TokenLookup() {
+    }
+
+    public static void install(TokenIndex index) {
+        installed = index;
+    }
+
+    public static void uninstall(TokenIndex index) {
+        if (installed == index) {
+            installed = null;
+        }
+    }
+
+    public static TokenIndex current() {
+        return installed;
+    }
+}
@@ -0,0 +1,77 @@
+package com.opd.opd_token_engine.journal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recovery and snapshot figures: what startup loaded and replayed, and the
+ * cost of the latest snapshot.
+ */
+public class CheckpointMetrics {
+
+    private volatile StoreSnapshot.LoadStats load;
+    private volatile JournalReplayer.ReplayStats replay;
+    private volatile StoreSnapshot.WriteStats lastSnapshot;
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong snapshotFailures = new AtomicLong();
+    private final AtomicLong snapshotMillisTotal = new AtomicLong();
+
+    void recordRecovery(StoreSnapshot.LoadStats load, JournalReplayer.ReplayStats replay) {
+        this.load = load;
+        this.replay = replay;
+    }
+
+    void recordSnapshot(StoreSnapshot.WriteStats stats) {
+        lastSnapshot = stats;
+        snapshots.incrementAndGet();
+        snapshotMillisTotal.addAndGet(stats.elapsedMillis());
+    }
+
+    void recordSnapshotFailure() {
+        snapshotFailures.incrementAndGet();
+    }
+
+    public StoreSnapshot.LoadStats getLoad() {
+        return load;
+    }
+
+    public JournalReplayer.ReplayStats getReplay() {
+        return replay;
+    }
+
+    public StoreSnapshot.WriteStats getLastSnapshot() {
+        return lastSnapshot;
+    }
+
+    public long getSnapshotCount() {
+        return snapshots.get();
+    }
+
+    public long getSnapshotFailures() {
+        return snapshotFailures.get();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        StoreSnapshot.LoadStats l = load;
+        out.put("snapshot.load.millis", l != null ? l.elapsedMillis() : 0);
+        out.put("snapshot.load.bytes", l != null ? l.bytes() : 0);
+        out.put("snapshot.load.tokens", l != null ? l.tokens() : 0);
+
+        JournalReplayer.ReplayStats r = replay;
+        out.put("journal.replay.millis", r != null ? r.elapsedMillis() : 0);
+        out.put("journal.replay.events", r != null ? r.events() : 0);
+        out.put("journal.replay.skipped", r != null ? r.skipped() : 0);
+
+        StoreSnapshot.WriteStats w = lastSnapshot;
+        out.put("snapshot.write.count", snapshots.get());
+        out.put("snapshot.write.failures", snapshotFailures.get());
+        out.put("snapshot.write.millis.total", snapshotMillisTotal.get());
+        out.put("snapshot.write.last.millis", w != null ? w.elapsedMillis() : 0);
+        out.put("snapshot.write.last.bytes", w != null ? w.bytes() : 0);
+        out.put("snapshot.write.last.tokens", w != null ? w.tokens() : 0);
+        out.put("snapshot.write.last.journal-offset", w != null ? w.journalOffset() : 0);
+        return out;
+    }
+}
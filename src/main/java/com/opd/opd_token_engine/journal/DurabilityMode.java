@@ -0,0 +1,19 @@
+package com.opd.opd_token_engine.journal;
+
+/**
+ * When journal writes are forced to stable storage.
+ */
+public enum DurabilityMode {
+
+    /** Written to the OS page cache only; survives a JVM crash, not power loss. */
+    NONE,
+
+    /** fsync at most once per flush interval; requests never wait. */
+    PERIODIC,
+
+    /**
+     * Every batch is fsynced and requests wait for the batch holding their
+     * events. Concurrent requests share one fsync (group commit).
+     */
+    SYNC
+}
@@ -0,0 +1,275 @@
+package com.opd.opd_token_engine.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of slot events.
+ * <p>
+ * Request threads only enqueue events. A single writer thread drains the
+ * queue in batches, encodes them into a direct buffer and writes them through
+ * a FileChannel, forcing to disk according to the DurabilityMode. In SYNC mode
+ * the request thread waits in onCommit, after its slot locks are released,
+ * until the batch holding its events is durable.
+ */
+public class EventJournal extends JournalingListener implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EventJournal.class);
+
+    private static final int MAX_BATCH = 4096;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final DurabilityMode durability;
+    private final long flushIntervalNanos;
+
+    private final LinkedBlockingQueue<JournalEvent> pending = new LinkedBlockingQueue<>();
+    private final ThreadLocal<JournalEvent> lastAppended = new ThreadLocal<>();
+    // Lock/Condition rather than wait/notify so SYNC waits unmount virtual threads
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private final Thread writer;
+
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long written;
+    private volatile long writtenOffset;
+    private volatile long fsyncs;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    public EventJournal(Path path, DurabilityMode durability, long flushIntervalMillis) throws IOException {
+        this.path = path;
+        this.durability = durability;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(JournalCodec.HEADER_BYTES);
+            JournalCodec.writeHeader(header);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        channel.position(channel.size());
+        this.writtenOffset = channel.position();
+
+        this.writer = new Thread(this::runWriter, "opd-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public DurabilityMode getDurability() {
+        return durability;
+    }
+
+    public long getAppendedCount() {
+        return appended.get();
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    public long getFsyncCount() {
+        return fsyncs;
+    }
+
+    /**
+     * Current end of the journal file, i.e. where the next batch will land.
+     */
+    public long position() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * End of the last complete record handed to the file. Everything below it
+     * was appended before this call, so a snapshot captured afterwards already
+     * reflects it and replay can resume from here.
+     */
+    public long checkpointOffset() {
+        return writtenOffset;
+    }
+
+    @Override
+    public void onCommit() {
+        if (durability != DurabilityMode.SYNC) {
+            return;
+        }
+        JournalEvent last = lastAppended.get();
+        if (last == null) {
+            return;
+        }
+        lastAppended.set(null);
+        awaitDurable(last);
+    }
+
+    @Override
+    public Runnable detachCommit() {
+        if (durability != DurabilityMode.SYNC) {
+            return null;
+        }
+        JournalEvent last = lastAppended.get();
+        if (last == null) {
+            return null;
+        }
+        lastAppended.set(null);
+        return () -> awaitDurable(last);
+    }
+
+    private void awaitDurable(JournalEvent last) {
+        // Batches are written in queue order, so our last event being durable
+        // implies every earlier event of this request is too
+        durableLock.lock();
+        try {
+            while (!last.durable && failure == null) {
+                try {
+                    durableAdvanced.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            durableLock.unlock();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Event journal unavailable", failure);
+        }
+    }
+
+    @Override
+    protected void append(JournalEvent event) {
+        pending.offer(event);
+        appended.incrementAndGet();
+        if (durability == DurabilityMode.SYNC) {
+            lastAppended.set(event);
+        }
+    }
+
+    private void runWriter() {
+        List<JournalEvent> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        CRC32 crc = new CRC32();
+        long lastForce = System.nanoTime();
+        boolean dirty = false;
+
+        while (running || !pending.isEmpty()) {
+            try {
+                JournalEvent first = pending.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch, buffer, crc);
+                    dirty = true;
+                }
+
+                long now = System.nanoTime();
+                boolean forceNow = durability == DurabilityMode.SYNC
+                        || (durability == DurabilityMode.PERIODIC && now - lastForce >= flushIntervalNanos);
+                if (dirty && forceNow) {
+                    channel.force(false);
+                    fsyncs++;
+                    lastForce = now;
+                    dirty = false;
+                }
+                markDurable(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // Not interrupted by close(): an interrupt would close the FileChannel
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Event journal write failed [Path={}]", path, e);
+                failure = e;
+                markDurable(batch);
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<JournalEvent> batch, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.clear();
+        for (JournalEvent event : batch) {
+            if (buffer.remaining() < JournalCodec.MAX_RECORD_BYTES) {
+                drain(buffer);
+            }
+            int mark = buffer.position();
+            try {
+                JournalCodec.encode(event, buffer, crc);
+            } catch (RuntimeException e) {
+                buffer.position(mark);
+                log.error("Dropping unencodable journal event [Type={}, Doctor={}, Token={}]",
+                        event.type, event.doctorId, event.tokenId, e);
+            }
+        }
+        drain(buffer);
+        written += batch.size();
+    }
+
+    private void drain(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        writtenOffset = channel.position();
+    }
+
+    private void markDurable(List<JournalEvent> batch) {
+        if (durability != DurabilityMode.SYNC || batch.isEmpty()) {
+            return;
+        }
+        for (JournalEvent event : batch) {
+            event.durable = true;
+        }
+        durableLock.lock();
+        try {
+            durableAdvanced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the writer once everything queued so far is written, then forces
+     * the journal to disk. The writer notices within one flush interval.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.model.Doctor;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Journal records outside the journal file, for shipping events to another
+ * process: the same CRC-checked record encoding, and replay one event at a
+ * time onto a store restored from a snapshot.
+ */
+public final class EventStream {
+
+    public static final int MAX_RECORD_BYTES = JournalCodec.MAX_RECORD_BYTES;
+
+    private EventStream() {
+    }
+
+    public static void encode(JournalEvent event, ByteBuffer out, CRC32 crc) {
+        JournalCodec.encode(event, out, crc);
+    }
+
+    /**
+     * Decodes one record, or returns null if it is torn or corrupt.
+     */
+    public static JournalEvent decode(ByteBuffer in, CRC32 crc) {
+        return JournalCodec.decode(in, crc);
+    }
+
+    /**
+     * Applies events to a store like journal replay, skipping those the
+     * store's restored state already reflects. Not thread-safe; create one per
+     * restore and feed it from a single thread.
+     */
+    public static final class Applier {
+
+        private final Map<String, Doctor> doctors;
+        private final Map<Object, Long> baselines = new IdentityHashMap<>();
+
+        public Applier(Map<String, Doctor> doctors) {
+            this.doctors = doctors;
+        }
+
+        public boolean apply(JournalEvent event) {
+            return JournalReplayer.apply(event, doctors, baselines, EngineClock.system().millis());
+        }
+    }
+}
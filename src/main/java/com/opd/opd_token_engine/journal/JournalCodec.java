@@ -0,0 +1,155 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.model.TokenSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of the journal.
+ * <pre>
+ * file   := MAGIC:int VERSION:short record*
+ * record := length:int crc32:int body      (length and crc cover body only)
+ * body   := type:byte doctorId:str
+ *           [slotId:str slotVersion:long]                              slot events
+ *           [tokenId:str]                                              token events
+ *           [patientId:str source:byte basePriority:int
+ *            arrivalMillis:long reallocationCount:int]                 ALLOCATE, WAITLIST
+ *           [capacity:int]                                             RESIZE
+ *           [delayFactor:double delayVersion:long]                     DELAY
+ * str    := length:short utf8-bytes
+ * </pre>
+ * A torn or corrupt record ends the readable journal.
+ */
+final class JournalCodec {
+
+    static final int MAGIC = 0x4F50444A; // "OPDJ"
+    static final short VERSION = 3;
+    static final int HEADER_BYTES = 6;
+    static final int RECORD_OVERHEAD = 8;
+
+    /** Upper bound on a single encoded record, used to size write buffers. */
+    static final int MAX_RECORD_BYTES = RECORD_OVERHEAD + 1 + 4 * (2 + 0xFFFF) + 1 + 4 + 8 + 8 + 4;
+
+    private JournalCodec() {
+    }
+
+    static void writeHeader(ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+    }
+
+    static boolean readHeader(ByteBuffer in) {
+        return in.remaining() >= HEADER_BYTES && in.getInt() == MAGIC && in.getShort() == VERSION;
+    }
+
+    static void encode(JournalEvent event, ByteBuffer out, CRC32 crc) {
+        int start = out.position();
+        out.position(start + RECORD_OVERHEAD);
+        int bodyStart = out.position();
+
+        out.put((byte) event.type.ordinal());
+        putString(out, event.doctorId);
+        if (event.type == JournalEvent.Type.DELAY) {
+            out.putDouble(event.delayFactor);
+            out.putLong(event.slotVersion);
+        } else {
+            putString(out, event.slotId);
+            out.putLong(event.slotVersion);
+            if (event.type == JournalEvent.Type.RESIZE) {
+                out.putInt(event.capacity);
+            } else {
+                putString(out, event.tokenId);
+            }
+            if (event.carriesToken()) {
+                putString(out, event.patientId);
+                out.put((byte) event.source.ordinal());
+                out.putInt(event.basePriority);
+                out.putLong(event.arrivalMillis);
+                out.putInt(event.reallocationCount);
+            }
+        }
+
+        int end = out.position();
+        crc.reset();
+        crc.update(out.duplicate().position(bodyStart).limit(end));
+        out.putInt(start, end - bodyStart);
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Decodes the record at the buffer's position and advances past it, or
+     * returns null (position unchanged) if the record is incomplete or corrupt.
+     */
+    static JournalEvent decode(ByteBuffer in, CRC32 crc) {
+        int start = in.position();
+        if (in.remaining() < RECORD_OVERHEAD) {
+            return null;
+        }
+        int length = in.getInt();
+        int expectedCrc = in.getInt();
+        if (length <= 0 || length > in.remaining()) {
+            in.position(start);
+            return null;
+        }
+        int bodyStart = in.position();
+        crc.reset();
+        crc.update(in.duplicate().limit(bodyStart + length));
+        if ((int) crc.getValue() != expectedCrc) {
+            in.position(start);
+            return null;
+        }
+
+        JournalEvent.Type type = JournalEvent.Type.of(in.get());
+        if (type == null) {
+            in.position(start);
+            return null;
+        }
+        String doctorId = getString(in);
+        JournalEvent event;
+        if (type == JournalEvent.Type.DELAY) {
+            double delayFactor = in.getDouble();
+            event = JournalEvent.delay(doctorId, delayFactor, in.getLong());
+        } else {
+            String slotId = getString(in);
+            long slotVersion = in.getLong();
+            if (type == JournalEvent.Type.RESIZE) {
+                event = JournalEvent.resize(doctorId, slotId, in.getInt(), slotVersion);
+            } else if (type == JournalEvent.Type.ALLOCATE || type == JournalEvent.Type.WAITLIST) {
+                String tokenId = getString(in);
+                String patientId = getString(in);
+                TokenSource source = TokenSource.values()[in.get()];
+                int basePriority = in.getInt();
+                long arrivalMillis = in.getLong();
+                int reallocationCount = in.getInt();
+                event = new JournalEvent(type, doctorId, slotId, slotVersion, tokenId, patientId,
+                        source, basePriority, arrivalMillis, reallocationCount, 0, 0);
+            } else {
+                event = new JournalEvent(type, doctorId, slotId, slotVersion, getString(in),
+                        null, null, 0, 0, 0, 0, 0);
+            }
+        }
+        in.position(bodyStart + length);
+        return event;
+    }
+
+    static int stringBytes(String value) {
+        return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Identifier too long for journal: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+
+/**
+ * One recorded slot or doctor mutation. ALLOCATE and WAITLIST carry the full
+ * token since they introduce it; the other token events reference it by id.
+ * RESIZE carries the slot's new capacity and no token.
+ */
+public final class JournalEvent {
+
+    public enum Type {
+        ALLOCATE, WAITLIST, EVICT, CANCEL, PROMOTE, DELAY, RESIZE, DISPLACE;
+
+        private static final Type[] VALUES = values();
+
+        static Type of(int code) {
+            return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+        }
+    }
+
+    public final Type type;
+    public final String doctorId;
+    public final String slotId;
+    public final long slotVersion; // doctor delay version for DELAY
+    public final String tokenId;
+    public final String patientId;
+    public final TokenSource source;
+    public final int basePriority;
+    public final long arrivalMillis;
+    public final int reallocationCount;
+    public final double delayFactor;
+    public final int capacity;
+
+    // Set by the writer once the batch holding this event has been forced
+    volatile boolean durable;
+
+    JournalEvent(Type type, String doctorId, String slotId, long slotVersion, String tokenId,
+                 String patientId, TokenSource source, int basePriority, long arrivalMillis,
+                 int reallocationCount, double delayFactor, int capacity) {
+        this.type = type;
+        this.doctorId = doctorId;
+        this.slotId = slotId;
+        this.slotVersion = slotVersion;
+        this.tokenId = tokenId;
+        this.patientId = patientId;
+        this.source = source;
+        this.basePriority = basePriority;
+        this.arrivalMillis = arrivalMillis;
+        this.reallocationCount = reallocationCount;
+        this.delayFactor = delayFactor;
+        this.capacity = capacity;
+    }
+
+    static JournalEvent withToken(Type type, String doctorId, TimeSlot slot, Token token, long version) {
+        return new JournalEvent(type, doctorId, slot.getSlotId(), version, token.getTokenId(),
+                token.getPatientId(), token.getSource(), token.getBasePriority(),
+                token.getArrivalMillis(), token.getReallocationCount(), 0, 0);
+    }
+
+    static JournalEvent byId(Type type, String doctorId, TimeSlot slot, Token token, long version) {
+        return new JournalEvent(type, doctorId, slot.getSlotId(), version, token.getTokenId(),
+                null, null, 0, 0, 0, 0, 0);
+    }
+
+    static JournalEvent delay(String doctorId, double delayFactor, long delayVersion) {
+        return new JournalEvent(Type.DELAY, doctorId, null, delayVersion, null,
+                null, null, 0, 0, 0, delayFactor, 0);
+    }
+
+    static JournalEvent resize(String doctorId, String slotId, int capacity, long version) {
+        return new JournalEvent(Type.RESIZE, doctorId, slotId, version, null,
+                null, null, 0, 0, 0, 0, capacity);
+    }
+
+    boolean carriesToken() {
+        return type == Type.ALLOCATE || type == Type.WAITLIST;
+    }
+
+    /**
+     * Recreates the token introduced by an ALLOCATE or WAITLIST event.
+     */
+    public Token toToken() {
+        return new Token(tokenId, patientId, source, basePriority, arrivalMillis, reallocationCount);
+    }
+}
@@ -0,0 +1,129 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers InMemoryStore at startup, after doctors are seeded: loads the
+ * latest snapshot, replays the journal tail after it, then journals every
+ * further slot event and takes a snapshot every snapshot interval.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "opd.journal.enabled", havingValue = "true")
+public class JournalLifecycle implements CommandLineRunner, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalLifecycle.class);
+
+    private final Path path;
+    private final DurabilityMode durability;
+    private final long flushIntervalMillis;
+    private final Path snapshotPath;
+    private final long snapshotIntervalMillis;
+    private final SlotConcurrencyMode slotConcurrencyMode;
+    private final CheckpointMetrics metrics = new CheckpointMetrics();
+
+    private EventJournal journal;
+    private ScheduledExecutorService snapshotter;
+
+    public JournalLifecycle(
+            @Value("${opd.journal.path:data/opd-journal.bin}") Path path,
+            @Value("${opd.journal.durability:PERIODIC}") DurabilityMode durability,
+            @Value("${opd.journal.flush-interval-ms:5}") long flushIntervalMillis,
+            @Value("${opd.journal.snapshot-path:data/opd-snapshot.bin}") Path snapshotPath,
+            @Value("${opd.journal.snapshot-interval-ms:60000}") long snapshotIntervalMillis,
+            @Value("${opd.slot.concurrency-mode:MONITOR}") SlotConcurrencyMode slotConcurrencyMode) {
+        this.path = path;
+        this.durability = durability;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.snapshotPath = snapshotPath;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.slotConcurrencyMode = slotConcurrencyMode;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        StoreSnapshot.LoadStats loaded = StoreSnapshot.load(snapshotPath, InMemoryStore.doctors, slotConcurrencyMode);
+        if (loaded != null) {
+            log.info("Snapshot loaded [Path={}, Doctors={}, Slots={}, Tokens={}, Bytes={}, Millis={}]",
+                    snapshotPath, loaded.doctors(), loaded.slots(), loaded.tokens(), loaded.bytes(),
+                    loaded.elapsedMillis());
+        }
+
+        long fromOffset = loaded != null ? loaded.journalOffset() : JournalCodec.HEADER_BYTES;
+        JournalReplayer.ReplayStats stats = JournalReplayer.replay(path, fromOffset, InMemoryStore.doctors);
+        log.info("Journal replayed [Path={}, FromOffset={}, Events={}, Skipped={}, Bytes={}, Millis={}]",
+                path, fromOffset, stats.events(), stats.skipped(), stats.bytes(), stats.elapsedMillis());
+        metrics.recordRecovery(loaded, stats);
+
+        journal = new EventJournal(path, durability, flushIntervalMillis);
+        SlotEvents.register(journal);
+
+        if (snapshotIntervalMillis > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "opd-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshotter.scheduleWithFixedDelay(this::checkpointQuietly,
+                    snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes a snapshot now without pausing allocations.
+     */
+    public StoreSnapshot.WriteStats checkpoint() throws IOException {
+        StoreSnapshot.WriteStats stats = StoreSnapshot.write(snapshotPath, InMemoryStore.doctors,
+                journal.checkpointOffset());
+        metrics.recordSnapshot(stats);
+        log.info("Snapshot written [Path={}, Tokens={}, Bytes={}, JournalOffset={}, Millis={}]",
+                snapshotPath, stats.tokens(), stats.bytes(), stats.journalOffset(), stats.elapsedMillis());
+        return stats;
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            metrics.recordSnapshotFailure();
+            log.error("Snapshot failed [Path={}]", snapshotPath, e);
+        }
+    }
+
+    public EventJournal getJournal() {
+        return journal;
+    }
+
+    public CheckpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            snapshotter.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        if (journal != null) {
+            SlotEvents.unregister(journal);
+            journal.close();
+        }
+    }
+}
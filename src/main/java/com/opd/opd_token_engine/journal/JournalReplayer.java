@@ -0,0 +1,212 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.policy.PriorityPolicies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Rebuilds slot state from a journal.
+ * <p>
+ * Replay applies recorded outcomes rather than re-running allocation
+ * decisions, so it does not depend on capacities, clocks or policy at replay
+ * time. Doctors and slots must already exist, seeded from configuration or
+ * restored from a snapshot; events for unknown doctors or slots are skipped.
+ * A torn tail left by a crash is truncated so the journal can be appended to
+ * again.
+ */
+public final class JournalReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalReplayer.class);
+
+    public record ReplayStats(long events, long skipped, long bytes, long elapsedMillis) {
+    }
+
+    private JournalReplayer() {
+    }
+
+    public static ReplayStats replay(Path path, Map<String, Doctor> doctors) throws IOException {
+        return replay(path, JournalCodec.HEADER_BYTES, doctors);
+    }
+
+    /**
+     * Replays the journal from a byte offset at a record boundary, typically
+     * the one recorded in a snapshot. Events the snapshot already reflects,
+     * i.e. at or below the slot or delay version it restored, are skipped.
+     */
+    public static ReplayStats replay(Path path, long fromOffset, Map<String, Doctor> doctors) throws IOException {
+        long start = System.nanoTime();
+        if (!Files.exists(path)) {
+            return new ReplayStats(0, 0, 0, 0);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size < JournalCodec.HEADER_BYTES) {
+                channel.truncate(0);
+                return new ReplayStats(0, 0, 0, 0);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(JournalCodec.HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (!JournalCodec.readHeader(header.flip())) {
+                throw new IOException("Not an OPD event journal: " + path);
+            }
+
+            long from = Math.max(fromOffset, JournalCodec.HEADER_BYTES);
+            if (from > size) {
+                log.warn("Journal shorter than snapshot offset, nothing to replay [Path={}, Offset={}, FileBytes={}]",
+                        path, from, size);
+                return new ReplayStats(0, 0, 0, elapsedMillis(start));
+            }
+            ByteBuffer in = ByteBuffer.allocate(Math.toIntExact(size - from));
+            readFully(channel, in, from);
+            in.flip();
+
+            CRC32 crc = new CRC32();
+            long now = EngineClock.system().millis();
+            Map<Object, Long> baselines = new IdentityHashMap<>();
+            long events = 0;
+            long skipped = 0;
+            JournalEvent event;
+            while ((event = JournalCodec.decode(in, crc)) != null) {
+                if (apply(event, doctors, baselines, now)) {
+                    events++;
+                } else {
+                    skipped++;
+                }
+            }
+
+            long validEnd = from + in.position();
+            if (validEnd < size) {
+                log.warn("Truncating torn journal tail [Path={}, ValidBytes={}, FileBytes={}]",
+                        path, validEnd, size);
+                channel.truncate(validEnd);
+            }
+            return new ReplayStats(events, skipped, in.position(), elapsedMillis(start));
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+            position += read;
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Applies one event unless its doctor or slot is unknown or the state
+     * already reflects it. Baselines hold each doctor's delay version and each
+     * slot's version as first seen, i.e. as restored before replay; comparing
+     * against them rather than the live counters tolerates the out-of-order
+     * versions that fast-path allocations and concurrent delays can journal.
+     */
+    static boolean apply(JournalEvent event, Map<String, Doctor> doctors, Map<Object, Long> baselines, long now) {
+        Doctor doctor = doctors.get(event.doctorId);
+        if (doctor == null) {
+            return false;
+        }
+        if (event.type == JournalEvent.Type.DELAY) {
+            if (event.slotVersion <= baselines.computeIfAbsent(doctor, d -> doctor.getDelayVersion())) {
+                return false;
+            }
+            doctor.replayDelay(event.delayFactor, event.slotVersion);
+            return true;
+        }
+
+        TimeSlot slot = doctor.getSlots().get(event.slotId);
+        if (slot == null || event.slotVersion <= baselines.computeIfAbsent(slot, s -> slot.getVersion())) {
+            return false;
+        }
+
+        // Restored tokens are keyed under the doctor's current policy
+        PriorityTable priorities = PriorityPolicies.forDoctor(event.doctorId);
+        slot.lock();
+        try {
+            switch (event.type) {
+                case ALLOCATE -> {
+                    Token token = event.toToken();
+                    priorities.score(token, now);
+                    AllocationEngine.keyedOutside(slot, priorities);
+                    token.setAllocated(true);
+                    slot.getAllocatedTokens().add(token);
+                    slot.occupySeat();
+                }
+                case WAITLIST -> {
+                    Token token = event.toToken();
+                    priorities.score(token, now);
+                    AllocationEngine.keyedOutside(slot, priorities);
+                    token.markOffSeat(now);
+                    slot.getWaitingQueue().add(token);
+                }
+                case EVICT -> {
+                    Token token = slot.getAllocatedTokens().remove(event.tokenId);
+                    if (token != null) {
+                        token.incrementPreemption();
+                        token.setAllocated(false);
+                        priorities.score(token, now);
+                        AllocationEngine.keyedOutside(slot, priorities);
+                        token.markOffSeat(now);
+                        slot.getWaitingQueue().add(token);
+                        slot.releaseSeat();
+                    }
+                }
+                case CANCEL -> {
+                    if (slot.getAllocatedTokens().remove(event.tokenId) != null) {
+                        slot.releaseSeat();
+                    } else {
+                        slot.getWaitingQueue().remove(event.tokenId);
+                    }
+                }
+                case DISPLACE -> {
+                    // Capacity loss, not preemption: the token keeps its priority
+                    Token token = slot.getAllocatedTokens().remove(event.tokenId);
+                    if (token != null) {
+                        token.setAllocated(false);
+                        token.markOffSeat(now);
+                        slot.getWaitingQueue().add(token);
+                        slot.releaseSeat();
+                    }
+                }
+                case RESIZE -> slot.updateCapacity(event.capacity);
+                case PROMOTE -> {
+                    Token token = slot.getWaitingQueue().remove(event.tokenId);
+                    if (token != null) {
+                        token.setAllocated(true);
+                        slot.getAllocatedTokens().add(token);
+                        slot.occupySeat();
+                    }
+                }
+                default -> {
+                    return false;
+                }
+            }
+            slot.restoreVersion(event.slotVersion);
+            return true;
+        } finally {
+            slot.unlock();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+
+/**
+ * Turns slot events into journal records, for listeners that ship them
+ * somewhere: the journal file, or a replication stream. append runs on the
+ * request thread under the slot lock and must not block.
+ */
+public abstract class JournalingListener implements SlotEventListener {
+
+    protected abstract void append(JournalEvent event);
+
+    @Override
+    public void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+        append(JournalEvent.withToken(JournalEvent.Type.ALLOCATE, doctorId, slot, token, version));
+    }
+
+    @Override
+    public void onWaitlisted(String doctorId, TimeSlot slot, Token token, long version) {
+        append(JournalEvent.withToken(JournalEvent.Type.WAITLIST, doctorId, slot, token, version));
+    }
+
+    @Override
+    public void onEvicted(String doctorId, TimeSlot slot, Token token, long version) {
+        append(JournalEvent.byId(JournalEvent.Type.EVICT, doctorId, slot, token, version));
+    }
+
+    @Override
+    public void onCancelled(String doctorId, TimeSlot slot, Token token, long version) {
+        append(JournalEvent.byId(JournalEvent.Type.CANCEL, doctorId, slot, token, version));
+    }
+
+    @Override
+    public void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+        append(JournalEvent.byId(JournalEvent.Type.PROMOTE, doctorId, slot, token, version));
+    }
+
+    @Override
+    public void onDisplaced(String doctorId, TimeSlot slot, Token token, long version) {
+        append(JournalEvent.byId(JournalEvent.Type.DISPLACE, doctorId, slot, token, version));
+    }
+
+    @Override
+    public void onResized(String doctorId, TimeSlot slot, int capacity, long version) {
+        append(JournalEvent.resize(doctorId, slot.getSlotId(), capacity, version));
+    }
+
+    @Override
+    public void onDelayApplied(String doctorId, double delayFactor, long delayVersion) {
+        append(JournalEvent.delay(doctorId, delayFactor, delayVersion));
+    }
+}
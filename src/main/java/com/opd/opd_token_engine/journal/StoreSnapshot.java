@@ -0,0 +1,340 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.policy.PriorityPolicies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of every doctor, slot and token queue in a memory-mapped file.
+ * <pre>
+ * file   := MAGIC:int VERSION:short journalOffset:long takenAtMillis:long
+ *           doctorCount:int doctor* crc32:int          (crc covers everything before it)
+ * doctor := doctorId:str efficiency:double delayVersion:long slotCount:int slot*
+ * slot   := slotId:str baseCapacity:int capacity:int version:long
+ *           allocatedCount:int waitingCount:int token*  (allocated, then waiting)
+ * token  := tokenId:str patientId:str source:byte basePriority:int
+ *           arrivalMillis:long reallocationCount:int
+ * </pre>
+ * Snapshots are taken without pausing allocations: each slot is copied under
+ * its own lock, so every slot is internally consistent at its recorded
+ * version and the journal tail brings them all forward to the same point.
+ * Tokens are stored best-first with FIFO order among ties preserved, so a
+ * restored queue breaks ties exactly like the original.
+ */
+public final class StoreSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreSnapshot.class);
+
+    static final int MAGIC = 0x4F504453; // "OPDS"
+    static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 8;
+    private static final int TOKEN_FIXED_BYTES = 1 + 4 + 8 + 4;
+
+    public record WriteStats(long bytes, int doctors, int slots, int tokens, long journalOffset,
+                             long elapsedMillis) {
+    }
+
+    public record LoadStats(long bytes, int doctors, int slots, int tokens, long journalOffset,
+                            long elapsedMillis) {
+    }
+
+    private record TokenImage(String tokenId, String patientId, TokenSource source, int basePriority,
+                              long arrivalMillis, int reallocationCount) {
+
+        static TokenImage of(Token token) {
+            return new TokenImage(token.getTokenId(), token.getPatientId(), token.getSource(),
+                    token.getBasePriority(), token.getArrivalMillis(), token.getReallocationCount());
+        }
+
+        int bytes() {
+            return JournalCodec.stringBytes(tokenId) + JournalCodec.stringBytes(patientId) + TOKEN_FIXED_BYTES;
+        }
+    }
+
+    private record SlotImage(String slotId, int baseCapacity, int capacity, long version,
+                             List<TokenImage> allocated, List<TokenImage> waiting) {
+    }
+
+    private record DoctorImage(String doctorId, double efficiency, long delayVersion, List<SlotImage> slots) {
+    }
+
+    private StoreSnapshot() {
+    }
+
+    /**
+     * Captures the store and writes it to path, replacing any previous
+     * snapshot atomically. journalOffset must be read before this call, see
+     * EventJournal.checkpointOffset().
+     */
+    public static WriteStats write(Path path, Map<String, Doctor> doctors, long journalOffset) throws IOException {
+        long start = System.nanoTime();
+
+        Captured captured = capture(doctors);
+        long size = HEADER_BYTES + captured.bytes() + 4;
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putLong(journalOffset);
+            out.putLong(EngineClock.system().millis());
+            putDoctors(out, captured.doctors());
+
+            CRC32 crc = new CRC32();
+            crc.update(out.duplicate().position(0).limit(out.position()));
+            out.putInt((int) crc.getValue());
+            out.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return new WriteStats(size, captured.doctors().size(), captured.slots(), captured.tokens(), journalOffset,
+                elapsed);
+    }
+
+    /**
+     * Restores doctors and slots from the snapshot at path into the store.
+     * Doctors missing from the store are created in the given mode; slots are
+     * replaced wholesale. Returns null, leaving the store untouched, if there
+     * is no usable snapshot.
+     */
+    public static LoadStats load(Path path, Map<String, Doctor> doctors, SlotConcurrencyMode mode) throws IOException {
+        long start = System.nanoTime();
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 + 4) { // doctorCount and crc
+                log.warn("Ignoring truncated snapshot [Path={}, Bytes={}]", path, size);
+                return null;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(in.duplicate().limit((int) size - 4));
+            if ((int) crc.getValue() != in.getInt((int) size - 4)) {
+                log.warn("Ignoring corrupt snapshot [Path={}, Bytes={}]", path, size);
+                return null;
+            }
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) {
+                throw new IOException("Not an OPD store snapshot: " + path);
+            }
+            long journalOffset = in.getLong();
+            in.getLong(); // takenAtMillis, informational
+
+            Restored restored = getDoctors(in, doctors, mode);
+
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            return new LoadStats(size, restored.doctors(), restored.slots(), restored.tokens(), journalOffset,
+                    elapsed);
+        }
+    }
+
+    /**
+     * Encodes the given doctors in the snapshot's doctor format, without the
+     * file header and checksum, e.g. to hand them to another node.
+     */
+    public static byte[] encodeDoctors(Map<String, Doctor> doctors) {
+        Captured captured = capture(doctors);
+        ByteBuffer out = ByteBuffer.allocate(Math.toIntExact(captured.bytes()));
+        putDoctors(out, captured.doctors());
+        return out.array();
+    }
+
+    /**
+     * Restores doctors encoded by encodeDoctors into the store, like load.
+     * Returns the number of doctors restored.
+     */
+    public static int decodeDoctors(ByteBuffer in, Map<String, Doctor> doctors, SlotConcurrencyMode mode) {
+        return getDoctors(in, doctors, mode).doctors();
+    }
+
+    private record Captured(List<DoctorImage> doctors, int slots, int tokens, long bytes) {
+    }
+
+    private record Restored(int doctors, int slots, int tokens) {
+    }
+
+    // Sizes are those of the doctorCount and doctor* part of the file
+    private static Captured capture(Map<String, Doctor> doctors) {
+        List<DoctorImage> images = new ArrayList<>(doctors.size());
+        long size = 4;
+        int slotCount = 0;
+        int tokenCount = 0;
+        for (Map.Entry<String, Doctor> entry : doctors.entrySet()) {
+            DoctorImage doctor = capture(entry.getKey(), entry.getValue());
+            images.add(doctor);
+            size += JournalCodec.stringBytes(doctor.doctorId()) + 8 + 8 + 4;
+            for (SlotImage slot : doctor.slots()) {
+                slotCount++;
+                size += JournalCodec.stringBytes(slot.slotId()) + 4 + 4 + 8 + 4 + 4;
+                for (TokenImage token : slot.allocated()) {
+                    size += token.bytes();
+                }
+                for (TokenImage token : slot.waiting()) {
+                    size += token.bytes();
+                }
+                tokenCount += slot.allocated().size() + slot.waiting().size();
+            }
+        }
+        return new Captured(images, slotCount, tokenCount, size);
+    }
+
+    private static void putDoctors(ByteBuffer out, List<DoctorImage> images) {
+        out.putInt(images.size());
+        for (DoctorImage doctor : images) {
+            JournalCodec.putString(out, doctor.doctorId());
+            out.putDouble(doctor.efficiency());
+            out.putLong(doctor.delayVersion());
+            out.putInt(doctor.slots().size());
+            for (SlotImage slot : doctor.slots()) {
+                JournalCodec.putString(out, slot.slotId());
+                out.putInt(slot.baseCapacity());
+                out.putInt(slot.capacity());
+                out.putLong(slot.version());
+                out.putInt(slot.allocated().size());
+                out.putInt(slot.waiting().size());
+                for (TokenImage token : slot.allocated()) {
+                    putToken(out, token);
+                }
+                for (TokenImage token : slot.waiting()) {
+                    putToken(out, token);
+                }
+            }
+        }
+    }
+
+    private static Restored getDoctors(ByteBuffer in, Map<String, Doctor> doctors, SlotConcurrencyMode mode) {
+        long now = EngineClock.system().millis();
+        int doctorCount = in.getInt();
+        int slotCount = 0;
+        int tokenCount = 0;
+        for (int d = 0; d < doctorCount; d++) {
+            String doctorId = JournalCodec.getString(in);
+            double efficiency = in.getDouble();
+            long delayVersion = in.getLong();
+            Doctor doctor = doctors.computeIfAbsent(doctorId, id -> new Doctor(id, efficiency, mode));
+            doctor.restoreDelay(efficiency, delayVersion);
+            PriorityTable priorities = PriorityPolicies.forDoctor(doctorId);
+
+            int slots = in.getInt();
+            for (int s = 0; s < slots; s++) {
+                String slotId = JournalCodec.getString(in);
+                int baseCapacity = in.getInt();
+                int capacity = in.getInt();
+                long version = in.getLong();
+                int allocated = in.getInt();
+                int waiting = in.getInt();
+
+                TimeSlot slot = doctor.restoreSlot(slotId, baseCapacity, capacity);
+                slot.lock();
+                try {
+                    for (int i = 0; i < allocated; i++) {
+                        Token token = getToken(in);
+                        priorities.score(token, now);
+                        token.setAllocated(true);
+                        slot.getAllocatedTokens().add(token);
+                        slot.occupySeat();
+                    }
+                    for (int i = 0; i < waiting; i++) {
+                        Token token = getToken(in);
+                        priorities.score(token, now);
+                        token.markOffSeat(now);
+                        slot.getWaitingQueue().add(token);
+                    }
+                    AllocationEngine.keyedOutside(slot, priorities);
+                    slot.restoreVersion(version);
+                } finally {
+                    slot.unlock();
+                }
+                slotCount++;
+                tokenCount += allocated + waiting;
+            }
+        }
+        return new Restored(doctorCount, slotCount, tokenCount);
+    }
+
+    private static DoctorImage capture(String doctorId, Doctor doctor) {
+        double efficiency;
+        long delayVersion;
+        synchronized (doctor) {
+            efficiency = doctor.getEfficiencyScore();
+            delayVersion = doctor.getDelayVersion();
+        }
+
+        List<SlotImage> slots = new ArrayList<>(doctor.getSlots().size());
+        for (TimeSlot slot : doctor.getSlots().values()) {
+            slots.add(capture(slot));
+        }
+        return new DoctorImage(doctorId, efficiency, delayVersion, slots);
+    }
+
+    private static SlotImage capture(TimeSlot slot) {
+        while (true) {
+            slot.lock();
+            try {
+                long version = slot.getVersion();
+                List<Token> allocated = slot.getAllocatedTokens().toList();
+                if (slot.isSettled(version)) {
+                    // Allocated queue is lowest-first; store it best-first like the waiting queue
+                    Collections.reverse(allocated);
+                    return new SlotImage(slot.getSlotId(), slot.getBaseCapacity(), slot.getCapacity(), version,
+                            allocated.stream().map(TokenImage::of).toList(),
+                            slot.getWaitingQueue().toList().stream().map(TokenImage::of).toList());
+                }
+            } finally {
+                slot.unlock();
+            }
+            // A fast-path allocation is mid-flight; it completes without the lock
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void putToken(ByteBuffer out, TokenImage token) {
+        JournalCodec.putString(out, token.tokenId());
+        JournalCodec.putString(out, token.patientId());
+        out.put((byte) token.source().ordinal());
+        out.putInt(token.basePriority());
+        out.putLong(token.arrivalMillis());
+        out.putInt(token.reallocationCount());
+    }
+
+    private static Token getToken(ByteBuffer in) {
+        String tokenId = JournalCodec.getString(in);
+        String patientId = JournalCodec.getString(in);
+        TokenSource source = TokenSource.values()[in.get()];
+        int basePriority = in.getInt();
+        long arrivalMillis = in.getLong();
+        int reallocationCount = in.getInt();
+        return new Token(tokenId, patientId, source, basePriority, arrivalMillis, reallocationCount);
+    }
+}
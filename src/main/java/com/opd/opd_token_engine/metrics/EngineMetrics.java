@@ -0,0 +1,84 @@
+package com.opd.opd_token_engine.metrics;
+
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotView;
+import com.opd.opd_token_engine.model.TimeSlot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Static switch and read side for the per-slot recorders, mirroring the
+ * static engine and store. With recording off the hot path pays one
+ * volatile read per call.
+ */
+public final class EngineMetrics {
+
+    private static volatile boolean enabled = true;
+
+    private EngineMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        EngineMetrics.enabled = enabled;
+    }
+
+    /**
+     * Totals plus one entry per doctor and slot, with queue sizes from each
+     * slot's published view, so a scrape never waits on a slot lock.
+     */
+    public static Map<String, Object> snapshot(Map<String, Doctor> doctors) {
+        long allocated = 0;
+        long preempted = 0;
+        long waitlisted = 0;
+        long cancelled = 0;
+        long contended = 0;
+        long waitlistDepth = 0;
+
+        Map<String, Object> perDoctor = new TreeMap<>();
+        for (Map.Entry<String, Doctor> doctor : doctors.entrySet()) {
+            Map<String, Object> perSlot = new TreeMap<>();
+            for (TimeSlot slot : doctor.getValue().getSlots().values()) {
+                SlotMetrics m = slot.getMetrics();
+                SlotView view = slot.view();
+                int depth = view.waiting().size();
+                int seated = view.allocated().size();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("capacity", slot.getCapacity());
+                entry.put("allocatedSize", seated);
+                entry.put("waitlistDepth", depth);
+                entry.putAll(m.toMap());
+                perSlot.put(slot.getSlotId(), entry);
+
+                allocated += m.getAllocated();
+                preempted += m.getPreempted();
+                waitlisted += m.getWaitlisted();
+                cancelled += m.getCancelled();
+                contended += m.getContended();
+                waitlistDepth += depth;
+            }
+            perDoctor.put(doctor.getKey(), perSlot);
+        }
+
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("allocated", allocated);
+        totals.put("preempted", preempted);
+        totals.put("waitlisted", waitlisted);
+        totals.put("cancelled", cancelled);
+        totals.put("preemptionRate", allocated + waitlisted == 0 ? 0.0
+                : (double) preempted / (allocated + waitlisted));
+        totals.put("contendedLockAcquisitions", contended);
+        totals.put("waitlistDepth", waitlistDepth);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("totals", totals);
+        out.put("doctors", perDoctor);
+        return out;
+    }
+}
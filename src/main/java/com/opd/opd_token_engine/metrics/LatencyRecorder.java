@@ -0,0 +1,141 @@
+package com.opd.opd_token_engine.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram over LongAdder buckets.
+ * <p>
+ * Every power of two is split into 8 linear sub-buckets, so a reported
+ * percentile is at most 12.5% above the true value. Values from 0 ns to about
+ * 68 s are tracked; larger ones land in the last bucket. A bucket's adder is
+ * created the first time a value lands in it, since latencies cluster in a
+ * few dozen buckets; recording is allocation-free once those exist and have
+ * grown their cells under contention.
+ */
+public class LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final VarHandle BUCKET = MethodHandles.arrayElementVarHandle(LongAdder[].class);
+
+    // Null until first recorded into
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = bucketOf(nanos);
+        LongAdder adder = (LongAdder) BUCKET.getAcquire(buckets, bucket);
+        if (adder == null) {
+            LongAdder created = new LongAdder();
+            adder = BUCKET.compareAndSet(buckets, bucket, null, created)
+                    ? created
+                    : (LongAdder) BUCKET.getAcquire(buckets, bucket);
+        }
+        adder.increment();
+        sum.add(nanos);
+        long seen = max.get();
+        while (nanos > seen && !max.compareAndSet(seen, nanos)) {
+            seen = max.get();
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that maps to the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += countOf(i);
+        }
+        return count;
+    }
+
+    private long countOf(int bucket) {
+        LongAdder adder = (LongAdder) BUCKET.getAcquire(buckets, bucket);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Percentiles (0-100) in nanoseconds, each the upper bound of the bucket
+     * holding that rank, capped at the observed maximum. Returns 0s when empty.
+     */
+    public long[] percentiles(double... percentiles) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = countOf(i);
+            total += counts[i];
+        }
+
+        long[] out = new long[percentiles.length];
+        if (total == 0) {
+            return out;
+        }
+        long observedMax = max.get();
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    out[p] = Math.min(upperBound(i), observedMax);
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Summary in microseconds for the metrics endpoint.
+     */
+    public Map<String, Object> toMap() {
+        long count = count();
+        long[] p = percentiles(50, 90, 99, 99.9);
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", count);
+        out.put("meanMicros", count == 0 ? 0.0 : sum.sum() / 1_000.0 / count);
+        out.put("p50Micros", p[0] / 1_000.0);
+        out.put("p90Micros", p[1] / 1_000.0);
+        out.put("p99Micros", p[2] / 1_000.0);
+        out.put("p999Micros", p[3] / 1_000.0);
+        out.put("maxMicros", max.get() / 1_000.0);
+        return out;
+    }
+}
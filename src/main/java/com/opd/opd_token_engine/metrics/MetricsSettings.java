@@ -0,0 +1,15 @@
+package com.opd.opd_token_engine.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies opd.metrics.enabled to the static recorders at startup.
+ */
+@Component
+public class MetricsSettings {
+
+    public MetricsSettings(@Value("${opd.metrics.enabled:true}") boolean enabled) {
+        EngineMetrics.setEnabled(enabled);
+    }
+}
@@ -0,0 +1,209 @@
+package com.opd.opd_token_engine.metrics;
+
+import com.opd.opd_token_engine.engine.AllocationResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot-path recorders for one slot. Owned by the TimeSlot, so recording needs
+ * no lookup; callers check EngineMetrics.isEnabled() first.
+ * <p>
+ * The latency histograms are created on first use, so a slot that is never
+ * timed, or only ever allocated into, carries no histogram it does not need.
+ */
+public class SlotMetrics {
+
+    /** Lock waits at least this long count as contended acquisitions. */
+    public static final long CONTENDED_NANOS = 1_000;
+
+    private static final LatencyRecorder NONE = new LatencyRecorder();
+    private static final AtomicReferenceFieldUpdater<SlotMetrics, LatencyRecorder> ALLOCATE_LATENCY =
+            AtomicReferenceFieldUpdater.newUpdater(SlotMetrics.class, LatencyRecorder.class, "allocateLatency");
+    private static final AtomicReferenceFieldUpdater<SlotMetrics, LatencyRecorder> CANCEL_LATENCY =
+            AtomicReferenceFieldUpdater.newUpdater(SlotMetrics.class, LatencyRecorder.class, "cancelLatency");
+    private static final AtomicReferenceFieldUpdater<SlotMetrics, LatencyRecorder> LOCK_WAIT =
+            AtomicReferenceFieldUpdater.newUpdater(SlotMetrics.class, LatencyRecorder.class, "lockWait");
+
+    // Null until first recorded into
+    private volatile LatencyRecorder allocateLatency;
+    private volatile LatencyRecorder cancelLatency;
+    private volatile LatencyRecorder lockWait;
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder preempted = new LongAdder();
+    private final LongAdder waitlisted = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder promoted = new LongAdder();
+    private final LongAdder displaced = new LongAdder();
+    private final LongAdder reroutedOut = new LongAdder();
+    private final LongAdder resized = new LongAdder();
+    private final LongAdder fastPath = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+
+    // Written under the slot lock only
+    private volatile int allocatedHighWater;
+    private volatile int waitingHighWater;
+
+    public void recordLockWait(long nanos) {
+        LatencyRecorder recorder = lockWait;
+        (recorder != null ? recorder : create(LOCK_WAIT)).record(nanos);
+        if (nanos >= CONTENDED_NANOS) {
+            contended.increment();
+        }
+    }
+
+    public void recordAllocate(AllocationResult result, long nanos) {
+        recordAllocateLatency(nanos);
+        recordOutcome(result);
+    }
+
+    /**
+     * Allocation taken by the CAS fast path, without the lock.
+     */
+    public void recordFastPath(long nanos) {
+        recordAllocateLatency(nanos);
+        allocated.increment();
+        fastPath.increment();
+    }
+
+    private void recordAllocateLatency(long nanos) {
+        LatencyRecorder recorder = allocateLatency;
+        (recorder != null ? recorder : create(ALLOCATE_LATENCY)).record(nanos);
+    }
+
+    // The first recording publishes the histogram; a racing one adopts it
+    private LatencyRecorder create(AtomicReferenceFieldUpdater<SlotMetrics, LatencyRecorder> field) {
+        LatencyRecorder created = new LatencyRecorder();
+        return field.compareAndSet(this, null, created) ? created : field.get(this);
+    }
+
+    public void recordOutcome(AllocationResult result) {
+        switch (result.status) {
+            case ALLOCATED -> allocated.increment();
+            case REALLOCATED_LOW_PRIORITY -> {
+                allocated.increment();
+                preempted.increment();
+            }
+            case WAITLISTED -> waitlisted.increment();
+            case REROUTED -> reroutedOut.increment();
+        }
+    }
+
+    /**
+     * A booking for another slot that overflowed into this one.
+     */
+    public void recordRerouteIn() {
+        allocated.increment();
+    }
+
+    public void recordCancel(long nanos, boolean found) {
+        LatencyRecorder recorder = cancelLatency;
+        (recorder != null ? recorder : create(CANCEL_LATENCY)).record(nanos);
+        if (found) {
+            cancelled.increment();
+        }
+    }
+
+    public void recordPromotion() {
+        promoted.increment();
+    }
+
+    /**
+     * A capacity change that displaced and promoted the given token counts.
+     */
+    public void recordResize(int displacedTokens, int promotedTokens) {
+        resized.increment();
+        displaced.add(displacedTokens);
+        promoted.add(promotedTokens);
+    }
+
+    /**
+     * Caller holds the slot lock.
+     */
+    public void observeQueues(int allocatedSize, int waitingSize) {
+        if (allocatedSize > allocatedHighWater) {
+            allocatedHighWater = allocatedSize;
+        }
+        if (waitingSize > waitingHighWater) {
+            waitingHighWater = waitingSize;
+        }
+    }
+
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    public long getPreempted() {
+        return preempted.sum();
+    }
+
+    public long getWaitlisted() {
+        return waitlisted.sum();
+    }
+
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    public long getPromoted() {
+        return promoted.sum();
+    }
+
+    public long getDisplaced() {
+        return displaced.sum();
+    }
+
+    public long getContended() {
+        return contended.sum();
+    }
+
+    public int getAllocatedHighWater() {
+        return allocatedHighWater;
+    }
+
+    public int getWaitingHighWater() {
+        return waitingHighWater;
+    }
+
+    /** Read-only: an empty shared histogram until the first recording. */
+    public LatencyRecorder getAllocateLatency() {
+        return orNone(allocateLatency);
+    }
+
+    public LatencyRecorder getCancelLatency() {
+        return orNone(cancelLatency);
+    }
+
+    public LatencyRecorder getLockWait() {
+        return orNone(lockWait);
+    }
+
+    private static LatencyRecorder orNone(LatencyRecorder recorder) {
+        return recorder != null ? recorder : NONE;
+    }
+
+    public Map<String, Object> toMap() {
+        long decisions = allocated.sum() + waitlisted.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("allocated", allocated.sum());
+        out.put("preempted", preempted.sum());
+        out.put("waitlisted", waitlisted.sum());
+        out.put("cancelled", cancelled.sum());
+        out.put("promoted", promoted.sum());
+        out.put("displaced", displaced.sum());
+        out.put("reroutedOut", reroutedOut.sum());
+        out.put("resized", resized.sum());
+        out.put("preemptionRate", decisions == 0 ? 0.0 : (double) preempted.sum() / decisions);
+        out.put("fastPathAllocations", fastPath.sum());
+        out.put("contendedLockAcquisitions", contended.sum());
+        out.put("allocatedHighWater", allocatedHighWater);
+        out.put("waitingHighWater", waitingHighWater);
+        out.put("allocateLatency", getAllocateLatency().toMap());
+        out.put("cancelLatency", getCancelLatency().toMap());
+        out.put("lockWait", getLockWait().toMap());
+        return out;
+    }
+}
@@ -8,24 +8,85 @@ public class Doctor {
     private String doctorId;
     private volatile double efficiencyScore;
     private Map<String, TimeSlot> slots = new ConcurrentHashMap<>();
+    private final SlotConcurrencyMode slotConcurrencyMode;
+
+    // Number of delays applied; orders delay events for journals and snapshots
+    private long delayVersion;
 
     public Doctor(String doctorId, double efficiencyScore) {
+        this(doctorId, efficiencyScore, SlotConcurrencyMode.MONITOR);
+    }
+
+    public Doctor(String doctorId, double efficiencyScore, SlotConcurrencyMode slotConcurrencyMode) {
         this.doctorId = doctorId;
         this.efficiencyScore = efficiencyScore;
+        this.slotConcurrencyMode = slotConcurrencyMode;
     }
 
+    /**
+     * Adds a slot that keeps its undelayed base capacity, so capacityFor
+     * applies the efficiency exactly once.
+     */
     public synchronized void addSlot(String slotId, int baseCapacity) {
-        int effectiveCapacity = (int) (baseCapacity * efficiencyScore);
-        slots.put(slotId, new TimeSlot(slotId, effectiveCapacity));
+        TimeSlot slot = new TimeSlot(slotId, baseCapacity, slotConcurrencyMode);
+        slot.updateCapacity(capacityFor(slot));
+        slots.put(slotId, slot);
+    }
+
+    /**
+     * Applies a delay to the doctor's efficiency and returns the new delay
+     * version. Slot capacities follow through DelayPropagator, one slot lock
+     * at a time, so this never holds up allocations.
+     */
+    public synchronized long applyDelay(double delayFactor) {
+        this.efficiencyScore *= delayFactor;
+        return ++delayVersion;
     }
 
-    public synchronized void applyDelay(double delayFactor) {
+    /**
+     * Re-applies a journaled delay to the efficiency. Journaled delays may
+     * arrive out of order, which is harmless since scaling commutes; the
+     * resulting capacities are journaled per slot.
+     */
+    public synchronized void replayDelay(double delayFactor, long version) {
         this.efficiencyScore *= delayFactor;
+        delayVersion = Math.max(delayVersion, version);
+    }
+
+    /**
+     * Restores efficiency and delay version from a snapshot. Slot capacities
+     * are restored with the slots themselves.
+     */
+    public synchronized void restoreDelay(double efficiencyScore, long delayVersion) {
+        this.efficiencyScore = efficiencyScore;
+        this.delayVersion = delayVersion;
+    }
+
+    /**
+     * Replaces a slot with an empty one at the given capacities, for snapshot
+     * recovery.
+     */
+    public synchronized TimeSlot restoreSlot(String slotId, int baseCapacity, int capacity) {
+        TimeSlot slot = new TimeSlot(slotId, baseCapacity, slotConcurrencyMode);
+        slot.updateCapacity(capacity);
+        slots.put(slotId, slot);
+        return slot;
+    }
+
+    /**
+     * Capacity of the slot at the doctor's current efficiency: its base
+     * capacity, before any efficiency, times the efficiency.
+     */
+    public int capacityFor(TimeSlot slot) {
+        return (int) (slot.getBaseCapacity() * efficiencyScore);
+    }
+
+    public double getEfficiencyScore() {
+        return efficiencyScore;
+    }
 
-        for (TimeSlot slot : slots.values()) {
-            int newCapacity = (int) (slot.getBaseCapacity() * efficiencyScore);
-            slot.updateCapacity(newCapacity);
-        }
+    public synchronized long getDelayVersion() {
+        return delayVersion;
     }
 
     public Map<String, TimeSlot> getSlots() {
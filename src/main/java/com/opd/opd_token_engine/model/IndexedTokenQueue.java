@@ -0,0 +1,382 @@
+package com.opd.opd_token_engine.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Priority queue of tokens backed by an order-statistic treap with a
+ * tokenId index.
+ * <p>
+ * Tokens are ranked by the priority key they had when added, with FIFO
+ * tie-breaking between equal keys. A highest-first queue hands out the
+ * best, oldest token first; a lowest-first queue is the exact reverse and hands
+ * out the weakest, newest token first (the preemption victim). Lowest-first
+ * queues rank by the token's eviction key instead, which leaves protected
+ * tokens at the far end.
+ * <p>
+ * The treap is stored column-wise: a node is an int index into parallel
+ * primitive arrays, and the tokenId index is an open-addressing table of node
+ * indices, so a queued token costs no objects beyond the token itself. Freed
+ * nodes are reused before the arrays grow.
+ * <p>
+ * add, poll, remove-by-id and exact position are O(log n) expected; peek is
+ * O(log n). Not thread-safe: callers hold the owning slot's lock.
+ */
+public class IndexedTokenQueue implements Iterable<Token> {
+
+    private static final int NIL = -1;
+    private static final int MIN_CAPACITY = 4;
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+    private static final Token[] NO_TOKENS = new Token[0];
+
+    private final boolean lowestFirst;
+
+    // Node columns; a free node has no token and links the next free node through left
+    private Token[] tokens = NO_TOKENS;
+    private long[] priorities = NO_LONGS;
+    private long[] sequences = NO_LONGS;
+    private int[] heapKeys = NO_INTS;
+    private int[] left = NO_INTS;
+    private int[] right = NO_INTS;
+    private int[] sizes = NO_INTS;
+    private int used;
+    private int free = NIL;
+    private int root = NIL;
+
+    // tokenId -> node, linear probing, at most half full; NIL marks an empty bucket
+    private int[] table = NO_INTS;
+    private int count;
+    private long nextSequence;
+
+    private IndexedTokenQueue(boolean lowestFirst) {
+        this.lowestFirst = lowestFirst;
+    }
+
+    /** Waiting-queue order: highest priority first, earliest arrival first. */
+    public static IndexedTokenQueue highestFirst() {
+        return new IndexedTokenQueue(false);
+    }
+
+    /** Allocated-queue order: lowest eviction key first, latest arrival first. */
+    public static IndexedTokenQueue lowestFirst() {
+        return new IndexedTokenQueue(true);
+    }
+
+    /**
+     * Adds a token keyed by its current priority key, or eviction key in a
+     * lowest-first queue. Returns false if a token with the same id is
+     * already queued.
+     */
+    public boolean add(Token token) {
+        if (find(token.getTokenId()) != NIL) {
+            return false;
+        }
+        int node = allocate();
+        tokens[node] = token;
+        priorities[node] = lowestFirst ? token.getEvictionKey() : token.getPriorityKey();
+        sequences[node] = nextSequence++;
+        heapKeys[node] = ThreadLocalRandom.current().nextInt();
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        index(node);
+        count++;
+        root = insert(root, node);
+        return true;
+    }
+
+    /**
+     * Re-reads every queued token's key after the caller re-scored them,
+     * keeping each token's place among equal keys. O(n log n) expected.
+     */
+    public void rekey() {
+        root = NIL;
+        for (int node = 0; node < used; node++) {
+            Token token = tokens[node];
+            if (token != null) {
+                priorities[node] = lowestFirst ? token.getEvictionKey() : token.getPriorityKey();
+                left[node] = NIL;
+                right[node] = NIL;
+                sizes[node] = 1;
+                root = insert(root, node);
+            }
+        }
+    }
+
+    public Token peek() {
+        if (root == NIL) {
+            return null;
+        }
+        int n = root;
+        if (lowestFirst) {
+            while (right[n] != NIL) n = right[n];
+        } else {
+            while (left[n] != NIL) n = left[n];
+        }
+        return tokens[n];
+    }
+
+    public Token poll() {
+        Token head = peek();
+        if (head != null) {
+            remove(head.getTokenId());
+        }
+        return head;
+    }
+
+    /**
+     * Removes the token with the given id, returning it or null if absent.
+     */
+    public Token remove(String tokenId) {
+        int node = find(tokenId);
+        if (node == NIL) {
+            return null;
+        }
+        Token token = tokens[node];
+        unindex(node);
+        count--;
+        root = delete(root, node);
+        release(node);
+        return token;
+    }
+
+    public boolean contains(String tokenId) {
+        return find(tokenId) != NIL;
+    }
+
+    public Token get(String tokenId) {
+        int node = find(tokenId);
+        return node != NIL ? tokens[node] : null;
+    }
+
+    /**
+     * Exact 1-based position from the head of the queue, or -1 if absent.
+     */
+    public int positionOf(String tokenId) {
+        int target = find(tokenId);
+        if (target == NIL) {
+            return -1;
+        }
+        // Count nodes ordered before target in best-first order
+        int before = 0;
+        int n = root;
+        while (n != target) {
+            if (precedes(target, n)) {
+                n = left[n];
+            } else {
+                before += size(left[n]) + 1;
+                n = right[n];
+            }
+        }
+        before += size(left[target]);
+        return lowestFirst ? count - before : before + 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(tokens, 0, used, null);
+        Arrays.fill(table, NIL);
+        used = 0;
+        free = NIL;
+        root = NIL;
+        count = 0;
+    }
+
+    /**
+     * Tokens in queue order, head first. O(n).
+     */
+    public List<Token> toList() {
+        List<Token> out = new ArrayList<>(count);
+        collect(root, out);
+        if (lowestFirst) {
+            Collections.reverse(out);
+        }
+        return out;
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return toList().iterator();
+    }
+
+    // Best-first order: higher priority, then lower sequence
+    private boolean precedes(int a, int b) {
+        if (priorities[a] != priorities[b]) {
+            return priorities[a] > priorities[b];
+        }
+        return sequences[a] < sequences[b];
+    }
+
+    private int size(int n) {
+        return n == NIL ? 0 : sizes[n];
+    }
+
+    private void update(int n) {
+        sizes[n] = 1 + size(left[n]) + size(right[n]);
+    }
+
+    private int insert(int t, int node) {
+        if (t == NIL) {
+            return node;
+        }
+        if (precedes(node, t)) {
+            left[t] = insert(left[t], node);
+            if (heapKeys[left[t]] > heapKeys[t]) {
+                return rotateRight(t);
+            }
+        } else {
+            right[t] = insert(right[t], node);
+            if (heapKeys[right[t]] > heapKeys[t]) {
+                return rotateLeft(t);
+            }
+        }
+        update(t);
+        return t;
+    }
+
+    private int rotateRight(int t) {
+        int l = left[t];
+        left[t] = right[l];
+        right[l] = t;
+        update(t);
+        update(l);
+        return l;
+    }
+
+    private int rotateLeft(int t) {
+        int r = right[t];
+        right[t] = left[r];
+        left[r] = t;
+        update(t);
+        update(r);
+        return r;
+    }
+
+    private int delete(int t, int target) {
+        if (t == target) {
+            return merge(left[t], right[t]);
+        }
+        if (precedes(target, t)) {
+            left[t] = delete(left[t], target);
+        } else {
+            right[t] = delete(right[t], target);
+        }
+        update(t);
+        return t;
+    }
+
+    private int merge(int a, int b) {
+        if (a == NIL) return b;
+        if (b == NIL) return a;
+        if (heapKeys[a] > heapKeys[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private void collect(int n, List<Token> out) {
+        if (n == NIL) {
+            return;
+        }
+        collect(left[n], out);
+        out.add(tokens[n]);
+        collect(right[n], out);
+    }
+
+    private int allocate() {
+        if (free != NIL) {
+            int node = free;
+            free = left[node];
+            return node;
+        }
+        if (used == tokens.length) {
+            grow();
+        }
+        return used++;
+    }
+
+    private void release(int node) {
+        tokens[node] = null;
+        left[node] = free;
+        free = node;
+    }
+
+    // Only called with no free nodes, so every node below used is live
+    private void grow() {
+        int capacity = Math.max(MIN_CAPACITY, tokens.length + (tokens.length >> 1));
+        tokens = Arrays.copyOf(tokens, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        heapKeys = Arrays.copyOf(heapKeys, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        Arrays.fill(table, NIL);
+        for (int node = 0; node < used; node++) {
+            index(node);
+        }
+    }
+
+    private static int hash(String tokenId) {
+        int h = tokenId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(String tokenId) {
+        if (count == 0) {
+            return NIL;
+        }
+        int mask = table.length - 1;
+        for (int i = hash(tokenId) & mask; ; i = (i + 1) & mask) {
+            int node = table[i];
+            if (node == NIL || tokens[node].getTokenId().equals(tokenId)) {
+                return node;
+            }
+        }
+    }
+
+    private void index(int node) {
+        int mask = table.length - 1;
+        int i = hash(tokens[node].getTokenId()) & mask;
+        while (table[i] != NIL) {
+            i = (i + 1) & mask;
+        }
+        table[i] = node;
+    }
+
+    // Backward-shift deletion keeps every probe chain unbroken without tombstones
+    private void unindex(int node) {
+        int mask = table.length - 1;
+        int hole = hash(tokens[node].getTokenId()) & mask;
+        while (table[hole] != node) {
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; table[i] != NIL; i = (i + 1) & mask) {
+            int home = hash(tokens[table[i]].getTokenId()) & mask;
+            boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (!reachable) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = NIL;
+    }
+}
@@ -0,0 +1,16 @@
+package com.opd.opd_token_engine.model;
+
+/**
+ * How concurrent allocations into a single TimeSlot are serialized.
+ */
+public enum SlotConcurrencyMode {
+
+    /** Every allocation takes the slot lock. */
+    MONITOR,
+
+    /**
+     * Seats are claimed with a CAS on an occupancy counter while the slot has
+     * room; only preemption, waitlisting and cancellation take the lock.
+     */
+    CAS_FAST_PATH
+}
@@ -0,0 +1,24 @@
+package com.opd.opd_token_engine.model;
+
+import java.util.List;
+
+/**
+ * Immutable copy of a slot's queues at one version, shared by every reader
+ * until the slot changes again. Obtained from {@link TimeSlot#view()}.
+ */
+public record SlotView(String slotId, int capacity, long version, List<Entry> allocated, List<Entry> waiting) {
+
+    /** One token as readers see it; priority is its snapshot priority. */
+    public record Entry(String tokenId, String patientId, TokenSource source, int priority) {
+    }
+
+    /**
+     * Copies the queue, best first for the waiting queue, so an entry's
+     * index + 1 is its queue position. Caller must hold the slot lock.
+     */
+    static List<Entry> entries(IndexedTokenQueue queue) {
+        return queue.toList().stream()
+                .map(t -> new Entry(t.getTokenId(), t.getPatientId(), t.getSource(), t.getSnapshotPriority()))
+                .toList();
+    }
+}
@@ -1,6 +1,14 @@
 package com.opd.opd_token_engine.model;
 
-import java.util.PriorityQueue;
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.metrics.SlotMetrics;
+
+import java.time.LocalTime;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class TimeSlot {
 
@@ -10,29 +18,85 @@ public class TimeSlot {
     private int baseCapacity;
 
 
-    private int capacity;
+    private volatile int capacity;
+
+    private IndexedTokenQueue allocatedTokens;
+    private IndexedTokenQueue waitingQueue;
+
+    private final SlotConcurrencyMode concurrencyMode;
+
+    // Guards both queues. A ReentrantLock rather than a monitor so that
+    // virtual threads waiting for a busy slot unmount instead of pinning
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // CAS_FAST_PATH only: seats held (allocated + staged) and tokens seated
+    // without the lock that have not been folded into allocatedTokens yet
+    private final AtomicInteger occupiedSeats = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Token> stagedTokens = new ConcurrentLinkedQueue<>();
+
+    // Incremented on every mutation; orders slot events for journals and readers
+    private final AtomicLong version = new AtomicLong();
+
+    private final SlotMetrics metrics = new SlotMetrics();
+
+    // Last immutable view built for readers; stale once version moves past it
+    private volatile SlotView view;
+
+    // Table every queued token's keys were scored under, null while nothing
+    // has been keyed. Set under the lock, except that the fast path may key
+    // a slot that has nothing keyed yet
+    private final AtomicReference<PriorityTable> keyedBy = new AtomicReference<>();
 
-    private PriorityQueue<Token> allocatedTokens;
-    private PriorityQueue<Token> waitingQueue;
+    // Minutes of the day the slot starts and ends, from ids like "9-10" or
+    // "9:30-10:15"; -1 when the id carries no time
+    private final int startMinute;
+    private final int endMinute;
+
+    // Set before first use on slots of a replay or what-if run, never shared
+    // with the live store: their events reach no listeners or decision log
+    private boolean detached;
 
     public TimeSlot(String slotId, int baseCapacity) {
+        this(slotId, baseCapacity, SlotConcurrencyMode.MONITOR);
+    }
+
+    public TimeSlot(String slotId, int baseCapacity, SlotConcurrencyMode concurrencyMode) {
         this.slotId = slotId;
         this.baseCapacity = baseCapacity;
         this.capacity = baseCapacity;
+        this.concurrencyMode = concurrencyMode;
+        int dash = slotId.indexOf('-');
+        int start = dash < 0 ? -1 : parseMinute(slotId.substring(0, dash));
+        int end = dash < 0 ? -1 : parseMinute(slotId.substring(dash + 1));
+        boolean timed = start >= 0 && end > start;
+        this.startMinute = timed ? start : -1;
+        this.endMinute = timed ? end : -1;
 
-        // Use snapshot priority for stable ordering
-        this.allocatedTokens = new PriorityQueue<>(
-                (a, b) -> Integer.compare(a.getSnapshotPriority(), b.getSnapshotPriority())
-        );
-
-        this.waitingQueue = new PriorityQueue<>(
-                (a, b) -> Integer.compare(b.getSnapshotPriority(), a.getSnapshotPriority())
-        );
+        // Use snapshot priority for stable ordering, FIFO among equal priorities
+        this.allocatedTokens = IndexedTokenQueue.lowestFirst();
+        this.waitingQueue = IndexedTokenQueue.highestFirst();
     }
 
 
     public String getSlotId() { return slotId; }
 
+    /**
+     * Marks the slot as outside the live store. Call before the slot is used;
+     * see {@link #isDetached()}.
+     */
+    public void detach() {
+        detached = true;
+    }
+
+    /**
+     * True for slots of an offline run. The engine bumps their versions as
+     * usual but publishes no events or decisions for them and never reroutes
+     * out of them.
+     */
+    public boolean isDetached() {
+        return detached;
+    }
+
     public int getCapacity() {
         return capacity;
     }
@@ -41,16 +105,285 @@ public class TimeSlot {
         return baseCapacity;
     }
 
+    /**
+     * Sets the capacity without touching the queues. Live changes go through
+     * DelayPropagator, which holds the slot lock and rebalances.
+     */
     public void updateCapacity(int newCapacity) {
         this.capacity = Math.max(0, newCapacity);
     }
 
 
-    public PriorityQueue<Token> getAllocatedTokens() {
+    /**
+     * True when the slot's window is over at the given time of day. Slots
+     * whose id carries no time never end, nor do windows that cross midnight.
+     */
+    public boolean hasEndedBy(LocalTime time) {
+        return endMinute >= 0 && time.getHour() * 60 + time.getMinute() >= endMinute;
+    }
+
+    /**
+     * Minute of the day the slot starts, or -1 if its id carries no time.
+     */
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    /**
+     * Minute of the day the slot ends, or -1 if its id carries no time.
+     */
+    public int getEndMinute() {
+        return endMinute;
+    }
+
+    private static int parseMinute(String time) {
+        int colon = time.indexOf(':');
+        try {
+            int hour = Integer.parseInt(colon < 0 ? time : time.substring(0, colon));
+            int minute = colon < 0 ? 0 : Integer.parseInt(time.substring(colon + 1));
+            return hour >= 0 && hour <= 24 && minute >= 0 && minute < 60 ? hour * 60 + minute : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long nextVersion() {
+        return version.incrementAndGet();
+    }
+
+    /**
+     * Fast-forwards the mutation counter when state is rebuilt from a journal.
+     */
+    public void restoreVersion(long restored) {
+        version.accumulateAndGet(restored, Math::max);
+    }
+
+    /**
+     * Immutable view of both queues for readers that must not hold up
+     * allocations. While the version is unchanged every reader shares the
+     * cached view without locking. After a mutation the first reader
+     * rebuilds it under the lock, once per version. A reader that finds the
+     * lock busy gets the previous view instead of waiting, which is the
+     * state before the mutation in progress.
+     */
+    public SlotView view() {
+        SlotView current = view;
+        if (current == null) {
+            return currentView();
+        }
+        if (current.version() == version.get() || !lock.tryLock()) {
+            return current;
+        }
+        try {
+            SlotView fresh = refreshView();
+            return fresh != null ? fresh : current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #view()}, but waits for the lock rather than return a view
+     * older than the current version.
+     */
+    public SlotView currentView() {
+        while (true) {
+            SlotView current = view;
+            if (current != null && current.version() == version.get()) {
+                return current;
+            }
+            SlotView fresh;
+            lock.lock();
+            try {
+                fresh = refreshView();
+            } finally {
+                lock.unlock();
+            }
+            if (fresh != null) {
+                return fresh;
+            }
+            // A fast-path allocation is between its version bump and being staged
+            Thread.onSpinWait();
+        }
+    }
+
+    // Caller holds the lock. Null while a fast-path allocation counted in the
+    // version is not in the queues yet, since no view can be stamped for it
+    private SlotView refreshView() {
+        long observed = version.get();
+        SlotView current = view;
+        if (current != null && current.version() == observed) {
+            return current;
+        }
+        IndexedTokenQueue allocated = getAllocatedTokens();
+        if (!isSettled(observed)) {
+            return null;
+        }
+        current = new SlotView(slotId, capacity, observed,
+                SlotView.entries(allocated), SlotView.entries(waitingQueue));
+        view = current;
+        return current;
+    }
+
+    public void lock() {
+        lock.lock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    /**
+     * Takes the lock only if it is free, for callers already holding another
+     * slot's lock, which must never wait on a second one.
+     */
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    /**
+     * Seats left right now. Exact under the slot lock, or in CAS_FAST_PATH
+     * mode; otherwise a hint.
+     */
+    public int freeSeats() {
+        int seated = concurrencyMode == SlotConcurrencyMode.CAS_FAST_PATH
+                ? occupiedSeats.get()
+                : allocatedTokens.size();
+        return Math.max(0, capacity - seated);
+    }
+
+    public SlotMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SlotConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    /**
+     * Claims a seat if the slot has room. In MONITOR mode the caller must hold
+     * the slot lock; in CAS_FAST_PATH mode this is safe without it.
+     */
+    public boolean claimSeat() {
+        if (concurrencyMode == SlotConcurrencyMode.MONITOR) {
+            return allocatedTokens.size() < capacity;
+        }
+        while (true) {
+            int occupied = occupiedSeats.get();
+            if (occupied >= capacity) {
+                return false;
+            }
+            if (occupiedSeats.compareAndSet(occupied, occupied + 1)) {
+                // A resize writes capacity and then reads occupiedSeats; re-reading
+                // capacity after the CAS means at least one side sees the other
+                if (occupied < capacity) {
+                    return true;
+                }
+                occupiedSeats.decrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Takes a seat regardless of capacity, for tokens restored as seated.
+     */
+    public void occupySeat() {
+        if (concurrencyMode == SlotConcurrencyMode.CAS_FAST_PATH) {
+            occupiedSeats.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gives back a seat whose token left the slot without a replacement.
+     */
+    public void releaseSeat() {
+        if (concurrencyMode == SlotConcurrencyMode.CAS_FAST_PATH) {
+            occupiedSeats.decrementAndGet();
+        }
+    }
+
+    /**
+     * Publishes a token seated through the lock-free fast path. It joins
+     * allocatedTokens the next time the queue is read under the lock.
+     */
+    public void stageAllocated(Token token) {
+        stagedTokens.add(token);
+    }
+
+    /**
+     * Caller must hold the slot lock. Any staged fast-path allocations are
+     * folded in first so the queue always reflects every seated token.
+     * Readers outside the engine use {@link #view()} instead.
+     */
+    public IndexedTokenQueue getAllocatedTokens() {
+        Token staged;
+        while ((staged = stagedTokens.poll()) != null) {
+            allocatedTokens.add(staged);
+        }
         return allocatedTokens;
     }
 
-    public PriorityQueue<Token> getWaitingQueue() {
+    /**
+     * Caller must hold the slot lock, having read observedVersion before
+     * getAllocatedTokens(). True when no fast-path allocation is between
+     * claiming its seat and being staged, and none has started since, so the
+     * queues reflect exactly the mutations up to observedVersion.
+     */
+    public boolean isSettled(long observedVersion) {
+        if (concurrencyMode == SlotConcurrencyMode.MONITOR) {
+            return true;
+        }
+        return stagedTokens.isEmpty()
+                && occupiedSeats.get() == allocatedTokens.size()
+                && version.get() == observedVersion;
+    }
+
+    /**
+     * Caller must hold the slot lock. Waits for fast-path allocations that
+     * claimed a seat to be staged, so the queue holds every seated token.
+     * Staging never takes the lock, and a full slot admits no new claims
+     * until the caller releases a seat.
+     */
+    public IndexedTokenQueue getSettledAllocatedTokens() {
+        while (true) {
+            long observed = getVersion();
+            IndexedTokenQueue allocated = getAllocatedTokens();
+            if (isSettled(observed)) {
+                return allocated;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public PriorityTable getKeyedBy() {
+        return keyedBy.get();
+    }
+
+    /**
+     * Caller must hold the slot lock, and have scored every queued token
+     * under the table.
+     */
+    public void setKeyedBy(PriorityTable table) {
+        keyedBy.set(table);
+    }
+
+    public boolean compareAndSetKeyedBy(PriorityTable expected, PriorityTable table) {
+        return keyedBy.compareAndSet(expected, table);
+    }
+
+    /**
+     * Caller must hold the slot lock; readers use {@link #view()}.
+     */
+    public IndexedTokenQueue getWaitingQueue() {
         return waitingQueue;
     }
 }
@@ -1,36 +1,91 @@
 package com.opd.opd_token_engine.model;
 
-import java.time.LocalDateTime;
-import java.util.UUID;
+import com.opd.opd_token_engine.clock.EngineClock;
 
 public class Token {
 
-    private String tokenId = UUID.randomUUID().toString();
+    /** Eviction key of a token that may no longer be preempted. */
+    public static final long PROTECTED = Long.MAX_VALUE;
+
+    /** Off-seat time of a token that has never been put off a seat. */
+    public static final long NEVER_OFF_SEAT = Long.MAX_VALUE;
+
+    private String tokenId;
     private String patientId;
     private TokenSource source;
     private int basePriority;
     private int reallocationCount;
-    private LocalDateTime createdAt;
+    private long arrivalMillis;
     private boolean allocated;
-    private int snapshotPriority; // Priority at time of insertion into queue
+    private int snapshotPriority; // Effective priority at the last allocation decision
+    private long priorityKey;     // Time-invariant ordering key, see PriorityCalculator
+    private long evictionKey;     // Seated order, weakest first; see PriorityTable.score
+    // When the token was first bumped, displaced or waitlisted. Not journaled:
+    // a restore restarts it for tokens restored as waiting
+    private long offSeatSinceMillis = NEVER_OFF_SEAT;
 
     public Token(String patientId, TokenSource source, int basePriority) {
-        this.patientId = patientId;
+        this(patientId, source, basePriority, EngineClock.system().millis());
+    }
+
+    /**
+     * Issues a token that arrived at the given time, for callers that run on
+     * their own clock, such as a trace replay.
+     */
+    public Token(String patientId, TokenSource source, int basePriority, long arrivalMillis) {
+        this.tokenId = TokenIds.next();
+        this.patientId = intern(patientId);
         this.source = source;
         this.basePriority = basePriority;
-        this.createdAt = LocalDateTime.now();
+        this.arrivalMillis = arrivalMillis;
         this.allocated = false;
         this.snapshotPriority = basePriority;
     }
 
+    /**
+     * Rebuilds a previously issued token, e.g. during journal recovery.
+     */
+    public Token(String tokenId, String patientId, TokenSource source, int basePriority,
+                 long arrivalMillis, int reallocationCount) {
+        this.tokenId = tokenId;
+        this.patientId = intern(patientId);
+        this.source = source;
+        this.basePriority = basePriority;
+        this.arrivalMillis = arrivalMillis;
+        this.reallocationCount = reallocationCount;
+        this.snapshotPriority = basePriority;
+    }
+
+    // A patient's tokens, index entries and recovered copies share one id string
+    private static String intern(String patientId) {
+        return patientId != null ? patientId.intern() : null;
+    }
+
     public String getTokenId() { return tokenId; }
+    public String getPatientId() { return patientId; }
     public TokenSource getSource() { return source; }
     public int getBasePriority() { return basePriority; }
     public int getReallocationCount() { return reallocationCount; }
     public void incrementPreemption() { this.reallocationCount++; }
-    public LocalDateTime getCreatedAt() { return createdAt; }
+    public long getArrivalMillis() { return arrivalMillis; }
     public boolean isAllocated() { return allocated; }
     public void setAllocated(boolean allocated) { this.allocated = allocated; }
     public int getSnapshotPriority() { return snapshotPriority; }
     public void setSnapshotPriority(int priority) { this.snapshotPriority = priority; }
+    public long getPriorityKey() { return priorityKey; }
+    /** Also resets the eviction key to the priority key. */
+    public void setPriorityKey(long priorityKey) {
+        this.priorityKey = priorityKey;
+        this.evictionKey = priorityKey;
+    }
+    public long getEvictionKey() { return evictionKey; }
+    public void setEvictionKey(long evictionKey) { this.evictionKey = evictionKey; }
+    public boolean isProtected() { return evictionKey == PROTECTED; }
+    public long getOffSeatSinceMillis() { return offSeatSinceMillis; }
+    /** Records the first time the token was put off a seat; later calls keep it. */
+    public void markOffSeat(long nowMillis) {
+        if (offSeatSinceMillis == NEVER_OFF_SEAT) {
+            offSeatSinceMillis = nowMillis;
+        }
+    }
 }
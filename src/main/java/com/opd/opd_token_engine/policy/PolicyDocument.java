@@ -0,0 +1,37 @@
+package com.opd.opd_token_engine.policy;
+
+import com.opd.opd_token_engine.engine.PriorityTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The hospital policy and the department overrides, as served and accepted
+ * by the policy endpoint. Department membership is configuration and is not
+ * part of it.
+ */
+public record PolicyDocument(PolicySettings hospital, Map<String, PolicySettings> departments) {
+
+    public PolicyDocument {
+        hospital = hospital != null ? hospital : new PolicySettings(null, null, null, null, null, null);
+        departments = departments != null ? Map.copyOf(departments) : Map.of();
+    }
+
+    public static PolicyDocument current() {
+        Map<String, PolicySettings> departments = new TreeMap<>();
+        PriorityPolicies.departments().forEach((name, table) -> departments.put(name, PolicySettings.of(table)));
+        return new PolicyDocument(PolicySettings.of(PriorityPolicies.hospital()), departments);
+    }
+
+    /**
+     * Swaps in this document: the hospital over the engine defaults, each
+     * department over the hospital.
+     */
+    public void install() {
+        PriorityTable base = hospital.over(PriorityTable.DEFAULT);
+        Map<String, PriorityTable> overrides = new HashMap<>();
+        departments.forEach((name, settings) -> overrides.put(name, settings.over(base)));
+        PriorityPolicies.update(base, overrides);
+    }
+}
@@ -0,0 +1,78 @@
+package com.opd.opd_token_engine.policy;
+
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.model.TokenSource;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A priority policy as written in configuration or an update request. Unset
+ * values are inherited: a department's from the hospital policy, the
+ * hospital's from the engine defaults.
+ */
+public record PolicySettings(
+        Map<TokenSource, Integer> basePriorities,
+        Double agingFactor,
+        Integer reallocationPenalty,
+        Integer maxBumps,
+        Double maxWaitMinutes,
+        Double imminentMinutes) {
+
+    public PolicySettings {
+        basePriorities = basePriorities != null ? Map.copyOf(basePriorities) : Map.of();
+    }
+
+    public static PolicySettings of(PriorityPolicy policy) {
+        PriorityTable table = PriorityTable.compile(policy);
+        return new PolicySettings(table.basePriorities(), table.agingFactor(), table.reallocationPenalty(),
+                table.maxBumps(), table.maxWaitMinutes(), table.imminentMinutes());
+    }
+
+    public PriorityTable over(PriorityPolicy base) {
+        Map<TokenSource, Integer> bases = new EnumMap<>(TokenSource.class);
+        for (TokenSource source : TokenSource.values()) {
+            bases.put(source, basePriorities.getOrDefault(source, base.basePriority(source)));
+        }
+        return new PriorityTable(bases,
+                agingFactor != null ? agingFactor : base.agingFactor(),
+                reallocationPenalty != null ? reallocationPenalty : base.reallocationPenalty(),
+                maxBumps != null ? maxBumps : base.maxBumps(),
+                maxWaitMinutes != null ? maxWaitMinutes : base.maxWaitMinutes(),
+                imminentMinutes != null ? imminentMinutes : base.imminentMinutes());
+    }
+
+    /**
+     * Parses {@code key=value,...} where a key is a token source,
+     * {@code aging-factor}, {@code reallocation-penalty}, {@code max-bumps},
+     * {@code max-wait-minutes} or {@code imminent-minutes}.
+     */
+    public static PolicySettings parse(String spec) {
+        Map<TokenSource, Integer> bases = new EnumMap<>(TokenSource.class);
+        Double aging = null;
+        Integer penalty = null;
+        Integer bumps = null;
+        Double maxWait = null;
+        Double imminent = null;
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int eq = entry.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value in priority policy: " + entry.trim());
+            }
+            String key = entry.substring(0, eq).trim();
+            String value = entry.substring(eq + 1).trim();
+            switch (key) {
+                case "aging-factor" -> aging = Double.valueOf(value);
+                case "reallocation-penalty" -> penalty = Integer.valueOf(value);
+                case "max-bumps" -> bumps = Integer.valueOf(value);
+                case "max-wait-minutes" -> maxWait = Double.valueOf(value);
+                case "imminent-minutes" -> imminent = Double.valueOf(value);
+                default -> bases.put(TokenSource.valueOf(key), Integer.valueOf(value));
+            }
+        }
+        return new PolicySettings(bases, aging, penalty, bumps, maxWait, imminent);
+    }
+}
@@ -0,0 +1,79 @@
+package com.opd.opd_token_engine.policy;
+
+import com.opd.opd_token_engine.engine.PriorityTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Static handle to the active priority policies, mirroring the static engine
+ * and store: one for the hospital and optional overrides per department.
+ * <p>
+ * Policies are compiled into tables and installed as one immutable
+ * assignment, swapped with a single volatile write, so a booking is scored
+ * entirely under the old policies or entirely under the new. A lookup is a
+ * volatile read, plus a map lookup once departments have their own policy.
+ * Tokens already queued are re-scored, keeping their base priority, by each
+ * slot's first decision under the new table.
+ */
+public final class PriorityPolicies {
+
+    private record Assignment(PriorityTable hospital, Map<String, PriorityTable> departments,
+                              Map<String, String> departmentOf, Map<String, PriorityTable> byDoctor) {
+    }
+
+    private static final Assignment DEFAULTS = new Assignment(PriorityTable.DEFAULT, Map.of(), Map.of(), Map.of());
+
+    private static volatile Assignment installed = DEFAULTS;
+
+    private PriorityPolicies() {
+    }
+
+    /**
+     * Installs a hospital policy and department policies, each department
+     * given by name with departmentOf mapping doctor ids to names.
+     */
+    public static synchronized void install(PriorityPolicy hospital, Map<String, ? extends PriorityPolicy> departments,
+                               Map<String, String> departmentOf) {
+        Map<String, PriorityTable> compiled = new HashMap<>();
+        departments.forEach((name, policy) -> compiled.put(name, PriorityTable.compile(policy)));
+        Map<String, PriorityTable> byDoctor = new HashMap<>();
+        departmentOf.forEach((doctorId, name) -> {
+            PriorityTable table = compiled.get(name);
+            if (table != null) {
+                byDoctor.put(doctorId, table);
+            }
+        });
+        installed = new Assignment(PriorityTable.compile(hospital), Map.copyOf(compiled),
+                Map.copyOf(departmentOf), Map.copyOf(byDoctor));
+    }
+
+    /**
+     * Replaces the policies but keeps which doctor is in which department.
+     */
+    public static synchronized void update(PriorityPolicy hospital, Map<String, ? extends PriorityPolicy> departments) {
+        install(hospital, departments, installed.departmentOf());
+    }
+
+    /** Back to the engine defaults everywhere. */
+    public static synchronized void reset() {
+        installed = DEFAULTS;
+    }
+
+    public static PriorityTable forDoctor(String doctorId) {
+        Assignment current = installed;
+        if (current.byDoctor().isEmpty()) {
+            return current.hospital();
+        }
+        PriorityTable table = current.byDoctor().get(doctorId);
+        return table != null ? table : current.hospital();
+    }
+
+    public static PriorityTable hospital() {
+        return installed.hospital();
+    }
+
+    public static Map<String, PriorityTable> departments() {
+        return installed.departments();
+    }
+}
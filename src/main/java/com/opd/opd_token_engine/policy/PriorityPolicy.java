@@ -0,0 +1,47 @@
+package com.opd.opd_token_engine.policy;
+
+import com.opd.opd_token_engine.model.TokenSource;
+
+/**
+ * How tokens are ranked: a base priority per token source, points gained
+ * per minute waited, and points lost per reallocation. Also the limits on
+ * preemption, each off when zero: how often one token may be bumped, how
+ * long after booking a token stops being bumped, and how close to its
+ * consultation a seated token is left alone.
+ * <p>
+ * Implementations may compute these however they like; the engine never
+ * calls them while allocating. A policy is compiled into a
+ * {@link com.opd.opd_token_engine.engine.PriorityTable} when installed
+ * through {@link PriorityPolicies}, and only that final class is on the hot
+ * path. Provide one as a Spring bean to replace the configured hospital
+ * policy.
+ */
+public interface PriorityPolicy {
+
+    int basePriority(TokenSource source);
+
+    /** Points per minute waited. */
+    double agingFactor();
+
+    int reallocationPenalty();
+
+    /** Bumps after which a token is never bumped again. */
+    default int maxBumps() {
+        return 0;
+    }
+
+    /**
+     * Longest a token waits once first put off a seat, by a bump, a
+     * displacement or the waitlist: past it, a waiting token takes the next
+     * freed seat ahead of every other waiter, and a seated one is never
+     * bumped again.
+     */
+    default double maxWaitMinutes() {
+        return 0;
+    }
+
+    /** Minutes before its estimated consultation within which a seated token is not bumped. */
+    default double imminentMinutes() {
+        return 0;
+    }
+}
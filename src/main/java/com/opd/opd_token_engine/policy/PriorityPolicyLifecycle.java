@@ -0,0 +1,63 @@
+package com.opd.opd_token_engine.policy;
+
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.routing.OverflowRouterLifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Installs the configured priority policies when the context starts, before
+ * journal recovery rescores restored tokens. The hospital policy is a
+ * {@link PriorityPolicy} bean if there is one, else {@code opd.priority.policy}
+ * as {@code key=value,...}; departments override it as
+ * {@code NAME:key=value,...;NAME:...}.
+ */
+@Component
+public class PriorityPolicyLifecycle implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PriorityPolicyLifecycle.class);
+
+    public PriorityPolicyLifecycle(
+            ObjectProvider<PriorityPolicy> customPolicy,
+            @Value("${opd.priority.policy:}") String policy,
+            @Value("${opd.priority.departments:}") String departments,
+            @Value("${opd.priority.department-doctors:}") String departmentDoctors) {
+
+        PriorityPolicy hospital = customPolicy.getIfAvailable();
+        if (hospital == null) {
+            hospital = PolicySettings.parse(policy).over(PriorityTable.DEFAULT);
+        }
+        Map<String, PriorityPolicy> overrides = new HashMap<>();
+        for (Map.Entry<String, PolicySettings> department : parseDepartments(departments).entrySet()) {
+            overrides.put(department.getKey(), department.getValue().over(hospital));
+        }
+        PriorityPolicies.install(hospital, overrides, OverflowRouterLifecycle.parseDepartments(departmentDoctors));
+        log.info("Priority policy installed [Hospital={}, Departments={}]",
+                PriorityPolicies.hospital(), overrides.keySet());
+    }
+
+    static Map<String, PolicySettings> parseDepartments(String spec) {
+        Map<String, PolicySettings> departments = new HashMap<>();
+        for (String department : spec.split(";")) {
+            int colon = department.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            departments.put(department.substring(0, colon).trim(),
+                    PolicySettings.parse(department.substring(colon + 1)));
+        }
+        return departments;
+    }
+
+    @Override
+    public void destroy() {
+        PriorityPolicies.reset();
+    }
+}
@@ -0,0 +1,214 @@
+package com.opd.opd_token_engine.replication;
+
+import com.opd.opd_token_engine.journal.EventStream;
+import com.opd.opd_token_engine.journal.JournalEvent;
+import com.opd.opd_token_engine.journal.StoreSnapshot;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a copy of the leader's store current: connects over TCP, answers
+ * the leader's challenge with the shared secret, replaces
+ * the store with the leader's snapshot, then applies each streamed event on
+ * a single thread. Reconnects and resyncs whenever the stream breaks, until
+ * closed, e.g. to promote this node.
+ */
+public class ReplicationFollower implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationFollower.class);
+    private static final long RECONNECT_MILLIS = 500;
+
+    private final String host;
+    private final int port;
+    private final byte[] secret;
+    private final Map<String, Doctor> doctors;
+    private final SlotConcurrencyMode mode;
+    private final Thread thread;
+    private volatile Socket socket;
+    private volatile boolean running = true;
+
+    private volatile boolean synced;
+    private volatile long leaderSequence;
+    private volatile long appliedSequence;
+    private volatile long lastApplyDelayMillis;
+    private volatile long lastContactMillis;
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    /**
+     * @param doctors the store to keep in step with the leader's
+     */
+    public ReplicationFollower(String host, int port, String secret, Map<String, Doctor> doctors,
+                               SlotConcurrencyMode mode) {
+        this.host = host;
+        this.port = port;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.doctors = doctors;
+        this.mode = mode;
+        this.thread = new Thread(this::run, "opd-replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Events the leader has produced that this follower has not applied yet,
+     * as of the last frame received.
+     */
+    public long getLagEvents() {
+        return Math.max(0, leaderSequence - appliedSequence);
+    }
+
+    private void run() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(new InetSocketAddress(host, port), 2_000);
+                connection.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+                authenticate(in, new DataOutputStream(connection.getOutputStream()));
+                follow(in);
+            } catch (IOException e) {
+                if (running && synced) {
+                    log.warn("Replication stream lost [Leader={}:{}, Reason={}]", host, port, e.getMessage());
+                }
+            }
+            synced = false;
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void authenticate(DataInputStream in, DataOutputStream out) throws IOException {
+        if (in.readByte() != ReplicationProtocol.CHALLENGE) {
+            throw new IOException("Leader did not open with a challenge");
+        }
+        byte[] nonce = new byte[ReplicationProtocol.NONCE_BYTES];
+        in.readFully(nonce);
+        out.writeByte(ReplicationProtocol.AUTH);
+        out.write(ReplicationProtocol.mac(secret, nonce));
+        out.flush();
+    }
+
+    private void follow(DataInputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = ByteBuffer.allocate(EventStream.MAX_RECORD_BYTES);
+        EventStream.Applier applier = null;
+        while (running) {
+            byte type = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            switch (type) {
+                case ReplicationProtocol.SNAPSHOT -> {
+                    long sequence = in.readLong();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    restore(bytes);
+                    applier = new EventStream.Applier(doctors);
+                    leaderSequence = Math.max(leaderSequence, sequence);
+                    appliedSequence = sequence;
+                    resyncs.increment();
+                    synced = true;
+                    log.info("Replication synced from leader [Leader={}:{}, Bytes={}, Sequence={}]",
+                            host, port, bytes.length, sequence);
+                }
+                case ReplicationProtocol.EVENT -> {
+                    long sequence = in.readLong();
+                    long leaderMillis = in.readLong();
+                    int length = in.readInt();
+                    record.clear();
+                    in.readFully(record.array(), 0, length);
+                    record.limit(length);
+                    JournalEvent event = EventStream.decode(record, crc);
+                    if (event == null || applier == null) {
+                        throw new IOException("Corrupt replication record at sequence " + sequence);
+                    }
+                    applier.apply(event);
+                    applied.increment();
+                    leaderSequence = Math.max(leaderSequence, sequence);
+                    appliedSequence = Math.max(appliedSequence, sequence);
+                    lastApplyDelayMillis = System.currentTimeMillis() - leaderMillis;
+                }
+                case ReplicationProtocol.HEARTBEAT -> {
+                    leaderSequence = Math.max(leaderSequence, in.readLong());
+                    in.readLong(); // leaderMillis
+                }
+                default -> throw new IOException("Unknown replication frame: " + type);
+            }
+        }
+    }
+
+    // Replaces the store's contents, dropping doctors the leader does not have
+    private void restore(byte[] snapshot) {
+        Map<String, Doctor> restored = new HashMap<>();
+        StoreSnapshot.decodeDoctors(ByteBuffer.wrap(snapshot), restored, mode);
+        doctors.putAll(restored);
+        doctors.keySet().retainAll(restored.keySet());
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("role", "FOLLOWER");
+        out.put("leader", host + ":" + port);
+        out.put("synced", synced);
+        out.put("leaderSequence", leaderSequence);
+        out.put("appliedSequence", appliedSequence);
+        out.put("lagEvents", getLagEvents());
+        out.put("lastApplyDelayMillis", lastApplyDelayMillis);
+        out.put("millisSinceLeaderContact", lastContactMillis == 0 ? -1
+                : System.currentTimeMillis() - lastContactMillis);
+        out.put("appliedEvents", applied.sum());
+        out.put("resyncs", resyncs.sum());
+        return out;
+    }
+
+    /**
+     * Stops following; the store keeps the state applied so far.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        thread.interrupt();
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.opd.opd_token_engine.replication;
+
+import com.opd.opd_token_engine.journal.EventStream;
+import com.opd.opd_token_engine.journal.JournalEvent;
+import com.opd.opd_token_engine.journal.JournalingListener;
+import com.opd.opd_token_engine.journal.StoreSnapshot;
+import com.opd.opd_token_engine.model.Doctor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Streams every slot event to followers connected over TCP. Listens only
+ * on the given address, and streams only to followers that prove they hold
+ * the shared secret.
+ * <p>
+ * Request threads only offer the event to each follower's bounded queue; a
+ * sender thread per follower encodes and writes it. A follower whose queue
+ * overflows is disconnected rather than slowing allocations, and resyncs
+ * from a fresh snapshot when it reconnects.
+ */
+public final class ReplicationLeader extends JournalingListener implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationLeader.class);
+
+    private record Frame(long sequence, long leaderMillis, JournalEvent event) {
+    }
+
+    private final Map<String, Doctor> doctors;
+    private final int maxLagEvents;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    public ReplicationLeader(Map<String, Doctor> doctors, InetAddress bindAddress, int port, int maxLagEvents,
+                             String secret) throws IOException {
+        this.doctors = doctors;
+        this.maxLagEvents = maxLagEvents;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(bindAddress, port));
+        this.acceptor = new Thread(this::runAcceptor, "opd-replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    @Override
+    protected void append(JournalEvent event) {
+        if (followers.isEmpty()) {
+            sequence.incrementAndGet();
+            return;
+        }
+        Frame frame = new Frame(sequence.incrementAndGet(), System.currentTimeMillis(), event);
+        for (Follower follower : followers) {
+            if (!follower.queue.offer(frame)) {
+                follower.drop("lagging more than " + maxLagEvents + " events");
+            }
+        }
+    }
+
+    private void runAcceptor() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                new Follower(socket).sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Replication accept failed [Port={}]", getPort(), e);
+                }
+            }
+        }
+    }
+
+    private final class Follower {
+        final Socket socket;
+        final ArrayBlockingQueue<Frame> queue = new ArrayBlockingQueue<>(maxLagEvents);
+        final Thread sender;
+        final AtomicLong sent = new AtomicLong();
+        volatile long sentSequence;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+            this.sender = new Thread(this::run, "opd-replication-" + socket.getRemoteSocketAddress());
+            sender.setDaemon(true);
+        }
+
+        void drop(String reason) {
+            if (followers.remove(this)) {
+                dropped.increment();
+                log.warn("Replication follower dropped [Follower={}, Reason={}]", socket.getRemoteSocketAddress(),
+                        reason);
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closing
+            }
+        }
+
+        void run() {
+            ByteBuffer record = ByteBuffer.allocate(EventStream.MAX_RECORD_BYTES);
+            CRC32 crc = new CRC32();
+            List<Frame> batch = new ArrayList<>();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                    1 << 16))) {
+                if (!authenticated(out)) {
+                    log.warn("Replication follower refused [Follower={}]", socket.getRemoteSocketAddress());
+                    socket.close();
+                    return;
+                }
+                // Registered before the snapshot is captured, so no event falls between them
+                followers.add(this);
+                long snapshotSequence = sequence.get();
+                byte[] snapshot = StoreSnapshot.encodeDoctors(doctors);
+                out.writeByte(ReplicationProtocol.SNAPSHOT);
+                out.writeLong(snapshotSequence);
+                out.writeInt(snapshot.length);
+                out.write(snapshot);
+                out.flush();
+                log.info("Replication follower synced [Follower={}, Bytes={}, Sequence={}]",
+                        socket.getRemoteSocketAddress(), snapshot.length, snapshotSequence);
+
+                while (running && !socket.isClosed()) {
+                    Frame first = queue.poll(ReplicationProtocol.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        out.writeByte(ReplicationProtocol.HEARTBEAT);
+                        out.writeLong(sequence.get());
+                        out.writeLong(System.currentTimeMillis());
+                        out.flush();
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (Frame frame : batch) {
+                        record.clear();
+                        EventStream.encode(frame.event(), record, crc);
+                        out.writeByte(ReplicationProtocol.EVENT);
+                        out.writeLong(frame.sequence());
+                        out.writeLong(frame.leaderMillis());
+                        out.writeInt(record.position());
+                        out.write(record.array(), 0, record.position());
+                        sentSequence = frame.sequence();
+                    }
+                    sent.addAndGet(batch.size());
+                    batch.clear();
+                    out.flush();
+                }
+            } catch (IOException e) {
+                drop("connection closed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drop("interrupted");
+            }
+        }
+
+        // Challenges the follower to MAC a fresh nonce under the shared secret
+        private boolean authenticated(DataOutputStream out) throws IOException {
+            byte[] nonce = new byte[ReplicationProtocol.NONCE_BYTES];
+            random.nextBytes(nonce);
+            out.writeByte(ReplicationProtocol.CHALLENGE);
+            out.write(nonce);
+            out.flush();
+
+            socket.setSoTimeout(ReplicationProtocol.HANDSHAKE_MILLIS);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte type = in.readByte();
+            byte[] mac = new byte[ReplicationProtocol.MAC_BYTES];
+            in.readFully(mac);
+            socket.setSoTimeout(0);
+            return type == ReplicationProtocol.AUTH
+                    && MessageDigest.isEqual(ReplicationProtocol.mac(secret, nonce), mac);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        long current = sequence.get();
+        out.put("role", "LEADER");
+        out.put("port", getPort());
+        out.put("sequence", current);
+        out.put("droppedFollowers", dropped.sum());
+        List<Map<String, Object>> connected = new ArrayList<>();
+        for (Follower follower : followers) {
+            Map<String, Object> f = new LinkedHashMap<>();
+            f.put("address", String.valueOf(follower.socket.getRemoteSocketAddress()));
+            f.put("sent", follower.sent.get());
+            f.put("queued", follower.queue.size());
+            f.put("sentSequence", follower.sentSequence);
+            connected.add(f);
+        }
+        out.put("followers", connected);
+        return out;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        for (Follower follower : followers) {
+            follower.drop("leader closed");
+        }
+    }
+}
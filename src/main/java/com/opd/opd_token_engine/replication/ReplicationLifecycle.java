@@ -0,0 +1,173 @@
+package com.opd.opd_token_engine.replication;
+
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.routing.Overflow;
+import com.opd.opd_token_engine.routing.OverflowRouter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.util.Map;
+
+/**
+ * Runs this node as a replication leader, streaming its slot events to
+ * followers, or as a read-only follower applying the leader's stream. A
+ * follower rejects every write but its promotion with 503 until it is
+ * promoted, which stops following and starts leading from the state applied
+ * so far. Leader and followers share {@code opd.replication.secret}.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.replication.enabled", havingValue = "true")
+public class ReplicationLifecycle implements WebMvcConfigurer, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationLifecycle.class);
+
+    public enum Role {
+        LEADER,
+        FOLLOWER
+    }
+
+    private final String bindAddress;
+    private final int port;
+    private final String secret;
+    private final String leaderHost;
+    private final int leaderPort;
+    private final int maxLagEvents;
+    private final SlotConcurrencyMode slotConcurrencyMode;
+
+    private volatile Role role;
+    private ReplicationLeader leader;
+    private ReplicationFollower follower;
+
+    public ReplicationLifecycle(
+            @Value("${opd.replication.role:LEADER}") Role role,
+            @Value("${opd.replication.bind-address:127.0.0.1}") String bindAddress,
+            @Value("${opd.replication.port:7070}") int port,
+            @Value("${opd.replication.secret:}") String secret,
+            @Value("${opd.replication.leader-host:localhost}") String leaderHost,
+            @Value("${opd.replication.leader-port:7070}") int leaderPort,
+            @Value("${opd.replication.max-lag-events:100000}") int maxLagEvents,
+            @Value("${opd.slot.concurrency-mode:MONITOR}") SlotConcurrencyMode slotConcurrencyMode) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("opd.replication.secret must be set when opd.replication.enabled=true");
+        }
+        this.role = role;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = secret;
+        this.leaderHost = leaderHost;
+        this.leaderPort = leaderPort;
+        this.maxLagEvents = maxLagEvents;
+        this.slotConcurrencyMode = slotConcurrencyMode;
+    }
+
+    // After every CommandLineRunner, so seeding and journal recovery are done
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (role == Role.LEADER) {
+            lead();
+        } else {
+            follower = new ReplicationFollower(leaderHost, leaderPort, secret, InMemoryStore.doctors,
+                    slotConcurrencyMode);
+            log.info("Replication following [Leader={}:{}]", leaderHost, leaderPort);
+        }
+    }
+
+    private void lead() {
+        try {
+            leader = new ReplicationLeader(InMemoryStore.doctors, InetAddress.getByName(bindAddress), port,
+                    maxLagEvents, secret);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for replication followers on " + bindAddress + ":" + port,
+                    e);
+        }
+        SlotEvents.register(leader);
+        log.info("Replication leading [Address={}, Port={}]", bindAddress, leader.getPort());
+    }
+
+    /**
+     * Makes this follower the leader. Followers of the old leader must be
+     * pointed at this node's replication port.
+     */
+    public synchronized Map<String, Object> promote() {
+        if (role == Role.LEADER) {
+            return metrics();
+        }
+        long lag = follower.getLagEvents();
+        follower.close();
+        follower = null;
+
+        // Slots were replaced by the leader's snapshot; route overflow to the new ones
+        OverflowRouter router = Overflow.current();
+        if (router != null) {
+            router.indexAll(InMemoryStore.doctors);
+        }
+        // Applied events bypass the engine, so the token index has not seen them
+        TokenIndex index = TokenLookup.current();
+        if (index != null) {
+            index.indexAll(InMemoryStore.doctors);
+        }
+        lead();
+        role = Role.LEADER;
+        log.warn("Replication follower promoted to leader [UnappliedEvents={}]", lag);
+        return metrics();
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        if (leader != null) {
+            return leader.metrics();
+        }
+        if (follower != null) {
+            return follower.metrics();
+        }
+        return Map.of("role", role.name());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws IOException {
+                if (role == Role.FOLLOWER && !"GET".equals(request.getMethod())) {
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                            "Read-only replication follower; send writes to the leader");
+                    return false;
+                }
+                return true;
+            }
+        }).excludePathPatterns("/replication/promote", "/error");
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (leader != null) {
+            SlotEvents.unregister(leader);
+            leader.close();
+        }
+        if (follower != null) {
+            follower.close();
+        }
+    }
+}
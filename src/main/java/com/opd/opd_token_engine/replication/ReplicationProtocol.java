@@ -0,0 +1,50 @@
+package com.opd.opd_token_engine.replication;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * Frames a leader sends to a follower over TCP, all big-endian.
+ * <pre>
+ * CHALLENGE := 'C' nonce:byte[32]
+ * AUTH      := 'A' mac:byte[32]   (follower to leader: HMAC-SHA256 of the nonce under the shared secret)
+ * SNAPSHOT  := 'S' sequence:long length:int doctors   (StoreSnapshot.encodeDoctors)
+ * EVENT     := 'E' sequence:long leaderMillis:long length:int record   (journal record)
+ * HEARTBEAT := 'H' sequence:long leaderMillis:long
+ * </pre>
+ * A connection starts with the leader's CHALLENGE, which the follower
+ * answers with AUTH; the leader closes a connection whose answer is wrong or
+ * late, so only a holder of the secret is sent anything else, and the secret
+ * itself never crosses the wire. Then comes one SNAPSHOT holding the leader's whole store,
+ * followed by every event from the moment the follower was registered;
+ * events the snapshot already reflects are skipped on apply. Sequences are
+ * the leader's event count, so a follower's lag is the leader's last
+ * sequence minus the last one it applied.
+ */
+final class ReplicationProtocol {
+
+    static final byte CHALLENGE = 'C';
+    static final byte AUTH = 'A';
+    static final byte SNAPSHOT = 'S';
+    static final byte EVENT = 'E';
+    static final byte HEARTBEAT = 'H';
+
+    static final long HEARTBEAT_MILLIS = 100;
+    static final int NONCE_BYTES = 32;
+    static final int MAC_BYTES = 32;
+    static final int HANDSHAKE_MILLIS = 5_000;
+
+    private ReplicationProtocol() {
+    }
+
+    static byte[] mac(byte[] secret, byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
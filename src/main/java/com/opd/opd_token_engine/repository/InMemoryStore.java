@@ -7,4 +7,21 @@ import java.util.concurrent.ConcurrentHashMap;
 public class InMemoryStore {
 
     public static Map<String, Doctor> doctors = new ConcurrentHashMap<>();
+
+    // Owning shard per doctor for mutations; null runs them on the caller
+    private static volatile StoreShards shards;
+
+    public static void install(StoreShards installed) {
+        shards = installed;
+    }
+
+    public static void uninstall(StoreShards installed) {
+        if (shards == installed) {
+            shards = null;
+        }
+    }
+
+    public static StoreShards shards() {
+        return shards;
+    }
 }
@@ -0,0 +1,122 @@
+package com.opd.opd_token_engine.repository;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Doctor-affinity partitions of the store. Each doctor is hashed to one of N
+ * shards, and every mutation of that doctor's slots runs on the shard's
+ * single thread, in submission order.
+ * <p>
+ * Slot locks stay in place because overflow routing, snapshots and metrics
+ * still reach across shards, but on the owning shard they are never
+ * contended. Two requests for the same doctor are applied in the order they
+ * were submitted, which the slot lock alone does not promise.
+ */
+public final class StoreShards implements Closeable {
+
+    private final ThreadPoolExecutor[] executors;
+    private final Thread[] threads;
+    private final LongAdder[] executed;
+
+    public StoreShards(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + count);
+        }
+        this.executors = new ThreadPoolExecutor[count];
+        this.threads = new Thread[count];
+        this.executed = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            int shard = i;
+            executed[i] = new LongAdder();
+            executors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "opd-shard-" + shard);
+                t.setDaemon(true);
+                threads[shard] = t;
+                return t;
+            });
+            executors[i].prestartAllCoreThreads();
+        }
+    }
+
+    public int size() {
+        return executors.length;
+    }
+
+    public int shardOf(String doctorId) {
+        int h = doctorId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), executors.length);
+    }
+
+    /**
+     * True when called on the thread that owns the doctor, where its slots can
+     * be mutated directly.
+     */
+    public boolean isOwner(String doctorId) {
+        return Thread.currentThread() == threads[shardOf(doctorId)];
+    }
+
+    public <T> CompletableFuture<T> submit(String doctorId, Supplier<T> task) {
+        int shard = shardOf(doctorId);
+        return CompletableFuture.supplyAsync(() -> {
+            executed[shard].increment();
+            return task.get();
+        }, executors[shard]);
+    }
+
+    /**
+     * Waits for a shard result, rethrowing the task's own runtime exception.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        List<Map<String, Object>> perShard = new ArrayList<>(executors.length);
+        for (int i = 0; i < executors.length; i++) {
+            Map<String, Object> shard = new LinkedHashMap<>();
+            shard.put("executed", executed[i].sum());
+            shard.put("queueDepth", executors[i].getQueue().size());
+            perShard.add(shard);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("shards", executors.length);
+        out.put("perShard", perShard);
+        return out;
+    }
+
+    /**
+     * Runs everything already submitted, then stops the shard threads.
+     */
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : executors) {
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
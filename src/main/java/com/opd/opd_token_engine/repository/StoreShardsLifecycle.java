@@ -0,0 +1,37 @@
+package com.opd.opd_token_engine.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partitions the store across single-threaded shards, one per core unless a
+ * count is configured. Installed before any request is served.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.store.sharding.enabled", havingValue = "true")
+public class StoreShardsLifecycle implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreShardsLifecycle.class);
+
+    private final StoreShards shards;
+
+    public StoreShardsLifecycle(@Value("${opd.store.shards:0}") int count) {
+        this.shards = new StoreShards(count > 0 ? count : Runtime.getRuntime().availableProcessors());
+        InMemoryStore.install(shards);
+        log.info("Store sharding enabled [Shards={}]", shards.size());
+    }
+
+    public StoreShards getShards() {
+        return shards;
+    }
+
+    @Override
+    public void destroy() {
+        InMemoryStore.uninstall(shards);
+        shards.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.opd.opd_token_engine.routing;
+
+import com.opd.opd_token_engine.model.TimeSlot;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Slots with free seats, per department and start time, most free first.
+ * <p>
+ * Each department maps a slot start minute to a skip list of the slots
+ * starting then that have room, so the best slot of a time window is the
+ * head of its list and keeping an entry current is one O(log n) remove and
+ * insert. Slots without a parseable time share the window keyed -1.
+ */
+public class FreeCapacityIndex {
+
+    public record Candidate(String doctorId, TimeSlot slot) {
+    }
+
+    private static final Comparator<Entry> MOST_FREE_FIRST = Comparator
+            .comparingInt((Entry e) -> -e.free)
+            .thenComparing(e -> e.doctorId)
+            .thenComparing(e -> e.slot.getSlotId());
+
+    private static final class Entry {
+        final String doctorId;
+        final TimeSlot slot;
+        final ConcurrentSkipListSet<Entry> window;
+        final ReentrantLock lock = new ReentrantLock();
+
+        // Free seats this entry is currently keyed by; 0 when not in the window
+        int free;
+
+        Entry(String doctorId, TimeSlot slot, ConcurrentSkipListSet<Entry> window) {
+            this.doctorId = doctorId;
+            this.slot = slot;
+            this.window = window;
+        }
+    }
+
+    private final Map<String, String> departmentOf;
+    private final Map<String, ConcurrentSkipListMap<Integer, ConcurrentSkipListSet<Entry>>> departments =
+            new ConcurrentHashMap<>();
+    private final Map<TimeSlot, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param departmentOf department of every routable doctor
+     */
+    public FreeCapacityIndex(Map<String, String> departmentOf) {
+        this.departmentOf = Map.copyOf(departmentOf);
+    }
+
+    public String departmentOf(String doctorId) {
+        return departmentOf.get(doctorId);
+    }
+
+    /**
+     * Re-keys the slot by its current free seats. Called after every change
+     * to the slot's seats; slots of doctors outside any department are
+     * ignored.
+     */
+    public void refresh(String doctorId, TimeSlot slot) {
+        Entry entry = entries.get(slot);
+        if (entry == null) {
+            String department = departmentOf.get(doctorId);
+            if (department == null) {
+                return;
+            }
+            ConcurrentSkipListSet<Entry> window = departments
+                    .computeIfAbsent(department, d -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(slot.getStartMinute(), m -> new ConcurrentSkipListSet<>(MOST_FREE_FIRST));
+            entry = entries.computeIfAbsent(slot, s -> new Entry(doctorId, s, window));
+        }
+
+        entry.lock.lock();
+        try {
+            int free = entry.slot.freeSeats();
+            if (free == entry.free) {
+                return;
+            }
+            if (entry.free > 0) {
+                entry.window.remove(entry);
+            }
+            entry.free = free;
+            if (free > 0) {
+                entry.window.add(entry);
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Up to limit slots in the doctor's department, other than origin, that
+     * had free seats at their last refresh and have not ended by now. Windows
+     * are visited nearest start time first, later before earlier on ties, and
+     * each contributes its most-free slots first.
+     */
+    public List<Candidate> candidates(String doctorId, TimeSlot origin, int maxShiftMinutes, LocalTime now,
+                                      int limit) {
+        List<Candidate> out = new ArrayList<>(limit);
+        String department = departmentOf.get(doctorId);
+        ConcurrentSkipListMap<Integer, ConcurrentSkipListSet<Entry>> windows =
+                department != null ? departments.get(department) : null;
+        if (windows == null) {
+            return out;
+        }
+
+        int start = origin.getStartMinute();
+        NavigableMap<Integer, ConcurrentSkipListSet<Entry>> later = start < 0
+                ? windows.subMap(-1, true, -1, true)
+                : windows.subMap(start, true, start + maxShiftMinutes, true);
+        NavigableMap<Integer, ConcurrentSkipListSet<Entry>> earlier = start < 0
+                ? windows.subMap(-1, false, -1, false)
+                : windows.subMap(start - maxShiftMinutes, true, start, false).descendingMap();
+
+        var up = later.entrySet().iterator();
+        var down = earlier.entrySet().iterator();
+        var nextUp = up.hasNext() ? up.next() : null;
+        var nextDown = down.hasNext() ? down.next() : null;
+        while (out.size() < limit && (nextUp != null || nextDown != null)) {
+            boolean takeUp = nextDown == null
+                    || (nextUp != null && nextUp.getKey() - start <= start - nextDown.getKey());
+            ConcurrentSkipListSet<Entry> window;
+            if (takeUp) {
+                window = nextUp.getValue();
+                nextUp = up.hasNext() ? up.next() : null;
+            } else {
+                window = nextDown.getValue();
+                nextDown = down.hasNext() ? down.next() : null;
+            }
+            for (Entry entry : window) {
+                if (out.size() == limit) {
+                    break;
+                }
+                if (entry.slot != origin && !entry.slot.hasEndedBy(now)) {
+                    out.add(new Candidate(entry.doctorId, entry.slot));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Free seats the slot is indexed under, 0 if it is absent.
+     */
+    int indexedFreeSeats(TimeSlot slot) {
+        Entry entry = entries.get(slot);
+        return entry != null ? entry.free : 0;
+    }
+}
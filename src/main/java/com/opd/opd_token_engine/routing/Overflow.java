@@ -0,0 +1,27 @@
+package com.opd.opd_token_engine.routing;
+
+/**
+ * Static handle the engine consults on a full slot, mirroring the static
+ * engine and store. With no router installed the engine waitlists as before.
+ */
+public final class Overflow {
+
+    private static volatile OverflowRouter installed;
+
+    private Overflow() {
+    }
+
+    public static void install(OverflowRouter router) {
+        installed = router;
+    }
+
+    public static void uninstall(OverflowRouter router) {
+        if (installed == router) {
+            installed = null;
+        }
+    }
+
+    public static OverflowRouter current() {
+        return installed;
+    }
+}
@@ -0,0 +1,112 @@
+package com.opd.opd_token_engine.routing;
+
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds a free seat elsewhere for a booking that would otherwise be
+ * waitlisted: with an equivalent doctor in the same department, in a slot
+ * starting within maxShiftMinutes of the requested one.
+ * <p>
+ * Registered as a SlotEventListener so the FreeCapacityIndex follows every
+ * seat change; lookups never scan the store.
+ */
+public class OverflowRouter implements SlotEventListener {
+
+    /** Candidates tried per booking before it is waitlisted after all. */
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final FreeCapacityIndex index;
+    private final int maxShiftMinutes;
+    private final Clock clock;
+
+    private final LongAdder rerouted = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public OverflowRouter(Map<String, String> departmentOf, int maxShiftMinutes, Clock clock) {
+        this.index = new FreeCapacityIndex(departmentOf);
+        this.maxShiftMinutes = maxShiftMinutes;
+        this.clock = clock;
+    }
+
+    /**
+     * Indexes every slot of the given doctors. Later slots join the index on
+     * their first event.
+     */
+    public OverflowRouter indexAll(Map<String, Doctor> doctors) {
+        for (Map.Entry<String, Doctor> doctor : doctors.entrySet()) {
+            for (TimeSlot slot : doctor.getValue().getSlots().values()) {
+                index.refresh(doctor.getKey(), slot);
+            }
+        }
+        return this;
+    }
+
+    public FreeCapacityIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Alternatives to a full slot, best first. The caller holds the origin
+     * slot's lock and must only tryLock a candidate.
+     */
+    public List<FreeCapacityIndex.Candidate> candidates(String doctorId, TimeSlot origin) {
+        return index.candidates(doctorId, origin, maxShiftMinutes, LocalTime.now(clock), MAX_ATTEMPTS);
+    }
+
+    public void recordRerouted() {
+        rerouted.increment();
+    }
+
+    /** A routable booking found no alternative and was waitlisted. */
+    public void recordExhausted() {
+        exhausted.increment();
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rerouted", rerouted.sum());
+        out.put("exhausted", exhausted.sum());
+        out.put("maxShiftMinutes", maxShiftMinutes);
+        return out;
+    }
+
+    @Override
+    public void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+        index.refresh(doctorId, slot);
+    }
+
+    @Override
+    public void onEvicted(String doctorId, TimeSlot slot, Token token, long version) {
+        index.refresh(doctorId, slot);
+    }
+
+    @Override
+    public void onCancelled(String doctorId, TimeSlot slot, Token token, long version) {
+        index.refresh(doctorId, slot);
+    }
+
+    @Override
+    public void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+        index.refresh(doctorId, slot);
+    }
+
+    @Override
+    public void onDisplaced(String doctorId, TimeSlot slot, Token token, long version) {
+        index.refresh(doctorId, slot);
+    }
+
+    @Override
+    public void onResized(String doctorId, TimeSlot slot, int capacity, long version) {
+        index.refresh(doctorId, slot);
+    }
+}
@@ -0,0 +1,76 @@
+package com.opd.opd_token_engine.routing;
+
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Installs the overflow router once the store is seeded and recovered.
+ * Departments are configured as {@code NAME:doctor,doctor;NAME:doctor,...}.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.overflow.enabled", havingValue = "true")
+public class OverflowRouterLifecycle implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OverflowRouterLifecycle.class);
+
+    private final OverflowRouter router;
+    private final int maxShiftMinutes;
+
+    public OverflowRouterLifecycle(
+            @Value("${opd.overflow.departments:}") String departments,
+            @Value("${opd.overflow.max-shift-minutes:60}") int maxShiftMinutes) {
+        this.router = new OverflowRouter(parseDepartments(departments), maxShiftMinutes, Clock.systemDefaultZone());
+        this.maxShiftMinutes = maxShiftMinutes;
+    }
+
+    /**
+     * Doctor id to department name, from {@code NAME:doctor,doctor;...}.
+     */
+    public static Map<String, String> parseDepartments(String spec) {
+        Map<String, String> departmentOf = new HashMap<>();
+        for (String department : spec.split(";")) {
+            int colon = department.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = department.substring(0, colon).trim();
+            for (String doctorId : department.substring(colon + 1).split(",")) {
+                if (!doctorId.isBlank()) {
+                    departmentOf.put(doctorId.trim(), name);
+                }
+            }
+        }
+        return departmentOf;
+    }
+
+    // After every CommandLineRunner, so seeding and journal recovery are done
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        router.indexAll(InMemoryStore.doctors);
+        SlotEvents.register(router);
+        Overflow.install(router);
+        log.info("Overflow routing enabled [MaxShiftMinutes={}]", maxShiftMinutes);
+    }
+
+    public OverflowRouter getRouter() {
+        return router;
+    }
+
+    @Override
+    public void destroy() {
+        Overflow.uninstall(router);
+        SlotEvents.unregister(router);
+    }
+}
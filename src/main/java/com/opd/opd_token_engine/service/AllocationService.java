@@ -1,19 +1,45 @@
 package com.opd.opd_token_engine.service;
 
 import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.dto.TokenRequestDTO;
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.decision.Decisions;
 import com.opd.opd_token_engine.engine.AllocationEngine;
 import com.opd.opd_token_engine.engine.AllocationResult;
+import com.opd.opd_token_engine.engine.AllocationStatus;
+import com.opd.opd_token_engine.engine.DelayPropagator;
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.TimeSlot;
 import com.opd.opd_token_engine.model.Token;
 import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.policy.PriorityPolicies;
 import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.repository.StoreShards;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
 
 @Service
 public class AllocationService {
 
+    // SYNC journal waits for async requests, kept off the shard threads
+    private static final Executor COMMIT_WAITERS = Executors.newVirtualThreadPerTaskExecutor();
 
     public AllocationResponseDTO createToken(
             String doctorId,
@@ -21,16 +47,39 @@ public class AllocationService {
             String patientId,
             TokenSource source
     ) {
+        StoreShards shards = InMemoryStore.shards();
+        if (shards == null || shards.isOwner(doctorId)) {
+            // Inline, without the capturing lambda onOwner needs to hop shards
+            AllocationResponseDTO response = allocate(doctorId, slotId, patientId, source);
+            SlotEvents.commit();
+            return response;
+        }
+        return onOwner(doctorId, () -> allocate(doctorId, slotId, patientId, source));
+    }
 
-        int basePriority = switch (source) {
-            case EMERGENCY -> 100;
-            case PAID -> 85;
-            case FOLLOW_UP -> 65;
-            case ONLINE -> 50;
-            case WALK_IN -> 40;
-        };
+    /**
+     * Books on the doctor's store shard without waiting for it. Completes
+     * once the booking is applied and, in SYNC journal mode, durable.
+     */
+    public CompletableFuture<AllocationResponseDTO> createTokenAsync(
+            String doctorId,
+            String slotId,
+            String patientId,
+            TokenSource source
+    ) {
+        return onOwnerAsync(doctorId, () -> allocate(doctorId, slotId, patientId, source));
+    }
 
-        Token token = new Token(patientId, source, basePriority);
+    private static AllocationResponseDTO allocate(String doctorId, String slotId, String patientId,
+                                                  TokenSource source) {
+
+        String tooLong = tooLong(doctorId, slotId, patientId);
+        if (tooLong != null) {
+            return new AllocationResponseDTO(null, "ERROR", tooLong);
+        }
+
+        PriorityTable priorities = PriorityPolicies.forDoctor(doctorId);
+        Token token = new Token(patientId, source, priorities.basePriority(source));
 
         var doctor = InMemoryStore.doctors.get(doctorId);
         if (doctor == null) {
@@ -42,45 +91,239 @@ public class AllocationService {
             return new AllocationResponseDTO(null, "ERROR", "Slot not found");
         }
 
-        AllocationResult allocResult = AllocationEngine.allocate(doctorId, slot, token);
+        TokenIndex index = TokenLookup.current();
+        if (index != null) {
+            TokenIndex.Entry held = index.reserve(token, doctorId, slot);
+            if (held != null) {
+                return duplicate(held);
+            }
+        }
 
-        String reason = switch (allocResult.status) {
-            case "ALLOCATED" ->
-                    "Token allocated successfully within slot capacity";
+        AllocationResult allocResult;
+        try {
+            allocResult = AllocationEngine.allocate(doctorId, slot, token, EngineClock.system(), priorities);
+        } catch (RuntimeException e) {
+            if (index != null) {
+                index.release(token);
+            }
+            throw e;
+        }
 
-            case "WAITLISTED" ->
-                    "Slot is full; token added to waiting queue";
+        Integer position = null;
+        if (allocResult.status == AllocationStatus.WAITLISTED) {
+            slot.lock();
+            try {
+                position = waitingPosition(slot, token);
+            } finally {
+                slot.unlock();
+            }
+        }
 
-            case "REALLOCATED_LOW_PRIORITY" ->
-                    "Lower-priority token was reallocated to the waiting queue based on fairness rules";
+        return toResponse(token, allocResult, position);
+    }
 
-            default ->
-                    "Allocation decision applied";
-        };
-        Integer position = null;
-        if ("WAITLISTED".equals(allocResult.status)) {
-            synchronized (slot) {
-                // Note: PriorityQueue iterator does not guarantee priority order
-                // Position calculation is approximate and for informational purposes only
-                List<Token> waiting = new ArrayList<>(slot.getWaitingQueue());
-                for (int i = 0; i < waiting.size(); i++) {
-                    if (waiting.get(i).getTokenId().equals(token.getTokenId())) {
-                        position = i + 1; // 1-based position (approximate)
-                        break;
-                    }
+    /**
+     * Why the IDs cannot be booked, or null. An ID the journal cannot encode
+     * would fail only once the booking was applied and acknowledged, losing
+     * it on the next recovery, so it is refused before allocating.
+     */
+    private static String tooLong(String doctorId, String slotId, String patientId) {
+        if (doctorId != null && doctorId.length() > TokenRequestDTO.MAX_ID_LENGTH) {
+            return "Doctor ID is too long";
+        }
+        if (slotId != null && slotId.length() > TokenRequestDTO.MAX_ID_LENGTH) {
+            return "Slot ID is too long";
+        }
+        if (patientId != null && patientId.length() > TokenRequestDTO.MAX_ID_LENGTH) {
+            return "Patient ID is too long";
+        }
+        return null;
+    }
+
+    /**
+     * Allocates a batch of bookings. Requests are grouped by doctor and slot so
+     * each slot lock is taken once per group, and all of the group's tokens
+     * are allocated in one pass. With store shards, groups run on their
+     * doctors' shards. Responses are returned in input order.
+     */
+    public List<AllocationResponseDTO> createTokens(List<TokenRequestDTO> requests) {
+        AllocationResponseDTO[] responses = new AllocationResponseDTO[requests.size()];
+        Map<TimeSlot, List<Integer>> groups = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            TokenRequestDTO request = requests.get(i);
+            String tooLong = tooLong(request.doctorId, request.slotId, request.patientId);
+            if (tooLong != null) {
+                responses[i] = new AllocationResponseDTO(null, "ERROR", tooLong);
+                continue;
+            }
+            var doctor = InMemoryStore.doctors.get(request.doctorId);
+            if (doctor == null) {
+                responses[i] = new AllocationResponseDTO(null, "ERROR", "Doctor not found");
+                continue;
+            }
+            var slot = doctor.getSlots().get(request.slotId);
+            if (slot == null) {
+                responses[i] = new AllocationResponseDTO(null, "ERROR", "Slot not found");
+                continue;
+            }
+            groups.computeIfAbsent(slot, s -> new ArrayList<>()).add(i);
+        }
+
+        StoreShards shards = InMemoryStore.shards();
+        if (shards == null) {
+            for (Map.Entry<TimeSlot, List<Integer>> group : groups.entrySet()) {
+                allocateGroup(requests, group.getKey(), group.getValue(), responses);
+            }
+            SlotEvents.commit();
+            return Arrays.asList(responses);
+        }
+
+        // Groups run on their doctors' shards in parallel, each shard in input order
+        List<CompletableFuture<Detached<Void>>> running = new ArrayList<>(groups.size());
+        for (Map.Entry<TimeSlot, List<Integer>> group : groups.entrySet()) {
+            String doctorId = requests.get(group.getValue().get(0)).doctorId;
+            running.add(shards.submit(doctorId, () -> detach(() -> {
+                allocateGroup(requests, group.getKey(), group.getValue(), responses);
+                return null;
+            })));
+        }
+        for (CompletableFuture<Detached<Void>> group : running) {
+            StoreShards.join(group).complete();
+        }
+        return Arrays.asList(responses);
+    }
+
+    private static void allocateGroup(List<TokenRequestDTO> requests, TimeSlot slot, List<Integer> indices,
+                                      AllocationResponseDTO[] responses) {
+        String doctorId = requests.get(indices.get(0)).doctorId;
+
+        TokenIndex index = TokenLookup.current();
+        PriorityTable priorities = PriorityPolicies.forDoctor(doctorId);
+        List<Token> tokens = new ArrayList<>(indices.size());
+        List<Integer> accepted = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            TokenRequestDTO request = requests.get(i);
+            Token token = new Token(request.patientId, request.source, priorities.basePriority(request.source));
+            TokenIndex.Entry held = index != null ? index.reserve(token, doctorId, slot) : null;
+            if (held != null) {
+                responses[i] = duplicate(held);
+                continue;
+            }
+            tokens.add(token);
+            accepted.add(i);
+        }
+        if (tokens.isEmpty()) {
+            return;
+        }
+
+        boolean timed = EngineMetrics.isEnabled();
+        long lockStart = timed ? System.nanoTime() : 0;
+        slot.lock();
+        try {
+            if (timed) {
+                slot.getMetrics().recordLockWait(System.nanoTime() - lockStart);
+            }
+            List<AllocationResult> results;
+            try {
+                results = AllocationEngine.allocateAll(doctorId, slot, tokens, priorities);
+            } catch (RuntimeException e) {
+                if (index != null) {
+                    tokens.forEach(index::release);
                 }
+                throw e;
             }
+            // Positions reflect the slot after the whole group was allocated
+            for (int k = 0; k < accepted.size(); k++) {
+                Token token = tokens.get(k);
+                AllocationResult result = results.get(k);
+                Integer position = result.status == AllocationStatus.WAITLISTED
+                        ? waitingPosition(slot, token)
+                        : null;
+                responses[accepted.get(k)] = toResponse(token, result, position);
+            }
+        } finally {
+            slot.unlock();
         }
+        Decisions.flush(slot);
+    }
+
+    // A shard's result with the journal wait it detached, completed off the shard
+    private record Detached<T>(T result, Runnable commit) {
+        T complete() {
+            if (commit != null) {
+                commit.run();
+            }
+            return result;
+        }
+    }
+
+    private static <T> Detached<T> detach(Supplier<T> mutation) {
+        T result = mutation.get();
+        return new Detached<>(result, SlotEvents.detachCommit());
+    }
 
-        return new AllocationResponseDTO(
+    /**
+     * Runs a mutation on the doctor's store shard and completes its commit on
+     * the calling thread, so a shard never waits on the journal. Without
+     * shards, or when already on the owning shard, it runs inline.
+     */
+    private static <T> T onOwner(String doctorId, Supplier<T> mutation) {
+        StoreShards shards = InMemoryStore.shards();
+        if (shards == null || shards.isOwner(doctorId)) {
+            T result = mutation.get();
+            SlotEvents.commit();
+            return result;
+        }
+        return StoreShards.join(shards.submit(doctorId, () -> detach(mutation))).complete();
+    }
+
+    private static <T> CompletableFuture<T> onOwnerAsync(String doctorId, Supplier<T> mutation) {
+        StoreShards shards = InMemoryStore.shards();
+        if (shards == null) {
+            try {
+                return CompletableFuture.completedFuture(onOwner(doctorId, mutation));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return shards.submit(doctorId, () -> detach(mutation))
+                .thenCompose(done -> done.commit() == null
+                        ? CompletableFuture.completedFuture(done.result())
+                        : CompletableFuture.supplyAsync(done::complete, COMMIT_WAITERS));
+    }
+
+    // Caller holds the slot lock
+    private static Integer waitingPosition(TimeSlot slot, Token token) {
+        int rank = slot.getWaitingQueue().positionOf(token.getTokenId());
+        return rank > 0 ? rank : null; // exact 1-based position
+    }
+
+    private static AllocationResponseDTO toResponse(Token token, AllocationResult allocResult, Integer position) {
+        AllocationResponseDTO response = new AllocationResponseDTO(
                 token.getTokenId(),
-                allocResult.status,
-                reason,
+                allocResult.status.name(),
+                allocResult.status.reason(),
                 allocResult.evictedTokenId,
                 position
         );
+        response.reroutedDoctorId = allocResult.reroutedDoctorId;
+        response.reroutedSlotId = allocResult.reroutedSlotId;
+        return response;
     }
 
+    private static AllocationResponseDTO duplicate(TokenIndex.Entry held) {
+        return new AllocationResponseDTO(null, "REJECTED",
+                "Patient already holds token " + held.tokenId() + " with doctor " + held.doctorId()
+                        + " in overlapping slot " + held.slotId());
+    }
+
+    /**
+     * Base priority of a source under the hospital-wide policy.
+     */
+    public static int basePriority(TokenSource source) {
+        return PriorityPolicies.hospital().basePriority(source);
+    }
 
     public AllocationResponseDTO createEmergencyToken(String doctorId, String slotId, String patientId) {
         return createToken(doctorId, slotId, patientId, TokenSource.EMERGENCY);
@@ -91,6 +334,34 @@ public class AllocationService {
             String slotId,
             String tokenId
     ) {
+        StoreShards shards = InMemoryStore.shards();
+        if (shards == null || shards.isOwner(doctorId)) {
+            boolean cancelled = cancel(doctorId, slotId, tokenId);
+            SlotEvents.commit();
+            return cancelled;
+        }
+        return onOwner(doctorId, () -> cancel(doctorId, slotId, tokenId));
+    }
+
+    /**
+     * Cancels a token found through the token index, so the caller needs
+     * neither its doctor nor its slot. False when no index is installed or
+     * the token is not live on this node.
+     */
+    public boolean cancelToken(String tokenId) {
+        TokenIndex index = TokenLookup.current();
+        TokenIndex.Entry entry = index != null ? index.get(tokenId) : null;
+        if (entry == null) {
+            return false;
+        }
+        return cancelPatientToken(entry.doctorId(), entry.slotId(), tokenId);
+    }
+
+    public CompletableFuture<Boolean> cancelPatientTokenAsync(String doctorId, String slotId, String tokenId) {
+        return onOwnerAsync(doctorId, () -> cancel(doctorId, slotId, tokenId));
+    }
+
+    private static boolean cancel(String doctorId, String slotId, String tokenId) {
         var doctor = InMemoryStore.doctors.get(doctorId);
         if (doctor == null) {
             return false;
@@ -101,16 +372,51 @@ public class AllocationService {
             return false;
         }
 
-        synchronized (slot) {
-            boolean removed = slot.getAllocatedTokens()
-                    .removeIf(token -> token.getTokenId().equals(tokenId));
+        boolean timed = EngineMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
 
-            if (removed && !slot.getWaitingQueue().isEmpty()) {
-                slot.getAllocatedTokens().add(slot.getWaitingQueue().poll());
+        boolean cancelled;
+        slot.lock();
+        try {
+            if (timed) {
+                slot.getMetrics().recordLockWait(System.nanoTime() - start);
             }
+            cancelled = AllocationEngine.cancelLocked(doctorId, slot, tokenId);
+        } finally {
+            slot.unlock();
+        }
+        if (timed) {
+            slot.getMetrics().recordCancel(System.nanoTime() - start, cancelled);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Applies a doctor running late (factor &lt; 1) or catching up (factor &gt; 1)
+     * to the capacity of the doctor's slots that have not ended yet.
+     */
+    public boolean applyDelay(String doctorId, double delayFactor) {
+        LocalTime now = LocalTime.ofInstant(Instant.ofEpochMilli(EngineClock.system().millis()),
+                ZoneId.systemDefault());
+        return applyDelay(doctorId, delayFactor, now) != null;
+    }
+
+    /**
+     * Applies a delay as of the given time of day. Slots are resized one at
+     * a time under their own locks; returns null if the doctor is unknown.
+     */
+    public DelayPropagator.Propagation applyDelay(String doctorId, double delayFactor, LocalTime asOf) {
+        return onOwner(doctorId, () -> delay(doctorId, delayFactor, asOf));
+    }
 
-            return removed;
+    private static DelayPropagator.Propagation delay(String doctorId, double delayFactor, LocalTime asOf) {
+        var doctor = InMemoryStore.doctors.get(doctorId);
+        if (doctor == null) {
+            return null;
         }
+        long delayVersion = doctor.applyDelay(delayFactor);
+        SlotEvents.delayApplied(doctorId, delayFactor, delayVersion);
+        return DelayPropagator.propagate(doctorId, doctor, asOf);
     }
 
 }
@@ -1,35 +1,57 @@
 package com.opd.opd_token_engine.service;
 
+import com.opd.opd_token_engine.cluster.Cluster;
+import com.opd.opd_token_engine.cluster.Ownership;
 import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
 import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+
 
 
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // seed doctors before journal recovery
 public class SimulationService implements CommandLineRunner {
 
+    private final SlotConcurrencyMode slotConcurrencyMode;
+
+    public SimulationService(
+            @Value("${opd.slot.concurrency-mode:MONITOR}") SlotConcurrencyMode slotConcurrencyMode) {
+        this.slotConcurrencyMode = slotConcurrencyMode;
+    }
 
     @Override
     public void run(String... args) {
 
-        Doctor d1 = new Doctor("D1", 1.2);
+        Doctor d1 = new Doctor("D1", 1.2, slotConcurrencyMode);
         d1.addSlot("9-10", 5);
         d1.addSlot("10-11", 5);
 
-        Doctor d2 = new Doctor("D2", 1.0);
+        Doctor d2 = new Doctor("D2", 1.0, slotConcurrencyMode);
         d2.addSlot("9-10", 4);
         d2.addSlot("10-11", 4);
 
-        Doctor d3 = new Doctor("D3", 0.8);
+        Doctor d3 = new Doctor("D3", 0.8, slotConcurrencyMode);
         d3.addSlot("9-10", 3);
         d3.addSlot("10-11", 3);
 
-        InMemoryStore.doctors.put("D1", d1);
-        InMemoryStore.doctors.put("D2", d2);
-        InMemoryStore.doctors.put("D3", d3);
-
-        System.out.println("Simulation initialized with 3 doctors");
+        // In a cluster each node seeds only the doctors the ring assigns to it
+        Cluster cluster = Ownership.current();
+        Map<String, Doctor> doctors = Map.of("D1", d1, "D2", d2, "D3", d3);
+        int seeded = 0;
+        for (Map.Entry<String, Doctor> doctor : doctors.entrySet()) {
+            if (cluster == null || cluster.owns(doctor.getKey())) {
+                InMemoryStore.doctors.put(doctor.getKey(), doctor.getValue());
+                seeded++;
+            }
+        }
+
+        System.out.println("Simulation initialized with " + seeded + " doctors");
     }
 }
@@ -0,0 +1,588 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.clock.VirtualClock;
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
+import com.opd.opd_token_engine.metrics.LatencyRecorder;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a simulated OPD day through AllocationService, for capacity planning.
+ * <p>
+ * Bookings arrive per doctor and token source as Poisson processes, or from a
+ * recorded trace. Some are cancelled before their slot, and some doctors run
+ * late once during the day. Emergencies and walk-ins book the slot under way;
+ * the other sources book any slot still to come.
+ * <p>
+ * The day runs on a virtual clock in ticks: the clock is set to the start of
+ * a tick, every event in the tick runs, then the clock moves on, so arrival
+ * stamps and aging are exact to the tick however fast the day goes. Each
+ * doctor's events run in order on one worker at a time and doctors run in
+ * parallel, so with the same seed a day ends in the same state regardless of
+ * the thread count, unless overflow routing moves bookings between doctors.
+ * <p>
+ * The simulated doctors are added to the live store for the run and removed
+ * afterwards, and the virtual clock replaces the engine clock meanwhile, so
+ * runs belong on an instance that is not serving a hospital.
+ */
+public class OpdDaySimulator {
+
+    /**
+     * A doctor and the slots they hold, as for Doctor.addSlot.
+     */
+    public record DoctorProfile(String doctorId, double efficiencyScore, List<String> slotIds, int baseCapacity) {
+    }
+
+    /**
+     * A recorded booking at a minute of the day, cancelled at cancelMinute
+     * unless that is null.
+     */
+    public record TraceArrival(double minute, String doctorId, String slotId, String patientId,
+                               TokenSource source, Double cancelMinute) {
+    }
+
+    /**
+     * What to simulate. Arrival rates are bookings per doctor per hour of
+     * the doctor's day; a non-empty trace replaces them. Unset numbers take
+     * the defaults below.
+     */
+    public record Config(
+            List<DoctorProfile> doctors,
+            Map<TokenSource, Double> arrivalsPerHour,
+            List<TraceArrival> trace,
+            double cancellationRate,
+            double delayRate,
+            double delayFactor,
+            int tickSeconds,
+            int threads,
+            long seed) {
+
+        public Config {
+            doctors = doctors != null ? List.copyOf(doctors) : List.of();
+            arrivalsPerHour = arrivalsPerHour != null && !arrivalsPerHour.isEmpty()
+                    ? new EnumMap<>(arrivalsPerHour) : DEFAULT_ARRIVALS;
+            trace = trace != null ? List.copyOf(trace) : List.of();
+            delayFactor = delayFactor > 0 ? delayFactor : 0.8;
+            tickSeconds = tickSeconds > 0 ? tickSeconds : 60;
+            threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        }
+
+        /**
+         * A hospital of doctorCount doctors holding hourly slots from 9 to
+         * 17 with efficiencies between 0.8 and 1.2, at the default arrival
+         * rates: about 100 bookings per doctor per day.
+         */
+        public static Config hospital(int doctorCount, int threads, long seed) {
+            List<String> slots = new ArrayList<>();
+            for (int hour = 9; hour < 17; hour++) {
+                slots.add(hour + "-" + (hour + 1));
+            }
+            List<DoctorProfile> doctors = new ArrayList<>(doctorCount);
+            for (int i = 0; i < doctorCount; i++) {
+                doctors.add(new DoctorProfile(String.format("SIM-D%04d", i), 0.8 + (i % 5) * 0.1, slots, 10));
+            }
+            return new Config(doctors, null, null, 0.1, 0.2, 0.8, 60, threads, seed);
+        }
+    }
+
+    private static final Map<TokenSource, Double> DEFAULT_ARRIVALS = new EnumMap<>(Map.of(
+            TokenSource.EMERGENCY, 0.5,
+            TokenSource.PAID, 1.5,
+            TokenSource.FOLLOW_UP, 2.0,
+            TokenSource.ONLINE, 4.0,
+            TokenSource.WALK_IN, 5.0));
+
+    private static final long MINUTE = 60_000;
+    // Only one simulation at a time: it owns the engine clock while it runs
+    private static final Object RUNNING = new Object();
+
+    private static final byte BOOK = 0;
+    private static final byte CANCEL = 1;
+    private static final byte DELAY = 2;
+
+    private static final class Event {
+        final long at;
+        final byte kind;
+        final String slotId;
+        final String patientId;
+        final TokenSource source;
+        final Event booking; // the booking a cancellation undoes
+        final double factor;
+        // Set when the booking runs, read by its cancellation on the same doctor's worker
+        String tokenId;
+        String bookedDoctorId;
+        String bookedSlotId;
+
+        Event(long at, byte kind, String slotId, String patientId, TokenSource source, Event booking, double factor) {
+            this.at = at;
+            this.kind = kind;
+            this.slotId = slotId;
+            this.patientId = patientId;
+            this.source = source;
+            this.booking = booking;
+            this.factor = factor;
+        }
+    }
+
+    private static final class DoctorRun {
+        final String doctorId;
+        final Event[] events;
+        int next;
+
+        DoctorRun(String doctorId, List<Event> events) {
+            this.doctorId = doctorId;
+            events.sort(Comparator.comparingLong(e -> e.at));
+            this.events = events.toArray(new Event[0]);
+        }
+    }
+
+    private static final class SourceTally {
+        final LongAdder bookings = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+        final LongAdder waitlisted = new LongAdder();
+        final LongAdder evicted = new LongAdder();
+        final LongAdder promoted = new LongAdder();
+        final LongAdder waitMillis = new LongAdder();
+        final LatencyRecorder waits = new LatencyRecorder(); // in milliseconds
+        long seatedAtClose;
+        long waitingAtClose;
+    }
+
+    private final AllocationService allocationService;
+
+    public OpdDaySimulator(AllocationService allocationService) {
+        this.allocationService = allocationService;
+    }
+
+    public SimulationResult run(Config config) {
+        if (config.doctors().isEmpty()) {
+            throw new IllegalArgumentException("No doctors to simulate");
+        }
+        synchronized (RUNNING) {
+            return new Day(config).run();
+        }
+    }
+
+    /**
+     * The bookings and cancellations run() would play for the config: its
+     * trace, or the Poisson arrivals drawn from its seed, in doctor order and
+     * by source within a doctor. Saved, this is a recorded trace for
+     * TraceReplayer or for a later run.
+     */
+    public static List<TraceArrival> trace(Config config) {
+        return config.trace().isEmpty() ? generate(config, new SplittableRandom(config.seed())) : config.trace();
+    }
+
+    // Splits one generator per doctor off seeds, in doctor order
+    private static List<TraceArrival> generate(Config config, SplittableRandom seeds) {
+        List<TraceArrival> trace = new ArrayList<>();
+        int d = 0;
+        for (DoctorProfile profile : config.doctors()) {
+            arrivals(config, profile, d++, seeds.split(), trace);
+        }
+        return trace;
+    }
+
+    private static void arrivals(Config config, DoctorProfile profile, int doctorIndex, SplittableRandom random,
+                                 List<TraceArrival> trace) {
+        int[] window = window(profile);
+        if (window == null) {
+            return;
+        }
+        List<TimeSlot> slots = timedSlots(profile);
+        int patient = 0;
+        for (Map.Entry<TokenSource, Double> rate : config.arrivalsPerHour().entrySet()) {
+            double perMinute = rate.getValue() / 60.0;
+            if (perMinute <= 0) {
+                continue;
+            }
+            TokenSource source = rate.getKey();
+            double minute = window[0];
+            while (true) {
+                minute += -Math.log(1 - random.nextDouble()) / perMinute;
+                if (minute >= window[1]) {
+                    break;
+                }
+                TimeSlot slot = pickSlot(slots, source, minute, random);
+                if (slot == null) {
+                    continue;
+                }
+                Double cancelAt = null;
+                if (random.nextDouble() < config.cancellationRate()) {
+                    // Some time before the consultation: before the slot, or before it ends once under way
+                    double by = minute < slot.getStartMinute() ? slot.getStartMinute() : slot.getEndMinute();
+                    cancelAt = minute + random.nextDouble() * (by - minute);
+                }
+                trace.add(new TraceArrival(minute, profile.doctorId(), slot.getSlotId(),
+                        "SIM-P" + doctorIndex + "-" + patient++, source, cancelAt));
+            }
+        }
+    }
+
+    // Emergencies and walk-ins take the slot under way (or the next); others any slot to come
+    private static TimeSlot pickSlot(List<TimeSlot> slots, TokenSource source, double minute, SplittableRandom random) {
+        int first = 0;
+        while (first < slots.size() && slots.get(first).getEndMinute() <= minute) {
+            first++;
+        }
+        if (first == slots.size()) {
+            return null;
+        }
+        if (source == TokenSource.EMERGENCY || source == TokenSource.WALK_IN) {
+            return slots.get(first);
+        }
+        return slots.get(first + random.nextInt(slots.size() - first));
+    }
+
+    private static List<TimeSlot> timedSlots(DoctorProfile profile) {
+        List<TimeSlot> slots = new ArrayList<>();
+        for (String slotId : profile.slotIds()) {
+            TimeSlot slot = new TimeSlot(slotId, 0);
+            if (slot.getStartMinute() >= 0) {
+                slots.add(slot);
+            }
+        }
+        slots.sort(Comparator.comparingInt(TimeSlot::getStartMinute));
+        return slots;
+    }
+
+    // First start and last end minute of the doctor's timed slots, or null without any
+    private static int[] window(DoctorProfile profile) {
+        List<TimeSlot> slots = timedSlots(profile);
+        if (slots.isEmpty()) {
+            return null;
+        }
+        int end = 0;
+        for (TimeSlot slot : slots) {
+            end = Math.max(end, slot.getEndMinute());
+        }
+        return new int[]{slots.get(0).getStartMinute(), end};
+    }
+
+    // One simulated day and everything it counts
+    private final class Day implements SlotEventListener {
+
+        final Config config;
+        final long dayStart = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        final VirtualClock clock = new VirtualClock(dayStart);
+        final Map<String, DoctorProfile> profiles = new LinkedHashMap<>();
+        final Map<TokenSource, SourceTally> tallies = new EnumMap<>(TokenSource.class);
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        final LatencyRecorder bookingLatency = new LatencyRecorder();
+        final LatencyRecorder cancelLatency = new LatencyRecorder();
+        final LongAdder cancellations = new LongAdder();
+        final LongAdder delays = new LongAdder();
+        final LongAdder preemptions = new LongAdder();
+
+        Day(Config config) {
+            this.config = config;
+            for (DoctorProfile profile : config.doctors()) {
+                profiles.put(profile.doctorId(), profile);
+            }
+            for (TokenSource source : TokenSource.values()) {
+                tallies.put(source, new SourceTally());
+            }
+        }
+
+        SimulationResult run() {
+            List<DoctorRun> runs = schedule();
+            for (String doctorId : profiles.keySet()) {
+                if (InMemoryStore.doctors.containsKey(doctorId)) {
+                    throw new IllegalArgumentException("Doctor " + doctorId + " already exists");
+                }
+            }
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService workers = Executors.newFixedThreadPool(config.threads(), r -> {
+                Thread t = new Thread(r, "opd-sim-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            for (DoctorProfile profile : profiles.values()) {
+                Doctor doctor = new Doctor(profile.doctorId(), profile.efficiencyScore());
+                for (String slotId : profile.slotIds()) {
+                    doctor.addSlot(slotId, profile.baseCapacity());
+                }
+                InMemoryStore.doctors.put(profile.doctorId(), doctor);
+            }
+            EngineClock.install(clock);
+            SlotEvents.register(this);
+            try {
+                long started = System.nanoTime();
+                play(runs, workers);
+                long wallMillis = (System.nanoTime() - started) / 1_000_000;
+                int maxReallocations = countAtClose();
+                return result(wallMillis, maxReallocations);
+            } finally {
+                SlotEvents.unregister(this);
+                EngineClock.uninstall(clock);
+                workers.shutdownNow();
+                InMemoryStore.doctors.keySet().removeAll(profiles.keySet());
+                TokenIndex index = TokenLookup.current();
+                if (index != null) {
+                    index.forget(profiles.keySet());
+                }
+            }
+        }
+
+        // Every doctor's events for the day, in time order, generated from the seed
+        List<DoctorRun> schedule() {
+            Map<String, List<Event>> byDoctor = new LinkedHashMap<>();
+            for (String doctorId : profiles.keySet()) {
+                byDoctor.put(doctorId, new ArrayList<>());
+            }
+            SplittableRandom seeds = new SplittableRandom(config.seed());
+            List<TraceArrival> trace = config.trace().isEmpty() ? generate(config, seeds) : config.trace();
+            for (TraceArrival arrival : trace) {
+                List<Event> events = byDoctor.get(arrival.doctorId());
+                if (events == null) {
+                    throw new IllegalArgumentException("Trace books unknown doctor " + arrival.doctorId());
+                }
+                Event booking = new Event(at(arrival.minute()), BOOK, arrival.slotId(), arrival.patientId(),
+                        arrival.source(), null, 0);
+                events.add(booking);
+                if (arrival.cancelMinute() != null) {
+                    events.add(new Event(Math.max(booking.at, at(arrival.cancelMinute())), CANCEL,
+                            null, null, null, booking, 0));
+                }
+            }
+            SplittableRandom delayRandom = seeds.split();
+            for (DoctorProfile profile : profiles.values()) {
+                int[] window = window(profile);
+                if (window != null && delayRandom.nextDouble() < config.delayRate()) {
+                    double minute = window[0] + delayRandom.nextDouble() * (window[1] - window[0]);
+                    byDoctor.get(profile.doctorId()).add(new Event(at(minute), DELAY, null, null, null, null,
+                            config.delayFactor()));
+                }
+            }
+
+            List<DoctorRun> runs = new ArrayList<>(byDoctor.size());
+            byDoctor.forEach((doctorId, events) -> runs.add(new DoctorRun(doctorId, events)));
+            return runs;
+        }
+
+        long at(double minute) {
+            return dayStart + (long) (minute * MINUTE);
+        }
+
+        void play(List<DoctorRun> runs, ExecutorService workers) {
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (DoctorRun run : runs) {
+                if (run.events.length > 0) {
+                    first = Math.min(first, run.events[0].at);
+                    last = Math.max(last, run.events[run.events.length - 1].at);
+                }
+            }
+            if (first > last) {
+                return;
+            }
+
+            // Doctors dealt round-robin, so each worker has a share of every kind of doctor
+            int partitions = Math.min(config.threads(), runs.size());
+            List<List<DoctorRun>> shares = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                shares.add(new ArrayList<>());
+            }
+            for (int i = 0; i < runs.size(); i++) {
+                shares.get(i % partitions).add(runs.get(i));
+            }
+
+            long tick = config.tickSeconds() * 1_000L;
+            for (long start = first - (first - dayStart) % tick; start <= last; start += tick) {
+                clock.advanceTo(start);
+                long end = start + tick;
+                List<Callable<Void>> tasks = new ArrayList<>(partitions);
+                for (List<DoctorRun> share : shares) {
+                    tasks.add(() -> {
+                        for (DoctorRun run : share) {
+                            playUntil(run, end);
+                        }
+                        return null;
+                    });
+                }
+                try {
+                    for (Future<Void> done : workers.invokeAll(tasks)) {
+                        done.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Simulation interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Simulation failed", e.getCause());
+                }
+            }
+        }
+
+        void playUntil(DoctorRun run, long end) {
+            while (run.next < run.events.length && run.events[run.next].at < end) {
+                Event event = run.events[run.next++];
+                switch (event.kind) {
+                    case BOOK -> book(run.doctorId, event);
+                    case CANCEL -> cancel(event.booking);
+                    case DELAY -> {
+                        int minute = (int) ((event.at - dayStart) / MINUTE);
+                        allocationService.applyDelay(run.doctorId, event.factor,
+                                LocalTime.of(minute / 60 % 24, minute % 60));
+                        delays.increment();
+                    }
+                    default -> throw new IllegalStateException("Unknown event " + event.kind);
+                }
+            }
+        }
+
+        void book(String doctorId, Event event) {
+            long start = System.nanoTime();
+            AllocationResponseDTO response = allocationService.createToken(doctorId, event.slotId,
+                    event.patientId, event.source);
+            bookingLatency.record(System.nanoTime() - start);
+
+            outcomes.computeIfAbsent(response.status, s -> new LongAdder()).increment();
+            SourceTally tally = tallies.get(event.source);
+            tally.bookings.increment();
+            switch (response.status) {
+                case "ALLOCATED", "REROUTED" -> tally.allocated.increment();
+                case "REALLOCATED_LOW_PRIORITY" -> {
+                    tally.allocated.increment();
+                    preemptions.increment();
+                }
+                case "WAITLISTED" -> tally.waitlisted.increment();
+                default -> {
+                }
+            }
+            event.tokenId = response.tokenId;
+            event.bookedDoctorId = response.reroutedDoctorId != null ? response.reroutedDoctorId : doctorId;
+            event.bookedSlotId = response.reroutedSlotId != null ? response.reroutedSlotId : event.slotId;
+        }
+
+        void cancel(Event booking) {
+            if (booking.tokenId == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            boolean cancelled = allocationService.cancelPatientToken(booking.bookedDoctorId, booking.bookedSlotId,
+                    booking.tokenId);
+            cancelLatency.record(System.nanoTime() - start);
+            if (cancelled) {
+                cancellations.increment();
+            }
+        }
+
+        @Override
+        public void onEvicted(String doctorId, TimeSlot slot, Token token, long version) {
+            if (profiles.containsKey(doctorId)) {
+                tallies.get(token.getSource()).evicted.increment();
+            }
+        }
+
+        @Override
+        public void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+            if (profiles.containsKey(doctorId)) {
+                SourceTally tally = tallies.get(token.getSource());
+                long waited = Math.max(0, clock.millis() - token.getArrivalMillis());
+                tally.promoted.increment();
+                tally.waitMillis.add(waited);
+                tally.waits.record(waited);
+            }
+        }
+
+        // Who holds a seat and who is still waiting when the day is over
+        int countAtClose() {
+            int maxReallocations = 0;
+            for (String doctorId : profiles.keySet()) {
+                for (TimeSlot slot : InMemoryStore.doctors.get(doctorId).getSlots().values()) {
+                    slot.lock();
+                    try {
+                        for (Token token : slot.getAllocatedTokens()) {
+                            tallies.get(token.getSource()).seatedAtClose++;
+                            maxReallocations = Math.max(maxReallocations, token.getReallocationCount());
+                        }
+                        for (Token token : slot.getWaitingQueue()) {
+                            tallies.get(token.getSource()).waitingAtClose++;
+                            maxReallocations = Math.max(maxReallocations, token.getReallocationCount());
+                        }
+                    } finally {
+                        slot.unlock();
+                    }
+                }
+            }
+            return maxReallocations;
+        }
+
+        SimulationResult result(long wallMillis, int maxReallocations) {
+            Map<TokenSource, SimulationResult.SourceStats> sources = new EnumMap<>(TokenSource.class);
+            double shareSum = 0;
+            double shareSquares = 0;
+            int shared = 0;
+            long promotions = 0;
+            for (Map.Entry<TokenSource, SourceTally> entry : tallies.entrySet()) {
+                SourceTally t = entry.getValue();
+                long bookings = t.bookings.sum();
+                if (bookings == 0) {
+                    continue;
+                }
+                long promoted = t.promoted.sum();
+                promotions += promoted;
+                long atClose = t.seatedAtClose + t.waitingAtClose;
+                double share = atClose == 0 ? 1.0 : (double) t.seatedAtClose / atClose;
+                shareSum += share;
+                shareSquares += share * share;
+                shared++;
+                sources.put(entry.getKey(), new SimulationResult.SourceStats(
+                        bookings, t.allocated.sum(), t.waitlisted.sum(), t.evicted.sum(), promoted,
+                        promoted == 0 ? 0.0 : t.waitMillis.sum() / (double) promoted / MINUTE,
+                        t.waits.percentiles(90)[0] / (double) MINUTE,
+                        t.seatedAtClose, t.waitingAtClose, share));
+            }
+
+            long bookings = bookingLatency.count();
+            Map<String, Long> outcomeCounts = new TreeMap<>();
+            outcomes.forEach((status, count) -> outcomeCounts.put(status, count.sum()));
+            return new SimulationResult(
+                    profiles.size(),
+                    config.threads(),
+                    bookings,
+                    cancellations.sum(),
+                    delays.sum(),
+                    wallMillis,
+                    wallMillis == 0 ? bookings * 1000.0 : bookings * 1000.0 / wallMillis,
+                    bookingLatency.toMap(),
+                    cancelLatency.toMap(),
+                    outcomeCounts,
+                    preemptions.sum(),
+                    promotions,
+                    maxReallocations,
+                    shareSquares == 0 ? 1.0 : shareSum * shareSum / (shared * shareSquares),
+                    sources);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.policy.PriorityPolicies;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.DoctorProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A policy to try in a what-if evaluation: priority constants, preemption
+ * limits and a scale on every doctor's efficiency. Unset values are taken
+ * from the installed hospital policy.
+ */
+public record PolicyVariant(
+        String name,
+        Map<TokenSource, Integer> basePriorities,
+        Double agingFactor,
+        Integer reallocationPenalty,
+        Integer maxBumps,
+        Double maxWaitMinutes,
+        Double imminentMinutes,
+        Double efficiencyScale) {
+
+    public PolicyVariant {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("A variant needs a name");
+        }
+        PriorityTable hospital = PriorityPolicies.hospital();
+        Map<TokenSource, Integer> bases = hospital.basePriorities();
+        if (basePriorities != null) {
+            bases.putAll(basePriorities);
+        }
+        basePriorities = bases;
+        agingFactor = agingFactor != null ? agingFactor : hospital.agingFactor();
+        reallocationPenalty = reallocationPenalty != null ? reallocationPenalty : hospital.reallocationPenalty();
+        maxBumps = maxBumps != null ? maxBumps : hospital.maxBumps();
+        maxWaitMinutes = maxWaitMinutes != null
+                ? maxWaitMinutes
+                : hospital.maxWaitMinutes();
+        imminentMinutes = imminentMinutes != null ? imminentMinutes : hospital.imminentMinutes();
+        efficiencyScale = efficiencyScale != null ? efficiencyScale : 1.0;
+        if (efficiencyScale <= 0) {
+            throw new IllegalArgumentException("Efficiency scale must be positive");
+        }
+    }
+
+    /** The engine as configured today. */
+    public static PolicyVariant baseline() {
+        return new PolicyVariant("baseline", null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Every combination of the given aging factors, reallocation penalties
+     * and efficiency scales, at the hospital's base priorities.
+     */
+    public static List<PolicyVariant> grid(List<Double> agingFactors, List<Integer> reallocationPenalties,
+                                           List<Double> efficiencyScales) {
+        List<PolicyVariant> variants = new ArrayList<>();
+        for (double aging : agingFactors) {
+            for (int penalty : reallocationPenalties) {
+                for (double scale : efficiencyScales) {
+                    variants.add(new PolicyVariant("aging=" + aging + ",penalty=" + penalty + ",efficiency=" + scale,
+                            null, aging, penalty, null, null, null, scale));
+                }
+            }
+        }
+        return variants;
+    }
+
+    public PriorityTable priorities() {
+        return new PriorityTable(basePriorities, agingFactor, reallocationPenalty,
+                maxBumps, maxWaitMinutes, imminentMinutes);
+    }
+
+    /**
+     * The doctors with their efficiency scaled by this variant.
+     */
+    public List<DoctorProfile> apply(List<DoctorProfile> doctors) {
+        if (efficiencyScale == 1.0) {
+            return doctors;
+        }
+        List<DoctorProfile> scaled = new ArrayList<>(doctors.size());
+        for (DoctorProfile doctor : doctors) {
+            scaled.add(new DoctorProfile(doctor.doctorId(), doctor.efficiencyScore() * efficiencyScale,
+                    doctor.slotIds(), doctor.baseCapacity()));
+        }
+        return scaled;
+    }
+}
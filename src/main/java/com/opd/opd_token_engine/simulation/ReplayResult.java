@@ -0,0 +1,31 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.model.TokenSource;
+
+import java.util.Map;
+
+/**
+ * Outcome of a trace replay. The digest is a SHA-256 over every allocation
+ * and cancellation outcome in replay order and the final order of every
+ * queue, with tokens named by their position in the trace: two replays ended
+ * in the same state exactly when their digests are equal.
+ * <p>
+ * peakWaiting is the most tokens waiting at once across all slots. Per-source
+ * waits are in simulated minutes, from booking to the promotion that seated
+ * a waiting token.
+ */
+public record ReplayResult(
+        int doctors,
+        long bookings,
+        long cancellations,
+        long wallMillis,
+        double bookingsPerSecond,
+        Map<String, Long> outcomes,
+        long preemptions,
+        long promotions,
+        long seatedAtClose,
+        long waitingAtClose,
+        long peakWaiting,
+        Map<TokenSource, SimulationResult.SourceStats> sources,
+        String digest) {
+}
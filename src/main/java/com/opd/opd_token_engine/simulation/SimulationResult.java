@@ -0,0 +1,46 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.model.TokenSource;
+
+import java.util.Map;
+
+/**
+ * Outcome of a simulated OPD day: how fast the engine took the load and how
+ * the load was treated, overall and per token source.
+ * <p>
+ * Latencies are wall-clock, per call into AllocationService, in the units of
+ * the metrics endpoint. Waits are in simulated minutes, from booking to the
+ * promotion that seated a waitlisted token. The fairness index is Jain's
+ * index over the sources' seated shares at close: 1.0 when every source got
+ * the same share of its bookings seated, down to 1/n when one source got all.
+ */
+public record SimulationResult(
+        int doctors,
+        int threads,
+        long bookings,
+        long cancellations,
+        long delays,
+        long wallMillis,
+        double bookingsPerSecond,
+        Map<String, Object> bookingLatency,
+        Map<String, Object> cancelLatency,
+        Map<String, Long> outcomes,
+        long preemptions,
+        long promotions,
+        int maxReallocations,
+        double fairnessIndex,
+        Map<TokenSource, SourceStats> sources) {
+
+    public record SourceStats(
+            long bookings,
+            long allocated,
+            long waitlisted,
+            long evicted,
+            long promoted,
+            double meanPromotionWaitMinutes,
+            double p90PromotionWaitMinutes,
+            long seatedAtClose,
+            long waitingAtClose,
+            double seatedShare) {
+    }
+}
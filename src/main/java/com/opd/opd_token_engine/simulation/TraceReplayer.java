@@ -0,0 +1,336 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.clock.VirtualClock;
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.engine.AllocationResult;
+import com.opd.opd_token_engine.engine.AllocationStatus;
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.metrics.LatencyRecorder;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.DoctorProfile;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.TraceArrival;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays a recorded arrival trace straight through AllocationEngine on a
+ * virtual clock, as fast as the engine goes.
+ * <p>
+ * Bookings and cancellations run on the calling thread in time order, ties in
+ * trace order, each with the clock set to its minute; tokens are stamped and
+ * keyed from that clock alone. The doctors live only for the replay: their
+ * slots are detached, so nothing reaches the live store, the slot event
+ * listeners, the decision log or overflow routing, and a replay can run next
+ * to a serving engine. Delays are not part of a trace and are not replayed.
+ * <p>
+ * The same doctors and trace always end in the same state, which the
+ * result's digest pins down; token ids, which differ per process, never
+ * enter it.
+ */
+public final class TraceReplayer {
+
+    // Any fixed day will do, started in the zone slot times are read in, so
+    // trace minutes are minutes of the day for imminent-consultation checks
+    private static final long DAY_START = LocalDate.of(2024, 1, 1).atStartOfDay(ZoneId.systemDefault())
+            .toInstant().toEpochMilli();
+    private static final long MINUTE = 60_000;
+    private static final String HEADER = "minute,doctorId,slotId,patientId,source,cancelMinute";
+
+    private TraceReplayer() {
+    }
+
+    // A booking or cancellation of the arrival at index; order breaks ties in time
+    private record Step(long at, int order, int arrival, boolean cancel) {
+    }
+
+    // Per-source counts; waits in milliseconds of simulated time
+    private static final class SourceTally {
+        long bookings;
+        long allocated;
+        long waitlisted;
+        long evicted;
+        long promoted;
+        long waitMillis;
+        final LatencyRecorder waits = new LatencyRecorder();
+        long seatedAtClose;
+        long waitingAtClose;
+    }
+
+    public static ReplayResult replay(List<DoctorProfile> profiles, List<TraceArrival> trace) {
+        return replay(profiles, trace, PriorityTable.DEFAULT);
+    }
+
+    /**
+     * Replays with the given priority constants for base priorities, aging
+     * and reallocation penalties.
+     */
+    public static ReplayResult replay(List<DoctorProfile> profiles, List<TraceArrival> trace,
+                                      PriorityTable priorities) {
+        Map<String, Doctor> doctors = new LinkedHashMap<>();
+        for (DoctorProfile profile : profiles) {
+            Doctor doctor = new Doctor(profile.doctorId(), profile.efficiencyScore());
+            for (String slotId : profile.slotIds()) {
+                doctor.addSlot(slotId, profile.baseCapacity());
+            }
+            doctor.getSlots().values().forEach(TimeSlot::detach);
+            if (doctors.put(profile.doctorId(), doctor) != null) {
+                throw new IllegalArgumentException("Doctor " + profile.doctorId() + " listed twice");
+            }
+        }
+
+        List<Step> steps = new ArrayList<>(trace.size() * 2);
+        for (int i = 0; i < trace.size(); i++) {
+            TraceArrival arrival = trace.get(i);
+            if (!doctors.containsKey(arrival.doctorId())) {
+                throw new IllegalArgumentException("Trace books unknown doctor " + arrival.doctorId());
+            }
+            long bookAt = at(arrival.minute());
+            steps.add(new Step(bookAt, 2 * i, i, false));
+            if (arrival.cancelMinute() != null) {
+                steps.add(new Step(Math.max(bookAt, at(arrival.cancelMinute())), 2 * i + 1, i, true));
+            }
+        }
+        steps.sort(Comparator.comparingLong(Step::at).thenComparingInt(Step::order));
+
+        MessageDigest sha = sha256();
+        DataOutputStream digest = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), sha));
+        VirtualClock clock = new VirtualClock(DAY_START);
+        Token[] tokens = new Token[trace.size()];
+        Map<String, Integer> arrivals = new HashMap<>(trace.size() * 2);
+        Map<String, Long> outcomes = new TreeMap<>();
+        Map<TokenSource, SourceTally> tallies = new EnumMap<>(TokenSource.class);
+        for (TokenSource source : TokenSource.values()) {
+            tallies.put(source, new SourceTally());
+        }
+        long waiting = 0;
+        long peakWaiting = 0;
+        long bookings = 0;
+        long cancellations = 0;
+        long preemptions = 0;
+        long promotions = 0;
+
+        try {
+            long started = System.nanoTime();
+            for (Step step : steps) {
+                clock.advanceTo(step.at());
+                TraceArrival arrival = trace.get(step.arrival());
+                TimeSlot slot = doctors.get(arrival.doctorId()).getSlots().get(arrival.slotId());
+                digest.writeInt(step.arrival());
+                if (!step.cancel()) {
+                    bookings++;
+                    if (slot == null) {
+                        outcomes.merge("ERROR", 1L, Long::sum);
+                        digest.writeByte(-1);
+                        continue;
+                    }
+                    TokenSource source = arrival.source();
+                    Token token = new Token(arrival.patientId(), source, priorities.basePriority(source),
+                            clock.millis());
+                    tokens[step.arrival()] = token;
+                    arrivals.put(token.getTokenId(), step.arrival());
+                    AllocationResult result = AllocationEngine.allocate(arrival.doctorId(), slot, token, clock,
+                            priorities);
+                    outcomes.merge(result.status.name(), 1L, Long::sum);
+                    digest.writeByte(result.status.ordinal());
+                    SourceTally tally = tallies.get(source);
+                    tally.bookings++;
+                    if (result.status == AllocationStatus.WAITLISTED) {
+                        tally.waitlisted++;
+                        waiting++;
+                    } else {
+                        tally.allocated++;
+                    }
+                    if (result.evictedTokenId != null) {
+                        int evicted = arrivals.get(result.evictedTokenId);
+                        preemptions++;
+                        tallies.get(tokens[evicted].getSource()).evicted++;
+                        waiting++;
+                        digest.writeInt(evicted);
+                    }
+                    peakWaiting = Math.max(peakWaiting, waiting);
+                    continue;
+                }
+                Token token = tokens[step.arrival()];
+                boolean cancelled = false;
+                if (token != null) {
+                    slot.lock();
+                    try {
+                        boolean seated = slot.getAllocatedTokens().contains(token.getTokenId());
+                        Token next = seated ? AllocationEngine.nextToPromote(slot, clock.millis(), priorities) : null;
+                        cancelled = AllocationEngine.cancelLocked(arrival.doctorId(), slot, token.getTokenId(),
+                                clock.millis(), priorities);
+                        if (cancelled && (!seated || next != null)) {
+                            // A waiting token left, by cancelling or by taking the freed seat
+                            waiting--;
+                        }
+                        if (cancelled && next != null) {
+                            SourceTally tally = tallies.get(next.getSource());
+                            long waited = clock.millis() - next.getArrivalMillis();
+                            promotions++;
+                            tally.promoted++;
+                            tally.waitMillis += waited;
+                            tally.waits.record(waited);
+                        }
+                    } finally {
+                        slot.unlock();
+                    }
+                }
+                if (cancelled) {
+                    cancellations++;
+                }
+                digest.writeBoolean(cancelled);
+            }
+            long wallMillis = (System.nanoTime() - started) / 1_000_000;
+
+            long seatedAtClose = 0;
+            long waitingAtClose = 0;
+            for (Doctor doctor : doctors.values()) {
+                for (TimeSlot slot : new TreeMap<>(doctor.getSlots()).values()) {
+                    digest.writeUTF(slot.getSlotId());
+                    List<Token> seated = slot.getAllocatedTokens().toList();
+                    List<Token> queued = slot.getWaitingQueue().toList();
+                    writeQueue(digest, seated, arrivals);
+                    writeQueue(digest, queued, arrivals);
+                    seated.forEach(t -> tallies.get(t.getSource()).seatedAtClose++);
+                    queued.forEach(t -> tallies.get(t.getSource()).waitingAtClose++);
+                    seatedAtClose += seated.size();
+                    waitingAtClose += queued.size();
+                }
+            }
+            return new ReplayResult(
+                    doctors.size(),
+                    bookings,
+                    cancellations,
+                    wallMillis,
+                    wallMillis == 0 ? bookings * 1000.0 : bookings * 1000.0 / wallMillis,
+                    outcomes,
+                    preemptions,
+                    promotions,
+                    seatedAtClose,
+                    waitingAtClose,
+                    peakWaiting,
+                    sources(tallies),
+                    HexFormat.of().formatHex(sha.digest()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<TokenSource, SimulationResult.SourceStats> sources(Map<TokenSource, SourceTally> tallies) {
+        Map<TokenSource, SimulationResult.SourceStats> sources = new EnumMap<>(TokenSource.class);
+        tallies.forEach((source, t) -> {
+            if (t.bookings == 0) {
+                return;
+            }
+            long atClose = t.seatedAtClose + t.waitingAtClose;
+            sources.put(source, new SimulationResult.SourceStats(
+                    t.bookings, t.allocated, t.waitlisted, t.evicted, t.promoted,
+                    t.promoted == 0 ? 0.0 : t.waitMillis / (double) t.promoted / MINUTE,
+                    t.waits.percentiles(90)[0] / (double) MINUTE,
+                    t.seatedAtClose, t.waitingAtClose,
+                    atClose == 0 ? 1.0 : (double) t.seatedAtClose / atClose));
+        });
+        return sources;
+    }
+
+    // A queue head first, each token by trace position, reallocations and key
+    private static void writeQueue(DataOutputStream digest, List<Token> queue, Map<String, Integer> arrivals)
+            throws IOException {
+        digest.writeInt(queue.size());
+        for (Token token : queue) {
+            digest.writeInt(arrivals.get(token.getTokenId()));
+            digest.writeInt(token.getReallocationCount());
+            digest.writeLong(token.getPriorityKey());
+        }
+    }
+
+    /**
+     * Writes a trace as CSV, one arrival per line under a header. Minutes are
+     * written exactly, so a trace read back replays identically.
+     */
+    public static void write(List<TraceArrival> trace, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (TraceArrival arrival : trace) {
+                out.write(arrival.minute() + "," + field(arrival.doctorId()) + "," + field(arrival.slotId()) + ","
+                        + field(arrival.patientId()) + "," + arrival.source() + ","
+                        + (arrival.cancelMinute() != null ? arrival.cancelMinute() : ""));
+                out.newLine();
+            }
+        }
+    }
+
+    public static List<TraceArrival> read(Path file) throws IOException {
+        List<TraceArrival> trace = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IllegalArgumentException("Not a trace file: " + file);
+            }
+            int number = 1;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != 6) {
+                    throw new IllegalArgumentException("Malformed trace line " + number + ": " + line);
+                }
+                trace.add(new TraceArrival(
+                        Double.parseDouble(fields[0]),
+                        fields[1],
+                        fields[2],
+                        fields[3],
+                        TokenSource.valueOf(fields[4]),
+                        fields[5].isEmpty() ? null : Double.valueOf(fields[5])));
+            }
+        }
+        return trace;
+    }
+
+    private static String field(String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Trace field contains a separator: " + value);
+        }
+        return value;
+    }
+
+    private static long at(double minute) {
+        return DAY_START + (long) (minute * MINUTE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
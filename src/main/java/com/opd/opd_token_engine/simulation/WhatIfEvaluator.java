@@ -0,0 +1,90 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.DoctorProfile;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.TraceArrival;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Replays one arrival trace under many policy variants at once and ranks
+ * them.
+ * <p>
+ * Each variant is a TraceReplayer run: its own doctors and detached slots,
+ * its own virtual clock and priority table, nothing shared with the live
+ * store or with the other variants but the read-only trace. Variants run as
+ * tasks on a ForkJoinPool sized to the cores, so a sweep of at least as many
+ * variants as cores keeps every core busy, and each variant's result is the
+ * one it would have alone.
+ */
+public class WhatIfEvaluator {
+
+    private static final Comparator<WhatIfReport.Entry> RANKING = Comparator
+            .comparingLong((WhatIfReport.Entry e) -> e.result().waitingAtClose())
+            .thenComparingLong(e -> e.result().peakWaiting())
+            .thenComparingLong(e -> e.result().preemptions())
+            .thenComparing(e -> e.variant().name());
+
+    private final int parallelism;
+
+    public WhatIfEvaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public WhatIfEvaluator(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public WhatIfReport evaluate(List<DoctorProfile> doctors, List<TraceArrival> trace,
+                                 List<PolicyVariant> variants) {
+        if (variants.isEmpty()) {
+            throw new IllegalArgumentException("No variants to evaluate");
+        }
+        Set<String> names = new HashSet<>();
+        for (PolicyVariant variant : variants) {
+            if (!names.add(variant.name())) {
+                throw new IllegalArgumentException("Variant " + variant.name() + " listed twice");
+            }
+        }
+        List<TraceArrival> shared = List.copyOf(trace);
+        List<Callable<ReplayResult>> tasks = new ArrayList<>(variants.size());
+        for (PolicyVariant variant : variants) {
+            tasks.add(() -> TraceReplayer.replay(variant.apply(doctors), shared, variant.priorities()));
+        }
+
+        long started = System.nanoTime();
+        List<WhatIfReport.Entry> entries = new ArrayList<>(variants.size());
+        try (ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, variants.size()))) {
+            List<Future<ReplayResult>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < variants.size(); i++) {
+                entries.add(new WhatIfReport.Entry(0, variants.get(i), results.get(i).get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("What-if evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException invalid) {
+                throw invalid;
+            }
+            throw new IllegalStateException("What-if evaluation failed", e.getCause());
+        }
+        long wallMillis = (System.nanoTime() - started) / 1_000_000;
+
+        entries.sort(RANKING);
+        List<WhatIfReport.Entry> ranking = new ArrayList<>(entries.size());
+        for (WhatIfReport.Entry entry : entries) {
+            ranking.add(new WhatIfReport.Entry(ranking.size() + 1, entry.variant(), entry.result()));
+        }
+        return new WhatIfReport(shared.size(), Math.min(parallelism, variants.size()), wallMillis, ranking);
+    }
+}
@@ -0,0 +1,19 @@
+package com.opd.opd_token_engine.simulation;
+
+import java.util.List;
+
+/**
+ * Policy variants replayed over one trace, best first. Variants are ranked
+ * by patients still waiting at close, then by the peak waitlist, then by
+ * preemptions; each entry carries the full replay result for other
+ * orderings.
+ */
+public record WhatIfReport(
+        long bookings,
+        int parallelism,
+        long wallMillis,
+        List<Entry> ranking) {
+
+    public record Entry(int rank, PolicyVariant variant, ReplayResult result) {
+    }
+}
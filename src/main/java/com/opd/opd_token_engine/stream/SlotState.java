@@ -0,0 +1,28 @@
+package com.opd.opd_token_engine.stream;
+
+import com.opd.opd_token_engine.model.SlotView;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Full state of one slot as served to readers: capacity, version and both
+ * queues, best first.
+ */
+public final class SlotState {
+
+    private SlotState() {
+    }
+
+    public static Map<String, Object> of(String doctorId, SlotView view) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("doctorId", doctorId);
+        out.put("slotId", view.slotId());
+        out.put("capacity", view.capacity());
+        out.put("version", view.version());
+        out.put("allocated", view.allocated());
+        // Best first, so a token's index + 1 is its queue position
+        out.put("waiting", view.waiting());
+        return out;
+    }
+}
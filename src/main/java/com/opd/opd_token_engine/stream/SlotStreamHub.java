@@ -0,0 +1,391 @@
+package com.opd.opd_token_engine.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.model.SlotView;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes slot changes to live subscribers such as waiting-room displays.
+ * <p>
+ * The request thread only appends a delta to the slot's channel and, on the
+ * first delta since the last publish, queues the channel for the publisher
+ * thread; a slot nobody watches costs one map lookup. The publisher
+ * serialises each batch of deltas once and hands the same update to every
+ * subscriber of the slot.
+ * <p>
+ * Subscribers are only woken, never handed a queue of their own. Each
+ * channel keeps its last few updates, and a woken subscriber sends the ones
+ * after the version it last delivered. One that has fallen further behind
+ * than that history is sent the slot's full state instead. A slow screen
+ * skips to the latest state rather than working through a backlog, and a
+ * wake-up that arrives while it is still writing costs nothing extra.
+ */
+public class SlotStreamHub implements SlotEventListener, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotStreamHub.class);
+
+    /** Event name for a subscriber's first message and after it skipped updates. */
+    public static final String SNAPSHOT = "snapshot";
+    /** Event name for the changes since the subscriber's previous message. */
+    public static final String DELTA = "delta";
+
+    /**
+     * Where one subscriber's messages are written. Called on a sender thread
+     * of its own, so it may block.
+     */
+    public interface Sink {
+
+        void send(String event, long version, String json) throws IOException;
+
+        /** The subscription ended, by cancel or after a failed send. */
+        default void close() {
+        }
+    }
+
+    private record Delta(String type, Token token, int capacity, long version) {
+
+        Map<String, Object> toMap() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("type", type);
+            out.put("version", version);
+            if (token != null) {
+                out.put("tokenId", token.getTokenId());
+                out.put("patientId", token.getPatientId());
+                out.put("source", token.getSource());
+            } else {
+                out.put("capacity", capacity);
+            }
+            return out;
+        }
+    }
+
+    // fromVersion is the version the previous update ended at
+    private record Update(long fromVersion, long version, String json) {
+    }
+
+    private record Snapshot(long version, String json) {
+    }
+
+    // Updates a subscriber may be behind and still be sent deltas
+    static final int HISTORY = 8;
+
+    private final ObjectMapper mapper;
+    private final Map<TimeSlot, Channel> channels = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Channel> dirtyChannels = new LinkedBlockingQueue<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread publisher;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder deltasSent = new LongAdder();
+    private final LongAdder snapshotsSent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile boolean running = true;
+
+    public SlotStreamHub(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.publisher = new Thread(this::runPublisher, "opd-slot-stream");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * Starts streaming the slot to the sink, beginning with its full state.
+     */
+    public Subscriber subscribe(String doctorId, TimeSlot slot, Sink sink) {
+        AtomicReference<Subscriber> created = new AtomicReference<>();
+        channels.compute(slot, (key, existing) -> {
+            Channel channel = existing != null ? existing : new Channel(doctorId, slot);
+            Subscriber subscriber = new Subscriber(channel, sink);
+            channel.subscribers.add(subscriber);
+            created.set(subscriber);
+            return channel;
+        });
+        Subscriber subscriber = created.get();
+        subscriber.wake();
+        return subscriber;
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (Channel channel : channels.values()) {
+            count += channel.subscribers.size();
+        }
+        return count;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("slots", channels.size());
+        out.put("subscribers", getSubscriberCount());
+        out.put("published", published.sum());
+        out.put("deltasSent", deltasSent.sum());
+        out.put("snapshotsSent", snapshotsSent.sum());
+        out.put("coalesced", coalesced.sum());
+        out.put("pendingSlots", dirtyChannels.size());
+        return out;
+    }
+
+    @Override
+    public void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+        record(slot, "ALLOCATED", token, version);
+    }
+
+    @Override
+    public void onWaitlisted(String doctorId, TimeSlot slot, Token token, long version) {
+        record(slot, "WAITLISTED", token, version);
+    }
+
+    @Override
+    public void onEvicted(String doctorId, TimeSlot slot, Token token, long version) {
+        record(slot, "EVICTED", token, version);
+    }
+
+    @Override
+    public void onCancelled(String doctorId, TimeSlot slot, Token token, long version) {
+        record(slot, "CANCELLED", token, version);
+    }
+
+    @Override
+    public void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+        record(slot, "PROMOTED", token, version);
+    }
+
+    @Override
+    public void onDisplaced(String doctorId, TimeSlot slot, Token token, long version) {
+        record(slot, "DISPLACED", token, version);
+    }
+
+    @Override
+    public void onResized(String doctorId, TimeSlot slot, int capacity, long version) {
+        Channel channel = channels.get(slot);
+        if (channel != null) {
+            channel.add(new Delta("RESIZED", null, capacity, version));
+        }
+    }
+
+    private void record(TimeSlot slot, String type, Token token, long version) {
+        Channel channel = channels.get(slot);
+        if (channel != null) {
+            channel.add(new Delta(type, token, 0, version));
+        }
+    }
+
+    private void runPublisher() {
+        List<Map<String, Object>> deltas = new ArrayList<>();
+        while (running) {
+            Channel channel;
+            try {
+                channel = dirtyChannels.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Cleared before draining, so a delta added meanwhile queues the channel again
+            channel.dirty.set(false);
+            long from = channel.publishedVersion;
+            long to = from;
+            deltas.clear();
+            Delta delta;
+            while ((delta = channel.pending.poll()) != null) {
+                deltas.add(delta.toMap());
+                to = Math.max(to, delta.version());
+            }
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("doctorId", channel.doctorId);
+            body.put("slotId", channel.slot.getSlotId());
+            body.put("fromVersion", from);
+            body.put("version", to);
+            body.put("deltas", deltas);
+            String json;
+            try {
+                json = mapper.writeValueAsString(body);
+            } catch (JsonProcessingException e) {
+                log.warn("Slot update not serialisable [Slot={}]", channel.slot.getSlotId(), e);
+                continue;
+            }
+            channel.publish(new Update(from, to, json));
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.wake();
+            }
+            published.increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        publisher.interrupt();
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.cancel();
+            }
+        }
+        senders.shutdownNow();
+    }
+
+    private final class Channel {
+        final String doctorId;
+        final TimeSlot slot;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final ConcurrentLinkedQueue<Delta> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        // Written by the publisher only; history oldest first, replaced whole
+        volatile long publishedVersion;
+        volatile Update[] history = new Update[0];
+        // Latest full state, shared by every subscriber that needs one
+        volatile Snapshot snapshot;
+
+        Channel(String doctorId, TimeSlot slot) {
+            this.doctorId = doctorId;
+            this.slot = slot;
+            this.publishedVersion = slot.getVersion();
+        }
+
+        void publish(Update update) {
+            Update[] current = history;
+            int keep = Math.min(current.length, HISTORY - 1);
+            Update[] next = new Update[keep + 1];
+            System.arraycopy(current, current.length - keep, next, 0, keep);
+            next[keep] = update;
+            history = next;
+            publishedVersion = update.version();
+        }
+
+        void add(Delta delta) {
+            pending.add(delta);
+            if (dirty.compareAndSet(false, true)) {
+                dirtyChannels.add(this);
+            }
+        }
+
+        Snapshot snapshot() {
+            Snapshot cached = snapshot;
+            if (cached != null && cached.version() == slot.getVersion()) {
+                return cached;
+            }
+            SlotView view = slot.currentView();
+            try {
+                cached = new Snapshot(view.version(), mapper.writeValueAsString(SlotState.of(doctorId, view)));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            snapshot = cached;
+            return cached;
+        }
+    }
+
+    /**
+     * One open stream, written by a virtual thread started when it is woken
+     * and kept while further wake-ups arrive.
+     */
+    public final class Subscriber {
+        private final Channel channel;
+        private final Sink sink;
+        private final AtomicBoolean woken = new AtomicBoolean();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        // Touched only by the thread holding the sending flag
+        private long deliveredVersion = Long.MIN_VALUE;
+
+        private Subscriber(Channel channel, Sink sink) {
+            this.channel = channel;
+            this.sink = sink;
+        }
+
+        /**
+         * Stops the stream; safe to call more than once and from any thread.
+         */
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            channels.computeIfPresent(channel.slot, (key, current) -> {
+                current.subscribers.remove(this);
+                return current.subscribers.isEmpty() ? null : current;
+            });
+            sink.close();
+        }
+
+        private void wake() {
+            if (woken.getAndSet(true)) {
+                coalesced.increment();
+            }
+            if (!cancelled.get() && sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // Hub closed
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!cancelled.get()) {
+                    if (!woken.getAndSet(false)) {
+                        sending.set(false);
+                        // A wake-up between the getAndSet and clearing the flag found
+                        // the flag set and left the work to this thread
+                        if (!woken.get() || !sending.compareAndSet(false, true)) {
+                            return;
+                        }
+                        continue;
+                    }
+                    catchUp();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Slot stream closed [Slot={}, Reason={}]", channel.slot.getSlotId(), e.toString());
+                cancel();
+            }
+        }
+
+        private void catchUp() throws IOException {
+            // publishedVersion is written after history, so this history covers it
+            long published = channel.publishedVersion;
+            Update[] history = channel.history;
+            if (deliveredVersion != Long.MIN_VALUE && deliveredVersion >= published) {
+                return;
+            }
+            for (int i = 0; i < history.length; i++) {
+                if (history[i].fromVersion() == deliveredVersion) {
+                    for (int j = i; j < history.length; j++) {
+                        sink.send(DELTA, history[j].version(), history[j].json());
+                        deliveredVersion = history[j].version();
+                        deltasSent.increment();
+                    }
+                    return;
+                }
+            }
+            Snapshot snapshot = channel.snapshot();
+            if (snapshot.version() != deliveredVersion) {
+                sink.send(SNAPSHOT, snapshot.version(), snapshot.json());
+                deliveredVersion = snapshot.version();
+                snapshotsSent.increment();
+            }
+        }
+    }
+}
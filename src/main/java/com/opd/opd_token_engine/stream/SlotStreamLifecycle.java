@@ -0,0 +1,44 @@
+package com.opd.opd_token_engine.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opd.opd_token_engine.event.SlotEvents;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registers the slot stream hub with the engine and closes every open
+ * stream on shutdown.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.stream.enabled", havingValue = "true", matchIfMissing = true)
+public class SlotStreamLifecycle implements DisposableBean {
+
+    private final SlotStreamHub hub;
+    private final long timeoutMillis;
+
+    public SlotStreamLifecycle(ObjectMapper mapper,
+                               @Value("${opd.stream.timeout-ms:1800000}") long timeoutMillis) {
+        this.hub = new SlotStreamHub(mapper);
+        this.timeoutMillis = timeoutMillis;
+        SlotEvents.register(hub);
+    }
+
+    public SlotStreamHub getHub() {
+        return hub;
+    }
+
+    /**
+     * How long a stream stays open before the client has to reconnect.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public void destroy() {
+        SlotEvents.unregister(hub);
+        hub.close();
+    }
+}
@@ -0,0 +1,359 @@
+package com.opd.opd_token_engine.cluster;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.journal.StoreSnapshot;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.routing.Overflow;
+import com.opd.opd_token_engine.routing.OverflowRouter;
+import com.opd.opd_token_engine.service.AllocationService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests that requests reach the doctor's owning node and that a joining node
+ * receives exactly the doctors it takes over. Node n1 is this application;
+ * n2 and n3 are a stub peer that records what it is sent.
+ */
+@SpringBootTest(properties = {
+    "opd.cluster.enabled=true",
+    "opd.cluster.node-id=n1",
+    "opd.cluster.virtual-nodes=64",
+    "opd.cluster.secret=" + ClusterRoutingTest.SECRET
+})
+@AutoConfigureMockMvc
+class ClusterRoutingTest {
+
+    static final String SECRET = "test-secret";
+
+    private static HttpServer peer;
+    // When set, the stub peer holds each handoff until it opens
+    private static volatile CountDownLatch handoffGate;
+    private static final CountDownLatch handoffArrived = new CountDownLatch(1);
+    private static final List<String> forwarded = new CopyOnWriteArrayList<>();
+    private static final Map<String, Doctor> handedOff = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ClusterLifecycle clusterLifecycle;
+
+    private final AllocationService allocationService = new AllocationService();
+
+    @DynamicPropertySource
+    static void cluster(DynamicPropertyRegistry registry) throws IOException {
+        peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        peer.createContext("/cluster/members", exchange -> reply(exchange, 200, "[]"));
+        peer.createContext("/cluster/doctors", exchange -> {
+            if (!SECRET.equals(exchange.getRequestHeaders().getFirst(Cluster.SECRET_HEADER))) {
+                reply(exchange, 403, "");
+                return;
+            }
+            CountDownLatch gate = handoffGate;
+            if (gate != null) {
+                handoffArrived.countDown();
+                try {
+                    gate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int count = StoreSnapshot.decodeDoctors(ByteBuffer.wrap(exchange.getRequestBody().readAllBytes()),
+                handedOff, SlotConcurrencyMode.MONITOR);
+            reply(exchange, 200, Integer.toString(count));
+        });
+        peer.createContext("/tokens", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            forwarded.add(exchange.getRequestURI() + " hops=" + exchange.getRequestHeaders().getFirst(Cluster.HOPS_HEADER)
+                + " " + body);
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/tokens/cancel")) {
+                reply(exchange, 200, "Token cancelled successfully by patient");
+            } else if (path.equals("/tokens/batch")) {
+                reply(exchange, 200, "[{\"tokenId\":\"REMOTE\",\"status\":\"ALLOCATED\"}]");
+            } else {
+                reply(exchange, 200, "{\"tokenId\":\"REMOTE\",\"status\":\"ALLOCATED\"}");
+            }
+        });
+        peer.start();
+        String url = "http://localhost:" + peer.getAddress().getPort();
+        registry.add("opd.cluster.nodes", () -> "n1=http://localhost:1,n2=" + url);
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @AfterAll
+    static void stopPeer() {
+        peer.stop(0);
+        // The cached context stays up; other tests run without a cluster
+        Ownership.uninstall(Ownership.current());
+    }
+
+    private final HashRing ring = new HashRing(List.of("n1", "n2"), 64);
+
+    private String doctorOwnedBy(String node) {
+        for (int i = 0; ; i++) {
+            if (ring.ownerOf("D" + i).equals(node)) {
+                return "D" + i;
+            }
+        }
+    }
+
+    private static String booking(String doctorId, String patientId) {
+        return "{\"doctorId\":\"" + doctorId + "\",\"slotId\":\"9-10\",\"patientId\":\"" + patientId
+            + "\",\"source\":\"ONLINE\"}";
+    }
+
+    @BeforeEach
+    void setUp() {
+        forwarded.clear();
+        handedOff.clear();
+        InMemoryStore.doctors.clear();
+        for (int i = 0; i < 40; i++) {
+            Doctor doctor = new Doctor("D" + i, 1.0);
+            doctor.addSlot("9-10", 2);
+            InMemoryStore.doctors.put("D" + i, doctor);
+        }
+    }
+
+    @Test
+    void testOwnedDoctorIsServedLocally() throws Exception {
+        String local = doctorOwnedBy("n1");
+
+        mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON).content(booking(local, "P1")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("ALLOCATED"));
+
+        assertTrue(forwarded.isEmpty());
+        assertEquals(1, InMemoryStore.doctors.get(local).getSlots().get("9-10").getAllocatedTokens().size());
+    }
+
+    @Test
+    void testOtherOwnersRequestsAreForwarded() throws Exception {
+        String remote = doctorOwnedBy("n2");
+
+        mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON).content(booking(remote, "P1")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.tokenId").value("REMOTE"));
+        mockMvc.perform(post("/tokens/cancel")
+                .param("doctorId", remote).param("slotId", "9-10").param("tokenId", "REMOTE"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("Token cancelled successfully by patient"));
+
+        assertEquals(2, forwarded.size());
+        assertTrue(forwarded.get(0).startsWith("/tokens hops=1"));
+        assertTrue(forwarded.get(1).startsWith("/tokens/cancel?doctorId=" + remote + "&slotId=9-10&tokenId=REMOTE"));
+        assertTrue(InMemoryStore.doctors.get(remote).getSlots().get("9-10").getAllocatedTokens().isEmpty());
+    }
+
+    @Test
+    void testRequestForwardedTooOftenIsRejected() throws Exception {
+        mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON)
+                .header(Cluster.HOPS_HEADER, Cluster.MAX_HOPS)
+                .content(booking(doctorOwnedBy("n2"), "P1")))
+            .andExpect(status().isServiceUnavailable());
+        assertTrue(forwarded.isEmpty());
+    }
+
+    @Test
+    void testBatchIsSplitByOwnerInInputOrder() throws Exception {
+        String local = doctorOwnedBy("n1");
+        String remote = doctorOwnedBy("n2");
+
+        mockMvc.perform(post("/tokens/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + booking(local, "P1") + "," + booking(remote, "P2") + "," + booking(local, "P3") + "]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("ALLOCATED"))
+            .andExpect(jsonPath("$[1].tokenId").value("REMOTE"))
+            .andExpect(jsonPath("$[2].status").value("ALLOCATED"));
+
+        assertEquals(1, forwarded.size());
+        assertTrue(forwarded.get(0).contains("P2"));
+        assertFalse(forwarded.get(0).contains("P1"));
+        assertEquals(2, InMemoryStore.doctors.get(local).getSlots().get("9-10").getAllocatedTokens().size());
+    }
+
+    @Test
+    @DirtiesContext
+    void testJoinHandsOffOnlyDoctorsMovingToTheNewNode() throws Exception {
+        String local = doctorOwnedBy("n1");
+        mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON).content(booking(local, "P1")));
+
+        HashRing joined = ring.with("n3");
+        List<String> expected = new ArrayList<>();
+        Map<String, Integer> allocatedBefore = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            String doctorId = "D" + i;
+            if (ring.ownerOf(doctorId).equals("n1") && joined.ownerOf(doctorId).equals("n3")) {
+                expected.add(doctorId);
+                allocatedBefore.put(doctorId,
+                    InMemoryStore.doctors.get(doctorId).getSlots().get("9-10").getAllocatedTokens().size());
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        String url = "http://localhost:" + peer.getAddress().getPort();
+        mockMvc.perform(post("/cluster/members").contentType(MediaType.APPLICATION_JSON)
+                .header(Cluster.SECRET_HEADER, SECRET)
+                .content("{\"id\":\"n3\",\"url\":\"" + url + "\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(expected.size()));
+
+        assertEquals(new HashSet<>(expected), handedOff.keySet());
+        for (String doctorId : expected) {
+            assertFalse(InMemoryStore.doctors.containsKey(doctorId));
+            assertEquals(allocatedBefore.get(doctorId),
+                handedOff.get(doctorId).getSlots().get("9-10").getAllocatedTokens().size());
+        }
+        assertEquals(40 - expected.size(), InMemoryStore.doctors.size());
+    }
+
+    @Test
+    void testMembershipAndHandoffRequireTheSecret() throws Exception {
+        mockMvc.perform(post("/cluster/members").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":\"n9\",\"url\":\"http://localhost:1\"}"))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(post("/cluster/members").contentType(MediaType.APPLICATION_JSON)
+                .header(Cluster.SECRET_HEADER, "guess")
+                .content("{\"id\":\"n9\",\"url\":\"http://localhost:1\"}"))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(post("/cluster/doctors").contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(StoreSnapshot.encodeDoctors(Map.of("D99", new Doctor("D99", 1.0)))))
+            .andExpect(status().isForbidden());
+
+        assertEquals(2, clusterLifecycle.getCluster().members().size());
+        assertFalse(InMemoryStore.doctors.containsKey("D99"));
+    }
+
+    @Test
+    void testOnlyOwnedDoctorsAreKept() {
+        List<String> dropped = clusterLifecycle.getCluster().retainOwned();
+
+        assertFalse(dropped.isEmpty());
+        for (String doctorId : dropped) {
+            assertEquals("n2", ring.ownerOf(doctorId));
+        }
+        for (String doctorId : InMemoryStore.doctors.keySet()) {
+            assertEquals("n1", ring.ownerOf(doctorId));
+        }
+    }
+
+    @Test
+    void testOverflowNeverSeatsOnAnotherMembersDoctor() {
+        String local = doctorOwnedBy("n1");
+        String remote = doctorOwnedBy("n2");
+        Clock clock = Clock.fixed(LocalDate.of(2026, 1, 5).atTime(LocalTime.of(8, 0)).toInstant(ZoneOffset.UTC),
+            ZoneId.of("UTC"));
+        OverflowRouter router = new OverflowRouter(Map.of(local, "GENERAL", remote, "GENERAL"), 60, clock)
+            .indexAll(InMemoryStore.doctors);
+        SlotEvents.register(router);
+        Overflow.install(router);
+        try {
+            allocationService.createToken(local, "9-10", "P1", TokenSource.EMERGENCY);
+            allocationService.createToken(local, "9-10", "P2", TokenSource.EMERGENCY);
+            AllocationResponseDTO overflow = allocationService.createToken(local, "9-10", "P3", TokenSource.EMERGENCY);
+
+            assertEquals("WAITLISTED", overflow.status);
+            assertTrue(InMemoryStore.doctors.get(remote).getSlots().get("9-10").getAllocatedTokens().isEmpty());
+        } finally {
+            Overflow.uninstall(router);
+            SlotEvents.unregister(router);
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    void testSlowHandoffDoesNotStallOtherDoctors() throws Exception {
+        HashRing joined = ring.with("n3");
+        String staying = null;
+        String moving = null;
+        for (int i = 0; i < 40; i++) {
+            String doctorId = "D" + i;
+            if (ring.ownerOf(doctorId).equals("n1")) {
+                if (joined.ownerOf(doctorId).equals("n1")) {
+                    staying = staying == null ? doctorId : staying;
+                } else {
+                    moving = moving == null ? doctorId : moving;
+                }
+            }
+        }
+        assertNotNull(staying);
+        assertNotNull(moving);
+
+        handoffGate = new CountDownLatch(1);
+        try {
+            Cluster cluster = clusterLifecycle.getCluster();
+            ClusterNode n3 = new ClusterNode("n3", URI.create("http://localhost:" + peer.getAddress().getPort()));
+            CompletableFuture<List<String>> join = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cluster.join(n3);
+                } catch (IOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertTrue(handoffArrived.await(10, TimeUnit.SECONDS));
+
+            // Served while the handoff is still in flight
+            mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON).content(booking(staying, "P1")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("ALLOCATED"));
+            assertFalse(join.isDone());
+            assertFalse(cluster.owns(moving));
+
+            handoffGate.countDown();
+            assertTrue(join.get(10, TimeUnit.SECONDS).contains(moving));
+            assertTrue(cluster.owns(staying));
+            assertFalse(InMemoryStore.doctors.containsKey(moving));
+        } finally {
+            handoffGate.countDown();
+            handoffGate = null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.opd.opd_token_engine.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that consistent hashing spreads doctors evenly and moves few on join
+ */
+class HashRingTest {
+
+    private static final int KEYS = 20_000;
+
+    @Test
+    void testOwnershipIgnoresMemberOrder() {
+        HashRing a = new HashRing(List.of("n1", "n2", "n3"), 64);
+        HashRing b = new HashRing(List.of("n3", "n1", "n2"), 64);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(a.ownerOf("D" + i), b.ownerOf("D" + i));
+        }
+    }
+
+    @Test
+    void testKeysSpreadEvenly() {
+        HashRing ring = new HashRing(List.of("n1", "n2", "n3", "n4"), 128);
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.ownerOf("D" + i), 1, Integer::sum);
+        }
+        assertEquals(4, owned.size());
+        owned.forEach((node, count) ->
+            assertTrue(count > KEYS * 0.18 && count < KEYS * 0.32, node + " owns " + count));
+    }
+
+    @Test
+    void testJoinMovesOnlyKeysToTheNewNode() {
+        HashRing before = new HashRing(List.of("n1", "n2", "n3"), 128);
+        HashRing after = before.with("n4");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = after.ownerOf("D" + i);
+            if (!owner.equals(before.ownerOf("D" + i))) {
+                assertEquals("n4", owner);
+                moved++;
+            }
+        }
+        // Ideally a quarter of the keys
+        assertTrue(moved > KEYS * 0.18 && moved < KEYS * 0.32, "moved " + moved);
+        assertTrue(after.contains("n4"));
+        assertFalse(before.contains("n4"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.opd.opd_token_engine.decision;
+
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the asynchronous decision log
+ */
+class DecisionLogTest {
+
+    @TempDir
+    Path dir;
+
+    private DecisionLog decisionLog;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (decisionLog != null) {
+            Decisions.uninstall(decisionLog);
+            decisionLog.close();
+        }
+    }
+
+    @Test
+    void testEngineDecisionsAreWrittenAsJsonLines() throws IOException {
+        Path file = dir.resolve("decisions.jsonl");
+        decisionLog = new DecisionLog(file, 1024, BackpressurePolicy.BLOCK, 1 << 20, 2).start();
+        Decisions.install(decisionLog);
+
+        TimeSlot slot = new TimeSlot("9-10", 1);
+        Token walkIn = new Token("P001", TokenSource.WALK_IN, 40);
+        Token emergency = new Token("P\"002", TokenSource.EMERGENCY, 100);
+        AllocationEngine.allocate("D1", slot, walkIn);
+        AllocationEngine.allocate("D1", slot, emergency);
+        AllocationEngine.allocate("D1", slot, new Token("P003", TokenSource.ONLINE, 50));
+
+        decisionLog.close();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"outcome\":\"ALLOCATED\""));
+        assertTrue(lines.get(1).contains("\"outcome\":\"REALLOCATED\""));
+        assertTrue(lines.get(1).contains("\"patient\":\"P\\\"002\""));
+        assertTrue(lines.get(1).contains("\"evicted\":\"" + walkIn.getTokenId() + "\""));
+        assertTrue(lines.get(2).contains("\"outcome\":\"WAITLISTED\""));
+        assertEquals(3, decisionLog.getWrittenCount());
+    }
+
+    @Test
+    void testDropPolicyCountsRecordsThatDoNotFit() throws IOException {
+        Path file = dir.resolve("decisions.jsonl");
+        decisionLog = new DecisionLog(file, 8, BackpressurePolicy.DROP, 1 << 20, 2);
+        Decisions.install(decisionLog);
+
+        // Writer not started yet, so the ring fills up
+        TimeSlot slot = new TimeSlot("9-10", 100);
+        for (int i = 0; i < 20; i++) {
+            AllocationEngine.allocate("D1", slot, new Token("P" + i, TokenSource.ONLINE, 50));
+        }
+        assertEquals(8, decisionLog.getPublishedCount());
+        assertEquals(12, decisionLog.getDroppedCount());
+
+        decisionLog.start().close();
+        assertEquals(8, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void testBlockPolicyWaitsOffTheSlotLock() throws Exception {
+        Path file = dir.resolve("decisions.jsonl");
+        decisionLog = new DecisionLog(file, 8, BackpressurePolicy.BLOCK, 1 << 20, 2);
+        Decisions.install(decisionLog);
+
+        // Writer not started yet, so the ring fills up and the booking thread waits
+        TimeSlot slot = new TimeSlot("9-10", 100);
+        Thread booking = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                AllocationEngine.allocate("D1", slot, new Token("P" + i, TokenSource.ONLINE, 50));
+            }
+        });
+        booking.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (decisionLog.getBlockedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, decisionLog.getBlockedCount());
+        assertTrue(booking.isAlive());
+        // The waiting thread has released the slot
+        boolean free;
+        while (!(free = slot.tryLock()) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(free);
+        slot.unlock();
+
+        decisionLog.start();
+        booking.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(booking.isAlive());
+        decisionLog.close();
+        assertEquals(20, decisionLog.getPublishedCount());
+        assertEquals(0, decisionLog.getDroppedCount());
+        assertEquals(20, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void testFilesRollAtSizeLimit() throws IOException {
+        Path file = dir.resolve("decisions.jsonl");
+        decisionLog = new DecisionLog(file, 64, BackpressurePolicy.BLOCK, 1_000, 3).start();
+        Decisions.install(decisionLog);
+
+        TimeSlot slot = new TimeSlot("9-10", 1000);
+        for (int i = 0; i < 100; i++) {
+            AllocationEngine.allocate("D1", slot, new Token("P" + i, TokenSource.ONLINE, 50));
+        }
+        decisionLog.close();
+
+        assertTrue(decisionLog.getRollCount() > 2);
+        assertTrue(Files.exists(dir.resolve("decisions.jsonl.1")));
+        assertTrue(Files.exists(dir.resolve("decisions.jsonl.2")));
+        assertFalse(Files.exists(dir.resolve("decisions.jsonl.3")));
+        assertTrue(Files.size(file) <= 1_000);
+    }
+}
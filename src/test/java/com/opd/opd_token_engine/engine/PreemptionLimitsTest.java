@@ -0,0 +1,205 @@
+package com.opd.opd_token_engine.engine;
+
+import com.opd.opd_token_engine.clock.VirtualClock;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the bump limit, the maximum wait off a seat and
+ * imminent-consultation protection on the preemption path
+ */
+class PreemptionLimitsTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long EIGHT_AM = LocalDate.of(2024, 1, 1).atTime(8, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    private final VirtualClock clock = new VirtualClock(EIGHT_AM);
+
+    private static PriorityTable limits(int maxBumps, double maxWaitMinutes, double imminentMinutes) {
+        return new PriorityTable(Map.of(), 0.3, 10, maxBumps, maxWaitMinutes, imminentMinutes);
+    }
+
+    private static TimeSlot slot(String slotId, int capacity) {
+        TimeSlot slot = new TimeSlot(slotId, capacity);
+        slot.detach();
+        return slot;
+    }
+
+    private Token book(TimeSlot slot, TokenSource source, PriorityTable priorities, AllocationStatus expected) {
+        Token token = new Token("P-" + clock.millis(), source, priorities.basePriority(source), clock.millis());
+        assertEquals(expected, AllocationEngine.allocate("D1", slot, token, clock, priorities).status);
+        advance(1);
+        return token;
+    }
+
+    private void advance(long minutes) {
+        clock.advanceTo(clock.millis() + minutes * MINUTE);
+    }
+
+    private void cancel(TimeSlot slot, Token token, PriorityTable priorities) {
+        slot.lock();
+        try {
+            assertTrue(AllocationEngine.cancelLocked("D1", slot, token.getTokenId(), clock.millis(), priorities));
+        } finally {
+            slot.unlock();
+        }
+    }
+
+    @Test
+    void testBumpLimitProtectsToken() {
+        PriorityTable priorities = limits(1, 0, 0);
+        TimeSlot slot = slot("9-10", 1);
+        Token walkIn = book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.ALLOCATED);
+        Token emergency = book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+        cancel(slot, emergency, priorities);
+        assertTrue(walkIn.isAllocated());
+
+        // Bumped once already: the next emergency waits instead
+        book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.WAITLISTED);
+        assertTrue(walkIn.isAllocated());
+        assertEquals(1, walkIn.getReallocationCount());
+    }
+
+    @Test
+    void testBumpedTokenIsNotTheFirstVictimAgain() {
+        PriorityTable priorities = limits(0, 0, 0);
+        TimeSlot slot = slot("9-10", 2);
+        Token bumped = book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.ALLOCATED);
+        Token emergency = book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.ALLOCATED);
+        Token paid = book(slot, TokenSource.PAID, priorities, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+        cancel(slot, emergency, priorities);
+        cancel(slot, paid, priorities);
+        assertTrue(bumped.isAllocated());
+        Token later = book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.ALLOCATED);
+
+        // The bumped walk-in ranks below the later one only by its penalty,
+        // which does not count against it as a victim
+        assertTrue(bumped.getPriorityKey() < later.getPriorityKey());
+        Token online = new Token("P-ONLINE", TokenSource.ONLINE, 50, clock.millis());
+        AllocationResult result = AllocationEngine.allocate("D1", slot, online, clock, priorities);
+        assertEquals(AllocationStatus.REALLOCATED_LOW_PRIORITY, result.status);
+        assertEquals(later.getTokenId(), result.evictedTokenId);
+        assertTrue(bumped.isAllocated());
+    }
+
+    @Test
+    void testWaitBoundCountsFromFirstLosingASeat() {
+        PriorityTable priorities = limits(0, 30, 0);
+        TimeSlot slot = slot("9-10", 1);
+        Token walkIn = book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.ALLOCATED);
+
+        // Booked an hour ago but never moved: still bumped
+        advance(60);
+        Token paid = book(slot, TokenSource.PAID, priorities, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+        cancel(slot, paid, priorities);
+        assertTrue(walkIn.isAllocated());
+
+        // 29 minutes since it first lost its seat: bumped again
+        advance(28);
+        Token emergency = book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+        cancel(slot, emergency, priorities);
+        assertTrue(walkIn.isAllocated());
+
+        // 30 minutes: no longer bumped, and the newcomer starts its own clock
+        Token waiting = book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.WAITLISTED);
+        assertTrue(walkIn.isAllocated());
+        assertTrue(walkIn.isProtected());
+        assertEquals(2, walkIn.getReallocationCount());
+        assertEquals(clock.millis() - MINUTE, waiting.getOffSeatSinceMillis());
+    }
+
+    @Test
+    void testOverdueWaiterTakesTheNextFreedSeat() {
+        PriorityTable priorities = limits(0, 30, 0);
+        TimeSlot slot = slot("9-10", 1);
+        Token emergency = book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.ALLOCATED);
+        Token walkIn = book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.WAITLISTED);
+        advance(29);
+        // Newer and scored well above the walk-in, even with its aging
+        Token paid = book(slot, TokenSource.PAID, priorities, AllocationStatus.WAITLISTED);
+        assertEquals(paid, slot.getWaitingQueue().peek());
+
+        cancel(slot, emergency, priorities);
+        assertTrue(walkIn.isAllocated());
+        assertFalse(paid.isAllocated());
+
+        // Nobody else is overdue, so the next seat goes by score again
+        cancel(slot, walkIn, priorities);
+        assertTrue(paid.isAllocated());
+    }
+
+    @Test
+    void testImminentConsultationIsNotBumped() {
+        PriorityTable priorities = limits(0, 0, 15);
+        TimeSlot slot = slot("9-10", 4);
+        for (int i = 0; i < 4; i++) {
+            book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.ALLOCATED);
+        }
+
+        // The last seat is seen at 9:45; at 9:25 it is 20 minutes away
+        advance(85 - 4);
+        book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+        // At 9:30 it is 15 minutes away
+        advance(4);
+        book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.WAITLISTED);
+        // Untimed slots are never imminent
+        TimeSlot untimed = slot("MORNING", 1);
+        book(untimed, TokenSource.WALK_IN, priorities, AllocationStatus.ALLOCATED);
+        book(untimed, TokenSource.EMERGENCY, priorities, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+    }
+
+    @Test
+    void testProtectedTokensAreSteppedOverOnce() {
+        PriorityTable priorities = limits(0, 30, 0);
+        TimeSlot slot = slot("9-10", 50);
+        Token[] paid = new Token[50];
+        for (int i = 0; i < 50; i++) {
+            paid[i] = book(slot, TokenSource.PAID, priorities, AllocationStatus.ALLOCATED);
+        }
+        // Waitlisted walk-ins take the seats as they free up
+        for (int i = 0; i < 50; i++) {
+            book(slot, TokenSource.WALK_IN, priorities, AllocationStatus.WAITLISTED);
+        }
+        for (Token token : paid) {
+            cancel(slot, token, priorities);
+        }
+        advance(90);
+
+        book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.WAITLISTED);
+        // Every seated token was re-keyed as protected by the first search,
+        // so the next one finds the protected end at the head
+        slot.lock();
+        try {
+            assertTrue(slot.getAllocatedTokens().peek().isProtected());
+            for (Token token : slot.getAllocatedTokens()) {
+                assertEquals(TokenSource.WALK_IN, token.getSource());
+                assertEquals(Token.PROTECTED, token.getEvictionKey());
+            }
+        } finally {
+            slot.unlock();
+        }
+        book(slot, TokenSource.EMERGENCY, priorities, AllocationStatus.WAITLISTED);
+    }
+
+    @Test
+    void testLimitsAreOffByDefault() {
+        TimeSlot slot = slot("9-10", 1);
+        // An advance booking made hours before its slot can still be bumped
+        Token online = book(slot, TokenSource.ONLINE, PriorityTable.DEFAULT, AllocationStatus.ALLOCATED);
+        advance(150);
+        book(slot, TokenSource.EMERGENCY, PriorityTable.DEFAULT, AllocationStatus.REALLOCATED_LOW_PRIORITY);
+        assertFalse(online.isAllocated());
+        assertEquals(0, PriorityTable.DEFAULT.maxBumps());
+        assertEquals(0.0, PriorityTable.DEFAULT.maxWaitMinutes());
+        assertEquals(0.0, PriorityTable.DEFAULT.imminentMinutes());
+    }
+}
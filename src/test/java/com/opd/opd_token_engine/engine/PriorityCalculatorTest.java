@@ -0,0 +1,69 @@
+package com.opd.opd_token_engine.engine;
+
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the linear aging model and its time-invariant ordering keys
+ */
+class PriorityCalculatorTest {
+
+    @Test
+    void testEffectivePriorityAgesLinearly() {
+        Token token = new Token("P001", TokenSource.ONLINE, 50);
+        long arrival = token.getArrivalMillis();
+
+        assertEquals(50, PriorityCalculator.calculate(token, arrival));
+        // 0.3 points per minute waited
+        assertEquals(53, PriorityCalculator.calculate(token, arrival + 10 * 60_000));
+        assertEquals(68, PriorityCalculator.calculate(token, arrival + 60 * 60_000));
+    }
+
+    @Test
+    void testReallocationPenaltyLowersKey() {
+        Token token = new Token("P001", TokenSource.WALK_IN, 40);
+        long before = PriorityCalculator.priorityKey(token);
+        token.incrementPreemption();
+
+        assertTrue(PriorityCalculator.priorityKey(token) < before);
+        assertEquals(30, PriorityCalculator.calculate(token, token.getArrivalMillis()));
+    }
+
+    @Test
+    void testKeyOrderingIsTimeInvariant() {
+        Token walkIn = new Token("P001", TokenSource.WALK_IN, 40);
+        Token online = new Token("P002", TokenSource.ONLINE, 50);
+        long walkInKey = PriorityCalculator.priorityKey(walkIn);
+        long onlineKey = PriorityCalculator.priorityKey(online);
+
+        // Both tokens keep the same relative order however long they wait
+        for (long wait = 0; wait <= 8 * 60 * 60_000; wait += 15 * 60_000) {
+            long now = online.getArrivalMillis() + wait;
+            int walkInNow = PriorityCalculator.effectivePriority(walkInKey, now);
+            int onlineNow = PriorityCalculator.effectivePriority(onlineKey, now);
+            assertEquals(Long.compare(onlineKey, walkInKey) > 0, onlineNow >= walkInNow);
+        }
+    }
+
+    @Test
+    void testNeighbouringAgingFactorsRankDifferently() {
+        Token walkIn = new Token("P001", TokenSource.WALK_IN, 40, 0);
+        Token online = new Token("P002", TokenSource.ONLINE, 50, 90 * 60_000);
+
+        // After 90 minutes the walk-in has gained 9 points at 0.1, 10.8 at 0.12
+        PriorityTable slow = new PriorityTable(Map.of(), 0.1, 10);
+        PriorityTable fast = new PriorityTable(Map.of(), 0.12, 10);
+        assertTrue(slow.priorityKey(online) > slow.priorityKey(walkIn));
+        assertTrue(fast.priorityKey(walkIn) > fast.priorityKey(online));
+
+        // Aging too slow to reach a point in a minute still ages
+        PriorityTable slowest = new PriorityTable(Map.of(), 0.01, 10);
+        assertEquals(41, slowest.effectivePriority(slowest.priorityKey(walkIn), 100 * 60_000));
+        assertThrows(IllegalArgumentException.class, () -> new PriorityTable(Map.of(), 1_001, 10));
+    }
+}
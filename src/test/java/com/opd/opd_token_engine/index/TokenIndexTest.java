@@ -0,0 +1,186 @@
+package com.opd.opd_token_engine.index;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.dto.TokenRequestDTO;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the token index follows engine decisions and rejects
+ * overlapping bookings for the same patient
+ */
+class TokenIndexTest {
+
+    private final AllocationService allocationService = new AllocationService();
+    private TokenIndex previous;
+    private TokenIndex index;
+
+    private void start(boolean rejectDuplicates, int capacity) {
+        InMemoryStore.doctors.clear();
+        for (String doctorId : List.of("D1", "D2", "D3", "D4")) {
+            Doctor doctor = new Doctor(doctorId, 1.0);
+            doctor.addSlot("9-10", capacity);
+            doctor.addSlot("9:30-10:30", capacity);
+            doctor.addSlot("11-12", capacity);
+            InMemoryStore.doctors.put(doctorId, doctor);
+        }
+        previous = TokenLookup.current();
+        index = new TokenIndex(rejectDuplicates);
+        SlotEvents.register(index);
+        TokenLookup.install(index);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SlotEvents.unregister(index);
+        TokenLookup.uninstall(index);
+        if (previous != null) {
+            TokenLookup.install(previous);
+        }
+        InMemoryStore.doctors.clear();
+    }
+
+    @Test
+    void testIndexFollowsEngineDecisions() {
+        start(false, 1);
+        String walkIn = allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN).tokenId;
+        assertEquals(TokenIndex.State.ALLOCATED, index.get(walkIn).state());
+
+        String emergency = allocationService.createToken("D1", "9-10", "P2", TokenSource.EMERGENCY).tokenId;
+        assertEquals(TokenIndex.State.WAITING, index.get(walkIn).state());
+        assertEquals(TokenIndex.State.ALLOCATED, index.get(emergency).state());
+        assertEquals("D1", index.get(walkIn).doctorId());
+        assertEquals("9-10", index.get(walkIn).slotId());
+
+        // Cancelling by token id alone promotes the evicted walk-in
+        assertTrue(allocationService.cancelToken(emergency));
+        assertNull(index.get(emergency));
+        assertEquals(TokenIndex.State.ALLOCATED, index.get(walkIn).state());
+        assertFalse(allocationService.cancelToken(emergency));
+        assertEquals(List.of(), index.tokensOf("P2"));
+        assertEquals(walkIn, index.tokensOf("P1").get(0).tokenId());
+    }
+
+    @Test
+    void testOverlappingBookingIsRejected() {
+        start(true, 2);
+        String first = allocationService.createToken("D1", "9-10", "P1", TokenSource.ONLINE).tokenId;
+
+        AllocationResponseDTO sameTime = allocationService.createToken("D2", "9:30-10:30", "P1", TokenSource.ONLINE);
+        assertEquals("REJECTED", sameTime.status);
+        assertNull(sameTime.tokenId);
+        assertTrue(sameTime.reason.contains(first));
+
+        // A later slot does not overlap, and a cancelled token no longer counts
+        assertEquals("ALLOCATED", allocationService.createToken("D2", "11-12", "P1", TokenSource.ONLINE).status);
+        assertTrue(allocationService.cancelToken(first));
+        assertEquals("ALLOCATED", allocationService.createToken("D3", "9-10", "P1", TokenSource.ONLINE).status);
+        assertEquals(2, index.tokensOf("P1").size());
+        assertEquals(1L, index.metrics().get("rejected"));
+    }
+
+    @Test
+    void testBatchRejectsDuplicatesWithinAndAcrossRequests() {
+        start(true, 5);
+        allocationService.createToken("D1", "9-10", "P1", TokenSource.ONLINE);
+
+        List<AllocationResponseDTO> responses = allocationService.createTokens(List.of(
+            request("D2", "9-10", "P1"),
+            request("D2", "9-10", "P2"),
+            request("D3", "9:30-10:30", "P2")
+        ));
+
+        assertEquals("REJECTED", responses.get(0).status);
+        assertEquals("ALLOCATED", responses.get(1).status);
+        assertEquals("REJECTED", responses.get(2).status);
+    }
+
+    @Test
+    void testConcurrentBookingsForOnePatientAdmitOnlyOne() throws Exception {
+        start(true, 5);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<AllocationResponseDTO>> running = new ArrayList<>();
+        for (String doctorId : List.of("D1", "D2", "D3", "D4")) {
+            Callable<AllocationResponseDTO> booking = () -> {
+                go.await();
+                return allocationService.createToken(doctorId, "9-10", "P1", TokenSource.ONLINE);
+            };
+            running.add(pool.submit(booking));
+        }
+        go.countDown();
+
+        int allocated = 0;
+        for (Future<AllocationResponseDTO> f : running) {
+            if ("ALLOCATED".equals(f.get().status)) {
+                allocated++;
+            }
+        }
+        pool.shutdown();
+        assertEquals(1, allocated);
+        assertEquals(1, index.tokensOf("P1").size());
+    }
+
+    @Test
+    void testCancellationDuringIndexAllLeavesNoGhost() throws Exception {
+        start(false, 1);
+        // Bookings made before the index under test is listening
+        SlotEvents.unregister(index);
+        TokenLookup.uninstall(index);
+        InMemoryStore.doctors.get("D1").addSlot("14-15", 2_000);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            for (int round = 0; round < 20; round++) {
+                List<String> booked = new ArrayList<>();
+                for (int i = 0; i < 2_000; i++) {
+                    booked.add(allocationService.createToken("D1", "14-15", "P" + i, TokenSource.ONLINE).tokenId);
+                }
+                TokenIndex late = new TokenIndex(false);
+                SlotEvents.register(late);
+                CountDownLatch go = new CountDownLatch(1);
+                try {
+                    // Latest bookings first, so cancellations race the end of the walk
+                    Future<?> cancelling = pool.submit(() -> {
+                        go.await();
+                        for (int i = booked.size() - 1; i >= 0; i--) {
+                            assertTrue(allocationService.cancelPatientToken("D1", "14-15", booked.get(i)));
+                        }
+                        return null;
+                    });
+                    go.countDown();
+                    late.indexAll(InMemoryStore.doctors);
+                    cancelling.get();
+                } finally {
+                    SlotEvents.unregister(late);
+                }
+                assertEquals(0, late.metrics().get("tokens"), "ghost entries in round " + round);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static TokenRequestDTO request(String doctorId, String slotId, String patientId) {
+        TokenRequestDTO request = new TokenRequestDTO();
+        request.doctorId = doctorId;
+        request.slotId = slotId;
+        request.patientId = patientId;
+        request.source = TokenSource.ONLINE;
+        return request;
+    }
+}
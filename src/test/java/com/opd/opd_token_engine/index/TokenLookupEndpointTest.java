@@ -0,0 +1,67 @@
+package com.opd.opd_token_engine.index;
+
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for token lookup and cancellation by token id alone
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class TokenLookupEndpointTest {
+
+    @Autowired
+    private AllocationService allocationService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+
+        Doctor d1 = new Doctor("D1", 1.0);
+        d1.addSlot("9-10", 1);
+        InMemoryStore.doctors.put("D1", d1);
+    }
+
+    @Test
+    void testLookupAndCancelByTokenId() throws Exception {
+        allocationService.createToken("D1", "9-10", "LOOKUP-1", TokenSource.PAID);
+        String waiting = allocationService.createToken("D1", "9-10", "LOOKUP-2", TokenSource.WALK_IN).tokenId;
+
+        mockMvc.perform(get("/tokens/" + waiting))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.doctorId").value("D1"))
+            .andExpect(jsonPath("$.slotId").value("9-10"))
+            .andExpect(jsonPath("$.state").value("WAITING"))
+            .andExpect(jsonPath("$.positionInQueue").value(1));
+
+        mockMvc.perform(get("/patients/LOOKUP-2/tokens"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].tokenId").value(waiting));
+
+        mockMvc.perform(post("/tokens/cancel").param("tokenId", waiting))
+            .andExpect(status().isOk())
+            .andExpect(content().string("Token cancelled successfully by patient"));
+
+        mockMvc.perform(get("/tokens/" + waiting))
+            .andExpect(status().isNotFound());
+        mockMvc.perform(post("/tokens/cancel").param("tokenId", waiting))
+            .andExpect(content().string("Token not found or already cancelled"));
+    }
+}
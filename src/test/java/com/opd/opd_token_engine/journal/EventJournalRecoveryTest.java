@@ -0,0 +1,191 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that replaying the event journal rebuilds the same slot state
+ */
+class EventJournalRecoveryTest {
+
+    @TempDir
+    Path dir;
+
+    private final AllocationService allocationService = new AllocationService();
+    private EventJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+        InMemoryStore.doctors.putAll(seedDoctors());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (journal != null) {
+            SlotEvents.unregister(journal);
+            journal.close();
+        }
+        InMemoryStore.doctors.clear();
+    }
+
+    private static Map<String, Doctor> seedDoctors() {
+        Map<String, Doctor> doctors = new HashMap<>();
+        for (String id : List.of("D1", "D2")) {
+            Doctor doctor = new Doctor(id, 1.0);
+            doctor.addSlot("9-10", 4);
+            doctor.addSlot("10-11", 4);
+            doctors.put(id, doctor);
+        }
+        return doctors;
+    }
+
+    private void startJournal(DurabilityMode durability) throws IOException {
+        journal = new EventJournal(dir.resolve("journal.bin"), durability, 2);
+        SlotEvents.register(journal);
+    }
+
+    private void stopJournal() throws IOException {
+        SlotEvents.unregister(journal);
+        journal.close();
+        journal = null;
+    }
+
+    private static List<String> ids(Iterable<Token> tokens) {
+        List<String> ids = new ArrayList<>();
+        tokens.forEach(t -> ids.add(t.getTokenId()));
+        return ids;
+    }
+
+    private static void assertSameState(Map<String, Doctor> expected, Map<String, Doctor> actual) {
+        for (Map.Entry<String, Doctor> doctor : expected.entrySet()) {
+            for (Map.Entry<String, TimeSlot> entry : doctor.getValue().getSlots().entrySet()) {
+                TimeSlot want = entry.getValue();
+                TimeSlot got = actual.get(doctor.getKey()).getSlots().get(entry.getKey());
+                assertEquals(ids(want.getAllocatedTokens()), ids(got.getAllocatedTokens()),
+                    doctor.getKey() + "/" + entry.getKey() + " allocated");
+                assertEquals(ids(want.getWaitingQueue()), ids(got.getWaitingQueue()),
+                    doctor.getKey() + "/" + entry.getKey() + " waiting");
+                assertEquals(want.getCapacity(), got.getCapacity());
+                assertEquals(want.getVersion(), got.getVersion());
+            }
+        }
+    }
+
+    @Test
+    void testReplayRebuildsAllocationsEvictionsAndCancellations() throws IOException {
+        startJournal(DurabilityMode.SYNC);
+
+        Random random = new Random(3);
+        TokenSource[] sources = TokenSource.values();
+        List<String[]> issued = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String doctorId = random.nextBoolean() ? "D1" : "D2";
+            String slotId = random.nextBoolean() ? "9-10" : "10-11";
+            if (!issued.isEmpty() && random.nextInt(4) == 0) {
+                String[] victim = issued.remove(random.nextInt(issued.size()));
+                allocationService.cancelPatientToken(victim[0], victim[1], victim[2]);
+            } else {
+                AllocationResponseDTO response = allocationService.createToken(
+                    doctorId, slotId, "P" + i, sources[random.nextInt(sources.length)]);
+                issued.add(new String[]{doctorId, slotId, response.tokenId});
+            }
+        }
+        // Shrinking displaces seated tokens, growing promotes waiters
+        allocationService.applyDelay("D2", 0.5, LocalTime.of(8, 0));
+        allocationService.applyDelay("D1", 1.5, LocalTime.of(9, 30));
+        stopJournal();
+
+        Map<String, Doctor> recovered = seedDoctors();
+        JournalReplayer.ReplayStats stats = JournalReplayer.replay(dir.resolve("journal.bin"), recovered);
+
+        assertTrue(stats.events() > 400);
+        assertEquals(0, stats.skipped());
+        assertSameState(InMemoryStore.doctors, recovered);
+    }
+
+    @Test
+    void testTornTailIsTruncatedAndJournalStaysAppendable() throws IOException {
+        startJournal(DurabilityMode.PERIODIC);
+        allocationService.createToken("D1", "9-10", "P001", TokenSource.ONLINE);
+        allocationService.createToken("D1", "9-10", "P002", TokenSource.PAID);
+        stopJournal();
+
+        Path file = dir.resolve("journal.bin");
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}), intact);
+        }
+
+        Map<String, Doctor> recovered = seedDoctors();
+        JournalReplayer.ReplayStats stats = JournalReplayer.replay(file, recovered);
+        assertEquals(2, stats.events());
+        assertEquals(intact, Files.size(file));
+
+        // Appending after recovery continues from the last intact record
+        startJournal(DurabilityMode.PERIODIC);
+        allocationService.createToken("D1", "9-10", "P003", TokenSource.WALK_IN);
+        stopJournal();
+        assertEquals(3, JournalReplayer.replay(file, seedDoctors()).events());
+    }
+
+    @Test
+    void testFullDayJournalReplaysQuickly() throws IOException {
+        InMemoryStore.doctors.clear();
+        for (int d = 0; d < 50; d++) {
+            Doctor doctor = new Doctor("D" + d, 1.0);
+            for (int s = 8; s < 16; s++) {
+                doctor.addSlot(s + "-" + (s + 1), 20);
+            }
+            InMemoryStore.doctors.put("D" + d, doctor);
+        }
+        startJournal(DurabilityMode.NONE);
+
+        Random random = new Random(5);
+        TokenSource[] sources = TokenSource.values();
+        for (int i = 0; i < 100_000; i++) {
+            int s = 8 + random.nextInt(8);
+            allocationService.createToken("D" + random.nextInt(50), s + "-" + (s + 1),
+                "P" + i, sources[random.nextInt(sources.length)]);
+        }
+        stopJournal();
+
+        Map<String, Doctor> recovered = new HashMap<>();
+        for (int d = 0; d < 50; d++) {
+            Doctor doctor = new Doctor("D" + d, 1.0);
+            for (int s = 8; s < 16; s++) {
+                doctor.addSlot(s + "-" + (s + 1), 20);
+            }
+            recovered.put("D" + d, doctor);
+        }
+        JournalReplayer.ReplayStats stats = JournalReplayer.replay(dir.resolve("journal.bin"), recovered);
+
+        assertTrue(stats.events() >= 100_000);
+        assertTrue(stats.elapsedMillis() < 5_000, "replay took " + stats.elapsedMillis() + " ms");
+        assertSameState(InMemoryStore.doctors, recovered);
+    }
+}
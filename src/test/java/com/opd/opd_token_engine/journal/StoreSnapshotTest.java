@@ -0,0 +1,207 @@
+package com.opd.opd_token_engine.journal;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a snapshot plus the journal tail rebuilds the same slot state
+ */
+class StoreSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private final AllocationService allocationService = new AllocationService();
+    private EventJournal journal;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (journal != null) {
+            SlotEvents.unregister(journal);
+            journal.close();
+        }
+        InMemoryStore.doctors.clear();
+    }
+
+    private static Map<String, Doctor> seedDoctors(SlotConcurrencyMode mode) {
+        Map<String, Doctor> doctors = new HashMap<>();
+        for (String id : List.of("D1", "D2")) {
+            Doctor doctor = new Doctor(id, 1.0, mode);
+            doctor.addSlot("9-10", 4);
+            doctor.addSlot("10-11", 4);
+            doctors.put(id, doctor);
+        }
+        return doctors;
+    }
+
+    private void start(SlotConcurrencyMode mode) throws IOException {
+        InMemoryStore.doctors.clear();
+        InMemoryStore.doctors.putAll(seedDoctors(mode));
+        journal = new EventJournal(dir.resolve("journal.bin"), DurabilityMode.NONE, 2);
+        SlotEvents.register(journal);
+    }
+
+    private void stopJournal() throws IOException {
+        SlotEvents.unregister(journal);
+        journal.close();
+        journal = null;
+    }
+
+    private void randomTraffic(Random random, int operations, List<String[]> issued) {
+        TokenSource[] sources = TokenSource.values();
+        for (int i = 0; i < operations; i++) {
+            String doctorId = random.nextBoolean() ? "D1" : "D2";
+            String slotId = random.nextBoolean() ? "9-10" : "10-11";
+            if (!issued.isEmpty() && random.nextInt(4) == 0) {
+                String[] victim = issued.remove(random.nextInt(issued.size()));
+                allocationService.cancelPatientToken(victim[0], victim[1], victim[2]);
+            } else {
+                AllocationResponseDTO response = allocationService.createToken(
+                    doctorId, slotId, "P" + i, sources[random.nextInt(sources.length)]);
+                issued.add(new String[]{doctorId, slotId, response.tokenId});
+            }
+        }
+    }
+
+    private static List<String> ids(Iterable<Token> tokens) {
+        List<String> ids = new ArrayList<>();
+        tokens.forEach(t -> ids.add(t.getTokenId()));
+        return ids;
+    }
+
+    private static void assertSameState(Map<String, Doctor> expected, Map<String, Doctor> actual) {
+        for (Map.Entry<String, Doctor> doctor : expected.entrySet()) {
+            for (Map.Entry<String, TimeSlot> entry : doctor.getValue().getSlots().entrySet()) {
+                TimeSlot want = entry.getValue();
+                TimeSlot got = actual.get(doctor.getKey()).getSlots().get(entry.getKey());
+                want.lock();
+                try {
+                    assertEquals(ids(want.getAllocatedTokens()), ids(got.getAllocatedTokens()),
+                        doctor.getKey() + "/" + entry.getKey() + " allocated");
+                    assertEquals(ids(want.getWaitingQueue()), ids(got.getWaitingQueue()),
+                        doctor.getKey() + "/" + entry.getKey() + " waiting");
+                } finally {
+                    want.unlock();
+                }
+                assertEquals(want.getCapacity(), got.getCapacity());
+                assertEquals(want.getVersion(), got.getVersion());
+            }
+        }
+    }
+
+    private Map<String, Doctor> recover(long expectedTokens) throws IOException {
+        Map<String, Doctor> recovered = seedDoctors(SlotConcurrencyMode.MONITOR);
+        StoreSnapshot.LoadStats loaded = StoreSnapshot.load(dir.resolve("snapshot.bin"), recovered,
+            SlotConcurrencyMode.MONITOR);
+        assertNotNull(loaded);
+        assertEquals(expectedTokens, loaded.tokens());
+        JournalReplayer.replay(dir.resolve("journal.bin"), loaded.journalOffset(), recovered);
+        return recovered;
+    }
+
+    @Test
+    void testSnapshotPlusTailMatchesLiveState() throws IOException {
+        start(SlotConcurrencyMode.MONITOR);
+        Random random = new Random(11);
+        List<String[]> issued = new ArrayList<>();
+        randomTraffic(random, 300, issued);
+        allocationService.applyDelay("D1", 0.75, LocalTime.of(8, 0));
+
+        StoreSnapshot.WriteStats written = StoreSnapshot.write(dir.resolve("snapshot.bin"),
+            InMemoryStore.doctors, journal.checkpointOffset());
+        assertTrue(written.bytes() > 0);
+
+        randomTraffic(random, 300, issued);
+        allocationService.applyDelay("D2", 0.5, LocalTime.of(8, 0));
+        stopJournal();
+
+        assertSameState(InMemoryStore.doctors, recover(written.tokens()));
+    }
+
+    @Test
+    void testSnapshotTakenDuringConcurrentFastPathTraffic() throws Exception {
+        start(SlotConcurrencyMode.CAS_FAST_PATH);
+        for (Doctor doctor : InMemoryStore.doctors.values()) {
+            doctor.addSlot("11-12", 400);
+        }
+
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicBoolean stop = new AtomicBoolean();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            pool.submit(() -> {
+                Random random = new Random(seed);
+                go.await();
+                int i = 0;
+                while (!stop.get() && i < 20_000) {
+                    String doctorId = random.nextBoolean() ? "D1" : "D2";
+                    AllocationResponseDTO response = allocationService.createToken(doctorId, "11-12",
+                        "T" + seed + "-" + i++, TokenSource.ONLINE);
+                    if (random.nextInt(3) == 0) {
+                        allocationService.cancelPatientToken(doctorId, "11-12", response.tokenId);
+                    }
+                }
+                return null;
+            });
+        }
+
+        go.countDown();
+        StoreSnapshot.WriteStats written = null;
+        for (int i = 0; i < 5; i++) {
+            written = StoreSnapshot.write(dir.resolve("snapshot.bin"), InMemoryStore.doctors,
+                journal.checkpointOffset());
+        }
+        stop.set(true);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        stopJournal();
+
+        Map<String, Doctor> recovered = recover(written.tokens());
+        assertSameState(InMemoryStore.doctors, recovered);
+    }
+
+    @Test
+    void testCorruptSnapshotIsIgnored() throws IOException {
+        start(SlotConcurrencyMode.MONITOR);
+        allocationService.createToken("D1", "9-10", "P001", TokenSource.ONLINE);
+        Path snapshot = dir.resolve("snapshot.bin");
+        StoreSnapshot.write(snapshot, InMemoryStore.doctors, journal.checkpointOffset());
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(snapshot, bytes);
+
+        Map<String, Doctor> recovered = seedDoctors(SlotConcurrencyMode.MONITOR);
+        assertNull(StoreSnapshot.load(snapshot, recovered, SlotConcurrencyMode.MONITOR));
+        assertTrue(recovered.get("D1").getSlots().get("9-10").getWaitingQueue().isEmpty());
+    }
+}
@@ -0,0 +1,184 @@
+package com.opd.opd_token_engine.load;
+
+import com.opd.opd_token_engine.metrics.LatencyRecorder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 9am surge against the REST API with platform and with virtual request
+ * threads. The journal runs in SYNC mode, so every request blocks until its
+ * group commit is forced, which is the blocking work virtual threads are for.
+ * <p>
+ * Tagged "load" and skipped by default; run with {@code ./mvnw -Pload-test test}.
+ */
+@Tag("load")
+class RequestThreadingLoadTest {
+
+    private static final int CLIENTS = 1_000;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final String[] DOCTORS = {"D1", "D2", "D3"};
+    private static final String[] SLOTS = {"9-10", "10-11"};
+    private static final String[] SOURCES = {"EMERGENCY", "PAID", "FOLLOW_UP", "ONLINE", "WALK_IN"};
+    private static final Pattern TOKEN_ID = Pattern.compile("\"tokenId\":\"([^\"]+)\"");
+
+    private static final Map<String, Result> results = new ConcurrentHashMap<>();
+
+    record Result(long requests, long errors, long elapsedMillis, long[] latencyNanos) {
+
+        double throughput() {
+            return requests * 1000.0 / Math.max(1, elapsedMillis);
+        }
+    }
+
+    static void journalProperties(DynamicPropertyRegistry registry, String mode) throws IOException {
+        Path dir = Files.createTempDirectory("opd-load-" + mode);
+        registry.add("opd.journal.enabled", () -> "true");
+        registry.add("opd.journal.durability", () -> "SYNC");
+        registry.add("opd.journal.path", () -> dir.resolve("journal.bin").toString());
+        registry.add("opd.journal.snapshot-path", () -> dir.resolve("snapshot.bin").toString());
+        registry.add("opd.decision-log.path", () -> dir.resolve("decisions.jsonl").toString());
+    }
+
+    static Result surge(int port) throws Exception {
+        String base = "http://localhost:" + port;
+        LatencyRecorder latency = new LatencyRecorder();
+        AtomicLong errors = new AtomicLong();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+
+            long start = System.nanoTime();
+            List<Future<?>> running = new ArrayList<>(CLIENTS);
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                running.add(clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        String doctor = DOCTORS[random.nextInt(DOCTORS.length)];
+                        String slot = SLOTS[random.nextInt(SLOTS.length)];
+                        String body = "{\"doctorId\":\"" + doctor + "\",\"slotId\":\"" + slot
+                                + "\",\"patientId\":\"C" + client + "-" + i
+                                + "\",\"source\":\"" + SOURCES[random.nextInt(SOURCES.length)] + "\"}";
+                        long sent = System.nanoTime();
+                        HttpResponse<String> created = http.send(HttpRequest.newBuilder(URI.create(base + "/tokens"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build(), HttpResponse.BodyHandlers.ofString());
+                        latency.record(System.nanoTime() - sent);
+                        if (created.statusCode() != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+
+                        // Every third booking is cancelled again
+                        Matcher tokenId = TOKEN_ID.matcher(created.body());
+                        if (i % 3 == 2 && tokenId.find()) {
+                            sent = System.nanoTime();
+                            HttpResponse<String> cancelled = http.send(HttpRequest.newBuilder(URI.create(
+                                            base + "/tokens/cancel?doctorId=" + doctor + "&slotId=" + slot
+                                                    + "&tokenId=" + tokenId.group(1)))
+                                    .POST(HttpRequest.BodyPublishers.noBody())
+                                    .build(), HttpResponse.BodyHandlers.ofString());
+                            latency.record(System.nanoTime() - sent);
+                            if (cancelled.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : running) {
+                f.get();
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            return new Result(latency.count(), errors.get(), elapsed, latency.percentiles(50, 99, 99.9));
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads {
+
+        @LocalServerPort
+        int port;
+
+        @DynamicPropertySource
+        static void properties(DynamicPropertyRegistry registry) throws IOException {
+            journalProperties(registry, "platform");
+        }
+
+        @Test
+        void testSurge() throws Exception {
+            Result result = surge(port);
+            results.put("platform", result);
+            assertEquals(0, result.errors());
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "spring.threads.virtual.enabled=true")
+    class VirtualThreads {
+
+        @LocalServerPort
+        int port;
+
+        @DynamicPropertySource
+        static void properties(DynamicPropertyRegistry registry) throws IOException {
+            journalProperties(registry, "virtual");
+        }
+
+        @Test
+        void testSurge() throws Exception {
+            Result result = surge(port);
+            results.put("virtual", result);
+            assertEquals(0, result.errors());
+        }
+    }
+
+    @AfterAll
+    static void report() {
+        System.out.printf("%n%-10s %10s %8s %12s %10s %10s %10s%n",
+                "threads", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (String mode : List.of("platform", "virtual")) {
+            Result r = results.get(mode);
+            if (r != null) {
+                System.out.printf("%-10s %10d %8d %12.0f %10.2f %10.2f %10.2f%n",
+                        mode, r.requests(), r.errors(), r.throughput(),
+                        r.latencyNanos()[0] / 1e6, r.latencyNanos()[1] / 1e6, r.latencyNanos()[2] / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.opd.opd_token_engine.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the log-linear latency histogram
+ */
+class LatencyRecorderTest {
+
+    @Test
+    void testBucketsCoverEveryValueWithBoundedError() {
+        int previous = -1;
+        for (long v = 0; v < 100_000; v++) {
+            int bucket = LatencyRecorder.bucketOf(v);
+            assertTrue(bucket >= previous, "buckets must be monotonic");
+            assertTrue(LatencyRecorder.upperBound(bucket) >= v);
+            assertTrue(LatencyRecorder.upperBound(bucket) <= v + v / 8, "error above 12.5% at " + v);
+            previous = bucket;
+        }
+        assertEquals(LatencyRecorder.bucketOf(1L << 40), LatencyRecorder.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPercentilesAndMax() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(i * 1_000L);
+        }
+
+        long[] p = recorder.percentiles(50, 99, 100);
+        assertEquals(1000, recorder.count());
+        assertTrue(p[0] >= 500_000 && p[0] <= 500_000 * 1.125, "p50=" + p[0]);
+        assertTrue(p[1] >= 990_000 && p[1] <= 1_000_000, "p99=" + p[1]);
+        assertEquals(1_000_000, p[2]);
+        assertEquals(1_000_000, recorder.max());
+    }
+
+    @Test
+    void testEmptyRecorderReportsZeros() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        assertArrayEquals(new long[]{0, 0}, recorder.percentiles(50, 99));
+        assertEquals(0L, recorder.toMap().get("count"));
+    }
+
+    @Test
+    void testSlotHistogramsAreCreatedOnFirstRecording() {
+        SlotMetrics metrics = new SlotMetrics();
+        assertSame(metrics.getAllocateLatency(), metrics.getCancelLatency());
+        assertEquals(0, metrics.getLockWait().count());
+
+        metrics.recordCancel(5_000, true);
+        assertEquals(1, metrics.getCancelLatency().count());
+        assertEquals(0, metrics.getAllocateLatency().count());
+        assertNotSame(metrics.getAllocateLatency(), metrics.getCancelLatency());
+    }
+}
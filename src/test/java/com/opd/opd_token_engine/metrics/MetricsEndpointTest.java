@@ -0,0 +1,61 @@
+package com.opd.opd_token_engine.metrics;
+
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for per-slot counters served at /metrics
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MetricsEndpointTest {
+
+    @Autowired
+    private AllocationService allocationService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+
+        Doctor d1 = new Doctor("D1", 1.0);
+        d1.addSlot("9-10", 2);
+        InMemoryStore.doctors.put("D1", d1);
+    }
+
+    @Test
+    void testSlotCountersAndHighWaterMarks() throws Exception {
+        allocationService.createToken("D1", "9-10", "P001", TokenSource.WALK_IN);
+        allocationService.createToken("D1", "9-10", "P002", TokenSource.ONLINE);
+        allocationService.createToken("D1", "9-10", "P003", TokenSource.EMERGENCY); // preempts P001
+        var waitlisted = allocationService.createToken("D1", "9-10", "P004", TokenSource.WALK_IN);
+        allocationService.cancelPatientToken("D1", "9-10", waitlisted.tokenId);
+
+        mockMvc.perform(get("/metrics"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.enabled").value(true))
+            .andExpect(jsonPath("$.totals.allocated").value(3))
+            .andExpect(jsonPath("$.totals.preempted").value(1))
+            .andExpect(jsonPath("$.totals.waitlisted").value(1))
+            .andExpect(jsonPath("$.doctors.D1.9-10.cancelled").value(1))
+            .andExpect(jsonPath("$.doctors.D1.9-10.waitlistDepth").value(1))
+            .andExpect(jsonPath("$.doctors.D1.9-10.waitingHighWater").value(2))
+            .andExpect(jsonPath("$.doctors.D1.9-10.allocatedHighWater").value(2))
+            .andExpect(jsonPath("$.doctors.D1.9-10.allocateLatency.count").value(4))
+            .andExpect(jsonPath("$.doctors.D1.9-10.cancelLatency.count").value(1));
+    }
+}
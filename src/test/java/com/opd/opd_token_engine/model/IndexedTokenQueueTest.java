@@ -0,0 +1,137 @@
+package com.opd.opd_token_engine.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ordering, exact positions and removal by id in IndexedTokenQueue
+ */
+class IndexedTokenQueueTest {
+
+    private static Token token(String patientId, int priority) {
+        Token token = new Token(patientId, TokenSource.ONLINE, priority);
+        token.setPriorityKey(priority);
+        return token;
+    }
+
+    @Test
+    void testHighestFirstBreaksTiesInArrivalOrder() {
+        IndexedTokenQueue queue = IndexedTokenQueue.highestFirst();
+        Token a = token("A", 50);
+        Token b = token("B", 80);
+        Token c = token("C", 50);
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+
+        assertEquals(List.of(b, a, c), queue.toList());
+        assertEquals(1, queue.positionOf(b.getTokenId()));
+        assertEquals(2, queue.positionOf(a.getTokenId()));
+        assertEquals(3, queue.positionOf(c.getTokenId()));
+        assertSame(b, queue.poll());
+        assertSame(a, queue.poll());
+    }
+
+    @Test
+    void testLowestFirstIsReverseOrder() {
+        IndexedTokenQueue queue = IndexedTokenQueue.lowestFirst();
+        Token a = token("A", 50);
+        Token b = token("B", 80);
+        Token c = token("C", 50);
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+
+        // The newest of the weakest tokens is the preemption victim
+        assertSame(c, queue.peek());
+        assertEquals(List.of(c, a, b), queue.toList());
+        assertEquals(3, queue.positionOf(b.getTokenId()));
+    }
+
+    @Test
+    void testRemoveById() {
+        IndexedTokenQueue queue = IndexedTokenQueue.highestFirst();
+        Token a = token("A", 10);
+        Token b = token("B", 20);
+        queue.add(a);
+        queue.add(b);
+
+        assertSame(a, queue.remove(a.getTokenId()));
+        assertNull(queue.remove(a.getTokenId()));
+        assertFalse(queue.contains(a.getTokenId()));
+        assertEquals(-1, queue.positionOf(a.getTokenId()));
+        assertEquals(1, queue.size());
+        assertFalse(queue.add(b));
+    }
+
+    @Test
+    void testGrowsAndReusesFreedNodes() {
+        IndexedTokenQueue queue = IndexedTokenQueue.highestFirst();
+        List<Token> kept = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            List<Token> added = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                Token t = token("P" + round + "-" + i, i % 7);
+                assertTrue(queue.add(t));
+                added.add(t);
+            }
+            // Drop every other token so the next round refills freed nodes
+            for (int i = 0; i < added.size(); i++) {
+                if (i % 2 == 0) {
+                    assertSame(added.get(i), queue.remove(added.get(i).getTokenId()));
+                } else {
+                    kept.add(added.get(i));
+                }
+            }
+        }
+
+        assertEquals(kept.size(), queue.size());
+        for (Token t : kept) {
+            assertSame(t, queue.get(t.getTokenId()));
+        }
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        assertFalse(queue.contains(kept.get(0).getTokenId()));
+        assertTrue(queue.add(kept.get(0)));
+        assertSame(kept.get(0), queue.poll());
+    }
+
+    @Test
+    void testMatchesReferenceQueueUnderRandomOperations() {
+        IndexedTokenQueue queue = IndexedTokenQueue.highestFirst();
+        List<Token> reference = new ArrayList<>();
+        Random random = new Random(11);
+
+        for (int i = 0; i < 5_000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || reference.isEmpty()) {
+                Token t = token("P" + i, random.nextInt(20));
+                queue.add(t);
+                reference.add(t); // insertion order keeps ties FIFO
+            } else if (op == 2) {
+                Token t = reference.remove(random.nextInt(reference.size()));
+                assertSame(t, queue.remove(t.getTokenId()));
+            } else {
+                // Stable sort keeps arrival order among equal priorities
+                List<Token> sorted = new ArrayList<>(reference);
+                sorted.sort((x, y) -> Long.compare(y.getPriorityKey(), x.getPriorityKey()));
+                Token expected = sorted.get(0);
+                assertSame(expected, queue.poll());
+                reference.remove(expected);
+            }
+        }
+
+        List<Token> sorted = new ArrayList<>(reference);
+        sorted.sort((x, y) -> Long.compare(y.getPriorityKey(), x.getPriorityKey()));
+        assertEquals(sorted, queue.toList());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i + 1, queue.positionOf(sorted.get(i).getTokenId()));
+        }
+    }
+}
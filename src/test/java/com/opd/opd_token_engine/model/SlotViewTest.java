@@ -0,0 +1,130 @@
+package com.opd.opd_token_engine.model;
+
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for immutable slot views read without the slot lock
+ */
+class SlotViewTest {
+
+    private final AllocationService allocationService = new AllocationService();
+
+    private TimeSlot start(SlotConcurrencyMode mode, int capacity) {
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 1.0, mode);
+        doctor.addSlot("9-10", capacity);
+        InMemoryStore.doctors.put("D1", doctor);
+        return doctor.getSlots().get("9-10");
+    }
+
+    @AfterEach
+    void tearDown() {
+        InMemoryStore.doctors.clear();
+    }
+
+    @Test
+    void testViewIsSharedUntilTheSlotChanges() {
+        TimeSlot slot = start(SlotConcurrencyMode.MONITOR, 1);
+        allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN);
+
+        SlotView first = slot.view();
+        assertSame(first, slot.view());
+        assertEquals(1, first.allocated().size());
+        assertThrows(UnsupportedOperationException.class, () -> first.allocated().clear());
+
+        allocationService.createToken("D1", "9-10", "P2", TokenSource.EMERGENCY);
+        SlotView second = slot.view();
+        assertNotSame(first, second);
+        assertEquals(slot.getVersion(), second.version());
+        assertEquals("P2", second.allocated().get(0).patientId());
+        assertEquals("P1", second.waiting().get(0).patientId());
+        // The earlier view is untouched
+        assertEquals("P1", first.allocated().get(0).patientId());
+    }
+
+    @Test
+    void testReaderDoesNotWaitForBusySlot() throws Exception {
+        TimeSlot slot = start(SlotConcurrencyMode.MONITOR, 2);
+        allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN);
+        SlotView before = slot.view();
+
+        slot.lock();
+        try {
+            slot.nextVersion();
+            SlotView whileLocked = CompletableFuture.supplyAsync(slot::view).get(5, TimeUnit.SECONDS);
+            assertSame(before, whileLocked);
+        } finally {
+            slot.unlock();
+        }
+        assertEquals(slot.getVersion(), slot.view().version());
+    }
+
+    @ParameterizedTest
+    @EnumSource(SlotConcurrencyMode.class)
+    void testViewsStayConsistentUnderConcurrentTraffic(SlotConcurrencyMode mode) throws Exception {
+        TimeSlot slot = start(mode, 5);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int seed = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    var response = allocationService.createToken("D1", "9-10", "T" + seed + "-" + i,
+                        TokenSource.values()[i % TokenSource.values().length]);
+                    if (i % 3 == 0) {
+                        allocationService.cancelPatientToken("D1", "9-10", response.tokenId);
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> reader = pool.submit(() -> {
+            long lastVersion = -1;
+            while (writing.get()) {
+                SlotView view = slot.view();
+                assertTrue(view.allocated().size() <= view.capacity());
+                assertTrue(view.version() >= lastVersion);
+                lastVersion = view.version();
+                Set<String> ids = new HashSet<>();
+                view.allocated().forEach(e -> assertTrue(ids.add(e.tokenId())));
+                view.waiting().forEach(e -> assertTrue(ids.add(e.tokenId())));
+            }
+            return null;
+        });
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        reader.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        SlotView last = slot.view();
+        assertEquals(slot.getVersion(), last.version());
+        slot.lock();
+        try {
+            assertEquals(slot.getAllocatedTokens().size(), last.allocated().size());
+            assertEquals(slot.getWaitingQueue().size(), last.waiting().size());
+        } finally {
+            slot.unlock();
+        }
+    }
+}
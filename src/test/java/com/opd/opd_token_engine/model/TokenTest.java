@@ -0,0 +1,34 @@
+package com.opd.opd_token_engine.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sequence token ids and shared patient ids
+ */
+class TokenTest {
+
+    @Test
+    void testIdsAreUniqueAndShorterThanUuids() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String id = new Token("P" + i, TokenSource.ONLINE, 50).getTokenId();
+            assertTrue(ids.add(id), "duplicate id " + id);
+            assertTrue(id.length() < 20, id);
+        }
+    }
+
+    @Test
+    void testRepeatBookingsSharePatientId() {
+        Token first = new Token(new String("P-REPEAT".toCharArray()), TokenSource.ONLINE, 50);
+        Token second = new Token(new String("P-REPEAT".toCharArray()), TokenSource.WALK_IN, 40);
+        Token recovered = new Token("T1", new String("P-REPEAT".toCharArray()), TokenSource.WALK_IN, 40, 0L, 0);
+
+        assertSame(first.getPatientId(), second.getPatientId());
+        assertSame(first.getPatientId(), recovered.getPatientId());
+    }
+}
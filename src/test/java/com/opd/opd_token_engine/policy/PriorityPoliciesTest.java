@@ -0,0 +1,158 @@
+package com.opd.opd_token_engine.policy;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.engine.PriorityTable;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for pluggable priority policies: compilation, per-department lookup,
+ * configuration parsing and atomic replacement under live bookings
+ */
+class PriorityPoliciesTest {
+
+    private final AllocationService allocationService = new AllocationService();
+
+    // A policy computed rather than configured: walk-ins first, no aging
+    private static final PriorityPolicy WALK_INS_FIRST = new PriorityPolicy() {
+        @Override
+        public int basePriority(TokenSource source) {
+            return source == TokenSource.WALK_IN ? 200 : 10 + source.ordinal();
+        }
+
+        @Override
+        public double agingFactor() {
+            return 0;
+        }
+
+        @Override
+        public int reallocationPenalty() {
+            return 5;
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        for (String doctorId : new String[]{"POL-D1", "POL-D2"}) {
+            Doctor doctor = new Doctor(doctorId, 1.0);
+            doctor.addSlot("9-10", 1);
+            InMemoryStore.doctors.put(doctorId, doctor);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        PriorityPolicies.reset();
+        InMemoryStore.doctors.remove("POL-D1");
+        InMemoryStore.doctors.remove("POL-D2");
+    }
+
+    @Test
+    void testCustomPolicyCompilesToATable() {
+        PriorityTable table = PriorityTable.compile(WALK_INS_FIRST);
+
+        assertEquals(200, table.basePriority(TokenSource.WALK_IN));
+        assertEquals(10 + TokenSource.EMERGENCY.ordinal(), table.basePriority(TokenSource.EMERGENCY));
+        assertEquals(0.0, table.agingFactor());
+        assertEquals(5, table.reallocationPenalty());
+        assertSame(table, PriorityTable.compile(table));
+    }
+
+    @Test
+    void testDepartmentsOverrideTheHospitalPolicy() {
+        PriorityPolicies.install(PriorityTable.DEFAULT, Map.of("TRIAGE", WALK_INS_FIRST), Map.of("POL-D2", "TRIAGE"));
+
+        assertEquals(PriorityTable.DEFAULT, PriorityPolicies.forDoctor("POL-D1"));
+        assertEquals(PriorityTable.compile(WALK_INS_FIRST), PriorityPolicies.forDoctor("POL-D2"));
+
+        // The same two bookings end the other way round in the triage department
+        allocationService.createToken("POL-D1", "9-10", "P1", TokenSource.WALK_IN);
+        AllocationResponseDTO general = allocationService.createToken("POL-D1", "9-10", "P2", TokenSource.EMERGENCY);
+        allocationService.createToken("POL-D2", "9-10", "P3", TokenSource.WALK_IN);
+        AllocationResponseDTO triage = allocationService.createToken("POL-D2", "9-10", "P4", TokenSource.EMERGENCY);
+
+        assertEquals("REALLOCATED_LOW_PRIORITY", general.status);
+        assertEquals("WAITLISTED", triage.status);
+    }
+
+    @Test
+    void testUpdateSwapsPoliciesAndKeepsMembership() {
+        PriorityPolicies.install(PriorityTable.DEFAULT, Map.of(), Map.of("POL-D2", "TRIAGE"));
+        allocationService.createToken("POL-D2", "9-10", "P1", TokenSource.WALK_IN);
+
+        new PolicyDocument(new PolicySettings(null, 0.5, null, null, null, null),
+                Map.of("TRIAGE", new PolicySettings(Map.of(TokenSource.EMERGENCY, 20), null, null, null, null, null))).install();
+
+        PriorityTable triage = PriorityPolicies.forDoctor("POL-D2");
+        assertEquals(20, triage.basePriority(TokenSource.EMERGENCY));
+        assertEquals(0.5, triage.agingFactor());
+        assertEquals(0.5, PriorityPolicies.forDoctor("POL-D1").agingFactor());
+        assertEquals(85, PriorityPolicies.hospital().basePriority(TokenSource.PAID));
+        // An emergency worth 20 no longer displaces the queued walk-in (40)
+        assertEquals("WAITLISTED",
+                allocationService.createToken("POL-D2", "9-10", "P2", TokenSource.EMERGENCY).status);
+
+        PolicyDocument served = PolicyDocument.current();
+        assertEquals(0.5, served.hospital().agingFactor());
+        assertEquals(20, served.departments().get("TRIAGE").basePriorities().get(TokenSource.EMERGENCY));
+    }
+
+    @Test
+    void testSwapRescoresTokensAlreadySeatedAndQueued() {
+        InMemoryStore.doctors.get("POL-D1").addSlot("11-12", 1);
+        String walkIn = allocationService.createToken("POL-D1", "9-10", "P1", TokenSource.WALK_IN).tokenId;
+        allocationService.createToken("POL-D1", "11-12", "P2", TokenSource.EMERGENCY);
+        allocationService.createToken("POL-D1", "11-12", "P3", TokenSource.ONLINE);
+
+        // Faster aging: the seated walk-in is re-keyed before the emergency is compared with it
+        new PolicyDocument(new PolicySettings(null, 0.6, null, null, null, null), Map.of()).install();
+        AllocationResponseDTO emergency = allocationService.createToken("POL-D1", "9-10", "P4", TokenSource.EMERGENCY);
+        assertEquals("REALLOCATED_LOW_PRIORITY", emergency.status);
+        assertEquals(walkIn, emergency.promotedTokenId);
+
+        // Slower aging: a new walk-in neither bumps the seated emergency nor
+        // jumps the online token waiting since before the swap
+        new PolicyDocument(new PolicySettings(null, 0.12, null, null, null, null), Map.of()).install();
+        AllocationResponseDTO late = allocationService.createToken("POL-D1", "11-12", "P5", TokenSource.WALK_IN);
+        assertEquals("WAITLISTED", late.status);
+        assertEquals(2, late.positionInQueue);
+    }
+
+    @Test
+    void testConfigurationIsParsed() {
+        PolicySettings hospital = PolicySettings.parse(
+                "WALK_IN=45, aging-factor=0.4,reallocation-penalty=12,max-wait-minutes=45");
+        Map<String, PolicySettings> departments = PriorityPolicyLifecycle.parseDepartments(
+                "CARDIO:PAID=90;PEDS:EMERGENCY=120,aging-factor=1,max-bumps=1,imminent-minutes=15");
+
+        PriorityTable base = hospital.over(PriorityTable.DEFAULT);
+        assertEquals(45, base.basePriority(TokenSource.WALK_IN));
+        assertEquals(100, base.basePriority(TokenSource.EMERGENCY));
+        assertEquals(0.4, base.agingFactor());
+        assertEquals(12, base.reallocationPenalty());
+        assertEquals(0, base.maxBumps());
+        assertEquals(45.0, base.maxWaitMinutes());
+        PriorityTable peds = departments.get("PEDS").over(base);
+        assertEquals(120, peds.basePriority(TokenSource.EMERGENCY));
+        assertEquals(45, peds.basePriority(TokenSource.WALK_IN));
+        assertEquals(1.0, peds.agingFactor());
+        assertEquals(1, peds.maxBumps());
+        assertEquals(15.0, peds.imminentMinutes());
+        assertEquals(90, departments.get("CARDIO").over(base).basePriority(TokenSource.PAID));
+
+        assertThrows(IllegalArgumentException.class, () -> PolicySettings.parse("VIP=10"));
+        assertThrows(IllegalArgumentException.class,
+                () -> PolicySettings.parse("aging-factor=-1").over(PriorityTable.DEFAULT));
+        assertThrows(IllegalArgumentException.class,
+                () -> PolicySettings.parse("max-bumps=-1").over(PriorityTable.DEFAULT));
+    }
+}
@@ -0,0 +1,55 @@
+package com.opd.opd_token_engine.replication;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests that a follower refuses every write, wherever it is mapped, and
+ * still serves reads and its own promotion, after which it takes writes. Its leader is unreachable, so
+ * its store only ever holds what it seeded.
+ */
+@SpringBootTest(properties = {
+    "opd.replication.enabled=true",
+    "opd.replication.role=FOLLOWER",
+    "opd.replication.port=0",
+    "opd.replication.leader-port=1",
+    "opd.replication.secret=test-secret"
+})
+@AutoConfigureMockMvc
+class ReplicationFollowerEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testFollowerRefusesWritesUntilPromoted() throws Exception {
+        mockMvc.perform(put("/priority-policy").contentType(MediaType.APPLICATION_JSON).content("{}"))
+            .andExpect(status().isServiceUnavailable());
+        mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON).content("{}"))
+            .andExpect(status().isServiceUnavailable());
+
+        mockMvc.perform(get("/priority-policy"))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/replication"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.role").value("FOLLOWER"));
+
+        mockMvc.perform(post("/replication/promote"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.role").value("LEADER"));
+
+        mockMvc.perform(post("/tokens").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"doctorId\":\"D1\",\"slotId\":\"9-10\",\"patientId\":\"P1\",\"source\":\"ONLINE\"}"))
+            .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,196 @@
+package com.opd.opd_token_engine.replication;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a follower's store converges on the leader's over the
+ * replication stream. The leader serves InMemoryStore; the follower applies
+ * into a separate map, as it would in its own JVM.
+ */
+class ReplicationTest {
+
+    private static final String SECRET = "test-secret";
+
+    private final AllocationService allocationService = new AllocationService();
+    private final Map<String, Doctor> followerStore = new ConcurrentHashMap<>();
+    private ReplicationLeader leader;
+    private ReplicationFollower follower;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InMemoryStore.doctors.clear();
+        for (String id : List.of("D1", "D2")) {
+            Doctor doctor = new Doctor(id, 1.0);
+            doctor.addSlot("9-10", 4);
+            doctor.addSlot("10-11", 4);
+            InMemoryStore.doctors.put(id, doctor);
+        }
+        startLeader(0);
+    }
+
+    private void startLeader(int port) throws Exception {
+        leader = new ReplicationLeader(InMemoryStore.doctors, InetAddress.getLoopbackAddress(), port, 100_000,
+            SECRET);
+        SlotEvents.register(leader);
+    }
+
+    private void stopLeader() {
+        SlotEvents.unregister(leader);
+        leader.close();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (follower != null) {
+            follower.close();
+        }
+        stopLeader();
+        InMemoryStore.doctors.clear();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitCaughtUp() throws InterruptedException {
+        await(() -> follower.isSynced() && follower.getAppliedSequence() >= leader.getSequence());
+    }
+
+    private static List<String> ids(Iterable<Token> tokens) {
+        List<String> ids = new ArrayList<>();
+        tokens.forEach(t -> ids.add(t.getTokenId()));
+        return ids;
+    }
+
+    private void assertSameState() {
+        assertEquals(InMemoryStore.doctors.keySet(), followerStore.keySet());
+        for (Map.Entry<String, Doctor> doctor : InMemoryStore.doctors.entrySet()) {
+            for (Map.Entry<String, TimeSlot> entry : doctor.getValue().getSlots().entrySet()) {
+                TimeSlot want = entry.getValue();
+                TimeSlot got = followerStore.get(doctor.getKey()).getSlots().get(entry.getKey());
+                String where = doctor.getKey() + "/" + entry.getKey();
+                assertEquals(ids(want.getAllocatedTokens()), ids(got.getAllocatedTokens()), where + " allocated");
+                assertEquals(ids(want.getWaitingQueue()), ids(got.getWaitingQueue()), where + " waiting");
+                assertEquals(want.getCapacity(), got.getCapacity(), where + " capacity");
+                assertEquals(want.getVersion(), got.getVersion(), where + " version");
+            }
+        }
+    }
+
+    private void traffic(Random random, int operations) {
+        TokenSource[] sources = TokenSource.values();
+        List<String[]> issued = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            String doctorId = random.nextBoolean() ? "D1" : "D2";
+            String slotId = random.nextBoolean() ? "9-10" : "10-11";
+            if (!issued.isEmpty() && random.nextInt(4) == 0) {
+                String[] victim = issued.remove(random.nextInt(issued.size()));
+                allocationService.cancelPatientToken(victim[0], victim[1], victim[2]);
+            } else {
+                AllocationResponseDTO response = allocationService.createToken(doctorId, slotId,
+                    "P" + random.nextInt(), sources[random.nextInt(sources.length)]);
+                issued.add(new String[]{doctorId, slotId, response.tokenId});
+            }
+        }
+    }
+
+    @Test
+    void testFollowerSyncsFromSnapshotThenStream() throws Exception {
+        Random random = new Random(5);
+        traffic(random, 100);
+        followerStore.put("STALE", new Doctor("STALE", 1.0));
+
+        follower = new ReplicationFollower("localhost", leader.getPort(), SECRET, followerStore,
+            SlotConcurrencyMode.MONITOR);
+        awaitCaughtUp();
+        assertSameState();
+
+        traffic(random, 300);
+        allocationService.applyDelay("D1", 0.5, LocalTime.of(8, 0));
+        allocationService.applyDelay("D2", 1.5, LocalTime.of(8, 0));
+        awaitCaughtUp();
+
+        assertSameState();
+        assertEquals(0, follower.getLagEvents());
+        assertEquals(0.5, followerStore.get("D1").getEfficiencyScore(), 1e-9);
+    }
+
+    @Test
+    void testFollowerConnectingDuringTrafficConverges() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            int seed = t;
+            running.add(pool.submit(() -> traffic(new Random(seed), 3_000)));
+        }
+        follower = new ReplicationFollower("localhost", leader.getPort(), SECRET, followerStore,
+            SlotConcurrencyMode.MONITOR);
+        for (Future<?> f : running) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        awaitCaughtUp();
+        assertSameState();
+    }
+
+    @Test
+    void testFollowerResyncsAfterLeaderRestarts() throws Exception {
+        follower = new ReplicationFollower("localhost", leader.getPort(), SECRET, followerStore,
+            SlotConcurrencyMode.MONITOR);
+        traffic(new Random(1), 50);
+        awaitCaughtUp();
+
+        int port = leader.getPort();
+        stopLeader();
+        await(() -> !follower.isSynced());
+        // Changes the follower cannot see until it reconnects
+        traffic(new Random(2), 50);
+        startLeader(port);
+
+        awaitCaughtUp();
+        assertSameState();
+    }
+
+    @Test
+    void testFollowerWithoutTheSecretIsSentNothing() throws Exception {
+        traffic(new Random(3), 50);
+        follower = new ReplicationFollower("localhost", leader.getPort(), "guess", followerStore,
+            SlotConcurrencyMode.MONITOR);
+        Thread.sleep(1_000);
+
+        assertFalse(follower.isSynced());
+        assertTrue(followerStore.isEmpty());
+        assertEquals(List.of(), leader.metrics().get("followers"));
+    }
+}
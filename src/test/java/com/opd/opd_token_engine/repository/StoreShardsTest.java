@@ -0,0 +1,177 @@
+package com.opd.opd_token_engine.repository;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.journal.DurabilityMode;
+import com.opd.opd_token_engine.journal.EventJournal;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that sharded mutations run in order on the doctor's owning shard
+ */
+class StoreShardsTest {
+
+    @TempDir
+    Path dir;
+
+    private final AllocationService allocationService = new AllocationService();
+    private StoreShards shards;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+        for (int d = 1; d <= 8; d++) {
+            Doctor doctor = new Doctor("D" + d, 1.0);
+            doctor.addSlot("9-10", 5);
+            doctor.addSlot("10-11", 5);
+            InMemoryStore.doctors.put("D" + d, doctor);
+        }
+        shards = new StoreShards(3);
+        InMemoryStore.install(shards);
+    }
+
+    @AfterEach
+    void tearDown() {
+        InMemoryStore.uninstall(shards);
+        shards.close();
+        InMemoryStore.doctors.clear();
+    }
+
+    @Test
+    void testSameDoctorRunsInSubmissionOrderOnOneThread() {
+        List<Integer> seen = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        List<CompletableFuture<Integer>> running = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            int n = i;
+            running.add(shards.submit("D1", () -> {
+                seen.add(n);
+                threads.add(Thread.currentThread());
+                return n;
+            }));
+        }
+        running.forEach(CompletableFuture::join);
+
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i, seen.get(i));
+        }
+        assertEquals(1, threads.stream().distinct().count());
+        assertFalse(shards.isOwner("D1"));
+    }
+
+    @Test
+    void testShardExceptionReachesTheCaller() {
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+            () -> StoreShards.join(shards.submit("D1", () -> {
+                throw new IllegalStateException("boom");
+            })));
+        assertEquals("boom", thrown.getMessage());
+    }
+
+    @Test
+    void testConcurrentBookingsMutateOnlyOnOwningShard() throws Exception {
+        AtomicInteger foreign = new AtomicInteger();
+        SlotEventListener ownership = new SlotEventListener() {
+            private void check(String doctorId) {
+                if (!shards.isOwner(doctorId)) {
+                    foreign.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+                check(doctorId);
+            }
+
+            @Override
+            public void onCancelled(String doctorId, TimeSlot slot, Token token, long version) {
+                check(doctorId);
+            }
+
+            @Override
+            public void onPromoted(String doctorId, TimeSlot slot, Token token, long version) {
+                check(doctorId);
+            }
+        };
+        SlotEvents.register(ownership);
+        try {
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                running.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2_000; i++) {
+                        String doctorId = "D" + (1 + random.nextInt(8));
+                        String slotId = random.nextBoolean() ? "9-10" : "10-11";
+                        TokenSource source = TokenSource.values()[random.nextInt(5)];
+                        AllocationResponseDTO response = random.nextBoolean()
+                            ? allocationService.createToken(doctorId, slotId, "T" + seed + "-" + i, source)
+                            : allocationService.createTokenAsync(doctorId, slotId, "T" + seed + "-" + i, source)
+                                .join();
+                        if (random.nextInt(3) == 0) {
+                            allocationService.cancelPatientTokenAsync(doctorId, slotId, response.tokenId).join();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : running) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            pool.shutdown();
+        } finally {
+            SlotEvents.unregister(ownership);
+        }
+
+        assertEquals(0, foreign.get());
+        for (Doctor doctor : InMemoryStore.doctors.values()) {
+            for (TimeSlot slot : doctor.getSlots().values()) {
+                assertTrue(slot.getAllocatedTokens().size() <= slot.getCapacity());
+                assertTrue(slot.getWaitingQueue().isEmpty()
+                    || slot.getAllocatedTokens().size() == slot.getCapacity());
+            }
+        }
+    }
+
+    @Test
+    void testSyncJournalIsDurableWhenCallerReturns() throws Exception {
+        EventJournal journal = new EventJournal(dir.resolve("journal.bin"), DurabilityMode.SYNC, 2);
+        SlotEvents.register(journal);
+        try {
+            long before = journal.position();
+            allocationService.createToken("D1", "9-10", "P1", TokenSource.ONLINE);
+            long afterSync = journal.position();
+            assertTrue(afterSync > before);
+
+            allocationService.createTokenAsync("D2", "9-10", "P2", TokenSource.PAID).join();
+            assertTrue(journal.position() > afterSync);
+            assertTrue(journal.getFsyncCount() >= 2);
+        } finally {
+            SlotEvents.unregister(journal);
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.opd.opd_token_engine.routing;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that full slots overflow into equivalent doctors' free slots
+ */
+class OverflowRouterTest {
+
+    private final AllocationService allocationService = new AllocationService();
+    private OverflowRouter router;
+
+    private void start(SlotConcurrencyMode mode, LocalTime now, int... capacities) {
+        InMemoryStore.doctors.clear();
+        String[] ids = {"D1", "D2", "D3", "D9"};
+        for (int i = 0; i < capacities.length; i++) {
+            Doctor doctor = new Doctor(ids[i], 1.0, mode);
+            doctor.addSlot("9-10", capacities[i]);
+            doctor.addSlot("10-11", capacities[i]);
+            doctor.addSlot("12-13", capacities[i]);
+            InMemoryStore.doctors.put(ids[i], doctor);
+        }
+        Clock clock = Clock.fixed(LocalDate.of(2026, 1, 5).atTime(now).toInstant(ZoneOffset.UTC), ZoneId.of("UTC"));
+        router = new OverflowRouter(Map.of("D1", "GENERAL", "D2", "GENERAL", "D3", "GENERAL"), 60, clock)
+            .indexAll(InMemoryStore.doctors);
+        SlotEvents.register(router);
+        Overflow.install(router);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Overflow.uninstall(router);
+        SlotEvents.unregister(router);
+        InMemoryStore.doctors.clear();
+    }
+
+    private TimeSlot slot(String doctorId, String slotId) {
+        return InMemoryStore.doctors.get(doctorId).getSlots().get(slotId);
+    }
+
+    private void fill(String doctorId, String slotId) {
+        TimeSlot slot = slot(doctorId, slotId);
+        while (slot.freeSeats() > 0) {
+            allocationService.createToken(doctorId, slotId, "FILL", TokenSource.EMERGENCY);
+        }
+    }
+
+    @Test
+    void testFullSlotOverflowsToMostFreeEquivalentSlot() {
+        start(SlotConcurrencyMode.MONITOR, LocalTime.of(8, 0), 2, 2, 4);
+        fill("D1", "9-10");
+        allocationService.createToken("D3", "9-10", "P0", TokenSource.ONLINE);
+
+        AllocationResponseDTO response = allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN);
+
+        assertEquals("REROUTED", response.status);
+        // D3 has 3 seats left at 9-10, D2 has 2; same start time beats D1's own 10-11
+        assertEquals("D3", response.reroutedDoctorId);
+        assertEquals("9-10", response.reroutedSlotId);
+        assertNull(response.positionInQueue);
+        assertEquals(2, slot("D3", "9-10").getAllocatedTokens().size());
+        assertTrue(slot("D1", "9-10").getWaitingQueue().isEmpty());
+    }
+
+    @Test
+    void testAdjacentSlotIsUsedWhenSameTimeIsFull() {
+        start(SlotConcurrencyMode.MONITOR, LocalTime.of(8, 0), 1, 1);
+        fill("D1", "9-10");
+        fill("D2", "9-10");
+        fill("D2", "10-11");
+
+        AllocationResponseDTO response = allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN);
+
+        assertEquals("REROUTED", response.status);
+        assertEquals("D1", response.reroutedDoctorId);
+        assertEquals("10-11", response.reroutedSlotId);
+    }
+
+    @Test
+    void testNoRouteOutsideDepartmentShiftOrAfterSlotEnded() {
+        start(SlotConcurrencyMode.MONITOR, LocalTime.of(10, 15), 1, 1, 0, 1);
+        fill("D9", "9-10");
+        assertEquals("WAITLISTED",
+            allocationService.createToken("D9", "9-10", "P1", TokenSource.WALK_IN).status);
+
+        // 12-13 is more than an hour away from 10-11; 9-10 has ended
+        fill("D1", "10-11");
+        fill("D2", "10-11");
+        assertEquals("WAITLISTED",
+            allocationService.createToken("D1", "10-11", "P2", TokenSource.WALK_IN).status);
+        assertEquals(1, slot("D1", "9-10").freeSeats());
+    }
+
+    @Test
+    void testCancelledSeatBecomesRoutable() {
+        start(SlotConcurrencyMode.MONITOR, LocalTime.of(8, 0), 1, 1);
+        fill("D1", "9-10");
+        fill("D1", "10-11");
+        fill("D2", "10-11");
+        String held = allocationService.createToken("D2", "9-10", "P0", TokenSource.PAID).tokenId;
+        assertEquals("WAITLISTED",
+            allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN).status);
+
+        allocationService.cancelPatientToken("D2", "9-10", held);
+        AllocationResponseDTO response = allocationService.createToken("D1", "9-10", "P2", TokenSource.WALK_IN);
+
+        assertEquals("REROUTED", response.status);
+        assertEquals("D2", response.reroutedDoctorId);
+    }
+
+    @ParameterizedTest
+    @EnumSource(SlotConcurrencyMode.class)
+    void testIndexMatchesSlotsAfterConcurrentTraffic(SlotConcurrencyMode mode) throws Exception {
+        start(mode, LocalTime.of(8, 0), 10, 10, 10);
+        String[] doctors = {"D1", "D2", "D3"};
+        String[] slots = {"9-10", "10-11", "12-13"};
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            running.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 5_000; i++) {
+                    String doctorId = doctors[random.nextInt(doctors.length)];
+                    String slotId = slots[random.nextInt(slots.length)];
+                    AllocationResponseDTO response = allocationService.createToken(doctorId, slotId,
+                        "T" + seed + "-" + i, TokenSource.values()[random.nextInt(5)]);
+                    if (random.nextInt(2) == 0) {
+                        String d = response.reroutedDoctorId != null ? response.reroutedDoctorId : doctorId;
+                        String s = response.reroutedSlotId != null ? response.reroutedSlotId : slotId;
+                        allocationService.cancelPatientToken(d, s, response.tokenId);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : running) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (String doctorId : doctors) {
+            for (TimeSlot slot : InMemoryStore.doctors.get(doctorId).getSlots().values()) {
+                slot.lock();
+                try {
+                    assertTrue(slot.getAllocatedTokens().size() <= slot.getCapacity());
+                    assertEquals(slot.freeSeats(), router.getIndex().indexedFreeSeats(slot),
+                        doctorId + "/" + slot.getSlotId());
+                } finally {
+                    slot.unlock();
+                }
+            }
+        }
+    }
+}
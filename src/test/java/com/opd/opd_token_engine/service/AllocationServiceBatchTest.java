@@ -0,0 +1,134 @@
+package com.opd.opd_token_engine.service;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.dto.TokenRequestDTO;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for batch token allocation grouped by doctor and slot
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AllocationServiceBatchTest {
+
+    @Autowired
+    private AllocationService allocationService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+
+        Doctor d1 = new Doctor("D1", 1.0);
+        d1.addSlot("9-10", 2);
+        d1.addSlot("10-11", 2);
+        InMemoryStore.doctors.put("D1", d1);
+    }
+
+    private static TokenRequestDTO request(String doctorId, String slotId, String patientId, TokenSource source) {
+        TokenRequestDTO request = new TokenRequestDTO();
+        request.doctorId = doctorId;
+        request.slotId = slotId;
+        request.patientId = patientId;
+        request.source = source;
+        return request;
+    }
+
+    @Test
+    void testBatchKeepsInputOrderAcrossGroups() {
+        List<AllocationResponseDTO> responses = allocationService.createTokens(List.of(
+            request("D1", "9-10", "P001", TokenSource.WALK_IN),
+            request("D1", "10-11", "P002", TokenSource.ONLINE),
+            request("D2", "9-10", "P003", TokenSource.ONLINE),
+            request("D1", "9-10", "P004", TokenSource.WALK_IN),
+            request("D1", "9-10", "P005", TokenSource.WALK_IN),
+            request("D1", "UNKNOWN", "P006", TokenSource.ONLINE),
+            request("D1", "9-10", "P007", TokenSource.EMERGENCY)
+        ));
+
+        assertEquals(7, responses.size());
+        assertEquals("ALLOCATED", responses.get(0).status);
+        assertEquals("ALLOCATED", responses.get(1).status);
+        assertEquals("ERROR", responses.get(2).status);
+        assertTrue(responses.get(2).reason.contains("Doctor not found"));
+        assertEquals("ALLOCATED", responses.get(3).status);
+        assertEquals("WAITLISTED", responses.get(4).status);
+        assertEquals("ERROR", responses.get(5).status);
+        assertTrue(responses.get(5).reason.contains("Slot not found"));
+        assertEquals("REALLOCATED_LOW_PRIORITY", responses.get(6).status);
+
+        // The evicted walk-in queues up behind the earlier waitlisted one
+        assertEquals(1, responses.get(4).positionInQueue);
+    }
+
+    @Test
+    void testBatchMatchesSequentialDecisions() {
+        List<AllocationResponseDTO> batch = allocationService.createTokens(List.of(
+            request("D1", "9-10", "P001", TokenSource.ONLINE),
+            request("D1", "9-10", "P002", TokenSource.ONLINE),
+            request("D1", "9-10", "P003", TokenSource.PAID),
+            request("D1", "9-10", "P004", TokenSource.WALK_IN)
+        ));
+
+        assertEquals(List.of("ALLOCATED", "ALLOCATED", "REALLOCATED_LOW_PRIORITY", "WAITLISTED"),
+            batch.stream().map(r -> r.status).toList());
+        assertEquals(batch.get(1).tokenId, batch.get(2).promotedTokenId);
+        assertEquals(2, batch.get(3).positionInQueue);
+    }
+
+    @Test
+    void testBatchEndpointRejectsInvalidEntries() throws Exception {
+        mockMvc.perform(post("/tokens/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"doctorId\":\"D1\",\"slotId\":\"9-10\",\"patientId\":\"P001\",\"source\":\"ONLINE\"},"
+                    + "{\"doctorId\":\"D1\",\"slotId\":\"9-10\",\"patientId\":\"\",\"source\":\"ONLINE\"}]"))
+            .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/tokens/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"doctorId\":\"D1\",\"slotId\":\"9-10\",\"patientId\":\"P001\",\"source\":\"ONLINE\"}]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("ALLOCATED"));
+    }
+
+    @Test
+    void testOversizeIdsAreRefusedBeforeAllocating() throws Exception {
+        String huge = "P".repeat(70_000);
+        AllocationResponseDTO single = allocationService.createToken("D1", "9-10", huge, TokenSource.ONLINE);
+        assertEquals("ERROR", single.status);
+        assertEquals("Patient ID is too long", single.reason);
+
+        List<AllocationResponseDTO> batch = allocationService.createTokens(List.of(
+            request("D1", "9-10", "P001", TokenSource.ONLINE),
+            request("D1", "9-10", huge, TokenSource.ONLINE)
+        ));
+        assertEquals("ALLOCATED", batch.get(0).status);
+        assertEquals("ERROR", batch.get(1).status);
+        assertEquals(1, InMemoryStore.doctors.get("D1").getSlots().get("9-10").getAllocatedTokens().size());
+
+        String tooLong = "P".repeat(TokenRequestDTO.MAX_ID_LENGTH + 1);
+        mockMvc.perform(post("/tokens")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"doctorId\":\"D1\",\"slotId\":\"9-10\",\"patientId\":\"" + tooLong
+                    + "\",\"source\":\"ONLINE\"}"))
+            .andExpect(status().isBadRequest());
+    }
+}
@@ -1,7 +1,12 @@
 package com.opd.opd_token_engine.service;
 
 import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.engine.AllocationEngine;
+import com.opd.opd_token_engine.engine.AllocationResult;
 import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
 import com.opd.opd_token_engine.model.TokenSource;
 import com.opd.opd_token_engine.repository.InMemoryStore;
 import org.junit.jupiter.api.BeforeEach;
@@ -188,4 +193,100 @@ class AllocationServiceConcurrencyTest {
         long successfulCancellations = results.stream().filter(r -> r).count();
         assertEquals(5, successfulCancellations);
     }
+
+    @Test
+    void testCasFastPathNeverOverfillsSingleSeat() throws Exception {
+        // The locked path must count seats claimed by fast-path threads that
+        // have not staged their token yet
+        int numThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int round = 0; round < 2_000; round++) {
+                TimeSlot slot = new TimeSlot("9-10", 1, SlotConcurrencyMode.CAS_FAST_PATH);
+                slot.detach();
+                CyclicBarrier start = new CyclicBarrier(numThreads);
+                List<Future<AllocationResult>> futures = new ArrayList<>();
+                for (int i = 0; i < numThreads; i++) {
+                    TokenSource source = i % 2 == 0 ? TokenSource.EMERGENCY : TokenSource.WALK_IN;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return AllocationEngine.allocate("D1", slot,
+                                new Token("P1", source, AllocationService.basePriority(source)));
+                    }));
+                }
+                for (Future<AllocationResult> future : futures) {
+                    future.get();
+                }
+
+                slot.lock();
+                try {
+                    assertEquals(1, slot.getAllocatedTokens().size(), "round " + round);
+                    assertEquals(numThreads - 1, slot.getWaitingQueue().size(), "round " + round);
+                } finally {
+                    slot.unlock();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testCasFastPathNeverOverfillsSlot() throws InterruptedException, ExecutionException {
+        Doctor d2 = new Doctor("D2", 1.0, SlotConcurrencyMode.CAS_FAST_PATH);
+        d2.addSlot("9-10", 5);
+        InMemoryStore.doctors.put("D2", d2);
+
+        int numThreads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<AllocationResponseDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            final int patientNum = i;
+            futures.add(executor.submit(() ->
+                allocationService.createToken(
+                    "D2",
+                    "9-10",
+                    "P" + patientNum,
+                    patientNum % 4 == 0 ? TokenSource.EMERGENCY : TokenSource.WALK_IN
+                )
+            ));
+        }
+
+        List<AllocationResponseDTO> responses = new ArrayList<>();
+        for (Future<AllocationResponseDTO> future : futures) {
+            responses.add(future.get());
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        long allocatedCount = responses.stream()
+            .filter(r -> "ALLOCATED".equals(r.status))
+            .count();
+        assertEquals(5, allocatedCount);
+
+        TimeSlot slot = d2.getSlots().get("9-10");
+        slot.lock();
+        try {
+            assertEquals(5, slot.getAllocatedTokens().size());
+            assertEquals(64 - 5, slot.getWaitingQueue().size());
+        } finally {
+            slot.unlock();
+        }
+
+        // Cancelling a seated token hands its seat to the head of the waiting queue
+        String seated = responses.stream()
+            .filter(r -> "ALLOCATED".equals(r.status))
+            .findFirst()
+            .orElseThrow()
+            .tokenId;
+        assertTrue(allocationService.cancelPatientToken("D2", "9-10", seated));
+        slot.lock();
+        try {
+            assertEquals(5, slot.getAllocatedTokens().size());
+            assertEquals(64 - 6, slot.getWaitingQueue().size());
+        } finally {
+            slot.unlock();
+        }
+    }
 }
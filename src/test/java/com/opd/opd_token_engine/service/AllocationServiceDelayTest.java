@@ -0,0 +1,199 @@
+package com.opd.opd_token_engine.service;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.engine.DelayPropagator;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.SlotConcurrencyMode;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that doctor delays resize slots and rebalance their queues
+ */
+class AllocationServiceDelayTest {
+
+    private static final LocalTime MORNING = LocalTime.of(8, 0);
+
+    private final AllocationService allocationService = new AllocationService();
+
+    private Doctor seed(SlotConcurrencyMode mode, int capacity) {
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 1.0, mode);
+        doctor.addSlot("9-10", capacity);
+        doctor.addSlot("10-11", capacity);
+        InMemoryStore.doctors.put("D1", doctor);
+        return doctor;
+    }
+
+    @AfterEach
+    void tearDown() {
+        InMemoryStore.doctors.clear();
+    }
+
+    private static List<String> ids(Iterable<Token> tokens) {
+        List<String> ids = new ArrayList<>();
+        tokens.forEach(t -> ids.add(t.getTokenId()));
+        return ids;
+    }
+
+    @Test
+    void testNoOpDelayKeepsSeatsAtReducedEfficiency() {
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 0.8);
+        doctor.addSlot("9-10", 5);
+        InMemoryStore.doctors.put("D1", doctor);
+        TimeSlot slot = doctor.getSlots().get("9-10");
+        assertEquals(4, slot.getCapacity());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("ALLOCATED", allocationService.createToken("D1", "9-10", "P" + i, TokenSource.ONLINE).status);
+        }
+
+        DelayPropagator.Propagation propagation = allocationService.applyDelay("D1", 1.0, MORNING);
+
+        assertEquals(0, propagation.displaced());
+        assertEquals(4, slot.getCapacity());
+        assertEquals(4, slot.getAllocatedTokens().size());
+        assertTrue(slot.getWaitingQueue().isEmpty());
+    }
+
+    @Test
+    void testShrinkDisplacesLowestPriorityTokensWithoutPenalty() {
+        TimeSlot slot = seed(SlotConcurrencyMode.MONITOR, 4).getSlots().get("9-10");
+        String emergency = allocationService.createToken("D1", "9-10", "P1", TokenSource.EMERGENCY).tokenId;
+        String paid = allocationService.createToken("D1", "9-10", "P2", TokenSource.PAID).tokenId;
+        String walkIn = allocationService.createToken("D1", "9-10", "P3", TokenSource.WALK_IN).tokenId;
+        String online = allocationService.createToken("D1", "9-10", "P4", TokenSource.ONLINE).tokenId;
+
+        DelayPropagator.Propagation propagation = allocationService.applyDelay("D1", 0.5, MORNING);
+
+        assertEquals(2, propagation.resized());
+        assertEquals(2, propagation.displaced());
+        assertEquals(2, slot.getCapacity());
+        assertEquals(List.of(paid, emergency), ids(slot.getAllocatedTokens()));
+        // Displaced tokens wait best-first and keep their standing
+        assertEquals(List.of(online, walkIn), ids(slot.getWaitingQueue()));
+        slot.getWaitingQueue().forEach(t -> {
+            assertFalse(t.isAllocated());
+            assertEquals(0, t.getReallocationCount());
+        });
+    }
+
+    @Test
+    void testGrowPromotesBestWaiters() {
+        TimeSlot slot = seed(SlotConcurrencyMode.MONITOR, 2).getSlots().get("9-10");
+        allocationService.createToken("D1", "9-10", "P1", TokenSource.PAID);
+        allocationService.createToken("D1", "9-10", "P2", TokenSource.PAID);
+        String walkIn = allocationService.createToken("D1", "9-10", "P3", TokenSource.WALK_IN).tokenId;
+        String followUp = allocationService.createToken("D1", "9-10", "P4", TokenSource.FOLLOW_UP).tokenId;
+        String online = allocationService.createToken("D1", "9-10", "P5", TokenSource.ONLINE).tokenId;
+
+        DelayPropagator.Propagation propagation = allocationService.applyDelay("D1", 2.0, MORNING);
+
+        assertEquals(4, slot.getCapacity());
+        assertEquals(2, propagation.promoted());
+        assertTrue(ids(slot.getAllocatedTokens()).containsAll(List.of(followUp, online)));
+        assertEquals(List.of(walkIn), ids(slot.getWaitingQueue()));
+    }
+
+    @Test
+    void testEndedSlotsKeepTheirCapacity() {
+        Doctor doctor = seed(SlotConcurrencyMode.MONITOR, 4);
+
+        DelayPropagator.Propagation propagation = allocationService.applyDelay("D1", 0.5, LocalTime.of(10, 15));
+
+        assertEquals(1, propagation.skipped());
+        assertEquals(4, doctor.getSlots().get("9-10").getCapacity());
+        assertEquals(2, doctor.getSlots().get("10-11").getCapacity());
+    }
+
+    @Test
+    void testZeroCapacityWaitlistsEveryone() {
+        TimeSlot slot = seed(SlotConcurrencyMode.MONITOR, 1).getSlots().get("9-10");
+        allocationService.applyDelay("D1", 0.5, MORNING);
+
+        AllocationResponseDTO response = allocationService.createToken("D1", "9-10", "P1", TokenSource.EMERGENCY);
+
+        assertEquals("WAITLISTED", response.status);
+        assertEquals(0, slot.getAllocatedTokens().size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(SlotConcurrencyMode.class)
+    void testDelayStormKeepsAllocationsWithinCapacity(SlotConcurrencyMode mode) throws Exception {
+        Doctor doctor = seed(mode, 20);
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicBoolean stop = new AtomicBoolean();
+        TokenSource[] sources = TokenSource.values();
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            running.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                go.await();
+                for (int i = 0; i < 5_000 && !stop.get(); i++) {
+                    String slotId = random.nextBoolean() ? "9-10" : "10-11";
+                    AllocationResponseDTO response = allocationService.createToken("D1", slotId,
+                        "T" + seed + "-" + i, sources[random.nextInt(sources.length)]);
+                    if (random.nextInt(3) == 0) {
+                        allocationService.cancelPatientToken("D1", slotId, response.tokenId);
+                    }
+                }
+                return null;
+            }));
+        }
+        running.add(pool.submit(() -> {
+            go.await();
+            for (int i = 0; i < 500; i++) {
+                allocationService.applyDelay("D1", i % 2 == 0 ? 0.5 : 2.0, MORNING);
+            }
+            return null;
+        }));
+
+        go.countDown();
+        try {
+            for (Future<?> f : running) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+        }
+
+        for (TimeSlot slot : doctor.getSlots().values()) {
+            slot.lock();
+            try {
+                assertEquals(doctor.capacityFor(slot), slot.getCapacity());
+                assertTrue(slot.getAllocatedTokens().size() <= slot.getCapacity(),
+                    slot.getSlotId() + " over capacity");
+                // A free seat is never left while someone waits
+                assertTrue(slot.getWaitingQueue().isEmpty()
+                    || slot.getAllocatedTokens().size() == slot.getCapacity());
+                assertTrue(slot.isSettled(slot.getVersion()));
+            } finally {
+                slot.unlock();
+            }
+        }
+    }
+}
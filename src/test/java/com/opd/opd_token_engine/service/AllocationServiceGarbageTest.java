@@ -0,0 +1,117 @@
+package com.opd.opd_token_engine.service;
+
+import com.opd.opd_token_engine.dto.AllocationResponseDTO;
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.index.TokenIndex;
+import com.opd.opd_token_engine.index.TokenLookup;
+import com.opd.opd_token_engine.metrics.EngineMetrics;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a booking allocates nothing beyond its token and its response,
+ * measured per thread as the JMH gc profiler does for gc.alloc.rate.norm
+ */
+class AllocationServiceGarbageTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int CALLS = 20_000;
+
+    private final AllocationService allocationService = new AllocationService();
+    private boolean metricsWere;
+    private SlotEventListener[] listeners;
+    private TokenIndex index;
+    private Token escapedToken;
+    private AllocationResponseDTO escapedResponse;
+
+    @BeforeEach
+    void setUp() {
+        metricsWere = EngineMetrics.isEnabled();
+        // Listeners such as the token index keep their own state per token; measure the engine alone
+        listeners = SlotEvents.registered();
+        for (SlotEventListener listener : listeners) {
+            SlotEvents.unregister(listener);
+        }
+        index = TokenLookup.current();
+        if (index != null) {
+            TokenLookup.uninstall(index);
+        }
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 1.0);
+        doctor.addSlot("9-10", 4);
+        InMemoryStore.doctors.put("D1", doctor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        EngineMetrics.setEnabled(metricsWere);
+        for (SlotEventListener listener : listeners) {
+            SlotEvents.register(listener);
+        }
+        if (index != null) {
+            TokenLookup.install(index);
+        }
+        InMemoryStore.doctors.clear();
+    }
+
+    // Fewest bytes per call over a few rounds, once the JIT has settled
+    private static long bytesPerCall(IntSupplier call) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 8; round++) {
+            long start = THREADS.getCurrentThreadAllocatedBytes();
+            int sink = 0;
+            for (int i = 0; i < CALLS; i++) {
+                sink += call.getAsInt();
+            }
+            long bytes = THREADS.getCurrentThreadAllocatedBytes() - start;
+            assertTrue(sink != 0);
+            best = Math.min(best, bytes / CALLS);
+        }
+        return best;
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true, false", "false, false", "true, true", "false, true"})
+    void testBookingAllocatesOnlyTokenAndResponse(boolean metrics, boolean full) {
+        EngineMetrics.setEnabled(metrics);
+        if (full) {
+            for (int i = 0; i < 4; i++) {
+                allocationService.createToken("D1", "9-10", "E" + i, TokenSource.EMERGENCY);
+            }
+        }
+        String expected = full ? "WAITLISTED" : "ALLOCATED";
+
+        // What the booking has to allocate: the token, its id and the response
+        long floor = bytesPerCall(() -> {
+            Token token = new Token("P", TokenSource.WALK_IN, 40);
+            AllocationResponseDTO response = new AllocationResponseDTO(token.getTokenId(), expected,
+                    "reason", null, full ? 1 : null);
+            // Escape both as a real booking does, so the JIT cannot scalar-replace them
+            escapedToken = token;
+            escapedResponse = response;
+            return response.tokenId.length();
+        });
+        long booking = bytesPerCall(() -> {
+            AllocationResponseDTO response = allocationService.createToken("D1", "9-10", "P", TokenSource.WALK_IN);
+            assertEquals(expected, response.status);
+            allocationService.cancelPatientToken("D1", "9-10", response.tokenId);
+            return response.tokenId.length();
+        });
+
+        // A new digit in the id sequence may fall between the two measurements
+        assertTrue(booking <= floor + 8, "booking " + booking + " bytes, floor " + floor);
+    }
+}
@@ -127,6 +127,34 @@ class AllocationServicePriorityTest {
         // We can't directly verify promotion here, but the cancellation should succeed
     }
 
+    @Test
+    void testWaitlistPositionIsExact() {
+        allocationService.createToken("D1", "9-10", "P001", TokenSource.PAID);
+        allocationService.createToken("D1", "9-10", "P002", TokenSource.PAID);
+        allocationService.createToken("D1", "9-10", "P003", TokenSource.PAID);
+
+        AllocationResponseDTO w1 = allocationService.createToken("D1", "9-10", "P004", TokenSource.WALK_IN);
+        AllocationResponseDTO w2 = allocationService.createToken("D1", "9-10", "P005", TokenSource.WALK_IN);
+        AllocationResponseDTO w3 = allocationService.createToken("D1", "9-10", "P006", TokenSource.ONLINE);
+
+        assertEquals(1, w1.positionInQueue);
+        assertEquals(2, w2.positionInQueue);
+        // Higher priority jumps ahead of both walk-ins
+        assertEquals(1, w3.positionInQueue);
+    }
+
+    @Test
+    void testCancelWaitlistedToken() {
+        allocationService.createToken("D1", "9-10", "P001", TokenSource.PAID);
+        allocationService.createToken("D1", "9-10", "P002", TokenSource.PAID);
+        allocationService.createToken("D1", "9-10", "P003", TokenSource.PAID);
+        AllocationResponseDTO waiting = allocationService.createToken("D1", "9-10", "P004", TokenSource.WALK_IN);
+        assertEquals("WAITLISTED", waiting.status);
+
+        assertTrue(allocationService.cancelPatientToken("D1", "9-10", waiting.tokenId));
+        assertFalse(allocationService.cancelPatientToken("D1", "9-10", waiting.tokenId));
+    }
+
     @Test
     void testInvalidDoctorReturnsError() {
         AllocationResponseDTO response = allocationService.createToken(
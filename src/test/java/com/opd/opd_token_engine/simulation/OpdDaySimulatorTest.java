@@ -0,0 +1,77 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.clock.EngineClock;
+import com.opd.opd_token_engine.clock.VirtualClock;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.Config;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.DoctorProfile;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.TraceArrival;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for simulated OPD days: accounting, determinism across thread counts
+ * and trace replay on the virtual clock
+ */
+class OpdDaySimulatorTest {
+
+    private final OpdDaySimulator simulator = new OpdDaySimulator(new AllocationService());
+
+    @Test
+    void testGeneratedDayAccountsForEveryBookingAndCleansUp() {
+        SimulationResult result = simulator.run(Config.hospital(40, 4, 7L));
+
+        assertEquals(40, result.doctors());
+        assertTrue(result.bookings() > 2_000, "bookings " + result.bookings());
+        assertEquals(result.bookings(), result.outcomes().values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(result.bookings(), result.sources().values().stream()
+                .mapToLong(SimulationResult.SourceStats::bookings).sum());
+        assertTrue(result.preemptions() > 0);
+        assertTrue(result.cancellations() > 0);
+        assertTrue(result.fairnessIndex() > 0.2 && result.fairnessIndex() <= 1.0);
+        // Emergencies outrank walk-ins, so more of them end up seated
+        assertTrue(result.sources().get(TokenSource.EMERGENCY).seatedShare()
+                > result.sources().get(TokenSource.WALK_IN).seatedShare());
+
+        assertTrue(InMemoryStore.doctors.keySet().stream().noneMatch(id -> id.startsWith("SIM-")));
+        assertFalse(EngineClock.system() instanceof VirtualClock);
+    }
+
+    @Test
+    void testSameSeedEndsTheSameOnAnyThreadCount() {
+        SimulationResult one = simulator.run(Config.hospital(24, 1, 42L));
+        SimulationResult many = simulator.run(Config.hospital(24, 6, 42L));
+
+        assertEquals(one.outcomes(), many.outcomes());
+        assertEquals(one.preemptions(), many.preemptions());
+        assertEquals(one.promotions(), many.promotions());
+        assertEquals(one.sources(), many.sources());
+    }
+
+    @Test
+    void testTraceWaitsAreMeasuredInSimulatedTime() {
+        Config config = new Config(
+                List.of(new DoctorProfile("TRACE-D1", 1.0, List.of("9-10"), 1)),
+                null,
+                List.of(new TraceArrival(540, "TRACE-D1", "9-10", "P1", TokenSource.WALK_IN, null),
+                        new TraceArrival(545, "TRACE-D1", "9-10", "P2", TokenSource.EMERGENCY, 560.0)),
+                0, 0, 0, 0, 2, 1L);
+
+        SimulationResult result = simulator.run(config);
+
+        // The emergency bumps the walk-in, then cancels; the walk-in waited 540 -> 560
+        assertEquals(1, result.preemptions());
+        assertEquals(1, result.cancellations());
+        SimulationResult.SourceStats walkIn = result.sources().get(TokenSource.WALK_IN);
+        assertEquals(1, walkIn.evicted());
+        assertEquals(1, walkIn.promoted());
+        assertEquals(20.0, walkIn.meanPromotionWaitMinutes(), 1e-9);
+        assertEquals(1, walkIn.seatedAtClose());
+        assertEquals(0, result.sources().get(TokenSource.EMERGENCY).seatedAtClose());
+    }
+}
@@ -0,0 +1,112 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.event.SlotEventListener;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.Token;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.Config;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.DoctorProfile;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.TraceArrival;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for trace replay: identical outcomes across runs and through a
+ * trace file, simulated-time aging, and isolation from the live engine
+ */
+class TraceReplayerTest {
+
+    @Test
+    void testHospitalDayReplaysBitIdentically() {
+        Config config = Config.hospital(200, 1, 11L);
+        List<TraceArrival> trace = OpdDaySimulator.trace(config);
+
+        ReplayResult first = TraceReplayer.replay(config.doctors(), trace);
+        ReplayResult second = TraceReplayer.replay(config.doctors(), OpdDaySimulator.trace(config));
+
+        assertEquals(trace.size(), first.bookings());
+        assertTrue(first.bookings() > 15_000, "bookings " + first.bookings());
+        assertTrue(first.preemptions() > 0);
+        assertTrue(first.promotions() > 0);
+        assertEquals(first.bookings(), first.outcomes().values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(first.digest(), second.digest());
+        assertEquals(first.outcomes(), second.outcomes());
+        assertEquals(first.seatedAtClose(), second.seatedAtClose());
+
+        ReplayResult otherDay = TraceReplayer.replay(config.doctors(), OpdDaySimulator.trace(
+                Config.hospital(200, 1, 12L)));
+        assertNotEquals(first.digest(), otherDay.digest());
+    }
+
+    @Test
+    void testTraceFileReplaysLikeTheTrace(@TempDir Path dir) throws Exception {
+        Config config = Config.hospital(10, 1, 3L);
+        List<TraceArrival> trace = OpdDaySimulator.trace(config);
+        Path file = dir.resolve("day.csv");
+
+        TraceReplayer.write(trace, file);
+
+        assertEquals(trace, TraceReplayer.read(file));
+        assertEquals(TraceReplayer.replay(config.doctors(), trace).digest(),
+                TraceReplayer.replay(config.doctors(), TraceReplayer.read(file)).digest());
+    }
+
+    @Test
+    void testAgingRunsOnSimulatedTime() {
+        // 160 minutes at 0.3 points a minute age a walk-in (40) past a paid booking (85)
+        List<DoctorProfile> doctors = List.of(new DoctorProfile("REPLAY-D1", 1.0, List.of("9-10", "10-11"), 1));
+        List<TraceArrival> trace = List.of(
+                new TraceArrival(420, "REPLAY-D1", "10-11", "P1", TokenSource.WALK_IN, null),
+                new TraceArrival(580, "REPLAY-D1", "10-11", "P2", TokenSource.PAID, null),
+                new TraceArrival(400, "REPLAY-D1", "9-10", "P3", TokenSource.WALK_IN, null),
+                new TraceArrival(401, "REPLAY-D1", "9-10", "P4", TokenSource.PAID, null));
+
+        ReplayResult result = TraceReplayer.replay(doctors, trace);
+
+        // 9-10 is taken over by the fresher paid booking; 10-11 keeps its walk-in
+        assertEquals(1, result.preemptions());
+        assertEquals(2, result.seatedAtClose());
+        assertEquals(2, result.waitingAtClose());
+    }
+
+    @Test
+    void testReplayLeavesTheLiveEngineAlone() {
+        AtomicInteger events = new AtomicInteger();
+        SlotEventListener counter = new SlotEventListener() {
+            @Override
+            public void onAllocated(String doctorId, TimeSlot slot, Token token, long version) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void onWaitlisted(String doctorId, TimeSlot slot, Token token, long version) {
+                events.incrementAndGet();
+            }
+        };
+        Config config = Config.hospital(5, 1, 5L);
+        SlotEvents.register(counter);
+        try {
+            TraceReplayer.replay(config.doctors(), OpdDaySimulator.trace(config));
+        } finally {
+            SlotEvents.unregister(counter);
+        }
+
+        assertEquals(0, events.get());
+        assertTrue(InMemoryStore.doctors.keySet().stream().noneMatch(id -> id.startsWith("SIM-")));
+    }
+
+    @Test
+    void testUnknownDoctorIsRejected() {
+        List<TraceArrival> trace = List.of(new TraceArrival(540, "NOBODY", "9-10", "P1", TokenSource.ONLINE, null));
+
+        assertThrows(IllegalArgumentException.class, () -> TraceReplayer.replay(List.of(), trace));
+    }
+}
@@ -0,0 +1,96 @@
+package com.opd.opd_token_engine.simulation;
+
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.Config;
+import com.opd.opd_token_engine.simulation.OpdDaySimulator.TraceArrival;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for parallel what-if evaluation: isolation between variants, ranking
+ * and the effect of each kind of policy change
+ */
+class WhatIfEvaluatorTest {
+
+    private final Config day = Config.hospital(60, 1, 21L);
+    private final List<TraceArrival> trace = OpdDaySimulator.trace(day);
+
+    @Test
+    void testParallelVariantsMatchTheirSoloReplays() {
+        List<PolicyVariant> variants = new ArrayList<>(PolicyVariant.grid(
+                List.of(0.0, 0.3, 1.0), List.of(0, 10, 40), List.of(1.0)));
+        variants.add(PolicyVariant.baseline());
+
+        WhatIfReport report = new WhatIfEvaluator(4).evaluate(day.doctors(), trace, variants);
+
+        assertEquals(10, report.ranking().size());
+        assertEquals(trace.size(), report.bookings());
+        for (WhatIfReport.Entry entry : report.ranking()) {
+            PolicyVariant variant = entry.variant();
+            ReplayResult solo = TraceReplayer.replay(variant.apply(day.doctors()), trace, variant.priorities());
+            assertEquals(solo.digest(), entry.result().digest(), variant.name());
+        }
+        // The baseline is the default engine, and the grid point equal to it ends the same way
+        String baseline = digestOf(report, "baseline");
+        assertEquals(TraceReplayer.replay(day.doctors(), trace).digest(), baseline);
+        assertEquals(baseline, digestOf(report, "aging=0.3,penalty=10,efficiency=1.0"));
+        assertTrue(InMemoryStore.doctors.keySet().stream().noneMatch(id -> id.startsWith("SIM-")));
+    }
+
+    @Test
+    void testRankingPrefersShorterWaitlists() {
+        List<PolicyVariant> variants = List.of(
+                new PolicyVariant("slower", null, null, null, null, null, null, 0.8),
+                PolicyVariant.baseline(),
+                new PolicyVariant("faster", null, null, null, null, null, null, 1.25));
+
+        WhatIfReport report = new WhatIfEvaluator(3).evaluate(day.doctors(), trace, variants);
+
+        assertEquals(List.of("faster", "baseline", "slower"),
+                report.ranking().stream().map(e -> e.variant().name()).toList());
+        assertEquals(List.of(1, 2, 3), report.ranking().stream().map(WhatIfReport.Entry::rank).toList());
+        long previous = -1;
+        for (WhatIfReport.Entry entry : report.ranking()) {
+            assertTrue(entry.result().waitingAtClose() >= previous);
+            previous = entry.result().waitingAtClose();
+        }
+    }
+
+    @Test
+    void testBasePrioritiesDecideWhoIsSeated() {
+        // Walk-ins above emergencies turns the seated shares around
+        PolicyVariant inverted = new PolicyVariant("walk-ins first",
+                Map.of(TokenSource.WALK_IN, 120, TokenSource.EMERGENCY, 30), null, null, null, null, null, null);
+
+        WhatIfReport report = new WhatIfEvaluator(2).evaluate(day.doctors(), trace,
+                List.of(PolicyVariant.baseline(), inverted));
+
+        ReplayResult baseline = resultOf(report, "baseline");
+        ReplayResult flipped = resultOf(report, "walk-ins first");
+        assertTrue(baseline.sources().get(TokenSource.EMERGENCY).seatedShare()
+                > baseline.sources().get(TokenSource.WALK_IN).seatedShare());
+        assertTrue(flipped.sources().get(TokenSource.WALK_IN).seatedShare()
+                > flipped.sources().get(TokenSource.EMERGENCY).seatedShare());
+    }
+
+    @Test
+    void testDuplicateVariantNamesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new WhatIfEvaluator(2).evaluate(day.doctors(), trace,
+                List.of(PolicyVariant.baseline(), PolicyVariant.baseline())));
+    }
+
+    private static ReplayResult resultOf(WhatIfReport report, String name) {
+        return report.ranking().stream().filter(e -> e.variant().name().equals(name)).findFirst()
+                .orElseThrow().result();
+    }
+
+    private static String digestOf(WhatIfReport report, String name) {
+        return resultOf(report, name).digest();
+    }
+}
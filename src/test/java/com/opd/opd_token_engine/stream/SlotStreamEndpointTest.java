@@ -0,0 +1,70 @@
+package com.opd.opd_token_engine.stream;
+
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for the server-sent events endpoint at /slots/{doctorId}/{slotId}/stream
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SlotStreamEndpointTest {
+
+    @Autowired
+    private AllocationService allocationService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+
+        Doctor d1 = new Doctor("D1", 1.0);
+        d1.addSlot("9-10", 1);
+        InMemoryStore.doctors.put("D1", d1);
+    }
+
+    @Test
+    void testStreamSendsSnapshotThenDeltas() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/slots/D1/9-10/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+
+        allocationService.createToken("D1", "9-10", "P001", TokenSource.WALK_IN);
+        allocationService.createToken("D1", "9-10", "P002", TokenSource.EMERGENCY); // preempts P001
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        String body = response.getContentAsString();
+        while (!body.contains("\"EVICTED\"") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            body = response.getContentAsString();
+        }
+        assertTrue(body.startsWith("event:snapshot"), body);
+        assertTrue(body.contains("event:delta"), body);
+        assertTrue(body.contains("\"patientId\":\"P002\""), body);
+        assertTrue(body.contains("\"EVICTED\""), body);
+    }
+
+    @Test
+    void testUnknownSlotIsNotFound() throws Exception {
+        mockMvc.perform(get("/slots/D1/11-12/stream"))
+            .andExpect(status().isNotFound());
+    }
+}
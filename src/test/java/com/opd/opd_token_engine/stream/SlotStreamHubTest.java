@@ -0,0 +1,181 @@
+package com.opd.opd_token_engine.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opd.opd_token_engine.event.SlotEvents;
+import com.opd.opd_token_engine.model.Doctor;
+import com.opd.opd_token_engine.model.TimeSlot;
+import com.opd.opd_token_engine.model.TokenSource;
+import com.opd.opd_token_engine.repository.InMemoryStore;
+import com.opd.opd_token_engine.service.AllocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that slot streams deliver snapshots and deltas, coalesce for slow
+ * subscribers, and never hold up the allocating thread
+ */
+class SlotStreamHubTest {
+
+    private record Message(String event, long version, JsonNode body) {
+    }
+
+    private static class Recorder implements SlotStreamHub.Sink {
+        final List<Message> messages = new CopyOnWriteArrayList<>();
+        final CountDownLatch release;
+
+        Recorder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(String event, long version, String json) throws java.io.IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new java.io.InterruptedIOException();
+            }
+            messages.add(new Message(event, version, MAPPER.readTree(json)));
+        }
+
+        Message last() {
+            return messages.get(messages.size() - 1);
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AllocationService allocationService = new AllocationService();
+    private SlotStreamHub hub;
+    private TimeSlot slot;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStore.doctors.clear();
+        Doctor doctor = new Doctor("D1", 1.0);
+        doctor.addSlot("9-10", 2);
+        InMemoryStore.doctors.put("D1", doctor);
+        slot = doctor.getSlots().get("9-10");
+        hub = new SlotStreamHub(MAPPER);
+        SlotEvents.register(hub);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SlotEvents.unregister(hub);
+        hub.close();
+        InMemoryStore.doctors.clear();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the stream");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testSnapshotThenContiguousDeltas() throws Exception {
+        allocationService.createToken("D1", "9-10", "P0", TokenSource.ONLINE);
+        Recorder recorder = new Recorder(new CountDownLatch(0));
+        hub.subscribe("D1", slot, recorder);
+        await(() -> !recorder.messages.isEmpty());
+
+        Message first = recorder.messages.get(0);
+        assertEquals(SlotStreamHub.SNAPSHOT, first.event());
+        assertEquals(1, first.body().get("allocated").size());
+
+        allocationService.createToken("D1", "9-10", "P1", TokenSource.WALK_IN);
+        allocationService.createToken("D1", "9-10", "P2", TokenSource.WALK_IN);
+        allocationService.createToken("D1", "9-10", "P3", TokenSource.EMERGENCY);
+        await(() -> recorder.last().version() == slot.getVersion());
+
+        List<String> types = new ArrayList<>();
+        long version = first.version();
+        for (Message message : recorder.messages.subList(1, recorder.messages.size())) {
+            assertEquals(SlotStreamHub.DELTA, message.event());
+            assertEquals(version, message.body().get("fromVersion").asLong());
+            version = message.version();
+            message.body().get("deltas").forEach(d -> types.add(d.get("type").asText()));
+        }
+        // The emergency takes a walk-in's seat, which goes back to the queue
+        assertEquals(List.of("ALLOCATED", "WAITLISTED", "EVICTED", "ALLOCATED"), types);
+    }
+
+    @Test
+    void testSlowSubscriberSkipsToLatestState() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder slow = new Recorder(release);
+        hub.subscribe("D1", slot, slow);
+
+        for (int i = 0; i < 200; i++) {
+            allocationService.createToken("D1", "9-10", "P" + i, TokenSource.WALK_IN);
+            // One update per booking, so the subscriber ends up far outside the history
+            long published = i + 1;
+            await(() -> (long) hub.metrics().get("published") == published);
+        }
+        release.countDown();
+        await(() -> !slow.messages.isEmpty() && slow.last().version() == slot.getVersion());
+
+        // The initial snapshot, then one snapshot of the latest state instead of 200 deltas
+        assertTrue(slow.messages.size() <= 3, "messages " + slow.messages.size());
+        assertEquals(SlotStreamHub.SNAPSHOT, slow.messages.get(1).event());
+        assertTrue((long) hub.metrics().get("coalesced") > 0);
+    }
+
+    @Test
+    void testBlockedSubscribersDoNotHoldUpAllocations() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Recorder> recorders = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Recorder recorder = new Recorder(release);
+            recorders.add(recorder);
+            hub.subscribe("D1", slot, recorder);
+        }
+
+        // Every subscriber is stuck writing; allocations must not notice
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 200; i++) {
+                allocationService.createToken("D1", "9-10", "P" + i, TokenSource.WALK_IN);
+            }
+        });
+
+        release.countDown();
+        long version = slot.getVersion();
+        await(() -> recorders.stream().allMatch(r -> !r.messages.isEmpty() && r.last().version() == version));
+        assertEquals(2_000, hub.getSubscriberCount());
+    }
+
+    @Test
+    void testFailedSendEndsSubscription() throws Exception {
+        CountDownLatch closed = new CountDownLatch(1);
+        hub.subscribe("D1", slot, new SlotStreamHub.Sink() {
+            @Override
+            public void send(String event, long version, String json) throws java.io.IOException {
+                throw new java.io.IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertEquals(0, hub.getSubscriberCount());
+        allocationService.createToken("D1", "9-10", "P0", TokenSource.ONLINE);
+        assertEquals(0, hub.metrics().get("slots"));
+    }
+}